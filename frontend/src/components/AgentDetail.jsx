@@ -1,5 +1,6 @@
 import React, { useEffect, useState } from 'react';
 import ReactMarkdown from 'react-markdown';
+import { useWebSocket } from '../context/WebSocketProvider';
 import '../styles/Dashboard.css';
 
 const AgentDetail = ({ agentId, onDeleted }) => {
@@ -17,6 +18,7 @@ const AgentDetail = ({ agentId, onDeleted }) => {
   /** Event opened in the detail modal (full input/output view). */
   const [inspectedEvent, setInspectedEvent] = useState(null);
   const [eventDetailTab, setEventDetailTab] = useState('input');
+  const { subscribeTopic } = useWebSocket();
 
   useEffect(() => {
     if (!agentId) return;
@@ -41,10 +43,7 @@ const AgentDetail = ({ agentId, onDeleted }) => {
 
   useEffect(() => {
     if (!agentId) return;
-    const protocol = window.location.protocol === 'https:' ? 'wss:' : 'ws:';
-    const wsUrl = `${protocol}//${window.location.host}/ws/agent-runs?agentId=${encodeURIComponent(agentId)}`;
-    const ws = new WebSocket(wsUrl);
-    ws.onmessage = () => {
+    const refetch = () => {
       fetch(`/api/agents/${agentId}`)
         .then((res) => (res.ok ? res.json() : null))
         .then((data) => {
@@ -52,7 +51,28 @@ const AgentDetail = ({ agentId, onDeleted }) => {
         })
         .catch(() => {});
     };
-    return () => ws.close();
+    return subscribeTopic(`agent:${agentId}`, (event) => {
+      if (event.type === 'resync') {
+        refetch();
+        return;
+      }
+      if (event.type !== 'agent-run-update') return;
+      if (!Array.isArray(event.runs)) {
+        refetch();
+        return;
+      }
+      // Patch changed rows in place; runs we have not seen yet are the newest ones.
+      setDetail((prev) => {
+        if (!prev) return prev;
+        const changed = new Map(event.runs.map((run) => [run.id, run]));
+        const runs = (prev.runs || []).map((run) => {
+          const update = changed.get(run.id);
+          changed.delete(run.id);
+          return update || run;
+        });
+        return { ...prev, runs: [...changed.values(), ...runs] };
+      });
+    });
   }, [agentId]);
 
   const runQuery = async () => {
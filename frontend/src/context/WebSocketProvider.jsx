@@ -33,18 +33,84 @@ export const WebSocketProvider = ({ children }) => {
   const [selectedProvider, setSelectedProvider] = useState('GOOGLE');
   const [selectedModel, setSelectedModel] = useState('');
   const [isAgentWorking, setIsAgentWorking] = useState(false); // New state for agent activity
-  const wsRef = useRef(null);
+  // One multiplexed connection carries every run and agent subscription (/ws/subscriptions).
+  const muxRef = useRef(null);
+  const topicsRef = useRef(new Map());
+  const runUnsubscribeRef = useRef(null);
   const runIdRef = useRef(null);
+  const lastEventIdRef = useRef(0);
   const taskBuffers = useRef(new Map());
 
   const appendMessage = (message) => {
     setMessages((prev) => [...prev, message]);
   };
 
+  const sendSubscription = (action, topic, since = 0) => {
+    const ws = muxRef.current;
+    if (ws && ws.readyState === WebSocket.OPEN) {
+      ws.send(JSON.stringify({ action, topic, since }));
+    }
+  };
+
+  const topicOf = (payload) => {
+    if (payload?.topic) return payload.topic;
+    if (payload?.runId) return `run:${payload.runId}`;
+    if (payload?.agentId) return `agent:${payload.agentId}`;
+    return null;
+  };
+
+  const openMux = () => {
+    if (muxRef.current) return;
+    const protocol = window.location.protocol === 'https:' ? 'wss' : 'ws';
+    const ws = new WebSocket(`${protocol}://${window.location.host}/ws/subscriptions`);
+    muxRef.current = ws;
+    ws.onopen = () => {
+      topicsRef.current.forEach((entry, topic) => sendSubscription('subscribe', topic, entry.since));
+    };
+    ws.onmessage = (event) => {
+      try {
+        const payload = JSON.parse(event.data);
+        const entry = topicsRef.current.get(topicOf(payload));
+        if (!entry) return;
+        if (typeof payload.id === 'number') {
+          entry.since = payload.id;
+        }
+        entry.handler(payload);
+      } catch (e) {
+        console.error('Failed to parse stream event:', e);
+      }
+    };
+    ws.onclose = () => {
+      muxRef.current = null;
+      if (topicsRef.current.size > 0) {
+        setTimeout(openMux, 1000);
+      }
+    };
+    ws.onerror = (error) => {
+      console.error('WebSocket error:', error);
+    };
+  };
+
+  /** Subscribes to a run ("run:<id>") or agent ("agent:<id>") topic; returns the unsubscribe function. */
+  const subscribeTopic = (topic, handler, since = 0) => {
+    const entry = { handler, since };
+    topicsRef.current.set(topic, entry);
+    if (muxRef.current) {
+      sendSubscription('subscribe', topic, since);
+    } else {
+      openMux();
+    }
+    return () => {
+      if (topicsRef.current.get(topic) !== entry) return;
+      topicsRef.current.delete(topic);
+      sendSubscription('unsubscribe', topic);
+    };
+  };
+
   const closeSocket = () => {
-    if (wsRef.current) {
-      wsRef.current.close();
-      wsRef.current = null;
+    if (runUnsubscribeRef.current) {
+      runUnsubscribeRef.current();
+      runUnsubscribeRef.current = null;
     }
   };
 
@@ -58,6 +124,23 @@ export const WebSocketProvider = ({ children }) => {
 
   const handleStreamEvent = (event) => {
     const { type, data } = event;
+    if (type === 'subscription-closed' || type === 'subscription-error') {
+      return;
+    }
+    if (type === 'batch') {
+      (event.events || []).forEach(handleStreamEvent);
+      return;
+    }
+    if (type === 'resync') {
+      // The server dropped our backlog; reconnect and replay from the last event we saw.
+      if (runIdRef.current) {
+        connectToRun(runIdRef.current, data?.since ?? lastEventIdRef.current);
+      }
+      return;
+    }
+    if (typeof event.id === 'number') {
+      lastEventIdRef.current = event.id;
+    }
     if (type === 'session') {
       setSessionId(data?.sessionId || '');
       return;
@@ -117,29 +200,11 @@ export const WebSocketProvider = ({ children }) => {
     }
   };
 
-  const connectToRun = (runId) => {
+  const connectToRun = (runId, since = 0) => {
     closeSocket();
     runIdRef.current = runId;
-    const protocol = window.location.protocol === 'https:' ? 'wss' : 'ws';
-    const wsUrl = `${protocol}://${window.location.host}/ws/stream?runId=${encodeURIComponent(runId)}`;
-    wsRef.current = new WebSocket(wsUrl);
-
-    wsRef.current.onmessage = (event) => {
-      try {
-        const payload = JSON.parse(event.data);
-        handleStreamEvent(payload);
-      } catch (e) {
-        console.error('Failed to parse stream event:', e);
-      }
-    };
-
-    wsRef.current.onclose = () => {
-      // no-op
-    };
-
-    wsRef.current.onerror = (error) => {
-      console.error('WebSocket error:', error);
-    };
+    lastEventIdRef.current = since;
+    runUnsubscribeRef.current = subscribeTopic(`run:${runId}`, handleStreamEvent, since);
   };
 
   const sendMessage = async (message) => {
@@ -413,6 +478,7 @@ export const WebSocketProvider = ({ children }) => {
     cancelAgentRun, // Expose cancelAgentRun function
     runId: runIdRef.current, // Expose runId for potential use
     runDirectFromPlan,
+    subscribeTopic,
   };
 
   return (
@@ -3,56 +3,95 @@ package com.bko.api;
 import com.bko.entity.ScheduledAgent;
 import com.bko.entity.ScheduledAgentRun;
 import com.bko.entity.PromptLog;
+import com.bko.orchestration.model.ArchivedSession;
+import com.bko.orchestration.model.RunSummary;
 import com.bko.orchestration.service.AgentLibraryService;
+import com.bko.orchestration.service.AgentRunSummaryService;
 import com.bko.orchestration.service.AgentQueryService;
+import com.bko.orchestration.service.RunArchiveService;
 import com.bko.orchestration.service.ScheduledAgentExecutionService;
+import com.bko.orchestration.service.TextBlobService;
+import com.bko.orchestration.service.TokenCountService;
 import com.bko.repository.PromptLogRepository;
 import com.bko.repository.ScheduledAgentRepository;
 import com.bko.repository.ScheduledAgentRunRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
-import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.OffsetDateTime;
-import java.util.ArrayList;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/agents")
 public class AgentController {
 
+    private static final int MAX_RUN_PAGE_SIZE = 100;
+    private static final int MAX_EVENT_PAGE_SIZE = 200;
+    private static final int EVENT_STREAM_BATCH_SIZE = 100;
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final ScheduledAgentRepository agentRepository;
     private final ScheduledAgentRunRepository runRepository;
     private final PromptLogRepository promptLogRepository;
     private final AgentLibraryService agentLibraryService;
     private final AgentQueryService agentQueryService;
     private final ScheduledAgentExecutionService scheduledAgentExecutionService;
+    private final TokenCountService tokenCountService;
+    private final TextBlobService textBlobService;
+    private final RunArchiveService runArchiveService;
+    private final AgentRunSummaryService runSummaryService;
+    private final ObjectMapper objectMapper;
 
     public AgentController(ScheduledAgentRepository agentRepository,
                            ScheduledAgentRunRepository runRepository,
                            PromptLogRepository promptLogRepository,
                            AgentLibraryService agentLibraryService,
                            AgentQueryService agentQueryService,
-                           ScheduledAgentExecutionService scheduledAgentExecutionService) {
+                           ScheduledAgentExecutionService scheduledAgentExecutionService,
+                           TokenCountService tokenCountService,
+                           TextBlobService textBlobService,
+                           RunArchiveService runArchiveService,
+                           AgentRunSummaryService runSummaryService,
+                           ObjectMapper objectMapper) {
         this.agentRepository = agentRepository;
         this.runRepository = runRepository;
         this.promptLogRepository = promptLogRepository;
         this.agentLibraryService = agentLibraryService;
         this.agentQueryService = agentQueryService;
         this.scheduledAgentExecutionService = scheduledAgentExecutionService;
+        this.tokenCountService = tokenCountService;
+        this.textBlobService = textBlobService;
+        this.runArchiveService = runArchiveService;
+        this.runSummaryService = runSummaryService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
@@ -65,7 +104,23 @@ public class AgentController {
         ScheduledAgent agent = agentRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Agent not found"));
         List<ScheduledAgentRun> runs = runRepository.findByAgentOrderByStartedAtDesc(agent);
-        return AgentDetailResponse.from(agent, runs, promptLogRepository, this::estimateTokens);
+        return AgentDetailResponse.from(agent, runSummaryService.summarize(runs));
+    }
+
+    /**
+     * One page of an agent's runs, newest first. Event and token totals come from the
+     * run_stats projection, so no prompt text is loaded.
+     */
+    @GetMapping("/{id}/runs")
+    public RunSummaryPage listRuns(@PathVariable UUID id,
+                                   @RequestParam(defaultValue = "0") int page,
+                                   @RequestParam(defaultValue = "20") int size) {
+        ScheduledAgent agent = agentRepository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Agent not found"));
+        PageRequest pageRequest = PageRequest.of(Math.max(0, page), Math.clamp(size, 1, MAX_RUN_PAGE_SIZE));
+        Page<ScheduledAgentRun> runs = runRepository.findByAgentOrderByStartedAtDesc(agent, pageRequest);
+        List<RunSummary> summaries = runSummaryService.summarize(runs.getContent());
+        return new RunSummaryPage(summaries, runs.getNumber(), runs.getSize(), runs.getTotalElements());
     }
 
     @PostMapping
@@ -95,22 +150,206 @@ public class AgentController {
         scheduledAgentExecutionService.runAgentNow(agent.getId());
     }
 
+    /**
+     * Events of one run, oldest first, written to the response as a streamed JSON array.
+     * <p>
+     * With {@code limit}, returns one keyset page and sets {@value #NEXT_CURSOR_HEADER} when more
+     * events follow; pass it back as {@code after}. Without {@code limit}, all events are streamed
+     * in batches so the response is never built in memory. {@code view=summary} leaves out prompt
+     * and response text (tokens are null when the provider did not report them); fetch bodies
+     * from {@code /events/{eventId}/body}.
+     */
     @GetMapping("/{id}/runs/{runId}/events")
-    public List<AgentRunEvent> getRunEvents(@PathVariable UUID id, @PathVariable UUID runId) {
+    public ResponseEntity<StreamingResponseBody> getRunEvents(@PathVariable UUID id,
+                                                              @PathVariable UUID runId,
+                                                              @RequestParam(required = false) String after,
+                                                              @RequestParam(required = false) Integer limit,
+                                                              @RequestParam(defaultValue = "full") String view) {
+        ScheduledAgentRun run = requireRun(id, runId);
+        boolean summary = "summary".equalsIgnoreCase(view);
+        EventCursor start = after != null ? EventCursor.decode(after) : EventCursor.start(run);
+        if (run.getSessionId() == null) {
+            return streamJson(ResponseEntity.ok(), generator -> writeArray(generator, List.of()));
+        }
+        // Read (and unzip) the archived session at most once per request.
+        Optional<ArchivedSession> archived = runArchiveService.find(run.getSessionId());
+        if (limit == null) {
+            return streamJson(ResponseEntity.ok(), generator -> {
+                generator.writeStartArray();
+                if (archived.isPresent()) {
+                    Iterator<AgentRunEvent> events = archivedEvents(archived.get(), start, summary).iterator();
+                    while (events.hasNext()) {
+                        objectMapper.writeValue(generator, events.next());
+                    }
+                    generator.writeEndArray();
+                    return;
+                }
+                EventCursor cursor = start;
+                List<AgentRunEvent> batch;
+                do {
+                    batch = loadEvents(run, Optional.empty(), cursor, EVENT_STREAM_BATCH_SIZE, summary);
+                    for (AgentRunEvent event : batch) {
+                        objectMapper.writeValue(generator, event);
+                    }
+                    generator.flush();
+                    if (!batch.isEmpty()) {
+                        cursor = EventCursor.of(batch.getLast());
+                    }
+                } while (batch.size() == EVENT_STREAM_BATCH_SIZE);
+                generator.writeEndArray();
+            });
+        }
+        int pageSize = Math.clamp(limit, 1, MAX_EVENT_PAGE_SIZE);
+        List<AgentRunEvent> page = loadEvents(run, archived, start, pageSize + 1, summary);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.size() > pageSize) {
+            page = page.subList(0, pageSize);
+            response.header(NEXT_CURSOR_HEADER, EventCursor.of(page.getLast()).encode());
+        }
+        List<AgentRunEvent> events = page;
+        return streamJson(response, generator -> writeArray(generator, events));
+    }
+
+    /**
+     * Prompt and response text of one event, streamed as JSON.
+     */
+    @GetMapping("/{id}/runs/{runId}/events/{eventId}/body")
+    public ResponseEntity<StreamingResponseBody> getRunEventBody(@PathVariable UUID id,
+                                                                 @PathVariable UUID runId,
+                                                                 @PathVariable UUID eventId) {
+        ScheduledAgentRun run = requireRun(id, runId);
+        AgentRunEventBody body = run.getSessionId() == null ? null : runArchiveService.find(run.getSessionId())
+                .map(archived -> archived.prompts().stream()
+                        .filter(prompt -> prompt.id().equals(eventId))
+                        .findFirst()
+                        .map(prompt -> new AgentRunEventBody(prompt.id(), prompt.systemPrompt(),
+                                prompt.userPrompt(), prompt.fullResponse()))
+                        .orElse(null))
+                .orElseGet(() -> promptLogRepository.findById(eventId)
+                        .filter(log -> log.getSession() != null
+                                && run.getSessionId().equals(log.getSession().getId()))
+                        .map(log -> {
+                            textBlobService.hydrate(List.of(log));
+                            return new AgentRunEventBody(log.getId(), log.getSystemPrompt(), log.getUserPrompt(),
+                                    log.getFullResponse());
+                        })
+                        .orElse(null));
+        if (body == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Run event not found");
+        }
+        return streamJson(ResponseEntity.ok(), generator -> objectMapper.writeValue(generator, body));
+    }
+
+    private ScheduledAgentRun requireRun(UUID agentId, UUID runId) {
         ScheduledAgentRun run = runRepository.findById(runId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Agent run not found"));
-        if (run.getAgent() == null || run.getAgent().getId() == null || !run.getAgent().getId().equals(id)) {
+        if (run.getAgent() == null || run.getAgent().getId() == null || !run.getAgent().getId().equals(agentId)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Agent run not found");
         }
-        if (run.getSessionId() == null) {
-            return List.of();
+        return run;
+    }
+
+    private List<AgentRunEvent> loadEvents(ScheduledAgentRun run, Optional<ArchivedSession> archived,
+                                           EventCursor after, int count, boolean summary) {
+        if (archived.isPresent()) {
+            return archivedEvents(archived.get(), after, summary).limit(count).toList();
         }
-        List<PromptLog> logs = promptLogRepository.findBySessionIdOrderByCreatedAtAsc(run.getSessionId());
+        PageRequest page = PageRequest.of(0, count);
+        if (summary) {
+            return promptLogRepository.findSummaryPageAfter(run.getSessionId(), after.createdAt(), after.id(),
+                            AgentRunSummaryService.runWindowEnd(run), page).stream()
+                    .map(log -> toSummaryEvent(log.id(), log.createdAt(), log.purpose(), log.role(),
+                            log.inputTokenCount(), log.outputTokenCount()))
+                    .toList();
+        }
+        List<PromptLog> logs = promptLogRepository.findPageAfter(run.getSessionId(), after.createdAt(), after.id(),
+                AgentRunSummaryService.runWindowEnd(run), page);
+        textBlobService.hydrate(logs);
         return logs.stream()
                 .map(this::toAgentRunEvent)
                 .toList();
     }
 
+    /**
+     * Events of an archived session after the cursor, oldest first; mapped lazily as the stream is consumed.
+     */
+    private Stream<AgentRunEvent> archivedEvents(ArchivedSession archived, EventCursor after, boolean summary) {
+        String model = archived.model();
+        return archived.prompts().stream()
+                .filter(prompt -> after.isBefore(prompt.createdAt(), prompt.id()))
+                .sorted(Comparator.comparing(ArchivedSession.Prompt::createdAt)
+                        .thenComparing(prompt -> prompt.id().toString()))
+                .map(prompt -> summary
+                        ? toSummaryEvent(prompt.id(), prompt.createdAt(), prompt.purpose(), prompt.role(),
+                                prompt.inputTokenCount(), prompt.outputTokenCount())
+                        : toAgentRunEvent(prompt.id(), prompt.createdAt(), prompt.purpose(), prompt.role(),
+                                prompt.systemPrompt(), prompt.userPrompt(), prompt.fullResponse(),
+                                prompt.inputTokenCount(), prompt.outputTokenCount(), model));
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamJson(ResponseEntity.BodyBuilder response, JsonWriter writer) {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                writer.write(generator);
+            }
+        };
+        return response.contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private void writeArray(JsonGenerator generator, List<?> values) throws IOException {
+        generator.writeStartArray();
+        for (Object value : values) {
+            objectMapper.writeValue(generator, value);
+        }
+        generator.writeEndArray();
+    }
+
+    @FunctionalInterface
+    private interface JsonWriter {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    /**
+     * Keyset position (created_at, id) of the last event returned; opaque to clients.
+     */
+    private record EventCursor(OffsetDateTime createdAt, UUID id) {
+
+        private static final UUID MIN_ID = new UUID(0, 0);
+
+        static EventCursor start(ScheduledAgentRun run) {
+            return new EventCursor(run.getStartedAt() != null ? AgentRunSummaryService.runWindowStart(run)
+                    : OffsetDateTime.ofInstant(Instant.EPOCH, ZoneOffset.UTC), MIN_ID);
+        }
+
+        static EventCursor of(AgentRunEvent event) {
+            return new EventCursor(event.createdAt(), event.id());
+        }
+
+        static EventCursor decode(String token) {
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = decoded.indexOf('|');
+                return new EventCursor(OffsetDateTime.parse(decoded.substring(0, separator)),
+                        UUID.fromString(decoded.substring(separator + 1)));
+            } catch (RuntimeException ex) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid event cursor");
+            }
+        }
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((createdAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Same order as Postgres: created_at, then uuid bytes (which matches the string form).
+         */
+        boolean isBefore(OffsetDateTime otherCreatedAt, UUID otherId) {
+            int byTime = createdAt.compareTo(otherCreatedAt);
+            return byTime < 0 || (byTime == 0 && id.toString().compareTo(otherId.toString()) < 0);
+        }
+    }
+
     public record AgentQueryRequest(
             @NotBlank String query,
             OffsetDateTime from,
@@ -149,14 +388,11 @@ public class AgentController {
             Long tokenLimitPerRun
     ) {}
 
-    public record RunSummary(
-            UUID id,
-            OffsetDateTime startedAt,
-            OffsetDateTime completedAt,
-            ScheduledAgentRun.Status status,
-            String errorMessage,
-            int eventCount,
-            int totalTokens
+    public record RunSummaryPage(
+            List<RunSummary> runs,
+            int page,
+            int size,
+            long totalRuns
     ) {}
 
     public record AgentDetailResponse(
@@ -175,51 +411,7 @@ public class AgentController {
             Long tokenLimitPerRun,
             List<RunSummary> runs
     ) {
-        static AgentDetailResponse from(ScheduledAgent agent, List<ScheduledAgentRun> runs,
-                                      PromptLogRepository promptLogRepository,
-                                      java.util.function.ToIntFunction<String> estimateTokens) {
-            List<RunSummary> runSummaries = new ArrayList<>();
-            List<UUID> sessionIds = runs.stream()
-                    .map(ScheduledAgentRun::getSessionId)
-                    .filter(java.util.Objects::nonNull)
-                    .distinct()
-                    .toList();
-            Map<UUID, int[]> sessionStats = Map.of();
-            if (!sessionIds.isEmpty()) {
-                List<PromptLog> allLogs = promptLogRepository.findBySession_IdInOrderByCreatedAtAsc(sessionIds);
-                sessionStats = allLogs.stream().collect(Collectors.groupingBy(
-                        log -> log.getSession().getId(),
-                        Collectors.collectingAndThen(
-                                Collectors.toList(),
-                                logs -> {
-                                    int count = logs.size();
-                                    int tokens = logs.stream()
-                                            .mapToInt(log -> tokenTotalForLog(log, estimateTokens))
-                                            .sum();
-                                    return new int[]{count, tokens};
-                                }
-                        )
-                ));
-            }
-            Map<UUID, int[]> finalSessionStats = sessionStats;
-            for (ScheduledAgentRun run : runs) {
-                int eventCount = 0;
-                int totalTokens = 0;
-                if (run.getSessionId() != null && finalSessionStats.containsKey(run.getSessionId())) {
-                    int[] stats = finalSessionStats.get(run.getSessionId());
-                    eventCount = stats[0];
-                    totalTokens = stats[1];
-                }
-                runSummaries.add(new RunSummary(
-                        run.getId(),
-                        run.getStartedAt(),
-                        run.getCompletedAt(),
-                        run.getStatus(),
-                        run.getErrorMessage(),
-                        eventCount,
-                        totalTokens
-                ));
-            }
+        static AgentDetailResponse from(ScheduledAgent agent, List<RunSummary> runSummaries) {
             return new AgentDetailResponse(
                     agent.getId(),
                     agent.getName(),
@@ -237,51 +429,51 @@ public class AgentController {
                     runSummaries
             );
         }
-
-        private static String renderPrompt(String systemPrompt, String userPrompt) {
-            StringBuilder sb = new StringBuilder();
-            if (StringUtils.hasText(systemPrompt)) {
-                sb.append("System:\n").append(systemPrompt.trim());
-            }
-            if (StringUtils.hasText(userPrompt)) {
-                if (!sb.isEmpty()) {
-                    sb.append("\n\n");
-                }
-                sb.append("User:\n").append(userPrompt.trim());
-            }
-            return sb.toString();
-        }
-
-        private static int tokenTotalForLog(PromptLog log, java.util.function.ToIntFunction<String> estimateTokens) {
-            if (log.getInputTokenCount() != null && log.getOutputTokenCount() != null) {
-                return log.getInputTokenCount() + log.getOutputTokenCount();
-            }
-            String input = renderPrompt(log.getSystemPrompt(), log.getUserPrompt());
-            String output = log.getFullResponse() != null ? log.getFullResponse() : "";
-            return estimateTokens.applyAsInt(input) + estimateTokens.applyAsInt(output);
-        }
     }
 
     public record AgentRunEvent(
+            UUID id,
             OffsetDateTime createdAt,
             String purpose,
             String role,
             String input,
             String output,
-            int inputTokens,
-            int outputTokens,
-            int totalTokens
+            Integer inputTokens,
+            Integer outputTokens,
+            Integer totalTokens
     ) {}
 
+    public record AgentRunEventBody(
+            UUID id,
+            String systemPrompt,
+            String userPrompt,
+            String output
+    ) {}
+
+    private static AgentRunEvent toSummaryEvent(UUID id, OffsetDateTime createdAt, String purpose, String role,
+                                                Integer inputTokens, Integer outputTokens) {
+        Integer totalTokens = inputTokens != null && outputTokens != null ? inputTokens + outputTokens : null;
+        return new AgentRunEvent(id, createdAt, purpose, role, null, null, inputTokens, outputTokens, totalTokens);
+    }
+
     private AgentRunEvent toAgentRunEvent(PromptLog log) {
-        String input = renderPrompt(log.getSystemPrompt(), log.getUserPrompt());
-        String output = log.getFullResponse();
-        int inputTokens = log.getInputTokenCount() != null ? log.getInputTokenCount() : estimateTokens(input);
-        int outputTokens = log.getOutputTokenCount() != null ? log.getOutputTokenCount() : estimateTokens(output != null ? output : "");
+        return toAgentRunEvent(log.getId(), log.getCreatedAt(), log.getPurpose(), log.getRole(), log.getSystemPrompt(),
+                log.getUserPrompt(), log.getFullResponse(), log.getInputTokenCount(), log.getOutputTokenCount(),
+                log.getSession() != null ? log.getSession().getModel() : null);
+    }
+
+    private AgentRunEvent toAgentRunEvent(UUID id, OffsetDateTime createdAt, String purpose, String role,
+                                          String systemPrompt, String userPrompt, String fullResponse,
+                                          Integer inputTokenCount, Integer outputTokenCount, String model) {
+        String input = TokenCountService.renderPrompt(systemPrompt, userPrompt);
+        String output = fullResponse;
+        int inputTokens = tokenCountService.countUnlessReported(inputTokenCount, model, input);
+        int outputTokens = tokenCountService.countUnlessReported(outputTokenCount, model, output);
         return new AgentRunEvent(
-                log.getCreatedAt(),
-                log.getPurpose(),
-                log.getRole(),
+                id,
+                createdAt,
+                purpose,
+                role,
                 input,
                 output,
                 inputTokens,
@@ -289,25 +481,4 @@ public class AgentController {
                 inputTokens + outputTokens
         );
     }
-
-    private String renderPrompt(String systemPrompt, String userPrompt) {
-        StringBuilder sb = new StringBuilder();
-        if (StringUtils.hasText(systemPrompt)) {
-            sb.append("System:\n").append(systemPrompt.trim());
-        }
-        if (StringUtils.hasText(userPrompt)) {
-            if (!sb.isEmpty()) {
-                sb.append("\n\n");
-            }
-            sb.append("User:\n").append(userPrompt.trim());
-        }
-        return sb.toString();
-    }
-
-    private int estimateTokens(String text) {
-        if (!StringUtils.hasText(text)) {
-            return 0;
-        }
-        return (int) Math.ceil(text.length() / 4.0);
-    }
 }
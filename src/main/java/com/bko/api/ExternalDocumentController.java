@@ -1,7 +1,8 @@
 package com.bko.api;
 
 import com.bko.entity.ExternalDocument;
-import com.bko.repository.ExternalDocumentRepository;
+import com.bko.orchestration.model.DocumentSearchPage;
+import com.bko.orchestration.service.ExternalDocumentService;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -21,10 +22,10 @@ public class ExternalDocumentController {
     private static final String SOURCE_ARXIV = "arxiv";
     private static final int MAX_PAGE_SIZE = 500;
 
-    private final ExternalDocumentRepository documentRepository;
+    private final ExternalDocumentService documentService;
 
-    public ExternalDocumentController(ExternalDocumentRepository documentRepository) {
-        this.documentRepository = documentRepository;
+    public ExternalDocumentController(ExternalDocumentService documentService) {
+        this.documentService = documentService;
     }
 
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
@@ -36,9 +37,8 @@ public class ExternalDocumentController {
         int safeSize = Math.min(MAX_PAGE_SIZE, Math.max(1, size));
         var pageable = PageRequest.of(Math.max(0, page), safeSize);
         String queryText = (q != null && !q.isBlank()) ? q.trim() : null;
-        List<ExternalDocument> content = documentRepository.searchDocuments(source, queryText, pageable);
-        long total = documentRepository.countSearchDocuments(source, queryText);
-        return new DocumentListResponse(content, total, page, safeSize);
+        DocumentSearchPage result = documentService.searchPage(source, queryText, pageable);
+        return new DocumentListResponse(result.content(), result.total(), page, safeSize);
     }
 
     public record DocumentListResponse(
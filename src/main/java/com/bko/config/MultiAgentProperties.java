@@ -19,6 +19,15 @@ public class MultiAgentProperties {
     private AgentSkillsConfig skills = new AgentSkillsConfig();
     private AgentToolsConfig tools = new AgentToolsConfig();
     private SkillPlanningConfig skillPlanning = new SkillPlanningConfig();
+    private TokenizerConfig tokenizer = new TokenizerConfig();
+    private FastPathConfig fastPath = new FastPathConfig();
+    private StreamingPlanConfig streamingPlan = new StreamingPlanConfig();
+    private LogWriterConfig logWriter = new LogWriterConfig();
+    private TextBlobConfig textBlob = new TextBlobConfig();
+    private LogPartitionConfig logPartitions = new LogPartitionConfig();
+    private RunArchiveConfig archive = new RunArchiveConfig();
+    private DocumentIndexConfig documentIndex = new DocumentIndexConfig();
+    private StreamHubConfig streamHub = new StreamHubConfig();
     private AiProvider aiProvider = AiProvider.GOOGLE;
     private OpenAIConfig openai = new OpenAIConfig();
     private GoogleConfig google = new GoogleConfig();
@@ -218,6 +227,47 @@ public class MultiAgentProperties {
     public static class SkillPlanningConfig {
         private int defaultSkillBudget = 3;
         private java.util.Map<String, Integer> roleBudgets = new java.util.HashMap<>();
+        private boolean combinedPlanning = true;
+        private String selectionMode = "local";
+        private SkillRankerConfig ranker = new SkillRankerConfig();
+
+        public int resolveBudget(String role) {
+            if (role != null && !role.isBlank()) {
+                Integer override = roleBudgets.get(role.toLowerCase(java.util.Locale.ROOT));
+                if (override != null) {
+                    return override;
+                }
+            }
+            return defaultSkillBudget;
+        }
+
+        public boolean isLlmSelection() {
+            return "llm".equalsIgnoreCase(selectionMode);
+        }
+
+        public String getSelectionMode() {
+            return selectionMode;
+        }
+
+        public void setSelectionMode(String selectionMode) {
+            this.selectionMode = selectionMode != null ? selectionMode : "local";
+        }
+
+        public SkillRankerConfig getRanker() {
+            return ranker;
+        }
+
+        public void setRanker(SkillRankerConfig ranker) {
+            this.ranker = ranker != null ? ranker : new SkillRankerConfig();
+        }
+
+        public boolean isCombinedPlanning() {
+            return combinedPlanning;
+        }
+
+        public void setCombinedPlanning(boolean combinedPlanning) {
+            this.combinedPlanning = combinedPlanning;
+        }
 
         public int getDefaultSkillBudget() {
             return defaultSkillBudget;
@@ -238,4 +288,659 @@ public class MultiAgentProperties {
             this.roleBudgets = new java.util.HashMap<>(roleBudgets);
         }
     }
+
+    public static class SkillRankerConfig {
+        private double k1 = 1.2;
+        private double b = 0.75;
+        private double nameWeight = 3.0;
+        private double descriptionWeight = 2.0;
+        private double instructionsWeight = 1.0;
+        private java.util.Map<String, Double> skillWeights = new java.util.HashMap<>();
+
+        public double getK1() {
+            return k1;
+        }
+
+        public void setK1(double k1) {
+            this.k1 = k1;
+        }
+
+        public double getB() {
+            return b;
+        }
+
+        public void setB(double b) {
+            this.b = b;
+        }
+
+        public double getNameWeight() {
+            return nameWeight;
+        }
+
+        public void setNameWeight(double nameWeight) {
+            this.nameWeight = nameWeight;
+        }
+
+        public double getDescriptionWeight() {
+            return descriptionWeight;
+        }
+
+        public void setDescriptionWeight(double descriptionWeight) {
+            this.descriptionWeight = descriptionWeight;
+        }
+
+        public double getInstructionsWeight() {
+            return instructionsWeight;
+        }
+
+        public void setInstructionsWeight(double instructionsWeight) {
+            this.instructionsWeight = instructionsWeight;
+        }
+
+        public java.util.Map<String, Double> getSkillWeights() {
+            return skillWeights;
+        }
+
+        public void setSkillWeights(java.util.Map<String, Double> skillWeights) {
+            if (skillWeights == null) {
+                return;
+            }
+            this.skillWeights = new java.util.HashMap<>(skillWeights);
+        }
+    }
+
+    public TokenizerConfig getTokenizer() {
+        return tokenizer;
+    }
+
+    public void setTokenizer(TokenizerConfig tokenizer) {
+        this.tokenizer = tokenizer != null ? tokenizer : new TokenizerConfig();
+    }
+
+    public static class TokenizerConfig {
+        private int cacheSize = 4096;
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public void setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+        }
+    }
+
+    public FastPathConfig getFastPath() {
+        return fastPath;
+    }
+
+    public void setFastPath(FastPathConfig fastPath) {
+        this.fastPath = fastPath != null ? fastPath : new FastPathConfig();
+    }
+
+    public static class FastPathConfig {
+        private boolean enabled = true;
+        private double confidenceThreshold = 0.8;
+        private int maxTokens = 400;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getConfidenceThreshold() {
+            return confidenceThreshold;
+        }
+
+        public void setConfidenceThreshold(double confidenceThreshold) {
+            this.confidenceThreshold = confidenceThreshold;
+        }
+
+        public int getMaxTokens() {
+            return maxTokens;
+        }
+
+        public void setMaxTokens(int maxTokens) {
+            this.maxTokens = maxTokens;
+        }
+    }
+
+    public StreamingPlanConfig getStreamingPlan() {
+        return streamingPlan;
+    }
+
+    public void setStreamingPlan(StreamingPlanConfig streamingPlan) {
+        this.streamingPlan = streamingPlan != null ? streamingPlan : new StreamingPlanConfig();
+    }
+
+    public static class StreamingPlanConfig {
+        private boolean enabled = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public LogWriterConfig getLogWriter() {
+        return logWriter;
+    }
+
+    public void setLogWriter(LogWriterConfig logWriter) {
+        this.logWriter = logWriter != null ? logWriter : new LogWriterConfig();
+    }
+
+    public static class LogWriterConfig {
+        private boolean enabled = true;
+        private int capacity = 10000;
+        private int batchSize = 200;
+        private Duration flushInterval = Duration.ofMillis(200);
+        private Duration flushTimeout = Duration.ofSeconds(10);
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        private String spillDirectory = System.getProperty("java.io.tmpdir") + "/multiagent-log-spill";
+
+        public enum OverflowPolicy {
+            BLOCK, SPILL
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Duration getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval != null ? flushInterval : Duration.ofMillis(200);
+        }
+
+        public Duration getFlushTimeout() {
+            return flushTimeout;
+        }
+
+        public void setFlushTimeout(Duration flushTimeout) {
+            this.flushTimeout = flushTimeout != null ? flushTimeout : Duration.ofSeconds(10);
+        }
+
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy != null ? overflowPolicy : OverflowPolicy.BLOCK;
+        }
+
+        public String getSpillDirectory() {
+            return spillDirectory;
+        }
+
+        public void setSpillDirectory(String spillDirectory) {
+            this.spillDirectory = spillDirectory;
+        }
+    }
+
+    public TextBlobConfig getTextBlob() {
+        return textBlob;
+    }
+
+    public void setTextBlob(TextBlobConfig textBlob) {
+        this.textBlob = textBlob != null ? textBlob : new TextBlobConfig();
+    }
+
+    public static class TextBlobConfig {
+        private boolean enabled = true;
+        private int inlineThreshold = 256;
+        private int cacheSize = 1024;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getInlineThreshold() {
+            return inlineThreshold;
+        }
+
+        public void setInlineThreshold(int inlineThreshold) {
+            this.inlineThreshold = inlineThreshold;
+        }
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public void setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+        }
+    }
+
+    public LogPartitionConfig getLogPartitions() {
+        return logPartitions;
+    }
+
+    public void setLogPartitions(LogPartitionConfig logPartitions) {
+        this.logPartitions = logPartitions != null ? logPartitions : new LogPartitionConfig();
+    }
+
+    public static class LogPartitionConfig {
+        private boolean enabled = true;
+        private int premakeMonths = 2;
+        private int retentionMonths = 0;
+        private RetentionAction retentionAction = RetentionAction.DROP;
+
+        public enum RetentionAction {
+            DROP, DETACH
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getPremakeMonths() {
+            return premakeMonths;
+        }
+
+        public void setPremakeMonths(int premakeMonths) {
+            this.premakeMonths = Math.max(0, premakeMonths);
+        }
+
+        public int getRetentionMonths() {
+            return retentionMonths;
+        }
+
+        public void setRetentionMonths(int retentionMonths) {
+            this.retentionMonths = retentionMonths;
+        }
+
+        public RetentionAction getRetentionAction() {
+            return retentionAction;
+        }
+
+        public void setRetentionAction(RetentionAction retentionAction) {
+            this.retentionAction = retentionAction != null ? retentionAction : RetentionAction.DROP;
+        }
+    }
+
+    public RunArchiveConfig getArchive() {
+        return archive;
+    }
+
+    public void setArchive(RunArchiveConfig archive) {
+        this.archive = archive != null ? archive : new RunArchiveConfig();
+    }
+
+    public static class RunArchiveConfig {
+        private boolean enabled = false;
+        private String directory = System.getProperty("java.io.tmpdir") + "/multiagent-archive";
+        private Duration olderThan = Duration.ofDays(30);
+        private int batchSize = 100;
+        private long segmentMaxBytes = 256L * 1024 * 1024;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public Duration getOlderThan() {
+            return olderThan;
+        }
+
+        public void setOlderThan(Duration olderThan) {
+            this.olderThan = olderThan != null ? olderThan : Duration.ofDays(30);
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = Math.max(1, batchSize);
+        }
+
+        public long getSegmentMaxBytes() {
+            return segmentMaxBytes;
+        }
+
+        public void setSegmentMaxBytes(long segmentMaxBytes) {
+            this.segmentMaxBytes = segmentMaxBytes;
+        }
+    }
+
+    public DocumentIndexConfig getDocumentIndex() {
+        return documentIndex;
+    }
+
+    public void setDocumentIndex(DocumentIndexConfig documentIndex) {
+        this.documentIndex = documentIndex != null ? documentIndex : new DocumentIndexConfig();
+    }
+
+    public static class DocumentIndexConfig {
+        private boolean enabled = false;
+        private String snapshotPath = System.getProperty("java.io.tmpdir") + "/multiagent-document-index.bin";
+        private int batchSize = 1000;
+        private double compactThreshold = 0.2;
+        private double k1 = 1.2;
+        private double b = 0.75;
+        private double sourceIdWeight = 3.0;
+        private double titleWeight = 2.5;
+        private double abstractWeight = 1.0;
+        private double authorsWeight = 1.5;
+        private double categoriesWeight = 0.5;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getSnapshotPath() {
+            return snapshotPath;
+        }
+
+        public void setSnapshotPath(String snapshotPath) {
+            this.snapshotPath = snapshotPath;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = Math.max(1, batchSize);
+        }
+
+        public double getCompactThreshold() {
+            return compactThreshold;
+        }
+
+        public void setCompactThreshold(double compactThreshold) {
+            this.compactThreshold = compactThreshold;
+        }
+
+        public double getK1() {
+            return k1;
+        }
+
+        public void setK1(double k1) {
+            this.k1 = k1;
+        }
+
+        public double getB() {
+            return b;
+        }
+
+        public void setB(double b) {
+            this.b = b;
+        }
+
+        public double getSourceIdWeight() {
+            return sourceIdWeight;
+        }
+
+        public void setSourceIdWeight(double sourceIdWeight) {
+            this.sourceIdWeight = sourceIdWeight;
+        }
+
+        public double getTitleWeight() {
+            return titleWeight;
+        }
+
+        public void setTitleWeight(double titleWeight) {
+            this.titleWeight = titleWeight;
+        }
+
+        public double getAbstractWeight() {
+            return abstractWeight;
+        }
+
+        public void setAbstractWeight(double abstractWeight) {
+            this.abstractWeight = abstractWeight;
+        }
+
+        public double getAuthorsWeight() {
+            return authorsWeight;
+        }
+
+        public void setAuthorsWeight(double authorsWeight) {
+            this.authorsWeight = authorsWeight;
+        }
+
+        public double getCategoriesWeight() {
+            return categoriesWeight;
+        }
+
+        public void setCategoriesWeight(double categoriesWeight) {
+            this.categoriesWeight = categoriesWeight;
+        }
+    }
+
+    public StreamHubConfig getStreamHub() {
+        return streamHub;
+    }
+
+    public void setStreamHub(StreamHubConfig streamHub) {
+        this.streamHub = streamHub != null ? streamHub : new StreamHubConfig();
+    }
+
+    public static class StreamHubConfig {
+        private int bufferSize = 500;
+        private Duration runRetention = Duration.ofMinutes(30);
+        private int queueCapacity = 1000;
+        private long bufferSizeLimit = 512 * 1024;
+        private Duration sendTimeLimit = Duration.ofSeconds(10);
+        private OverflowPolicy overflowPolicy = OverflowPolicy.COALESCE;
+        private boolean batchingEnabled = false;
+        private Duration batchWindow = Duration.ofMillis(25);
+        private long batchMaxBytes = 16 * 1024;
+        private Duration agentUpdateWindow = Duration.ofMillis(250);
+        private int agentUpdateQueueLimit = 32;
+        private boolean compression = true;
+        private boolean clusterEnabled = false;
+        private Duration clusterRetention = Duration.ofHours(6);
+        private boolean journalEnabled = false;
+        private String journalPath = System.getProperty("java.io.tmpdir") + "/multiagent-stream-journal";
+        private long journalSegmentBytes = 4 * 1024 * 1024;
+        private Duration journalTtl = Duration.ofHours(24);
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = Math.max(1, bufferSize);
+        }
+
+        public Duration getRunRetention() {
+            return runRetention;
+        }
+
+        public void setRunRetention(Duration runRetention) {
+            this.runRetention = runRetention != null ? runRetention : Duration.ofMinutes(30);
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = Math.max(1, queueCapacity);
+        }
+
+        public long getBufferSizeLimit() {
+            return bufferSizeLimit;
+        }
+
+        public void setBufferSizeLimit(long bufferSizeLimit) {
+            this.bufferSizeLimit = Math.max(1, bufferSizeLimit);
+        }
+
+        public Duration getSendTimeLimit() {
+            return sendTimeLimit;
+        }
+
+        public void setSendTimeLimit(Duration sendTimeLimit) {
+            this.sendTimeLimit = sendTimeLimit != null ? sendTimeLimit : Duration.ofSeconds(10);
+        }
+
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy != null ? overflowPolicy : OverflowPolicy.COALESCE;
+        }
+
+        public boolean isBatchingEnabled() {
+            return batchingEnabled;
+        }
+
+        public void setBatchingEnabled(boolean batchingEnabled) {
+            this.batchingEnabled = batchingEnabled;
+        }
+
+        public Duration getBatchWindow() {
+            return batchWindow;
+        }
+
+        public void setBatchWindow(Duration batchWindow) {
+            this.batchWindow = batchWindow != null ? batchWindow : Duration.ofMillis(25);
+        }
+
+        public Duration getAgentUpdateWindow() {
+            return agentUpdateWindow;
+        }
+
+        public void setAgentUpdateWindow(Duration agentUpdateWindow) {
+            this.agentUpdateWindow = agentUpdateWindow != null ? agentUpdateWindow : Duration.ofMillis(250);
+        }
+
+        public int getAgentUpdateQueueLimit() {
+            return agentUpdateQueueLimit;
+        }
+
+        public void setAgentUpdateQueueLimit(int agentUpdateQueueLimit) {
+            this.agentUpdateQueueLimit = Math.max(1, agentUpdateQueueLimit);
+        }
+
+        public long getBatchMaxBytes() {
+            return batchMaxBytes;
+        }
+
+        public void setBatchMaxBytes(long batchMaxBytes) {
+            this.batchMaxBytes = Math.max(1, batchMaxBytes);
+        }
+
+        public boolean isCompression() {
+            return compression;
+        }
+
+        public void setCompression(boolean compression) {
+            this.compression = compression;
+        }
+
+        public boolean isClusterEnabled() {
+            return clusterEnabled;
+        }
+
+        public void setClusterEnabled(boolean clusterEnabled) {
+            this.clusterEnabled = clusterEnabled;
+        }
+
+        public Duration getClusterRetention() {
+            return clusterRetention;
+        }
+
+        public void setClusterRetention(Duration clusterRetention) {
+            this.clusterRetention = clusterRetention != null ? clusterRetention : Duration.ofHours(6);
+        }
+
+        public boolean isJournalEnabled() {
+            return journalEnabled;
+        }
+
+        public void setJournalEnabled(boolean journalEnabled) {
+            this.journalEnabled = journalEnabled;
+        }
+
+        public String getJournalPath() {
+            return journalPath;
+        }
+
+        public void setJournalPath(String journalPath) {
+            this.journalPath = journalPath;
+        }
+
+        public long getJournalSegmentBytes() {
+            return journalSegmentBytes;
+        }
+
+        public void setJournalSegmentBytes(long journalSegmentBytes) {
+            this.journalSegmentBytes = Math.max(4096, journalSegmentBytes);
+        }
+
+        public Duration getJournalTtl() {
+            return journalTtl;
+        }
+
+        public void setJournalTtl(Duration journalTtl) {
+            this.journalTtl = journalTtl != null ? journalTtl : Duration.ofHours(24);
+        }
+
+        /**
+         * What a session's outbound queue does once it exceeds its limits: merge queued
+         * task-output chunks (falling back to RESYNC), replace the queue with a resync marker
+         * and close, or close right away.
+         */
+        public enum OverflowPolicy {
+            COALESCE,
+            RESYNC,
+            CLOSE
+        }
+    }
 }
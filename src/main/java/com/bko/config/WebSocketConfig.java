@@ -2,29 +2,86 @@ package com.bko.config;
 
 import com.bko.stream.AgentRunUpdatesWebSocketHandler;
 import com.bko.stream.OrchestrationStreamWebSocketHandler;
+import com.bko.stream.StreamSubscriptionWebSocketHandler;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.websocket.server.ServerEndpointConfig;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.StandardWebSocketUpgradeStrategy;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
 
 @Configuration
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
 
+    private static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+
     private final OrchestrationStreamWebSocketHandler streamWebSocketHandler;
     private final AgentRunUpdatesWebSocketHandler agentRunUpdatesWebSocketHandler;
+    private final StreamSubscriptionWebSocketHandler subscriptionWebSocketHandler;
+    private final MultiAgentProperties properties;
 
     public WebSocketConfig(OrchestrationStreamWebSocketHandler streamWebSocketHandler,
-                          AgentRunUpdatesWebSocketHandler agentRunUpdatesWebSocketHandler) {
+                          AgentRunUpdatesWebSocketHandler agentRunUpdatesWebSocketHandler,
+                          StreamSubscriptionWebSocketHandler subscriptionWebSocketHandler,
+                          MultiAgentProperties properties) {
         this.streamWebSocketHandler = streamWebSocketHandler;
         this.agentRunUpdatesWebSocketHandler = agentRunUpdatesWebSocketHandler;
+        this.subscriptionWebSocketHandler = subscriptionWebSocketHandler;
+        this.properties = properties;
     }
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        DefaultHandshakeHandler handshakeHandler = new DefaultHandshakeHandler(
+                new CompressionUpgradeStrategy(properties.getStreamHub().isCompression()));
         registry.addHandler(streamWebSocketHandler, "/ws/stream")
+                .setHandshakeHandler(handshakeHandler)
                 .setAllowedOrigins("*");
         registry.addHandler(agentRunUpdatesWebSocketHandler, "/ws/agent-runs")
+                .setHandshakeHandler(handshakeHandler)
                 .setAllowedOrigins("*");
+        registry.addHandler(subscriptionWebSocketHandler, "/ws/subscriptions")
+                .setHandshakeHandler(handshakeHandler)
+                .setAllowedOrigins("*");
+    }
+
+    /**
+     * The servlet container negotiates {@code permessage-deflate} itself whenever the client
+     * offers it, so compression is on by default. With {@code stream-hub.compression: false}
+     * the offer is hidden from the container during the upgrade.
+     */
+    private static final class CompressionUpgradeStrategy extends StandardWebSocketUpgradeStrategy {
+        private final boolean compression;
+
+        private CompressionUpgradeStrategy(boolean compression) {
+            this.compression = compression;
+        }
+
+        @Override
+        protected void upgradeHttpToWebSocket(HttpServletRequest request, HttpServletResponse response,
+                                              ServerEndpointConfig endpointConfig, Map<String, String> pathParams)
+                throws Exception {
+            HttpServletRequest upgradeRequest = compression ? request : new HttpServletRequestWrapper(request) {
+                @Override
+                public String getHeader(String name) {
+                    return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? null : super.getHeader(name);
+                }
+
+                @Override
+                public Enumeration<String> getHeaders(String name) {
+                    return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+                }
+            };
+            super.upgradeHttpToWebSocket(upgradeRequest, response, endpointConfig, pathParams);
+        }
     }
 }
@@ -32,15 +32,27 @@ public class PromptLog {
     @Column(name = "role", length = 50)
     private String role;
 
-    @Column(name = "system_prompt", columnDefinition = "TEXT")
+    @Column(name = "system_prompt", columnDefinition = "TEXT", updatable = false)
     private String systemPrompt;
 
-    @Column(name = "user_prompt", columnDefinition = "TEXT")
+    @Column(name = "user_prompt", columnDefinition = "TEXT", updatable = false)
     private String userPrompt;
 
-    @Column(name = "full_response", columnDefinition = "TEXT")
+    @Column(name = "full_response", columnDefinition = "TEXT", updatable = false)
     private String fullResponse;
 
+    /**
+     * When set, the system prompt is stored in text_blob under this hash and the inline column is null.
+     */
+    @Column(name = "system_prompt_hash", length = 64, updatable = false)
+    private String systemPromptHash;
+
+    @Column(name = "user_prompt_hash", length = 64, updatable = false)
+    private String userPromptHash;
+
+    @Column(name = "full_response_hash", length = 64, updatable = false)
+    private String fullResponseHash;
+
     /**
      * Input (prompt) token count from the model API when available; null if not reported.
      */
@@ -3,12 +3,14 @@ package com.bko.entity;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicInsert;
 
 import java.time.OffsetDateTime;
 import java.util.UUID;
 
 @Entity
 @Table(name = "tool_call_log")
+@DynamicInsert
 @Getter
 @Setter
 @NoArgsConstructor
@@ -34,12 +36,21 @@ public class ToolCallLog {
     @Column(name = "tool_name", length = 120, nullable = false)
     private String toolName;
 
-    @Column(name = "tool_input", columnDefinition = "TEXT")
+    @Column(name = "tool_input", columnDefinition = "TEXT", updatable = false)
     private String toolInput;
 
-    @Column(name = "tool_output", columnDefinition = "TEXT")
+    @Column(name = "tool_output", columnDefinition = "TEXT", updatable = false)
     private String toolOutput;
 
+    /**
+     * When set, the tool input is stored in text_blob under this hash and the inline column is null.
+     */
+    @Column(name = "tool_input_hash", length = 64, updatable = false)
+    private String toolInputHash;
+
+    @Column(name = "tool_output_hash", length = 64, updatable = false)
+    private String toolOutputHash;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private OffsetDateTime createdAt;
@@ -3,12 +3,14 @@ package com.bko.entity;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicInsert;
 
 import java.time.OffsetDateTime;
 import java.util.UUID;
 
 @Entity
 @Table(name = "worker_result_log")
+@DynamicInsert
 @Getter
 @Setter
 @NoArgsConstructor
@@ -31,9 +33,15 @@ public class WorkerResultLog {
     @Column(name = "role", length = 50)
     private String role;
 
-    @Column(name = "output", columnDefinition = "TEXT")
+    @Column(name = "output", columnDefinition = "TEXT", updatable = false)
     private String output;
 
+    /**
+     * When set, the output is stored in text_blob under this hash and the inline column is null.
+     */
+    @Column(name = "output_hash", length = 64, updatable = false)
+    private String outputHash;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private OffsetDateTime createdAt;
@@ -20,6 +20,9 @@ public final class OrchestrationConstants {
     // LLM Request Purposes
     public static final String PURPOSE_PLAN = "plan";
     public static final String PURPOSE_PLAN_RETRY = "plan-retry";
+    public static final String PURPOSE_PLAN_STREAM = "plan-stream";
+    public static final String PURPOSE_PLAN_WITH_SKILLS = "plan-with-skills";
+    public static final String PURPOSE_PLAN_WITH_SKILLS_RETRY = "plan-with-skills-retry";
     public static final String PURPOSE_PLAN_REVIEW = "plan-review";
     public static final String PURPOSE_PLAN_REVIEW_RETRY = "plan-review-retry";
     public static final String PURPOSE_SKILL_PLAN = "skill-plan";
@@ -131,6 +134,14 @@ public final class OrchestrationConstants {
             %s
             """;
 
+    public static final String ORCHESTRATOR_SKILL_SELECTION_PROMPT = """
+            For every task, also select the minimal set of skills the assigned role needs, chosen only from
+            that role's skills in the registry. Never exceed the role's skill budget; prefer fewer skills.
+            If no skills are needed, return an empty skills array.
+            Return only JSON in this form:
+            {"objective":"...","tasks":[{"id":"task-1","role":"general","description":"...","expectedOutput":"...","skills":["Skill Name"],"skillRationale":"short rationale"}]}
+            """;
+
     public static final String EXECUTION_REVIEW_SYSTEM_PROMPT = """
             You are the execution reviewer. Decide if additional work is required to fully satisfy the user request.
             Only assign roles from: %s.
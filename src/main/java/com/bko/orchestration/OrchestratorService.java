@@ -2,6 +2,7 @@ package com.bko.orchestration;
 
 import static com.bko.orchestration.OrchestrationConstants.*;
 
+import com.bko.config.MultiAgentProperties;
 import com.bko.entity.OrchestrationSession;
 import com.bko.entity.OrchestratorPlanLog;
 import com.bko.entity.TaskLog;
@@ -11,6 +12,8 @@ import com.bko.orchestration.api.TaskManagementService;
 import com.bko.orchestration.model.OrchestrationResult;
 import com.bko.orchestration.model.OrchestratorPlan;
 import com.bko.orchestration.model.PlanDraft;
+import com.bko.orchestration.model.PlanWithSkills;
+import com.bko.orchestration.model.StreamedPlanExecution;
 import com.bko.orchestration.model.WorkerResult;
 import com.bko.orchestration.service.OrchestrationMetricsService;
 import com.bko.orchestration.service.SkillPlanningService;
@@ -32,17 +35,20 @@ public class OrchestratorService {
     private final StatePersistenceService persistenceService;
     private final EventProcessingService eventProcessingService;
     private final OrchestrationMetricsService metricsService;
+    private final MultiAgentProperties properties;
 
     public OrchestratorService(TaskManagementService taskManagementService,
                                SkillPlanningService skillPlanningService,
                                StatePersistenceService persistenceService,
                                EventProcessingService eventProcessingService,
-                               OrchestrationMetricsService metricsService) {
+                               OrchestrationMetricsService metricsService,
+                               MultiAgentProperties properties) {
         this.taskManagementService = taskManagementService;
         this.skillPlanningService = skillPlanningService;
         this.persistenceService = persistenceService;
         this.eventProcessingService = eventProcessingService;
         this.metricsService = metricsService;
+        this.properties = properties;
     }
 
     public OrchestrationResult orchestrate(String userMessage, String provider, String model) {
@@ -69,9 +75,13 @@ public class OrchestratorService {
             if (handleCancellation(streamId, session, "Cancelled")) {
                 return new OrchestrationResult(new OrchestratorPlan(userMessage, List.of()), List.of(), "Cancelled.");
             }
+            if (properties.getStreamingPlan().isEnabled()) {
+                return orchestrateWithStreamedPlan(session, userMessage, provider, model, streamId);
+            }
             eventProcessingService.emitStatus(streamId, "Generating plan");
-            OrchestratorPlan plan = taskManagementService.requestPlan(session, userMessage, List.of(ROLE_GENERAL),
-                    null, provider, model, true, false);
+            PlanWithSkills planWithSkills = taskManagementService.requestPlanWithSkills(session, userMessage,
+                    List.of(ROLE_GENERAL), null, provider, model, true, false);
+            OrchestratorPlan plan = planWithSkills.plan();
             eventProcessingService.emitPlan(streamId, plan);
 
             if (plan.tasks().isEmpty()) {
@@ -91,6 +101,11 @@ public class OrchestratorService {
             if (handleCancellation(streamId, session, "Cancelled")) {
                 return new OrchestrationResult(plan, List.of(), "Cancelled.");
             }
+            if (!planWithSkills.skillSelections().isEmpty()) {
+                // Seed the skill plan cache so workers reuse the planner's selections.
+                skillPlanningService.planForTasks(session, userMessage, plan.tasks(),
+                        planWithSkills.skillSelections(), null, provider, model);
+            }
             eventProcessingService.emitStatus(streamId, "Executing tasks");
             List<WorkerResult> results = taskManagementService.executePlanTasks(session, userMessage, plan.tasks(),
                     null, List.of(), provider, model, taskIndex, streamId);
@@ -109,6 +124,28 @@ public class OrchestratorService {
         }
     }
 
+    private OrchestrationResult orchestrateWithStreamedPlan(OrchestrationSession session, String userMessage,
+                                                            String provider, String model,
+                                                            @Nullable String streamId) {
+        eventProcessingService.emitStatus(streamId, "Generating plan and executing tasks");
+        OrchestratorPlanLog planLog = persistenceService.logPlan(session, new OrchestratorPlan(userMessage, List.of()), true);
+        StreamedPlanExecution execution = taskManagementService.executeStreamingPlan(session, userMessage,
+                List.of(ROLE_GENERAL), provider, model, planLog, streamId);
+        OrchestratorPlan plan = execution.plan();
+        persistenceService.updatePlanObjective(planLog, plan.objective());
+        eventProcessingService.emitPlan(streamId, plan);
+        if (handleCancellation(streamId, session, "Cancelled")) {
+            return new OrchestrationResult(plan, execution.results(), "Cancelled.");
+        }
+        eventProcessingService.emitStatus(streamId, "Preparing response");
+        String finalAnswer = formatResults(execution.results());
+        persistenceService.completeSession(session, finalAnswer, "COMPLETED");
+        eventProcessingService.emitFinalAnswer(streamId, finalAnswer);
+        eventProcessingService.emitRunComplete(streamId, "COMPLETED");
+        metricsService.logSummary();
+        return new OrchestrationResult(plan, execution.results(), finalAnswer);
+    }
+
     public PlanDraft plan(String userMessage, String provider, String model) {
         return planInternal(userMessage, provider, model, null);
     }
@@ -131,14 +168,15 @@ public class OrchestratorService {
                 OrchestratorPlan emptyPlan = new OrchestratorPlan(userMessage, List.of());
                 return new PlanDraft("", session.getId().toString(), emptyPlan, List.of(), List.of(), "CANCELLED");
             }
-            OrchestratorPlan sanitized = taskManagementService.requestPlan(session, userMessage, List.of(ROLE_GENERAL),
-                    null, provider, model, false, false);
+            PlanWithSkills planWithSkills = taskManagementService.requestPlanWithSkills(session, userMessage,
+                    List.of(ROLE_GENERAL), null, provider, model, false, false);
+            OrchestratorPlan sanitized = planWithSkills.plan();
             OrchestratorPlanLog planLog = persistenceService.logPlan(session, sanitized, true);
             persistenceService.logTasks(planLog, sanitized.tasks());
             persistenceService.completeSession(session, null, "AWAITING_APPROVAL");
 
             var skillPlans = skillPlanningService.planForTasks(session, userMessage, sanitized.tasks(),
-                    null, provider, model);
+                    planWithSkills.skillSelections(), null, provider, model);
             PlanDraft draft = new PlanDraft(planLog.getId().toString(), session.getId().toString(),
                     sanitized, List.of(), skillPlans, "AWAITING_APPROVAL");
             eventProcessingService.emitPlanDraft(streamId, draft);
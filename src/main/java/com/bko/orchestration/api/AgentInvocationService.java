@@ -2,6 +2,7 @@ package com.bko.orchestration.api;
 
 import com.bko.entity.OrchestrationSession;
 import com.bko.orchestration.model.OrchestratorPlan;
+import com.bko.orchestration.model.SkillAwarePlan;
 import com.bko.orchestration.model.TaskSpec;
 import com.bko.orchestration.model.WorkerResult;
 import com.bko.orchestration.service.ToolAccessPolicy;
@@ -9,6 +10,7 @@ import com.bko.orchestration.service.WorkerCallResult;
 import org.springframework.lang.Nullable;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Service interface for invoking agent operations, including plan requests, role selection,
@@ -34,6 +36,47 @@ public interface AgentInvocationService {
                                  String provider,
                                  String model);
 
+    /**
+     * Requests an initial orchestration plan in which every task also carries its selected
+     * skills, replacing the separate per-task skill selection calls.
+     *
+     * @param session The current orchestration session.
+     * @param userMessage The message from the user.
+     * @param allowedRoles A list of roles allowed for this plan.
+     * @param context Additional context for the plan request.
+     * @param provider The AI model provider.
+     * @param model The AI model to use.
+     * @return A {@link SkillAwarePlan}, or {@code null} if no valid plan was returned.
+     */
+    SkillAwarePlan requestPlanWithSkills(OrchestrationSession session,
+                                         String userMessage,
+                                         List<String> allowedRoles,
+                                         @Nullable String context,
+                                         String provider,
+                                         String model);
+
+    /**
+     * Requests an initial orchestration plan as a token stream. Each task is handed to
+     * {@code onTask} as soon as its JSON object is complete, before the rest of the plan
+     * has been generated. No retry is attempted, since tasks may already be running.
+     *
+     * @param session The current orchestration session.
+     * @param userMessage The message from the user.
+     * @param allowedRoles A list of roles allowed for this plan.
+     * @param context Additional context for the plan request.
+     * @param provider The AI model provider.
+     * @param model The AI model to use.
+     * @param onTask Callback invoked on the streaming thread for every completed task.
+     * @return The complete {@link OrchestratorPlan}, or {@code null} if the full response could not be parsed.
+     */
+    OrchestratorPlan streamPlan(OrchestrationSession session,
+                                String userMessage,
+                                List<String> allowedRoles,
+                                @Nullable String context,
+                                String provider,
+                                String model,
+                                Consumer<TaskSpec> onTask);
+
     /**
      * Requests a continuation plan from an agent, typically after an initial plan or an error.
      *
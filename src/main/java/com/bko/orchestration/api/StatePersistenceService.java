@@ -72,6 +72,14 @@ public interface StatePersistenceService {
      */
     OrchestratorPlanLog logPlan(OrchestrationSession session, OrchestratorPlan plan, boolean isInitial);
 
+    /**
+     * Updates the objective of a plan log that was persisted before its plan was known.
+     *
+     * @param planLog The {@link OrchestratorPlanLog} to update.
+     * @param objective The objective of the final plan; blank values leave the log unchanged.
+     */
+    void updatePlanObjective(OrchestratorPlanLog planLog, @Nullable String objective);
+
     /**
      * Logs a list of tasks associated with a specific orchestration plan log.
      *
@@ -7,6 +7,8 @@ import com.bko.orchestration.model.AdvisoryBundle;
 import com.bko.orchestration.model.DiscoveryBundle;
 import com.bko.orchestration.model.FailureDetail;
 import com.bko.orchestration.model.OrchestratorPlan;
+import com.bko.orchestration.model.PlanWithSkills;
+import com.bko.orchestration.model.StreamedPlanExecution;
 import com.bko.orchestration.model.TaskSpec;
 import com.bko.orchestration.model.WorkerResult;
 import org.springframework.lang.Nullable;
@@ -95,6 +97,51 @@ public interface TaskManagementService {
                                  boolean excludeAdvisory,
                                  boolean allowEmpty);
 
+    /**
+     * Requests an initial plan together with per-task skill selections in a single planner call.
+     * Falls back to {@link #requestPlan} (with no selections) when combined planning is disabled.
+     *
+     * @param session The current orchestration session.
+     * @param userMessage The message from the user.
+     * @param allowedRoles A list of roles allowed in the plan.
+     * @param context Additional context for the plan request.
+     * @param provider The AI model provider.
+     * @param model The AI model to use.
+     * @param excludeAdvisory Flag to exclude advisory information from the plan.
+     * @param allowEmpty Flag to allow an empty plan.
+     * @return A {@link PlanWithSkills} holding the sanitized plan and the selections keyed by task id.
+     */
+    PlanWithSkills requestPlanWithSkills(OrchestrationSession session,
+                                         String userMessage,
+                                         List<String> allowedRoles,
+                                         @Nullable String context,
+                                         String provider,
+                                         String model,
+                                         boolean excludeAdvisory,
+                                         boolean allowEmpty);
+
+    /**
+     * Streams the initial plan and starts each task as soon as the planner has finished
+     * emitting it, emitting a plan update per task. Tasks are logged against {@code planLog}
+     * as they arrive. Returns once the plan is complete and every started task has finished.
+     *
+     * @param session The current orchestration session.
+     * @param userMessage The message from the user.
+     * @param allowedRoles A list of roles allowed in the plan.
+     * @param provider The AI model provider.
+     * @param model The AI model to use.
+     * @param planLog The plan log the streamed tasks are recorded under.
+     * @param streamId An optional stream ID for real-time event emission.
+     * @return A {@link StreamedPlanExecution} with the tasks that ran and their results.
+     */
+    StreamedPlanExecution executeStreamingPlan(OrchestrationSession session,
+                                               String userMessage,
+                                               List<String> allowedRoles,
+                                               String provider,
+                                               String model,
+                                               OrchestratorPlanLog planLog,
+                                               @Nullable String streamId);
+
     /**
      * Requests a continuation of an existing orchestration plan.
      *
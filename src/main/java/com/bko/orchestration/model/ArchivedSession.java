@@ -0,0 +1,77 @@
+package com.bko.orchestration.model;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A completed orchestration session as stored in the cold archive: the session row plus
+ * its plans, tasks and logs, with blob-stored text already resolved.
+ */
+public record ArchivedSession(
+        UUID id,
+        String userPrompt,
+        String provider,
+        String model,
+        String finalAnswer,
+        String status,
+        OffsetDateTime createdAt,
+        OffsetDateTime updatedAt,
+        List<Plan> plans,
+        List<Prompt> prompts,
+        List<ToolCall> toolCalls,
+        List<WorkerResultEntry> workerResults
+) {
+
+    public record Plan(
+            UUID id,
+            String objective,
+            boolean initial,
+            OffsetDateTime createdAt,
+            List<Task> tasks
+    ) {
+    }
+
+    public record Task(
+            UUID id,
+            String taskIdAlias,
+            String role,
+            String description,
+            String expectedOutput,
+            OffsetDateTime createdAt
+    ) {
+    }
+
+    public record Prompt(
+            UUID id,
+            String purpose,
+            String role,
+            String systemPrompt,
+            String userPrompt,
+            String fullResponse,
+            Integer inputTokenCount,
+            Integer outputTokenCount,
+            OffsetDateTime createdAt
+    ) {
+    }
+
+    public record ToolCall(
+            UUID id,
+            UUID taskLogId,
+            String role,
+            String toolName,
+            String toolInput,
+            String toolOutput,
+            OffsetDateTime createdAt
+    ) {
+    }
+
+    public record WorkerResultEntry(
+            UUID id,
+            UUID taskLogId,
+            String role,
+            String output,
+            OffsetDateTime createdAt
+    ) {
+    }
+}
@@ -0,0 +1,14 @@
+package com.bko.orchestration.model;
+
+import com.bko.entity.ExternalDocument;
+
+import java.util.List;
+
+/**
+ * One page of a document search and the total number of matching documents.
+ */
+public record DocumentSearchPage(
+        List<ExternalDocument> content,
+        long total
+) {
+}
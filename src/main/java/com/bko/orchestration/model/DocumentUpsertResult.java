@@ -0,0 +1,22 @@
+package com.bko.orchestration.model;
+
+import com.bko.entity.ExternalDocument;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk document upsert. {@code skipped} counts documents that were invalid,
+ * repeated within the batch, or identical to the stored row; {@code written} holds the
+ * inserted and updated documents with their ids.
+ */
+public record DocumentUpsertResult(
+        int inserted,
+        int updated,
+        int skipped,
+        List<ExternalDocument> written
+) {
+
+    public int stored() {
+        return inserted + updated;
+    }
+}
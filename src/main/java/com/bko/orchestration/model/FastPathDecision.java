@@ -0,0 +1,8 @@
+package com.bko.orchestration.model;
+
+public record FastPathDecision(
+        boolean fastPath,
+        double confidence,
+        String reason
+) {
+}
@@ -0,0 +1,13 @@
+package com.bko.orchestration.model;
+
+import java.util.Map;
+
+/**
+ * A sanitized plan together with the skill selections the planner returned for it,
+ * keyed by task id. Tasks without an entry fall back to per-task skill planning.
+ */
+public record PlanWithSkills(
+        OrchestratorPlan plan,
+        Map<String, SkillSelection> skillSelections
+) {
+}
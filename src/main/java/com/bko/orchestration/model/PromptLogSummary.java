@@ -0,0 +1,17 @@
+package com.bko.orchestration.model;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Prompt log columns needed to list run events without loading prompt or response text.
+ */
+public record PromptLogSummary(
+        UUID id,
+        OffsetDateTime createdAt,
+        String purpose,
+        String role,
+        Integer inputTokenCount,
+        Integer outputTokenCount
+) {
+}
@@ -0,0 +1,30 @@
+package com.bko.orchestration.model;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Per-session totals from the {@code run_stats} projection, kept up to date as prompt logs
+ * are written so run lists never have to scan {@code prompt_log}.
+ */
+public record RunStats(
+        UUID sessionId,
+        int eventCount,
+        long inputTokens,
+        long outputTokens,
+        OffsetDateTime firstEventAt,
+        OffsetDateTime lastEventAt
+) {
+
+    public long totalTokens() {
+        return inputTokens + outputTokens;
+    }
+
+    public long durationMillis() {
+        if (firstEventAt == null || lastEventAt == null) {
+            return 0;
+        }
+        return Duration.between(firstEventAt, lastEventAt).toMillis();
+    }
+}
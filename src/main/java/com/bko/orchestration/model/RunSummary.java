@@ -0,0 +1,22 @@
+package com.bko.orchestration.model;
+
+import com.bko.entity.ScheduledAgentRun;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * One row of an agent's run list: the run's status and timing plus the event and token
+ * totals of its session. Returned by the agent API and pushed to agent-run subscribers.
+ */
+public record RunSummary(
+        UUID id,
+        OffsetDateTime startedAt,
+        OffsetDateTime completedAt,
+        ScheduledAgentRun.Status status,
+        String errorMessage,
+        int eventCount,
+        int totalTokens,
+        long durationMillis
+) {
+}
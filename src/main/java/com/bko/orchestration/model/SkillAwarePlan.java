@@ -0,0 +1,39 @@
+package com.bko.orchestration.model;
+
+import java.util.List;
+
+/**
+ * Planner response that carries each task's skill selection alongside the task itself,
+ * so planning and skill selection cost a single LLM call.
+ */
+public record SkillAwarePlan(
+        String objective,
+        List<SkillAwareTask> tasks
+) {
+
+    public OrchestratorPlan toPlan() {
+        List<TaskSpec> specs = tasks == null ? null : tasks.stream()
+                .filter(java.util.Objects::nonNull)
+                .map(SkillAwareTask::toTaskSpec)
+                .toList();
+        return new OrchestratorPlan(objective, specs);
+    }
+
+    public record SkillAwareTask(
+            String id,
+            String role,
+            String description,
+            String expectedOutput,
+            List<String> skills,
+            String skillRationale
+    ) {
+
+        public TaskSpec toTaskSpec() {
+            return new TaskSpec(id, role, description, expectedOutput);
+        }
+
+        public SkillSelection toSkillSelection() {
+            return new SkillSelection(skills, skillRationale);
+        }
+    }
+}
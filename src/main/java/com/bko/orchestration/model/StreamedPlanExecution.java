@@ -0,0 +1,13 @@
+package com.bko.orchestration.model;
+
+import java.util.List;
+
+/**
+ * Outcome of a streamed plan: the tasks that were dispatched while the plan was being
+ * generated, and their worker results in dispatch order.
+ */
+public record StreamedPlanExecution(
+        OrchestratorPlan plan,
+        List<WorkerResult> results
+) {
+}
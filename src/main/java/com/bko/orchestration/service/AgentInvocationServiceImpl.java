@@ -7,6 +7,7 @@ import com.bko.entity.OrchestrationSession;
 import com.bko.orchestration.api.AgentInvocationService;
 import com.bko.orchestration.api.StatePersistenceService;
 import com.bko.orchestration.model.OrchestratorPlan;
+import com.bko.orchestration.model.SkillAwarePlan;
 import com.bko.orchestration.model.SkillSelection;
 import com.bko.orchestration.model.SkillSummary;
 import com.bko.orchestration.model.TaskSpec;
@@ -31,6 +32,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
@@ -83,45 +85,128 @@ public class AgentInvocationServiceImpl implements AgentInvocationService {
             String registry = orchestrationContextService.buildRoleRegistry(allowedRoles);
             String systemPrompt = orchestrationPromptService.orchestratorSystemPrompt(allowedRoles, registry);
             String normalizedContext = orchestrationContextService.defaultContext(context);
-            metricsService.recordLlmRequest(PURPOSE_PLAN, null);
-            // Plan without toolCallbacks to avoid Spring AI building an empty advisor chain (No CallAdvisors)
-            var callSpec = getChatRequestSpec(provider, model)
+            OrchestratorPlan plan = callPlanner(session, systemPrompt, PURPOSE_PLAN, PURPOSE_PLAN_RETRY,
+                    userMessage, normalizedContext, provider, model, OrchestratorPlan.class);
+            metricsService.recordPlanResponse(PURPOSE_PLAN, plan);
+            return plan;
+        } catch (Exception ex) {
+            log.error("Failed to request orchestrator plan. sessionId={}, provider={}, model={}",
+                    session != null ? session.getId() : null, provider, model, ex);
+            return null;
+        }
+    }
+
+    @Override
+    public OrchestratorPlan streamPlan(OrchestrationSession session,
+                                       String userMessage,
+                                       List<String> allowedRoles,
+                                       @Nullable String context,
+                                       String provider,
+                                       String model,
+                                       Consumer<TaskSpec> onTask) {
+        try {
+            String registry = orchestrationContextService.buildRoleRegistry(allowedRoles);
+            String systemPrompt = orchestrationPromptService.orchestratorSystemPrompt(allowedRoles, registry);
+            String normalizedContext = orchestrationContextService.defaultContext(context);
+            metricsService.recordLlmRequest(PURPOSE_PLAN_STREAM, null);
+            StreamingPlanParser parser = new StreamingPlanParser(element -> {
+                TaskSpec task = jsonProcessingService.parseJsonResponse(PURPOSE_PLAN_STREAM, element, TaskSpec.class);
+                if (task != null) {
+                    onTask.accept(task);
+                }
+            });
+            ChatResponse lastWithUsage = null;
+            // Chunks are consumed on this thread rather than in doOnNext: onTask persists tasks and
+            // starts workers, which must not run on the HTTP client's event loop.
+            Iterable<ChatResponse> chunks = getChatRequestSpec(provider, model)
                     .system(systemPrompt)
                     .user(user -> user.text(ORCHESTRATOR_USER_TEMPLATE)
                             .param("input", userMessage)
                             .param("context", normalizedContext))
-                    .call();
-            ChatResponse chatResponse = callSpec.chatResponse();
-            String response = extractContent(chatResponse);
-            var usage = extractUsage(chatResponse);
-            persistenceService.logPrompt(session, PURPOSE_PLAN, null, systemPrompt, ORCHESTRATOR_USER_TEMPLATE,
-                    Map.of("input", userMessage, "context", normalizedContext), response, usage[0], usage[1]);
-            OrchestratorPlan plan = jsonProcessingService.parseJsonResponse(PURPOSE_PLAN, response, OrchestratorPlan.class);
-            if (plan == null) {
-                String retryPrompt = systemPrompt + INVALID_JSON_RETRY_PROMPT;
-                metricsService.recordLlmRequest(PURPOSE_PLAN_RETRY, null);
-                var retryCallSpec = getChatRequestSpec(provider, model)
-                        .system(retryPrompt)
-                        .user(user -> user.text(ORCHESTRATOR_USER_TEMPLATE)
-                                .param("input", userMessage)
-                                .param("context", normalizedContext))
-                        .call();
-                ChatResponse retryChatResponse = retryCallSpec.chatResponse();
-                String retryResponse = extractContent(retryChatResponse);
-                var retryUsage = extractUsage(retryChatResponse);
-                persistenceService.logPrompt(session, PURPOSE_PLAN_RETRY, null, retryPrompt, ORCHESTRATOR_USER_TEMPLATE,
-                        Map.of("input", userMessage, "context", normalizedContext), retryResponse, retryUsage[0], retryUsage[1]);
-                plan = jsonProcessingService.parseJsonResponse(PURPOSE_PLAN_RETRY, retryResponse, OrchestratorPlan.class);
+                    .stream()
+                    .chatResponse()
+                    .toIterable();
+            for (ChatResponse chunk : chunks) {
+                parser.accept(extractContent(chunk));
+                // Providers report usage on one chunk (usually the last); the rest carry empty usage.
+                if (chunk != null && chunk.getMetadata() != null && chunk.getMetadata().getUsage() != null
+                        && chunk.getMetadata().getUsage().getTotalTokens() != null
+                        && chunk.getMetadata().getUsage().getTotalTokens() > 0) {
+                    lastWithUsage = chunk;
+                }
             }
-            metricsService.recordPlanResponse(PURPOSE_PLAN, plan);
+            String response = parser.text();
+            var usage = extractUsage(lastWithUsage);
+            persistenceService.logPrompt(session, PURPOSE_PLAN_STREAM, null, systemPrompt, ORCHESTRATOR_USER_TEMPLATE,
+                    Map.of("input", userMessage, "context", normalizedContext), response, usage[0], usage[1]);
+            OrchestratorPlan plan = jsonProcessingService.parseJsonResponse(PURPOSE_PLAN_STREAM, response, OrchestratorPlan.class);
+            metricsService.recordPlanResponse(PURPOSE_PLAN_STREAM, plan);
             return plan;
         } catch (Exception ex) {
-            log.error("Failed to request orchestrator plan. sessionId={}, provider={}, model={}",
+            log.error("Failed to stream orchestrator plan. sessionId={}, provider={}, model={}",
                     session != null ? session.getId() : null, provider, model, ex);
             return null;
         }
     }
 
+    @Override
+    public SkillAwarePlan requestPlanWithSkills(OrchestrationSession session,
+                                                String userMessage,
+                                                List<String> allowedRoles,
+                                                @Nullable String context,
+                                                String provider,
+                                                String model) {
+        try {
+            String registry = orchestrationContextService.buildRoleRegistryWithBudgets(allowedRoles);
+            String systemPrompt = orchestrationPromptService.orchestratorSkillPlanSystemPrompt(allowedRoles, registry);
+            String normalizedContext = orchestrationContextService.defaultContext(context);
+            SkillAwarePlan plan = callPlanner(session, systemPrompt, PURPOSE_PLAN_WITH_SKILLS,
+                    PURPOSE_PLAN_WITH_SKILLS_RETRY, userMessage, normalizedContext, provider, model, SkillAwarePlan.class);
+            metricsService.recordPlanResponse(PURPOSE_PLAN_WITH_SKILLS, plan != null ? plan.toPlan() : null);
+            return plan;
+        } catch (Exception ex) {
+            log.error("Failed to request skill-aware orchestrator plan. sessionId={}, provider={}, model={}",
+                    session != null ? session.getId() : null, provider, model, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Asks the orchestrator for a plan of the given type, retrying once with
+     * {@code INVALID_JSON_RETRY_PROMPT} appended when the reply is not valid JSON.
+     */
+    @Nullable
+    private <T> T callPlanner(OrchestrationSession session, String systemPrompt, String purpose, String retryPurpose,
+                              String userMessage, String normalizedContext, String provider, String model,
+                              Class<T> type) {
+        T plan = callPlannerOnce(session, systemPrompt, purpose, userMessage, normalizedContext, provider, model, type);
+        if (plan == null) {
+            plan = callPlannerOnce(session, systemPrompt + INVALID_JSON_RETRY_PROMPT, retryPurpose, userMessage,
+                    normalizedContext, provider, model, type);
+        }
+        return plan;
+    }
+
+    @Nullable
+    private <T> T callPlannerOnce(OrchestrationSession session, String systemPrompt, String purpose,
+                                  String userMessage, String normalizedContext, String provider, String model,
+                                  Class<T> type) {
+        metricsService.recordLlmRequest(purpose, null);
+        // Plan without toolCallbacks to avoid Spring AI building an empty advisor chain (No CallAdvisors)
+        ChatResponse chatResponse = getChatRequestSpec(provider, model)
+                .system(systemPrompt)
+                .user(user -> user.text(ORCHESTRATOR_USER_TEMPLATE)
+                        .param("input", userMessage)
+                        .param("context", normalizedContext))
+                .call()
+                .chatResponse();
+        String response = extractContent(chatResponse);
+        var usage = extractUsage(chatResponse);
+        persistenceService.logPrompt(session, purpose, null, systemPrompt, ORCHESTRATOR_USER_TEMPLATE,
+                Map.of("input", userMessage, "context", normalizedContext), response, usage[0], usage[1]);
+        return jsonProcessingService.parseJsonResponse(purpose, response, type);
+    }
+
     @Override
     public OrchestratorPlan requestContinuationPlan(OrchestrationSession session,
                                                     String userMessage,
@@ -0,0 +1,125 @@
+package com.bko.orchestration.service;
+
+import com.bko.entity.PromptLog;
+import com.bko.entity.ScheduledAgentRun;
+import com.bko.orchestration.model.RunStats;
+import com.bko.orchestration.model.RunSummary;
+import com.bko.repository.PromptLogRepository;
+import com.bko.repository.ScheduledAgentRunRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Builds {@link RunSummary} rows for agent run lists: the rows {@code GET /api/agents/{id}}
+ * returns, and the ones pushed to agent-run subscribers for just the runs that changed.
+ */
+@Service
+@RequiredArgsConstructor
+public class AgentRunSummaryService {
+
+    private static final Duration RUN_LOG_WINDOW_SLACK = Duration.ofMinutes(5);
+
+    private final ScheduledAgentRunRepository runRepository;
+    private final PromptLogRepository promptLogRepository;
+    private final TokenCountService tokenCountService;
+    private final TextBlobService textBlobService;
+    private final RunStatsService runStatsService;
+
+    public List<RunSummary> summaries(Collection<UUID> runIds) {
+        if (runIds.isEmpty()) {
+            return List.of();
+        }
+        return summarize(runRepository.findAllById(runIds));
+    }
+
+    /**
+     * Builds run summaries from the run_stats projection, or by scanning prompt logs when
+     * the projection table does not exist.
+     */
+    public List<RunSummary> summarize(List<ScheduledAgentRun> runs) {
+        List<UUID> sessionIds = runs.stream()
+                .map(ScheduledAgentRun::getSessionId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        Map<UUID, RunStats> sessionStats = Map.of();
+        if (!sessionIds.isEmpty()) {
+            sessionStats = runStatsService.isAvailable()
+                    ? runStatsService.findBySessionIds(sessionIds)
+                    : scanSessionStats(runs, sessionIds);
+        }
+        List<RunSummary> runSummaries = new ArrayList<>();
+        for (ScheduledAgentRun run : runs) {
+            RunStats stats = run.getSessionId() != null ? sessionStats.get(run.getSessionId()) : null;
+            runSummaries.add(new RunSummary(
+                    run.getId(),
+                    run.getStartedAt(),
+                    run.getCompletedAt(),
+                    run.getStatus(),
+                    run.getErrorMessage(),
+                    stats != null ? stats.eventCount() : 0,
+                    stats != null ? (int) Math.min(Integer.MAX_VALUE, stats.totalTokens()) : 0,
+                    stats != null ? stats.durationMillis() : 0
+            ));
+        }
+        return runSummaries;
+    }
+
+    /**
+     * Time window that holds a run's logs, with slack for clock skew and late log writes.
+     * Lets Postgres prune the monthly log partitions.
+     */
+    public static OffsetDateTime runWindowStart(ScheduledAgentRun run) {
+        return run.getStartedAt().minus(RUN_LOG_WINDOW_SLACK);
+    }
+
+    public static OffsetDateTime runWindowEnd(ScheduledAgentRun run) {
+        OffsetDateTime end = run.getCompletedAt() != null ? run.getCompletedAt() : OffsetDateTime.now();
+        return end.plus(RUN_LOG_WINDOW_SLACK);
+    }
+
+    private Map<UUID, RunStats> scanSessionStats(List<ScheduledAgentRun> runs, List<UUID> sessionIds) {
+        List<ScheduledAgentRun> runsWithSession = runs.stream()
+                .filter(run -> run.getSessionId() != null)
+                .toList();
+        boolean bounded = runsWithSession.stream().allMatch(run -> run.getStartedAt() != null);
+        List<PromptLog> allLogs = bounded
+                ? promptLogRepository.findBySessionIdsInRange(sessionIds,
+                        runsWithSession.stream().map(AgentRunSummaryService::runWindowStart)
+                                .min(OffsetDateTime::compareTo).orElseThrow(),
+                        runsWithSession.stream().map(AgentRunSummaryService::runWindowEnd)
+                                .max(OffsetDateTime::compareTo).orElseThrow())
+                : promptLogRepository.findBySession_IdInOrderByCreatedAtAsc(sessionIds);
+        textBlobService.hydrate(allLogs);
+        return allLogs.stream().collect(Collectors.groupingBy(
+                log -> log.getSession().getId(),
+                Collectors.collectingAndThen(
+                        Collectors.toList(),
+                        logs -> new RunStats(
+                                logs.getFirst().getSession().getId(),
+                                logs.size(),
+                                logs.stream().mapToLong(this::tokenTotalForLog).sum(),
+                                0,
+                                logs.getFirst().getCreatedAt(),
+                                logs.getLast().getCreatedAt())
+                )
+        ));
+    }
+
+    private int tokenTotalForLog(PromptLog log) {
+        String model = log.getSession() != null ? log.getSession().getModel() : null;
+        String input = TokenCountService.renderPrompt(log.getSystemPrompt(), log.getUserPrompt());
+        return tokenCountService.countUnlessReported(log.getInputTokenCount(), model, input)
+                + tokenCountService.countUnlessReported(log.getOutputTokenCount(), model, log.getFullResponse());
+    }
+}
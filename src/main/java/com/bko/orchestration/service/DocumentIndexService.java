@@ -0,0 +1,190 @@
+package com.bko.orchestration.service;
+
+import com.bko.config.MultiAgentProperties;
+import com.bko.config.MultiAgentProperties.DocumentIndexConfig;
+import com.bko.entity.ExternalDocument;
+import com.bko.repository.ExternalDocumentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the optional in-process {@link DocumentSearchIndex} over {@code external_document}.
+ * On the first sync the index is restored from its snapshot (or built from scratch) and then
+ * caught up with rows whose {@code updated_at} is past the snapshot's checkpoint; each later
+ * sync repeats the catch-up, compacts when enough documents were replaced, and rewrites the
+ * snapshot if anything changed. Upserts are indexed right after their transaction commits.
+ * <p>
+ * Search answers only once the first sync has finished; until then callers use the database.
+ */
+@Service
+@Slf4j
+public class DocumentIndexService {
+
+    private static final DocumentSearchIndex.Checkpoint START = new DocumentSearchIndex.Checkpoint(
+            OffsetDateTime.of(1970, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC), new UUID(0, 0));
+
+    private final DocumentIndexConfig config;
+    private final ExternalDocumentRepository repository;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private volatile DocumentSearchIndex index;
+    private volatile boolean ready;
+
+    public DocumentIndexService(MultiAgentProperties properties, ExternalDocumentRepository repository) {
+        this.config = properties.getDocumentIndex();
+        this.repository = repository;
+    }
+
+    public boolean isReady() {
+        return config.isEnabled() && ready;
+    }
+
+    /**
+     * Ids of the best {@code limit} matches, best first, and the total number of matches.
+     */
+    public Matches search(@Nullable String source, String queryText, int limit) {
+        DocumentSearchIndex current = index;
+        if (!isReady() || current == null) {
+            return new Matches(List.of(), 0);
+        }
+        DocumentSearchIndex.Result result = current.search(source, queryText, limit, scoring());
+        return new Matches(result.hits().stream().map(DocumentSearchIndex.Hit::id).toList(), result.total());
+    }
+
+    /**
+     * Indexes saved documents once the surrounding transaction (if any) commits.
+     */
+    public void index(Collection<ExternalDocument> documents) {
+        if (!config.isEnabled() || documents.isEmpty()) {
+            return;
+        }
+        List<ExternalDocument> snapshot = List.copyOf(documents);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addAll(snapshot);
+                }
+            });
+        } else {
+            addAll(snapshot);
+        }
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${multiagent.document-index.sync-interval:300000}")
+    public synchronized void sync() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            if (index == null) {
+                index = restore();
+            }
+            catchUp(index);
+            ready = true;
+            if (index.deletedRatio() > config.getCompactThreshold()) {
+                index.compact();
+                dirty.set(true);
+            }
+            if (dirty.getAndSet(false)) {
+                long start = System.nanoTime();
+                index.writeSnapshot(Path.of(config.getSnapshotPath()));
+                log.debug("Wrote document index snapshot ({} documents) in {} ms.", index.size(),
+                        (System.nanoTime() - start) / 1_000_000);
+            }
+        } catch (Exception ex) {
+            log.warn("Document index sync failed: {}", ex.getMessage(), ex);
+        }
+    }
+
+    private DocumentSearchIndex restore() {
+        Path path = Path.of(config.getSnapshotPath());
+        if (Files.isRegularFile(path)) {
+            try {
+                DocumentSearchIndex restored = DocumentSearchIndex.readSnapshot(path);
+                log.info("Restored document index snapshot with {} documents from {}.", restored.size(), path);
+                return restored;
+            } catch (Exception ex) {
+                log.warn("Ignoring unreadable document index snapshot {}: {}", path, ex.getMessage());
+            }
+        }
+        return new DocumentSearchIndex();
+    }
+
+    private void catchUp(DocumentSearchIndex target) {
+        DocumentSearchIndex.Checkpoint checkpoint = target.checkpoint() != null ? target.checkpoint() : START;
+        int indexed = 0;
+        while (true) {
+            List<ExternalDocument> page = repository.findUpdatedAfter(checkpoint.updatedAt(), checkpoint.id(),
+                    PageRequest.of(0, config.getBatchSize()));
+            if (page.isEmpty()) {
+                break;
+            }
+            for (ExternalDocument document : page) {
+                add(target, document);
+            }
+            ExternalDocument last = page.getLast();
+            checkpoint = new DocumentSearchIndex.Checkpoint(last.getUpdatedAt(), last.getId());
+            target.checkpoint(checkpoint);
+            indexed += page.size();
+            dirty.set(true);
+            if (page.size() < config.getBatchSize()) {
+                break;
+            }
+        }
+        if (indexed > 0) {
+            log.info("Document index caught up on {} documents ({} indexed).", indexed, target.size());
+        }
+    }
+
+    private void addAll(List<ExternalDocument> documents) {
+        DocumentSearchIndex current = index;
+        if (current == null) {
+            // The first sync reads these rows from the database anyway.
+            return;
+        }
+        for (ExternalDocument document : documents) {
+            add(current, document);
+        }
+        dirty.set(true);
+    }
+
+    private static void add(DocumentSearchIndex target, ExternalDocument document) {
+        if (document.getId() == null) {
+            return;
+        }
+        String[] fields = new String[DocumentSearchIndex.FIELD_COUNT];
+        fields[DocumentSearchIndex.SOURCE_ID] = document.getSourceId();
+        fields[DocumentSearchIndex.TITLE] = document.getTitle();
+        fields[DocumentSearchIndex.ABSTRACT_TEXT] = document.getAbstractText();
+        fields[DocumentSearchIndex.AUTHORS] = document.getAuthors();
+        fields[DocumentSearchIndex.CATEGORIES] = document.getCategories();
+        target.add(document.getId(), document.getSource(), fields);
+    }
+
+    private DocumentSearchIndex.Scoring scoring() {
+        double[] weights = new double[DocumentSearchIndex.FIELD_COUNT];
+        weights[DocumentSearchIndex.SOURCE_ID] = config.getSourceIdWeight();
+        weights[DocumentSearchIndex.TITLE] = config.getTitleWeight();
+        weights[DocumentSearchIndex.ABSTRACT_TEXT] = config.getAbstractWeight();
+        weights[DocumentSearchIndex.AUTHORS] = config.getAuthorsWeight();
+        weights[DocumentSearchIndex.CATEGORIES] = config.getCategoriesWeight();
+        return new DocumentSearchIndex.Scoring(config.getK1(), config.getB(), weights);
+    }
+
+    public record Matches(List<UUID> ids, int total) {
+    }
+}
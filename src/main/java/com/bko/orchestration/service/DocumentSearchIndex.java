@@ -0,0 +1,588 @@
+package com.bko.orchestration.service;
+
+import org.springframework.lang.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over external documents, scored with BM25 per field and summed
+ * with field weights (the same model as {@link SkillRanker}). Each term keeps one posting
+ * list per field, encoded as varint doc-id deltas followed by the varint term frequency.
+ * <p>
+ * Documents get increasing internal ids, so updates append: re-adding a document marks its
+ * old id deleted and {@link #compact()} later drops deleted ids from every list. The index
+ * can be written to and restored from a snapshot file together with a {@link Checkpoint}
+ * recording how far it has been synced from the database.
+ */
+final class DocumentSearchIndex {
+
+    static final int SOURCE_ID = 0;
+    static final int TITLE = 1;
+    static final int ABSTRACT_TEXT = 2;
+    static final int AUTHORS = 3;
+    static final int CATEGORIES = 4;
+    static final int FIELD_COUNT = 5;
+
+    private static final int MAGIC = 0x44534958;
+    private static final int VERSION = 1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<Term> terms = new ArrayList<>();
+    private final Map<UUID, Integer> docIds = new HashMap<>();
+    private final Map<String, Integer> sourceIds = new HashMap<>();
+    private final List<String> sources = new ArrayList<>();
+    private final BitSet deleted = new BitSet();
+    private final long[] totalFieldLengths = new long[FIELD_COUNT];
+    private UUID[] docUuids = new UUID[1024];
+    private int[] docSources = new int[1024];
+    private int[][] fieldLengths = new int[FIELD_COUNT][1024];
+    private int docCount;
+    private int liveCount;
+    @Nullable
+    private Checkpoint checkpoint;
+
+    /**
+     * Indexes a document, replacing any earlier version with the same id. {@code fields} is
+     * indexed by the field constants; null texts index as empty.
+     */
+    void add(UUID id, @Nullable String source, @Nullable String[] fields) {
+        lock.writeLock().lock();
+        try {
+            Integer previous = docIds.get(id);
+            if (previous != null) {
+                markDeleted(previous);
+            }
+            int doc = docCount++;
+            ensureCapacity(docCount);
+            docUuids[doc] = id;
+            docSources[doc] = sourceId(normalizeSource(source));
+            docIds.put(id, doc);
+            liveCount++;
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                List<String> tokens = SkillRanker.tokenize(field < fields.length ? fields[field] : null);
+                Map<String, Integer> counts = new LinkedHashMap<>();
+                for (String token : tokens) {
+                    counts.merge(token, 1, Integer::sum);
+                }
+                for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                    Term term = termFor(entry.getKey());
+                    Postings postings = term.fields[field];
+                    if (postings == null) {
+                        postings = new Postings();
+                        term.fields[field] = postings;
+                    }
+                    postings.add(doc, entry.getValue());
+                    if (term.lastDoc != doc) {
+                        term.lastDoc = doc;
+                        term.docFreq++;
+                    }
+                }
+                fieldLengths[field][doc] = tokens.size();
+                totalFieldLengths[field] += tokens.size();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the best {@code limit} live matches for {@code query} (any term may match),
+     * restricted to {@code source} when it is non-null, plus the total number of matches.
+     */
+    Result search(@Nullable String source, String query, int limit, Scoring scoring) {
+        List<String> tokens = SkillRanker.tokenize(query).stream().distinct().toList();
+        lock.readLock().lock();
+        try {
+            int sourceFilter = -1;
+            if (source != null) {
+                Integer id = sourceIds.get(normalizeSource(source));
+                if (id == null) {
+                    return Result.EMPTY;
+                }
+                sourceFilter = id;
+            }
+            if (tokens.isEmpty() || liveCount == 0) {
+                return Result.EMPTY;
+            }
+            double[] averageLengths = new double[FIELD_COUNT];
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                averageLengths[field] = (double) totalFieldLengths[field] / liveCount;
+            }
+            float[] scores = new float[docCount];
+            int[] touched = new int[64];
+            int touchedCount = 0;
+            for (String token : tokens) {
+                Integer termId = termIds.get(token);
+                if (termId == null) {
+                    continue;
+                }
+                Term term = terms.get(termId);
+                int df = Math.min(term.docFreq, liveCount);
+                double idf = Math.log(1 + (liveCount - df + 0.5) / (df + 0.5));
+                for (int field = 0; field < FIELD_COUNT; field++) {
+                    Postings postings = term.fields[field];
+                    double weight = scoring.weights()[field];
+                    if (postings == null || weight <= 0) {
+                        continue;
+                    }
+                    int position = 0;
+                    int doc = -1;
+                    while (position < postings.size) {
+                        int delta = 0;
+                        int shift = 0;
+                        byte b;
+                        do {
+                            b = postings.data[position++];
+                            delta |= (b & 0x7F) << shift;
+                            shift += 7;
+                        } while (b < 0);
+                        int tf = 0;
+                        shift = 0;
+                        do {
+                            b = postings.data[position++];
+                            tf |= (b & 0x7F) << shift;
+                            shift += 7;
+                        } while (b < 0);
+                        doc += delta;
+                        if (deleted.get(doc) || (sourceFilter >= 0 && docSources[doc] != sourceFilter)) {
+                            continue;
+                        }
+                        double norm = averageLengths[field] > 0
+                                ? 1 - scoring.b() + scoring.b() * fieldLengths[field][doc] / averageLengths[field]
+                                : 1;
+                        double score = idf * weight * tf * (scoring.k1() + 1) / (tf + scoring.k1() * norm);
+                        if (scores[doc] == 0) {
+                            if (touchedCount == touched.length) {
+                                touched = Arrays.copyOf(touched, touchedCount * 2);
+                            }
+                            touched[touchedCount++] = doc;
+                        }
+                        scores[doc] += (float) score;
+                    }
+                }
+            }
+            if (touchedCount == 0 || limit <= 0) {
+                return new Result(List.of(), touchedCount);
+            }
+            // Min-heap of the best hits so far; ties go to the more recently indexed document.
+            PriorityQueue<Integer> best = new PriorityQueue<>(Math.min(limit, touchedCount) + 1,
+                    (left, right) -> scores[left] != scores[right]
+                            ? Float.compare(scores[left], scores[right])
+                            : Integer.compare(left, right));
+            for (int i = 0; i < touchedCount; i++) {
+                best.add(touched[i]);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            Hit[] hits = new Hit[best.size()];
+            for (int i = hits.length - 1; i >= 0; i--) {
+                int doc = best.poll();
+                hits[i] = new Hit(docUuids[doc], scores[doc]);
+            }
+            return new Result(List.of(hits), touchedCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Share of internal ids that belong to replaced documents.
+     */
+    double deletedRatio() {
+        lock.readLock().lock();
+        try {
+            return docCount == 0 ? 0 : (double) (docCount - liveCount) / docCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Nullable
+    Checkpoint checkpoint() {
+        lock.readLock().lock();
+        try {
+            return checkpoint;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void checkpoint(Checkpoint checkpoint) {
+        lock.writeLock().lock();
+        try {
+            this.checkpoint = checkpoint;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Renumbers live documents densely and rewrites every posting list without deleted ids;
+     * terms left without postings are dropped.
+     */
+    void compact() {
+        lock.writeLock().lock();
+        try {
+            int[] remap = new int[docCount];
+            int next = 0;
+            for (int doc = 0; doc < docCount; doc++) {
+                remap[doc] = deleted.get(doc) ? -1 : next++;
+            }
+            UUID[] newUuids = new UUID[Math.max(1024, next)];
+            int[] newSources = new int[newUuids.length];
+            int[][] newLengths = new int[FIELD_COUNT][newUuids.length];
+            for (int doc = 0; doc < docCount; doc++) {
+                int target = remap[doc];
+                if (target < 0) {
+                    continue;
+                }
+                newUuids[target] = docUuids[doc];
+                newSources[target] = docSources[doc];
+                for (int field = 0; field < FIELD_COUNT; field++) {
+                    newLengths[field][target] = fieldLengths[field][doc];
+                }
+                docIds.put(docUuids[doc], target);
+            }
+            int[] seenBy = new int[next];
+            Arrays.fill(seenBy, -1);
+            List<Term> kept = new ArrayList<>(terms.size());
+            termIds.clear();
+            for (Term term : terms) {
+                int termIndex = kept.size();
+                term.docFreq = 0;
+                term.lastDoc = -1;
+                for (int field = 0; field < FIELD_COUNT; field++) {
+                    Postings postings = term.fields[field];
+                    if (postings == null) {
+                        continue;
+                    }
+                    Postings rewritten = new Postings();
+                    int position = 0;
+                    int doc = -1;
+                    while (position < postings.size) {
+                        int[] decoded = postings.read(position);
+                        position = decoded[2];
+                        doc += decoded[0];
+                        int target = remap[doc];
+                        if (target < 0) {
+                            continue;
+                        }
+                        rewritten.add(target, decoded[1]);
+                        if (seenBy[target] != termIndex) {
+                            seenBy[target] = termIndex;
+                            term.docFreq++;
+                            term.lastDoc = Math.max(term.lastDoc, target);
+                        }
+                    }
+                    term.fields[field] = rewritten.size > 0 ? rewritten : null;
+                }
+                if (term.docFreq > 0) {
+                    termIds.put(term.text, termIndex);
+                    kept.add(term);
+                }
+            }
+            terms.clear();
+            terms.addAll(kept);
+            docUuids = newUuids;
+            docSources = newSources;
+            fieldLengths = newLengths;
+            deleted.clear();
+            docCount = next;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the index to {@code path} through a temporary file and an atomic rename, so a
+     * crash mid-write leaves the previous snapshot intact.
+     */
+    void writeSnapshot(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try (OutputStream file = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeBoolean(checkpoint != null);
+            if (checkpoint != null) {
+                Instant updatedAt = checkpoint.updatedAt().toInstant();
+                out.writeLong(updatedAt.getEpochSecond());
+                out.writeInt(updatedAt.getNano());
+                out.writeLong(checkpoint.id().getMostSignificantBits());
+                out.writeLong(checkpoint.id().getLeastSignificantBits());
+            }
+            out.writeInt(sources.size());
+            for (String source : sources) {
+                writeString(out, source);
+            }
+            out.writeInt(docCount);
+            for (int doc = 0; doc < docCount; doc++) {
+                out.writeLong(docUuids[doc].getMostSignificantBits());
+                out.writeLong(docUuids[doc].getLeastSignificantBits());
+                out.writeInt(docSources[doc]);
+                out.writeBoolean(deleted.get(doc));
+                for (int field = 0; field < FIELD_COUNT; field++) {
+                    out.writeInt(fieldLengths[field][doc]);
+                }
+            }
+            out.writeInt(terms.size());
+            for (Term term : terms) {
+                writeString(out, term.text);
+                out.writeInt(term.docFreq);
+                out.writeInt(term.lastDoc);
+                for (int field = 0; field < FIELD_COUNT; field++) {
+                    Postings postings = term.fields[field];
+                    if (postings == null) {
+                        out.writeInt(-1);
+                        continue;
+                    }
+                    out.writeInt(postings.size);
+                    out.writeInt(postings.lastDoc);
+                    out.write(postings.data, 0, postings.size);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeSnapshot(Path)} through a read-only memory mapping.
+     */
+    static DocumentSearchIndex readSnapshot(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.remaining() < 8 || in.getInt() != MAGIC) {
+                throw new IOException("Not a document index snapshot: " + path);
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported document index snapshot version " + version + ": " + path);
+            }
+            DocumentSearchIndex index = new DocumentSearchIndex();
+            if (in.get() != 0) {
+                OffsetDateTime updatedAt = Instant.ofEpochSecond(in.getLong(), in.getInt()).atOffset(ZoneOffset.UTC);
+                index.checkpoint = new Checkpoint(updatedAt, new UUID(in.getLong(), in.getLong()));
+            }
+            int sourceCount = in.getInt();
+            for (int i = 0; i < sourceCount; i++) {
+                index.sourceId(readString(in));
+            }
+            int docCount = in.getInt();
+            index.ensureCapacity(docCount);
+            for (int doc = 0; doc < docCount; doc++) {
+                UUID id = new UUID(in.getLong(), in.getLong());
+                index.docUuids[doc] = id;
+                index.docSources[doc] = in.getInt();
+                boolean isDeleted = in.get() != 0;
+                for (int field = 0; field < FIELD_COUNT; field++) {
+                    index.fieldLengths[field][doc] = in.getInt();
+                }
+                if (isDeleted) {
+                    index.deleted.set(doc);
+                    continue;
+                }
+                index.docIds.put(id, doc);
+                index.liveCount++;
+                for (int field = 0; field < FIELD_COUNT; field++) {
+                    index.totalFieldLengths[field] += index.fieldLengths[field][doc];
+                }
+            }
+            index.docCount = docCount;
+            int termCount = in.getInt();
+            for (int i = 0; i < termCount; i++) {
+                Term term = index.termFor(readString(in));
+                term.docFreq = in.getInt();
+                term.lastDoc = in.getInt();
+                for (int field = 0; field < FIELD_COUNT; field++) {
+                    int size = in.getInt();
+                    if (size < 0) {
+                        continue;
+                    }
+                    Postings postings = new Postings();
+                    postings.lastDoc = in.getInt();
+                    postings.data = new byte[Math.max(8, size)];
+                    in.get(postings.data, 0, size);
+                    postings.size = size;
+                    term.fields[field] = postings;
+                }
+            }
+            return index;
+        }
+    }
+
+    private void markDeleted(int doc) {
+        deleted.set(doc);
+        liveCount--;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            totalFieldLengths[field] -= fieldLengths[field][doc];
+        }
+    }
+
+    private Term termFor(String text) {
+        Integer id = termIds.get(text);
+        if (id != null) {
+            return terms.get(id);
+        }
+        Term term = new Term(text);
+        termIds.put(text, terms.size());
+        terms.add(term);
+        return term;
+    }
+
+    private int sourceId(String source) {
+        Integer id = sourceIds.get(source);
+        if (id != null) {
+            return id;
+        }
+        sourceIds.put(source, sources.size());
+        sources.add(source);
+        return sources.size() - 1;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= docUuids.length) {
+            return;
+        }
+        int capacity = Math.max(required, docUuids.length * 2);
+        docUuids = Arrays.copyOf(docUuids, capacity);
+        docSources = Arrays.copyOf(docSources, capacity);
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            fieldLengths[field] = Arrays.copyOf(fieldLengths[field], capacity);
+        }
+    }
+
+    private static String normalizeSource(@Nullable String source) {
+        return source != null ? source.toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * BM25 parameters and per-field weights (indexed by the field constants).
+     */
+    record Scoring(double k1, double b, double[] weights) {
+    }
+
+    /**
+     * Last database row (by {@code updated_at}, then id) reflected in the index.
+     */
+    record Checkpoint(OffsetDateTime updatedAt, UUID id) {
+    }
+
+    record Hit(UUID id, double score) {
+    }
+
+    record Result(List<Hit> hits, int total) {
+        static final Result EMPTY = new Result(List.of(), 0);
+    }
+
+    private static final class Term {
+        private final String text;
+        private final Postings[] fields = new Postings[FIELD_COUNT];
+        private int docFreq;
+        private int lastDoc = -1;
+
+        private Term(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * Growable byte buffer of (doc delta, term frequency) varint pairs in doc order.
+     */
+    private static final class Postings {
+        private byte[] data = new byte[8];
+        private int size;
+        private int lastDoc = -1;
+
+        private void add(int doc, int tf) {
+            if (data.length - size < 10) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + 10));
+            }
+            writeVarint(doc - lastDoc);
+            writeVarint(tf);
+            lastDoc = doc;
+        }
+
+        private void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        /**
+         * Decodes the pair at {@code position}: returns {delta, tf, next position}.
+         */
+        private int[] read(int position) {
+            int[] result = new int[3];
+            for (int i = 0; i < 2; i++) {
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[position++];
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                result[i] = value;
+            }
+            result[2] = position;
+            return result;
+        }
+    }
+}
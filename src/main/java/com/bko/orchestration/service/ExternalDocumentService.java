@@ -1,54 +1,285 @@
 package com.bko.orchestration.service;
 
 import com.bko.entity.ExternalDocument;
+import com.bko.orchestration.model.DocumentSearchPage;
+import com.bko.orchestration.model.DocumentUpsertResult;
 import com.bko.repository.ExternalDocumentRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.Set;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
 
 @Service
+@Slf4j
 @RequiredArgsConstructor
 public class ExternalDocumentService {
 
+    /** Rows per INSERT statement; 10 parameters each keeps a chunk far below the 65535 bind limit. */
+    static final int UPSERT_CHUNK_SIZE = 500;
+
+    private static final String UPSERT_PREFIX = """
+            INSERT INTO external_document (id, source, source_id, title, abstract_text, url, authors, categories,
+                                           source_published_at, source_updated_at, created_at, updated_at)
+            VALUES
+            """;
+
+    private static final String UPSERT_ROW = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, now(), now())";
+
+    // Unchanged rows are left alone (no new tuple, no updated_at bump) and return nothing.
+    // xmax is 0 only on a freshly inserted tuple, which tells inserts from updates.
+    private static final String UPSERT_SUFFIX = """
+
+            ON CONFLICT (source, source_id) DO UPDATE SET
+                title = EXCLUDED.title,
+                abstract_text = EXCLUDED.abstract_text,
+                url = EXCLUDED.url,
+                authors = EXCLUDED.authors,
+                categories = EXCLUDED.categories,
+                source_published_at = EXCLUDED.source_published_at,
+                source_updated_at = EXCLUDED.source_updated_at,
+                updated_at = now()
+            WHERE (external_document.title, external_document.abstract_text, external_document.url,
+                   external_document.authors, external_document.categories,
+                   external_document.source_published_at, external_document.source_updated_at)
+                IS DISTINCT FROM
+                  (EXCLUDED.title, EXCLUDED.abstract_text, EXCLUDED.url, EXCLUDED.authors, EXCLUDED.categories,
+                   EXCLUDED.source_published_at, EXCLUDED.source_updated_at)
+            RETURNING id, source, source_id, (xmax = 0) AS inserted
+            """;
+
     private final ExternalDocumentRepository repository;
+    private final ObjectProvider<JdbcTemplate> jdbcTemplateProvider;
+    private final DocumentIndexService documentIndexService;
+    private final SchemaProbe schemaProbe;
 
+    /**
+     * Inserts or updates a batch of documents keyed by (source, sourceId) with one
+     * {@code INSERT ... ON CONFLICT DO UPDATE} per {@value #UPSERT_CHUNK_SIZE} rows, instead of a
+     * lookup and a save per document. Documents without source or sourceId, repeats of a key
+     * within the batch (the last one wins) and documents identical to the stored row are skipped.
+     */
     @Transactional
-    public ExternalDocument upsert(ExternalDocument incoming) {
-        if (incoming == null || !StringUtils.hasText(incoming.getSource()) || !StringUtils.hasText(incoming.getSourceId())) {
-            throw new IllegalArgumentException("ExternalDocument requires source and sourceId.");
-        }
-        Optional<ExternalDocument> existing = repository.findBySourceAndSourceId(incoming.getSource(), incoming.getSourceId());
-        if (existing.isEmpty()) {
-            return repository.save(incoming);
-        }
-        ExternalDocument target = existing.get();
-        target.setTitle(incoming.getTitle());
-        target.setAbstractText(incoming.getAbstractText());
-        target.setUrl(incoming.getUrl());
-        target.setAuthors(incoming.getAuthors());
-        target.setCategories(incoming.getCategories());
-        target.setSourcePublishedAt(incoming.getSourcePublishedAt());
-        target.setSourceUpdatedAt(incoming.getSourceUpdatedAt());
-        return repository.save(target);
-    }
-
-    public Set<String> findExistingSourceIds(String source, Collection<String> sourceIds) {
-        if (!StringUtils.hasText(source) || sourceIds == null || sourceIds.isEmpty()) {
-            return Set.of();
-        }
-        var ids = sourceIds.stream()
-                .filter(StringUtils::hasText)
-                .distinct()
-                .toList();
-        if (ids.isEmpty()) {
-            return Set.of();
-        }
-        return new HashSet<>(repository.findExistingSourceIds(source, ids));
+    public DocumentUpsertResult upsertAll(Collection<ExternalDocument> documents) {
+        if (documents == null || documents.isEmpty()) {
+            return new DocumentUpsertResult(0, 0, 0, List.of());
+        }
+        Map<String, ExternalDocument> byKey = new LinkedHashMap<>();
+        int skipped = 0;
+        for (ExternalDocument document : documents) {
+            if (document == null || !StringUtils.hasText(document.getSource())
+                    || !StringUtils.hasText(document.getSourceId())) {
+                skipped++;
+                continue;
+            }
+            if (byKey.put(key(document.getSource(), document.getSourceId()), document) != null) {
+                skipped++;
+            }
+        }
+        List<ExternalDocument> pending = new ArrayList<>(byKey.values());
+        JdbcTemplate jdbcTemplate = jdbcTemplateProvider.getObject();
+        int inserted = 0;
+        int updated = 0;
+        List<ExternalDocument> written = new ArrayList<>();
+        for (int from = 0; from < pending.size(); from += UPSERT_CHUNK_SIZE) {
+            List<ExternalDocument> chunk = pending.subList(from, Math.min(pending.size(), from + UPSERT_CHUNK_SIZE));
+            Map<String, ExternalDocument> chunkByKey = new HashMap<>();
+            for (ExternalDocument document : chunk) {
+                chunkByKey.put(key(document.getSource(), document.getSourceId()), document);
+            }
+            List<UpsertedRow> rows = jdbcTemplate.query(upsertSql(chunk.size()),
+                    (rs, rowNum) -> new UpsertedRow(rs.getObject("id", UUID.class),
+                            key(rs.getString("source"), rs.getString("source_id")), rs.getBoolean("inserted")),
+                    upsertArgs(chunk));
+            for (UpsertedRow row : rows) {
+                if (row.inserted()) {
+                    inserted++;
+                } else {
+                    updated++;
+                }
+                ExternalDocument document = chunkByKey.get(row.key());
+                if (document != null) {
+                    document.setId(row.id());
+                    written.add(document);
+                }
+            }
+            skipped += chunk.size() - rows.size();
+        }
+        documentIndexService.index(written);
+        return new DocumentUpsertResult(inserted, updated, skipped, written);
+    }
+
+    static String upsertSql(int rows) {
+        StringBuilder sql = new StringBuilder(UPSERT_PREFIX.length() + rows * (UPSERT_ROW.length() + 2) + UPSERT_SUFFIX.length());
+        sql.append(UPSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(",\n");
+            }
+            sql.append(UPSERT_ROW);
+        }
+        return sql.append(UPSERT_SUFFIX).toString();
+    }
+
+    private static String key(String source, String sourceId) {
+        return source + '\u0000' + sourceId;
+    }
+
+    private static Object[] upsertArgs(List<ExternalDocument> chunk) {
+        Object[] args = new Object[chunk.size() * 10];
+        int i = 0;
+        for (ExternalDocument document : chunk) {
+            args[i++] = UUID.randomUUID();
+            args[i++] = document.getSource();
+            args[i++] = document.getSourceId();
+            args[i++] = document.getTitle();
+            args[i++] = document.getAbstractText();
+            args[i++] = document.getUrl();
+            args[i++] = document.getAuthors();
+            args[i++] = document.getCategories();
+            args[i++] = document.getSourcePublishedAt();
+            args[i++] = document.getSourceUpdatedAt();
+        }
+        return args;
+    }
+
+    /**
+     * High-water mark of incremental harvests of {@code source} for one search query, or null when
+     * that query has not been harvested yet (or changelog 18 is not applied, which disables
+     * incremental harvesting rather than sharing a mark between queries).
+     */
+    @Nullable
+    public OffsetDateTime findHarvestMark(String source, String queryKey) {
+        if (!isHarvestMarkAvailable()) {
+            return null;
+        }
+        List<OffsetDateTime> marks = jdbcTemplateProvider.getObject().query("""
+                SELECT high_water_mark FROM external_document_harvest WHERE source = ? AND query_key = ?
+                """, (rs, rowNum) -> rs.getObject(1, OffsetDateTime.class), source, queryKey);
+        return marks.isEmpty() ? null : marks.getFirst();
+    }
+
+    /**
+     * Moves the high-water mark of {@code source} and {@code queryKey} forward to {@code mark}; never back.
+     */
+    public void recordHarvestMark(String source, String queryKey, OffsetDateTime mark) {
+        if (!isHarvestMarkAvailable()) {
+            return;
+        }
+        jdbcTemplateProvider.getObject().update("""
+                INSERT INTO external_document_harvest (source, query_key, high_water_mark, updated_at)
+                VALUES (?, ?, ?, now())
+                ON CONFLICT (source, query_key) DO UPDATE SET
+                    high_water_mark = GREATEST(external_document_harvest.high_water_mark, EXCLUDED.high_water_mark),
+                    updated_at = now()
+                """, source, queryKey, mark);
+    }
+
+    /**
+     * Searches documents of {@code source} (any source when null). With query text, uses the
+     * in-process BM25 index when it is enabled and synced, then the ranked full-text search when
+     * the schema has {@code search_vector}, otherwise the LIKE scan; without query text, lists
+     * newest first.
+     */
+    public List<ExternalDocument> search(@Nullable String source, @Nullable String queryText, Pageable pageable) {
+        if (queryText != null && documentIndexService.isReady()) {
+            return searchIndex(source, queryText, pageable).content();
+        }
+        if (queryText != null && isFullTextAvailable()) {
+            return repository.searchDocumentsRanked(source, queryText, likePattern(queryText), pageable);
+        }
+        return repository.searchDocuments(source, queryText, pageable);
+    }
+
+    /**
+     * Like {@link #search}, together with the total number of matches. The BM25 index reports the
+     * total from the same scoring pass; a short, non-empty page is the last one, so its total
+     * follows without a count query.
+     */
+    public DocumentSearchPage searchPage(@Nullable String source, @Nullable String queryText, Pageable pageable) {
+        if (queryText != null && documentIndexService.isReady()) {
+            return searchIndex(source, queryText, pageable);
+        }
+        List<ExternalDocument> content = search(source, queryText, pageable);
+        long total = !content.isEmpty() && content.size() < pageable.getPageSize()
+                ? pageable.getOffset() + content.size()
+                : countSearch(source, queryText);
+        return new DocumentSearchPage(content, total);
+    }
+
+    long countSearch(@Nullable String source, @Nullable String queryText) {
+        if (queryText != null && isFullTextAvailable()) {
+            return repository.countSearchDocumentsRanked(source, queryText, likePattern(queryText));
+        }
+        return repository.countSearchDocuments(source, queryText);
+    }
+
+    /**
+     * Ranks in memory, then loads the page's rows by primary key and restores the ranked order.
+     */
+    private DocumentSearchPage searchIndex(@Nullable String source, String queryText, Pageable pageable) {
+        int offset = (int) Math.min(Integer.MAX_VALUE - pageable.getPageSize(), pageable.getOffset());
+        DocumentIndexService.Matches matches =
+                documentIndexService.search(source, queryText, offset + pageable.getPageSize());
+        List<UUID> ids = matches.ids();
+        if (ids.size() <= offset) {
+            return new DocumentSearchPage(List.of(), matches.total());
+        }
+        List<UUID> pageIds = ids.subList(offset, ids.size());
+        Map<UUID, ExternalDocument> byId = new HashMap<>();
+        for (ExternalDocument document : repository.findAllById(pageIds)) {
+            byId.put(document.getId(), document);
+        }
+        List<ExternalDocument> ordered = new ArrayList<>(pageIds.size());
+        for (UUID id : pageIds) {
+            ExternalDocument document = byId.get(id);
+            if (document != null) {
+                ordered.add(document);
+            }
+        }
+        return new DocumentSearchPage(ordered, matches.total());
+    }
+
+    /**
+     * True when changelog 16 has added {@code external_document.search_vector}
+     * (Liquibase may be disabled).
+     */
+    boolean isFullTextAvailable() {
+        return schemaProbe.hasColumns("external_document", "search_vector");
+    }
+
+    /**
+     * True when changelog 18 has created {@code external_document_harvest} (Liquibase may be disabled).
+     */
+    boolean isHarvestMarkAvailable() {
+        return schemaProbe.hasTable("external_document_harvest");
+    }
+
+    /**
+     * Lower-cased {@code %text%} with LIKE wildcards in the text escaped (backslash is the default escape).
+     */
+    static String likePattern(String queryText) {
+        String escaped = queryText.toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+
+    private record UpsertedRow(UUID id, String key, boolean inserted) {
     }
 }
@@ -0,0 +1,129 @@
+package com.bko.orchestration.service;
+
+import com.bko.config.MultiAgentProperties;
+import com.bko.orchestration.model.FastPathDecision;
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cheap local classifier that decides whether a prompt is simple enough to skip the
+ * planning LLM call. Rules extract a handful of features (length, sentences, list items,
+ * sequencing words, multi-step verbs) and a small logistic model turns them into a
+ * confidence that the prompt is single-intent.
+ */
+@Service
+@RequiredArgsConstructor
+public class FastPathClassifier {
+
+    private static final Pattern LIST_ITEM = Pattern.compile("(?m)^\\s*(?:[-*•]|\\d+[.)])\\s+\\S");
+    private static final Pattern SENTENCE_END = Pattern.compile("[.!?]+(?:\\s|$)");
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}']+");
+    private static final Set<String> SEQUENCERS = Set.of(
+            "then", "afterwards", "after", "next", "finally", "first", "second", "third", "lastly", "subsequently");
+    private static final Set<String> MULTI_STEP_VERBS = Set.of(
+            "implement", "refactor", "design", "architect", "migrate", "build", "compare", "analyze", "analyse",
+            "research", "investigate", "plan", "evaluate", "benchmark", "deploy", "integrate");
+
+    // Logistic model weights; tuned so that one-line questions land well above 0.9
+    // and prompts with two or more independent steps fall below 0.5.
+    private static final double BIAS = 3.0;
+    private static final double W_TOKENS = -0.012;
+    private static final double W_EXTRA_SENTENCES = -1.2;
+    private static final double W_LIST_ITEMS = -1.5;
+    private static final double W_SEQUENCERS = -1.3;
+    private static final double W_MULTI_STEP_VERBS = -0.9;
+    private static final double W_CODE_BLOCKS = -2.0;
+    private static final double W_EXTRA_QUESTIONS = -0.8;
+
+    private final MultiAgentProperties properties;
+    private final TokenCountService tokenCountService;
+
+    public FastPathDecision classify(@Nullable String userMessage, @Nullable String model) {
+        MultiAgentProperties.FastPathConfig config = properties.getFastPath();
+        if (!config.isEnabled()) {
+            return new FastPathDecision(false, 0.0, "disabled");
+        }
+        if (!StringUtils.hasText(userMessage)) {
+            return new FastPathDecision(false, 0.0, "empty prompt");
+        }
+        int tokens = tokenCountService.count(model, userMessage);
+        if (tokens > config.getMaxTokens()) {
+            return new FastPathDecision(false, 0.0, "prompt exceeds " + config.getMaxTokens() + " tokens");
+        }
+        String text = userMessage.trim();
+        int sentences = Math.max(1, count(SENTENCE_END, text));
+        int listItems = count(LIST_ITEM, text);
+        int codeBlocks = countOccurrences(text, "```") / 2;
+        int questions = countOccurrences(text, "?");
+        int sequencers = 0;
+        int multiStepVerbs = 0;
+        Matcher words = WORD.matcher(text.toLowerCase(Locale.ROOT));
+        while (words.find()) {
+            String word = words.group();
+            if (SEQUENCERS.contains(word)) {
+                sequencers++;
+            } else if (MULTI_STEP_VERBS.contains(word)) {
+                multiStepVerbs++;
+            }
+        }
+        double z = BIAS
+                + W_TOKENS * tokens
+                + W_EXTRA_SENTENCES * Math.max(0, sentences - 2)
+                + W_LIST_ITEMS * listItems
+                + W_SEQUENCERS * sequencers
+                + W_MULTI_STEP_VERBS * multiStepVerbs
+                + W_CODE_BLOCKS * codeBlocks
+                + W_EXTRA_QUESTIONS * Math.max(0, questions - 1);
+        double confidence = 1.0 / (1.0 + Math.exp(-z));
+        boolean fastPath = confidence >= config.getConfidenceThreshold();
+        return new FastPathDecision(fastPath, confidence,
+                describe(tokens, sentences, listItems, sequencers, multiStepVerbs, codeBlocks));
+    }
+
+    private String describe(int tokens, int sentences, int listItems, int sequencers, int multiStepVerbs, int codeBlocks) {
+        List<String> parts = new ArrayList<>();
+        parts.add("tokens=" + tokens);
+        parts.add("sentences=" + sentences);
+        if (listItems > 0) {
+            parts.add("listItems=" + listItems);
+        }
+        if (sequencers > 0) {
+            parts.add("sequencers=" + sequencers);
+        }
+        if (multiStepVerbs > 0) {
+            parts.add("multiStepVerbs=" + multiStepVerbs);
+        }
+        if (codeBlocks > 0) {
+            parts.add("codeBlocks=" + codeBlocks);
+        }
+        return String.join(", ", parts);
+    }
+
+    private static int count(Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    private static int countOccurrences(String text, String token) {
+        int count = 0;
+        int index = text.indexOf(token);
+        while (index >= 0) {
+            count++;
+            index = text.indexOf(token, index + token.length());
+        }
+        return count;
+    }
+}
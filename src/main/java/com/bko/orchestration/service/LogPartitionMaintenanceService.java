@@ -0,0 +1,151 @@
+package com.bko.orchestration.service;
+
+import com.bko.config.MultiAgentProperties;
+import com.bko.config.MultiAgentProperties.LogPartitionConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Keeps the monthly partitions of the log tables in shape: creates the current month and
+ * {@code premake-months} ahead so inserts never miss a partition, and drops or detaches
+ * partitions whose whole range is older than {@code retention-months}. Expiring a month is a
+ * metadata operation, unlike the DELETEs it replaces. Retention is off by default
+ * ({@code retention-months: 0}). Text moved into {@code text_blob} is not reclaimed when a
+ * partition expires: blobs are shared across rows and months, so unreferenced ones stay behind.
+ * <p>
+ * Tables that are not partitioned (changelog 13 not applied) are left alone.
+ */
+@Service
+@Slf4j
+public class LogPartitionMaintenanceService {
+
+    static final List<String> PARTITIONED_TABLES = List.of("prompt_log", "tool_call_log", "worker_result_log");
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static final String LIST_PARTITIONS = """
+            SELECT child.relname AS name,
+                   substring(pg_get_expr(child.relpartbound, child.oid) FROM 'TO \\(''([^'']+)''\\)')::timestamptz AS upper_bound
+            FROM pg_inherits i
+            JOIN pg_class parent ON parent.oid = i.inhparent
+            JOIN pg_class child ON child.oid = i.inhrelid
+            WHERE parent.relname = ? AND parent.relnamespace = current_schema()::regnamespace
+            """;
+
+    private final LogPartitionConfig config;
+    private final ObjectProvider<JdbcTemplate> jdbcTemplateProvider;
+
+    public LogPartitionMaintenanceService(MultiAgentProperties properties,
+                                          ObjectProvider<JdbcTemplate> jdbcTemplateProvider) {
+        this.config = properties.getLogPartitions();
+        this.jdbcTemplateProvider = jdbcTemplateProvider;
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${multiagent.log-partitions.maintenance-interval:21600000}")
+    public void runMaintenance() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        JdbcTemplate jdbcTemplate = jdbcTemplateProvider.getIfAvailable();
+        if (jdbcTemplate == null) {
+            return;
+        }
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        for (String table : PARTITIONED_TABLES) {
+            try {
+                if (!isPartitioned(jdbcTemplate, table)) {
+                    continue;
+                }
+                createPartitions(jdbcTemplate, table, YearMonth.from(now));
+                if (config.getRetentionMonths() > 0) {
+                    expirePartitions(jdbcTemplate, table, retentionCutoff(now, config.getRetentionMonths()));
+                }
+            } catch (Exception ex) {
+                log.warn("Log partition maintenance failed for table={}: {}", table, ex.getMessage(), ex);
+            }
+        }
+    }
+
+    private boolean isPartitioned(JdbcTemplate jdbcTemplate, String table) {
+        Integer count = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM pg_partitioned_table pt
+                JOIN pg_class c ON c.oid = pt.partrelid
+                WHERE c.relname = ? AND c.relnamespace = current_schema()::regnamespace
+                """, Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    private void createPartitions(JdbcTemplate jdbcTemplate, String table, YearMonth current) {
+        for (int i = 0; i <= config.getPremakeMonths(); i++) {
+            YearMonth month = current.plusMonths(i);
+            try {
+                jdbcTemplate.execute(createPartitionSql(table, month));
+            } catch (Exception ex) {
+                // Usually an overlapping partition created by hand; the range is still covered.
+                log.warn("Could not create partition {} : {}", partitionName(table, month), ex.getMessage());
+            }
+        }
+    }
+
+    private void expirePartitions(JdbcTemplate jdbcTemplate, String table, OffsetDateTime cutoff) {
+        List<Partition> partitions = jdbcTemplate.query(LIST_PARTITIONS,
+                (rs, rowNum) -> new Partition(rs.getString("name"), rs.getObject("upper_bound", OffsetDateTime.class)),
+                table);
+        for (Partition partition : partitions) {
+            if (!isExpired(partition.upperBound(), cutoff)) {
+                continue;
+            }
+            if (config.getRetentionAction() == LogPartitionConfig.RetentionAction.DETACH) {
+                jdbcTemplate.execute("ALTER TABLE " + quote(table) + " DETACH PARTITION " + quote(partition.name()));
+            } else {
+                jdbcTemplate.execute("DROP TABLE " + quote(partition.name()));
+            }
+            log.info("Expired log partition {} of {} (upper bound {}, action={}).", partition.name(), table,
+                    partition.upperBound(), config.getRetentionAction());
+        }
+    }
+
+    static String partitionName(String table, YearMonth month) {
+        return table + "_p" + month.format(SUFFIX);
+    }
+
+    static String createPartitionSql(String table, YearMonth month) {
+        return "CREATE TABLE IF NOT EXISTS " + quote(partitionName(table, month))
+                + " PARTITION OF " + quote(table)
+                + " FOR VALUES FROM ('" + monthStart(month) + "') TO ('" + monthStart(month.plusMonths(1)) + "')";
+    }
+
+    /**
+     * Rows created before the returned instant are past retention; a partition expires once
+     * its (exclusive) upper bound is at or before it.
+     */
+    static OffsetDateTime retentionCutoff(OffsetDateTime now, int retentionMonths) {
+        return now.withOffsetSameInstant(ZoneOffset.UTC).minusMonths(retentionMonths);
+    }
+
+    static boolean isExpired(@Nullable OffsetDateTime upperBound, OffsetDateTime cutoff) {
+        // MAXVALUE (or an unparsable bound) never expires.
+        return upperBound != null && !upperBound.isAfter(cutoff);
+    }
+
+    private static OffsetDateTime monthStart(YearMonth month) {
+        return month.atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    private record Partition(String name, @Nullable OffsetDateTime upperBound) {
+    }
+}
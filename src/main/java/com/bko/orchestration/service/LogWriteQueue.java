@@ -0,0 +1,621 @@
+package com.bko.orchestration.service;
+
+import com.bko.config.MultiAgentProperties;
+import com.bko.config.MultiAgentProperties.LogWriterConfig;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Write-behind pipeline for prompt, tool-call and worker-result logs. Callers enqueue rows
+ * and return immediately; a single writer thread drains the queue and inserts rows with
+ * JDBC batches, closing a batch when it reaches {@code batch-size} rows or when
+ * {@code flush-interval} has passed since its first row.
+ * <p>
+ * Rows are written in the order they were enqueued (one writer, FIFO queue, and once rows
+ * spill to disk every later row follows them there until the spill is replayed), so
+ * per-session ordering is preserved. Ids and {@code created_at} are assigned at enqueue time.
+ * <p>
+ * When the database is unreachable, the failed batch and everything queued behind it are
+ * spilled and replayed later. A batch the database rejects is split and retried so that only
+ * the offending rows are dropped. Inserts ignore rows that already exist, so a partly written
+ * batch can be retried safely.
+ */
+@Service
+@Slf4j
+public class LogWriteQueue {
+
+    private static final long REPLAY_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(5);
+    /** How long a blocked {@code enqueue} waits for queue space before checking again. */
+    private static final long BLOCK_WAIT_MILLIS = 5;
+
+    private static final List<Column> PROMPT_COLUMNS = List.of(
+            new Column("id", LogRow::id, Types.OTHER),
+            new Column("session_id", LogRow::sessionId, Types.OTHER),
+            new Column("purpose", LogRow::purpose, Types.VARCHAR),
+            new Column("role", LogRow::role, Types.VARCHAR),
+            new Column("system_prompt", LogRow::systemPrompt, Types.VARCHAR),
+            new Column("user_prompt", LogRow::userPrompt, Types.VARCHAR),
+            new Column("full_response", LogRow::fullResponse, Types.VARCHAR),
+            new Column("created_at", LogRow::createdAt, Types.TIMESTAMP_WITH_TIMEZONE));
+    private static final List<Column> PROMPT_TOKEN_COLUMNS = List.of(
+            new Column("input_token_count", LogRow::inputTokens, Types.INTEGER),
+            new Column("output_token_count", LogRow::outputTokens, Types.INTEGER));
+    private static final List<Column> PROMPT_HASH_COLUMNS = List.of(
+            new Column("system_prompt_hash", row -> row.hashes()[0], Types.VARCHAR),
+            new Column("user_prompt_hash", row -> row.hashes()[1], Types.VARCHAR),
+            new Column("full_response_hash", row -> row.hashes()[2], Types.VARCHAR));
+    private static final List<Column> TOOL_CALL_COLUMNS = List.of(
+            new Column("id", LogRow::id, Types.OTHER),
+            new Column("session_id", LogRow::sessionId, Types.OTHER),
+            new Column("task_log_id", LogRow::taskLogId, Types.OTHER),
+            new Column("role", LogRow::role, Types.VARCHAR),
+            new Column("tool_name", LogRow::toolName, Types.VARCHAR),
+            new Column("tool_input", LogRow::toolInput, Types.VARCHAR),
+            new Column("tool_output", LogRow::toolOutput, Types.VARCHAR),
+            new Column("created_at", LogRow::createdAt, Types.TIMESTAMP_WITH_TIMEZONE));
+    private static final List<Column> TOOL_CALL_HASH_COLUMNS = List.of(
+            new Column("tool_input_hash", row -> row.hashes()[0], Types.VARCHAR),
+            new Column("tool_output_hash", row -> row.hashes()[1], Types.VARCHAR));
+    private static final List<Column> WORKER_RESULT_COLUMNS = List.of(
+            new Column("id", LogRow::id, Types.OTHER),
+            new Column("session_id", LogRow::sessionId, Types.OTHER),
+            new Column("task_log_id", LogRow::taskLogId, Types.OTHER),
+            new Column("role", LogRow::role, Types.VARCHAR),
+            new Column("output", LogRow::output, Types.VARCHAR),
+            new Column("created_at", LogRow::createdAt, Types.TIMESTAMP_WITH_TIMEZONE));
+    private static final List<Column> WORKER_RESULT_HASH_COLUMNS = List.of(
+            new Column("output_hash", row -> row.hashes()[0], Types.VARCHAR));
+
+    private final LogWriterConfig config;
+    private final ObjectProvider<JdbcTemplate> jdbcTemplateProvider;
+    private final ObjectMapper objectMapper;
+    private final OrchestrationMetricsService metricsService;
+    private final TextBlobService textBlobService;
+    private final RunStatsService runStatsService;
+    private final BlockingQueue<Object> queue;
+    private final Object spillLock = new Object();
+
+    private volatile boolean running;
+    /** Guarded by {@code spillLock}; volatile only so the writer can skip the lock when idle. */
+    private volatile boolean spilling;
+    /** Writer thread only: no replay is attempted before this after the database was unreachable. */
+    private long replayNotBefore = System.nanoTime();
+    private Thread writer;
+
+    public LogWriteQueue(MultiAgentProperties properties,
+                         ObjectProvider<JdbcTemplate> jdbcTemplateProvider,
+                         ObjectMapper objectMapper,
+                         OrchestrationMetricsService metricsService,
+                         TextBlobService textBlobService,
+                         RunStatsService runStatsService) {
+        this.config = properties.getLogWriter();
+        this.jdbcTemplateProvider = jdbcTemplateProvider;
+        this.objectMapper = objectMapper;
+        this.metricsService = metricsService;
+        this.textBlobService = textBlobService;
+        this.runStatsService = runStatsService;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getCapacity()));
+    }
+
+    @PostConstruct
+    void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        running = true;
+        spilling = Files.exists(spillFile());
+        writer = Thread.ofPlatform().name("log-writer").daemon().start(this::drainLoop);
+    }
+
+    /**
+     * Drains everything still queued before the application context closes.
+     */
+    @PreDestroy
+    void stop() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(config.getFlushTimeout().toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.warn("Log writer stopped with {} rows still queued.", queue.size());
+        }
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled() && jdbcTemplateProvider.getIfAvailable() != null;
+    }
+
+    /**
+     * The spilling check and the hand-off (queue or spill file) happen under {@code spillLock},
+     * so a row can never slip into the queue after the writer has started spilling.
+     */
+    public void enqueue(LogRow row) {
+        synchronized (spillLock) {
+            while (!spilling) {
+                if (queue.offer(row)) {
+                    return;
+                }
+                if (config.getOverflowPolicy() != LogWriterConfig.OverflowPolicy.BLOCK) {
+                    break;
+                }
+                try {
+                    // Releases the lock while waiting, so the writer can keep draining and spilling.
+                    spillLock.wait(BLOCK_WAIT_MILLIS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    log.warn("Interrupted while waiting for log queue space; spilling row. sessionId={}", row.sessionId());
+                    break;
+                }
+            }
+            appendToSpill(List.of(row));
+        }
+    }
+
+    /**
+     * Blocks until every row enqueued before this call has been written (or the flush
+     * timeout elapses). Called when a run completes so its logs are readable right away.
+     */
+    public void flush() {
+        if (writer == null || !writer.isAlive() || Thread.currentThread() == writer) {
+            return;
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            if (!queue.offer(latch, config.getFlushTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                    || !latch.await(config.getFlushTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Timed out flushing log queue; {} rows still queued.", queue.size());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop() {
+        long intervalNanos = config.getFlushInterval().toNanos();
+        int batchSize = Math.max(1, config.getBatchSize());
+        List<LogRow> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Object first = running ? queue.poll(intervalNanos, TimeUnit.NANOSECONDS) : queue.poll();
+                if (first == null) {
+                    replaySpill(false);
+                    continue;
+                }
+                long deadline = System.nanoTime() + intervalNanos;
+                Object item = first;
+                while (item != null) {
+                    if (item instanceof CountDownLatch latch) {
+                        write(batch);
+                        replaySpill(true);
+                        latch.countDown();
+                    } else {
+                        batch.add((LogRow) item);
+                        if (batch.size() >= batchSize) {
+                            break;
+                        }
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    item = remaining > 0 && running ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                }
+                write(batch);
+            } catch (InterruptedException ex) {
+                // stop() interrupts to cut the poll short; the loop condition drains what is left
+            } catch (RuntimeException ex) {
+                log.warn("Log writer loop failed; continuing.", ex);
+            }
+        }
+        write(batch);
+        replaySpill(true);
+    }
+
+    /**
+     * Writes and clears the batch. If the database cannot be reached the batch is spilled,
+     * ahead of everything still queued, instead of being dropped.
+     */
+    private void write(List<LogRow> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        OffsetDateTime oldest = batch.getFirst().createdAt();
+        try {
+            int handled = store(batch);
+            if (handled < batch.size()) {
+                spillAhead(batch.subList(handled, batch.size()), null);
+            }
+        } finally {
+            long lagMillis = java.time.Duration.between(oldest, OffsetDateTime.now()).toMillis();
+            metricsService.recordLogBatch(batch.size(), lagMillis, queue.size());
+            batch.clear();
+        }
+    }
+
+    /**
+     * Inserts the rows. A batch the database rejects is split in halves and retried, so only
+     * rows that fail on their own are dropped.
+     *
+     * @return how many leading rows were handled (stored or dropped); fewer than all of them
+     * when the database became unreachable, in which case the rest are still to be written
+     */
+    private int store(List<LogRow> rows) {
+        try {
+            insertAll(rows);
+            return rows.size();
+        } catch (TransientDataAccessException | RecoverableDataAccessException
+                 | DataAccessResourceFailureException ex) {
+            log.warn("Database unavailable while writing {} log rows; spilling them. Cause: {}",
+                    rows.size(), ex.getMessage());
+            replayNotBefore = System.nanoTime() + REPLAY_BACKOFF_NANOS;
+            return 0;
+        } catch (RuntimeException ex) {
+            if (rows.size() == 1) {
+                LogRow row = rows.getFirst();
+                log.warn("Log row rejected by the database and dropped. kind={} id={} sessionId={} Cause: {}",
+                        row.kind(), row.id(), row.sessionId(), ex.getMessage());
+                return 1;
+            }
+            int middle = rows.size() / 2;
+            int handled = store(rows.subList(0, middle));
+            return handled < middle ? handled : middle + store(rows.subList(middle, rows.size()));
+        }
+    }
+
+    private void insertAll(List<LogRow> batch) {
+        JdbcTemplate jdbcTemplate = jdbcTemplateProvider.getIfAvailable();
+        boolean useBlobs = textBlobService.isAvailable();
+        List<TextBlobCodec.Encoded> blobs = new ArrayList<>();
+        List<LogRow> prompts = new ArrayList<>();
+        List<LogRow> toolCalls = new ArrayList<>();
+        List<LogRow> workerResults = new ArrayList<>();
+        List<RunStatsService.Event> runStats = new ArrayList<>();
+        for (LogRow row : batch) {
+            if (row.kind() == Kind.RUN_STATS) {
+                runStats.add(new RunStatsService.Event(row.sessionId(), valueOrZero(row.inputTokens()),
+                        valueOrZero(row.outputTokens()), row.createdAt()));
+                continue;
+            }
+            LogRow stored = useBlobs ? externalize(row, blobs) : row;
+            switch (row.kind()) {
+                case PROMPT -> prompts.add(stored);
+                case TOOL_CALL -> toolCalls.add(stored);
+                case WORKER_RESULT -> workerResults.add(stored);
+                case RUN_STATS -> throw new IllegalStateException("run stats rows are not stored");
+            }
+        }
+        if (!blobs.isEmpty()) {
+            textBlobService.saveAll(blobs);
+        }
+        List<Column> promptColumns = new ArrayList<>(PROMPT_COLUMNS);
+        if (useBlobs || prompts.stream().anyMatch(row -> row.inputTokens() != null || row.outputTokens() != null)) {
+            promptColumns.addAll(PROMPT_TOKEN_COLUMNS);
+        }
+        if (useBlobs) {
+            promptColumns.addAll(PROMPT_HASH_COLUMNS);
+        }
+        insert(jdbcTemplate, "prompt_log", promptColumns, prompts);
+        insert(jdbcTemplate, "tool_call_log", useBlobs ? concat(TOOL_CALL_COLUMNS, TOOL_CALL_HASH_COLUMNS)
+                : TOOL_CALL_COLUMNS, toolCalls);
+        insert(jdbcTemplate, "worker_result_log", useBlobs ? concat(WORKER_RESULT_COLUMNS, WORKER_RESULT_HASH_COLUMNS)
+                : WORKER_RESULT_COLUMNS, workerResults);
+        runStatsService.record(runStats);
+    }
+
+    private static void insert(JdbcTemplate jdbcTemplate, String table, List<Column> columns, List<LogRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO " + table + " ("
+                + String.join(", ", columns.stream().map(Column::name).toList())
+                + ") VALUES (" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ") ON CONFLICT DO NOTHING";
+        jdbcTemplate.batchUpdate(sql, rows, rows.size(), (ps, row) -> {
+            for (int i = 0; i < columns.size(); i++) {
+                Column column = columns.get(i);
+                Object value = column.value().apply(row);
+                if (value == null) {
+                    ps.setNull(i + 1, column.sqlType());
+                } else {
+                    ps.setObject(i + 1, value);
+                }
+            }
+        });
+    }
+
+    /**
+     * Moves long text out of the row into blobs, leaving the hash behind.
+     */
+    private LogRow externalize(LogRow row, List<TextBlobCodec.Encoded> blobs) {
+        return switch (row.kind()) {
+            case PROMPT -> {
+                TextBlobCodec.Encoded system = collect(textBlobService.encode(row.systemPrompt()), blobs);
+                TextBlobCodec.Encoded user = collect(textBlobService.encode(row.userPrompt()), blobs);
+                TextBlobCodec.Encoded response = collect(textBlobService.encode(row.fullResponse()), blobs);
+                yield new LogRow(row.kind(), row.id(), row.sessionId(), row.taskLogId(), row.role(), row.purpose(),
+                        system == null ? row.systemPrompt() : null,
+                        user == null ? row.userPrompt() : null,
+                        response == null ? row.fullResponse() : null,
+                        row.inputTokens(), row.outputTokens(), row.toolName(), row.toolInput(), row.toolOutput(),
+                        row.output(), row.createdAt(), hashes(system, user, response));
+            }
+            case TOOL_CALL -> {
+                TextBlobCodec.Encoded input = collect(textBlobService.encode(row.toolInput()), blobs);
+                TextBlobCodec.Encoded output = collect(textBlobService.encode(row.toolOutput()), blobs);
+                yield new LogRow(row.kind(), row.id(), row.sessionId(), row.taskLogId(), row.role(), row.purpose(),
+                        null, null, null, null, null, row.toolName(),
+                        input == null ? row.toolInput() : null,
+                        output == null ? row.toolOutput() : null,
+                        null, row.createdAt(), hashes(input, output));
+            }
+            case WORKER_RESULT -> {
+                TextBlobCodec.Encoded output = collect(textBlobService.encode(row.output()), blobs);
+                yield new LogRow(row.kind(), row.id(), row.sessionId(), row.taskLogId(), row.role(), null,
+                        null, null, null, null, null, null, null, null,
+                        output == null ? row.output() : null, row.createdAt(), hashes(output));
+            }
+            case RUN_STATS -> row;
+        };
+    }
+
+    @Nullable
+    private static TextBlobCodec.Encoded collect(@Nullable TextBlobCodec.Encoded blob, List<TextBlobCodec.Encoded> blobs) {
+        if (blob != null) {
+            blobs.add(blob);
+        }
+        return blob;
+    }
+
+    private static String[] hashes(TextBlobCodec.Encoded... blobs) {
+        String[] hashes = new String[blobs.length];
+        for (int i = 0; i < blobs.length; i++) {
+            hashes[i] = blobs[i] != null ? blobs[i].hash() : null;
+        }
+        return hashes;
+    }
+
+    private static int valueOrZero(@Nullable Integer value) {
+        return value != null ? value : 0;
+    }
+
+    private static List<Column> concat(List<Column> first, List<Column> second) {
+        List<Column> columns = new ArrayList<>(first);
+        columns.addAll(second);
+        return columns;
+    }
+
+    /**
+     * Appends rows to the spill file; every later row follows them there until it is replayed.
+     */
+    private void appendToSpill(List<LogRow> rows) {
+        synchronized (spillLock) {
+            spilling = true;
+            Path file = spillFile();
+            try {
+                Files.createDirectories(file.getParent());
+                try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (LogRow row : rows) {
+                        out.write(objectMapper.writeValueAsString(row));
+                        out.newLine();
+                    }
+                }
+                metricsService.recordLogSpill(rows.size());
+            } catch (IOException ex) {
+                log.warn("Failed to spill {} log rows to {}. Rows dropped. first sessionId={}",
+                        rows.size(), file, rows.getFirst().sessionId(), ex);
+            }
+        }
+    }
+
+    /**
+     * Spills rows that the writer could not store so they stay ahead of everything enqueued
+     * after them: the rows, then the rest of an interrupted replay, then the queue, then
+     * whatever was already spilled. Flush waiters in the queue are released, since their rows
+     * are now on disk.
+     */
+    private void spillAhead(List<LogRow> rows, @Nullable BufferedReader replayRemainder) {
+        synchronized (spillLock) {
+            Path file = spillFile();
+            Path rebuilt = file.resolveSibling("log-spill.rebuild.ndjson");
+            List<Object> queued = new ArrayList<>();
+            queue.drainTo(queued);
+            int spilled = rows.size();
+            try {
+                Files.createDirectories(file.getParent());
+                try (BufferedWriter out = Files.newBufferedWriter(rebuilt, StandardCharsets.UTF_8)) {
+                    for (LogRow row : rows) {
+                        out.write(objectMapper.writeValueAsString(row));
+                        out.newLine();
+                    }
+                    if (replayRemainder != null) {
+                        String line;
+                        while ((line = replayRemainder.readLine()) != null) {
+                            out.write(line);
+                            out.newLine();
+                        }
+                    }
+                    for (Object item : queued) {
+                        if (item instanceof LogRow row) {
+                            out.write(objectMapper.writeValueAsString(row));
+                            out.newLine();
+                            spilled++;
+                        }
+                    }
+                    if (Files.exists(file)) {
+                        try (BufferedReader earlier = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                            earlier.transferTo(out);
+                        }
+                    }
+                }
+                Files.move(rebuilt, file, StandardCopyOption.REPLACE_EXISTING);
+                metricsService.recordLogSpill(spilled);
+            } catch (IOException ex) {
+                log.warn("Failed to spill {} log rows to {}. Rows dropped. first sessionId={}",
+                        spilled, file, rows.getFirst().sessionId(), ex);
+            } finally {
+                spilling = true;
+                queued.stream().filter(CountDownLatch.class::isInstance)
+                        .forEach(item -> ((CountDownLatch) item).countDown());
+            }
+        }
+    }
+
+    /**
+     * Writes spilled rows back once the queue has drained. New rows keep going to the
+     * spill file until it has been taken over here, which keeps the overall order intact.
+     * If the database is unreachable again, the unreplayed rows go back to the front of the
+     * spill file and the next attempt waits out a short backoff unless {@code force} is set.
+     */
+    private void replaySpill(boolean force) {
+        if (!spilling || !queue.isEmpty() || (!force && System.nanoTime() - replayNotBefore < 0)) {
+            return;
+        }
+        Path replay = spillFile().resolveSibling("log-spill.replay.ndjson");
+        synchronized (spillLock) {
+            try {
+                if (Files.exists(spillFile())) {
+                    Files.move(spillFile(), replay, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException ex) {
+                log.warn("Failed to take over log spill file {}.", spillFile(), ex);
+                return;
+            }
+            spilling = false;
+        }
+        if (!Files.exists(replay)) {
+            return;
+        }
+        int batchSize = Math.max(1, config.getBatchSize());
+        List<LogRow> batch = new ArrayList<>(batchSize);
+        try (BufferedReader in = Files.newBufferedReader(replay, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                batch.add(objectMapper.readValue(line, LogRow.class));
+                if (batch.size() >= batchSize && !replayBatch(batch, in)) {
+                    break;
+                }
+            }
+            replayBatch(batch, in);
+        } catch (IOException ex) {
+            log.warn("Failed to replay log spill file {}; leaving it in place.", replay, ex);
+            return;
+        }
+        try {
+            Files.deleteIfExists(replay);
+        } catch (IOException ex) {
+            log.warn("Failed to delete replayed log spill file {}.", replay, ex);
+        }
+    }
+
+    private boolean replayBatch(List<LogRow> batch, BufferedReader remainder) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        int handled = store(batch);
+        boolean stored = handled == batch.size();
+        if (!stored) {
+            spillAhead(batch.subList(handled, batch.size()), remainder);
+        }
+        batch.clear();
+        return stored;
+    }
+
+    private Path spillFile() {
+        return Path.of(config.getSpillDirectory(), "log-spill.ndjson");
+    }
+
+    private record Column(String name, Function<LogRow, Object> value, int sqlType) {
+    }
+
+    public enum Kind {
+        PROMPT, TOOL_CALL, WORKER_RESULT,
+        /** A {@code run_stats} delta for one prompt event; tokens may be estimates. */
+        RUN_STATS
+    }
+
+    /**
+     * One queued log row. A single flat shape for all three tables keeps the spill format simple.
+     */
+    public record LogRow(
+            Kind kind,
+            UUID id,
+            UUID sessionId,
+            @Nullable UUID taskLogId,
+            @Nullable String role,
+            @Nullable String purpose,
+            @Nullable String systemPrompt,
+            @Nullable String userPrompt,
+            @Nullable String fullResponse,
+            @Nullable Integer inputTokens,
+            @Nullable Integer outputTokens,
+            @Nullable String toolName,
+            @Nullable String toolInput,
+            @Nullable String toolOutput,
+            @Nullable String output,
+            OffsetDateTime createdAt,
+            @JsonIgnore @Nullable String[] hashes
+    ) {
+
+        public static LogRow prompt(UUID id, UUID sessionId, String purpose, @Nullable String role,
+                                    @Nullable String systemPrompt, @Nullable String userPrompt,
+                                    @Nullable String fullResponse, @Nullable Integer inputTokens,
+                                    @Nullable Integer outputTokens, OffsetDateTime createdAt) {
+            return new LogRow(Kind.PROMPT, id, sessionId, null, role, purpose, systemPrompt, userPrompt, fullResponse,
+                    inputTokens, outputTokens, null, null, null, null, createdAt, null);
+        }
+
+        public static LogRow runStats(UUID sessionId, int inputTokens, int outputTokens, OffsetDateTime createdAt) {
+            return new LogRow(Kind.RUN_STATS, UUID.randomUUID(), sessionId, null, null, null, null, null, null,
+                    inputTokens, outputTokens, null, null, null, null, createdAt, null);
+        }
+
+        public static LogRow toolCall(UUID id, UUID sessionId, @Nullable UUID taskLogId, @Nullable String role,
+                                      String toolName, @Nullable String toolInput, @Nullable String toolOutput,
+                                      OffsetDateTime createdAt) {
+            return new LogRow(Kind.TOOL_CALL, id, sessionId, taskLogId, role, null, null, null, null,
+                    null, null, toolName, toolInput, toolOutput, null, createdAt, null);
+        }
+
+        public static LogRow workerResult(UUID id, UUID sessionId, @Nullable UUID taskLogId, @Nullable String role,
+                                          @Nullable String output, OffsetDateTime createdAt) {
+            return new LogRow(Kind.WORKER_RESULT, id, sessionId, taskLogId, role, null, null, null, null,
+                    null, null, null, null, null, output, createdAt, null);
+        }
+    }
+}
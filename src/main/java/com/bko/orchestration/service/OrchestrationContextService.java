@@ -21,10 +21,25 @@ public class OrchestrationContextService {
     private final WorkerSkillLibraryService workerSkillLibraryService;
 
     public String buildRoleRegistry(List<String> roles) {
+        return buildRoleRegistry(roles, false);
+    }
+
+    /**
+     * Same as {@link #buildRoleRegistry(List)} but also states each role's skill budget,
+     * for planner prompts that select skills together with the tasks.
+     */
+    public String buildRoleRegistryWithBudgets(List<String> roles) {
+        return buildRoleRegistry(roles, true);
+    }
+
+    private String buildRoleRegistry(List<String> roles, boolean includeBudgets) {
         StringBuilder sb = new StringBuilder();
         for (String role : roles) {
             List<AgentSkill> skills = workerSkillLibraryService.skillsForWorkerRole(role);
             sb.append("- ").append(role).append("\n");
+            if (includeBudgets) {
+                sb.append("  skill budget: ").append(properties.getSkillPlanning().resolveBudget(role)).append("\n");
+            }
             if (skills == null || skills.isEmpty()) {
                 sb.append("  skills: none\n");
                 continue;
@@ -1,12 +1,15 @@
 package com.bko.orchestration.service;
 
+import com.bko.orchestration.model.FastPathDecision;
 import com.bko.orchestration.model.OrchestratorPlan;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.util.UUID;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
 
 @Service
 @Slf4j
@@ -16,6 +19,22 @@ public class OrchestrationMetricsService {
     private final AtomicLong planResponseCount = new AtomicLong();
     private final AtomicLong taskReceivedCount = new AtomicLong();
     private final AtomicLong taskExecutedCount = new AtomicLong();
+    private final AtomicLong fastPathTakenCount = new AtomicLong();
+    private final AtomicLong fastPathSkippedCount = new AtomicLong();
+    private final AtomicLong skillSelectionComparisons = new AtomicLong();
+    private final DoubleAdder skillSelectionAgreementSum = new DoubleAdder();
+    private final AtomicLong logRowsWritten = new AtomicLong();
+    private final AtomicLong logRowsSpilled = new AtomicLong();
+    private final AtomicLong logQueueDepth = new AtomicLong();
+    private final AtomicLong logLagMillis = new AtomicLong();
+    private final AtomicLong maxLogLagMillis = new AtomicLong();
+    private final AtomicLong streamQueuedFrames = new AtomicLong();
+    private final AtomicLong maxStreamQueueDepth = new AtomicLong();
+    private final AtomicLong streamFramesDropped = new AtomicLong();
+    private final AtomicLong streamFramesCoalesced = new AtomicLong();
+    private final AtomicLong streamSessionsClosed = new AtomicLong();
+    private final AtomicLong streamRunsLive = new AtomicLong();
+    private final AtomicLong streamRunsExpired = new AtomicLong();
 
     public void recordLlmRequest(String purpose, @Nullable String role) {
         long count = llmRequestCount.incrementAndGet();
@@ -38,6 +57,113 @@ public class OrchestrationMetricsService {
                 planCount, label, taskCount, planCount, totalTasks);
     }
 
+    public void recordFastPathDecision(@Nullable UUID sessionId, FastPathDecision decision) {
+        if (decision.fastPath()) {
+            long taken = fastPathTakenCount.incrementAndGet();
+            log.info("Fast path taken (sessionId={}, confidence={}, {}). Planning call skipped. Total fast paths={}.",
+                    sessionId, String.format("%.3f", decision.confidence()), decision.reason(), taken);
+        } else {
+            long skipped = fastPathSkippedCount.incrementAndGet();
+            log.info("Fast path not taken (sessionId={}, confidence={}, {}). Total planned requests={}.",
+                    sessionId, String.format("%.3f", decision.confidence()), decision.reason(), skipped);
+        }
+    }
+
+    /**
+     * Records how closely the local ranker matched the LLM skill selector for one task,
+     * as the Jaccard overlap of the two selections (1.0 = identical).
+     */
+    public void recordSkillSelectionAgreement(@Nullable UUID sessionId, @Nullable String taskId, double agreement) {
+        long comparisons = skillSelectionComparisons.incrementAndGet();
+        skillSelectionAgreementSum.add(agreement);
+        log.info("Skill selection agreement (sessionId={}, taskId={}) local vs llm={}. Mean over {} tasks={}.",
+                sessionId, taskId, String.format("%.3f", agreement), comparisons,
+                String.format("%.3f", skillSelectionAgreementSum.sum() / comparisons));
+    }
+
+    /**
+     * Records a batch written by the log writer. Lag is the age of the oldest row in the
+     * batch at write time; depth is what is still queued behind it.
+     */
+    public void recordLogBatch(int rows, long lagMillis, int queueDepth) {
+        logRowsWritten.addAndGet(rows);
+        logQueueDepth.set(queueDepth);
+        logLagMillis.set(lagMillis);
+        long max = maxLogLagMillis.accumulateAndGet(lagMillis, Math::max);
+        if (lagMillis >= 5000 && lagMillis == max) {
+            log.warn("Log writer is falling behind: lag={}ms, queueDepth={}.", lagMillis, queueDepth);
+        }
+    }
+
+    public void recordLogSpill(int rows) {
+        long total = logRowsSpilled.addAndGet(rows);
+        log.warn("Log queue full; spilled {} rows to disk. Total spilled={}.", rows, total);
+    }
+
+    public long getLogQueueDepth() {
+        return logQueueDepth.get();
+    }
+
+    public long getLogLagMillis() {
+        return logLagMillis.get();
+    }
+
+    /**
+     * Tracks frames waiting in WebSocket outbound queues across all sessions.
+     */
+    public void adjustStreamQueuedFrames(long delta) {
+        streamQueuedFrames.addAndGet(delta);
+    }
+
+    public void recordStreamQueueDepth(int depth) {
+        maxStreamQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    public void recordStreamFramesDropped(int frames, String policy) {
+        if (frames <= 0) {
+            return;
+        }
+        long total = streamFramesDropped.addAndGet(frames);
+        log.warn("Stream session fell behind; dropped {} queued frames ({}). Total dropped={}.", frames, policy, total);
+    }
+
+    public void recordStreamFramesCoalesced(int frames) {
+        streamFramesCoalesced.addAndGet(frames);
+    }
+
+    public void recordStreamSessionClosed(@Nullable String reason) {
+        streamSessionsClosed.incrementAndGet();
+        log.info("Closed slow stream session: {}.", reason);
+    }
+
+    public void recordStreamRunsLive(int runs) {
+        streamRunsLive.set(runs);
+    }
+
+    public void recordStreamRunExpired() {
+        streamRunsExpired.incrementAndGet();
+    }
+
+    public long getStreamRunsLive() {
+        return streamRunsLive.get();
+    }
+
+    public long getStreamRunsExpired() {
+        return streamRunsExpired.get();
+    }
+
+    public long getStreamQueuedFrames() {
+        return streamQueuedFrames.get();
+    }
+
+    public long getStreamFramesDropped() {
+        return streamFramesDropped.get();
+    }
+
+    public long getStreamFramesCoalesced() {
+        return streamFramesCoalesced.get();
+    }
+
     public void recordTasksExecuted(int executedCount) {
         if (executedCount <= 0) {
             return;
@@ -55,7 +181,22 @@ public class OrchestrationMetricsService {
     }
 
     public void logSummary() {
-        log.info("LLM stats: totalRequests={}, totalPlans={}, totalTasksReceived={}, totalTasksExecuted={}.",
-                llmRequestCount.get(), planResponseCount.get(), taskReceivedCount.get(), taskExecutedCount.get());
+        log.info("LLM stats: totalRequests={}, totalPlans={}, totalTasksReceived={}, totalTasksExecuted={}, "
+                        + "fastPathTaken={}, fastPathSkipped={}, skillSelectionAgreement={}, "
+                        + "logRowsWritten={}, logRowsSpilled={}, logQueueDepth={}, logLagMs={}, maxLogLagMs={}, "
+                        + "streamQueuedFrames={}, maxStreamQueueDepth={}, streamFramesDropped={}, "
+                        + "streamFramesCoalesced={}, streamSessionsClosed={}, streamRunsLive={}, "
+                        + "streamRunsExpired={}.",
+                llmRequestCount.get(), planResponseCount.get(), taskReceivedCount.get(), taskExecutedCount.get(),
+                fastPathTakenCount.get(), fastPathSkippedCount.get(), meanSkillSelectionAgreement(),
+                logRowsWritten.get(), logRowsSpilled.get(), logQueueDepth.get(), logLagMillis.get(),
+                maxLogLagMillis.get(), streamQueuedFrames.get(), maxStreamQueueDepth.get(),
+                streamFramesDropped.get(), streamFramesCoalesced.get(), streamSessionsClosed.get(),
+                streamRunsLive.get(), streamRunsExpired.get());
+    }
+
+    private String meanSkillSelectionAgreement() {
+        long comparisons = skillSelectionComparisons.get();
+        return comparisons == 0 ? "n/a" : String.format("%.3f", skillSelectionAgreementSum.sum() / comparisons);
     }
 }
@@ -6,14 +6,13 @@ import com.bko.orchestration.model.TaskSpec;
 import com.bko.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.lang.Nullable;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.time.OffsetDateTime;
 import java.util.*;
 
 @Service
@@ -27,8 +26,11 @@ public class OrchestrationPersistenceService {
     private final TaskLogRepository taskLogRepository;
     private final WorkerResultLogRepository workerResultLogRepository;
     private final ToolCallLogRepository toolCallLogRepository;
-    private final ObjectProvider<JdbcTemplate> jdbcTemplateProvider;
-    private volatile Boolean promptLogTokenColumnsAvailable;
+    private final SchemaProbe schemaProbe;
+    private final LogWriteQueue logWriteQueue;
+    private final TextBlobService textBlobService;
+    private final RunStatsService runStatsService;
+    private final TokenCountService tokenCountService;
 
     /**
      * Creates and persists an orchestration session in its own transaction so the row
@@ -75,7 +77,29 @@ public class OrchestrationPersistenceService {
                 .inputTokenCount(safeInputTokens)
                 .outputTokenCount(safeOutputTokens)
                 .build();
+        if (textBlobService.isAvailable()) {
+            TextBlobCodec.Encoded system = textBlobService.encode(systemPrompt);
+            TextBlobCodec.Encoded user = textBlobService.encode(userPrompt);
+            TextBlobCodec.Encoded response = textBlobService.encode(fullResponse);
+            textBlobService.saveAll(blobs(system, user, response));
+            if (system != null) {
+                log.setSystemPrompt(null);
+                log.setSystemPromptHash(system.hash());
+            }
+            if (user != null) {
+                log.setUserPrompt(null);
+                log.setUserPromptHash(user.hash());
+            }
+            if (response != null) {
+                log.setFullResponse(null);
+                log.setFullResponseHash(response.hash());
+            }
+        }
         promptLogRepository.saveAndFlush(log);
+        if (runStatsService.isAvailable()) {
+            runStatsService.record(List.of(runStatsEvent(session, systemPrompt, userPrompt, fullResponse,
+                    inputTokens, outputTokens, log.getCreatedAt())));
+        }
     }
 
     /**
@@ -92,6 +116,22 @@ public class OrchestrationPersistenceService {
         return planLogRepository.saveAndFlush(pl);
     }
 
+    /**
+     * Replace the objective of an already persisted plan log, e.g. once a streamed plan has
+     * produced its real objective after the log was created as a placeholder.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void updatePlanObjective(OrchestratorPlanLog planLog, @Nullable String objective) {
+        if (!StringUtils.hasText(objective) || objective.equals(planLog.getObjective())) {
+            return;
+        }
+        planLogRepository.findById(planLog.getId()).ifPresent(stored -> {
+            stored.setObjective(objective);
+            planLogRepository.save(stored);
+        });
+        planLog.setObjective(objective);
+    }
+
     /**
      * Persist task logs in a new transaction to ensure they are committed before
      * worker threads log tool calls or results that reference them.
@@ -121,6 +161,76 @@ public class OrchestrationPersistenceService {
         return index;
     }
 
+    /**
+     * Hands a prompt log to the write-behind queue instead of inserting it on the caller's thread.
+     */
+    public void queuePrompt(OrchestrationSession session, String purpose, @Nullable String role,
+                            @Nullable String systemPrompt, @Nullable String userTemplate,
+                            Map<String, String> params, @Nullable String fullResponse,
+                            @Nullable Integer inputTokens, @Nullable Integer outputTokens) {
+        String userPrompt = userTemplate == null ? null : fillTemplate(userTemplate, params);
+        Integer safeInputTokens = supportsPromptLogTokenColumns() ? inputTokens : null;
+        Integer safeOutputTokens = supportsPromptLogTokenColumns() ? outputTokens : null;
+        OffsetDateTime createdAt = OffsetDateTime.now();
+        logWriteQueue.enqueue(LogWriteQueue.LogRow.prompt(UUID.randomUUID(), session.getId(), purpose, role,
+                systemPrompt, userPrompt, fullResponse, safeInputTokens, safeOutputTokens, createdAt));
+        if (runStatsService.isAvailable()) {
+            RunStatsService.Event event = runStatsEvent(session, systemPrompt, userPrompt, fullResponse,
+                    inputTokens, outputTokens, createdAt);
+            logWriteQueue.enqueue(LogWriteQueue.LogRow.runStats(session.getId(), event.inputTokens(),
+                    event.outputTokens(), createdAt));
+        }
+    }
+
+    /**
+     * Token counts for the run_stats projection: provider usage when reported, otherwise
+     * estimated once here so run lists never re-tokenize stored text.
+     */
+    private RunStatsService.Event runStatsEvent(OrchestrationSession session, @Nullable String systemPrompt,
+                                                @Nullable String userPrompt, @Nullable String fullResponse,
+                                                @Nullable Integer inputTokens, @Nullable Integer outputTokens,
+                                                @Nullable OffsetDateTime createdAt) {
+        String model = session.getModel();
+        int input = inputTokens != null
+                ? inputTokens
+                : tokenCountService.count(model, systemPrompt) + tokenCountService.count(model, userPrompt);
+        int output = outputTokens != null ? outputTokens : tokenCountService.count(model, fullResponse);
+        return new RunStatsService.Event(session.getId(), input, output,
+                createdAt != null ? createdAt : OffsetDateTime.now());
+    }
+
+    public WorkerResultLog queueWorkerResult(OrchestrationSession session, @Nullable TaskLog taskLog,
+                                             @Nullable String role, String output) {
+        WorkerResultLog wr = WorkerResultLog.builder()
+                .id(UUID.randomUUID())
+                .session(session)
+                .taskLog(taskLog)
+                .role(role)
+                .output(output)
+                .createdAt(OffsetDateTime.now())
+                .build();
+        logWriteQueue.enqueue(LogWriteQueue.LogRow.workerResult(wr.getId(), session.getId(),
+                taskLog != null ? taskLog.getId() : null, role, output, wr.getCreatedAt()));
+        return wr;
+    }
+
+    public ToolCallLog queueToolCall(OrchestrationSession session, @Nullable TaskLog taskLog, @Nullable String role,
+                                     String toolName, @Nullable String toolInput, @Nullable String toolOutput) {
+        ToolCallLog tc = ToolCallLog.builder()
+                .id(UUID.randomUUID())
+                .session(session)
+                .taskLog(taskLog)
+                .role(role)
+                .toolName(toolName)
+                .toolInput(toolInput)
+                .toolOutput(toolOutput)
+                .createdAt(OffsetDateTime.now())
+                .build();
+        logWriteQueue.enqueue(LogWriteQueue.LogRow.toolCall(tc.getId(), session.getId(),
+                taskLog != null ? taskLog.getId() : null, role, toolName, toolInput, toolOutput, tc.getCreatedAt()));
+        return tc;
+    }
+
     public WorkerResultLog logWorkerResult(OrchestrationSession session, @Nullable TaskLog taskLog, @Nullable String role, String output) {
         WorkerResultLog wr = WorkerResultLog.builder()
                 .session(session)
@@ -128,6 +238,14 @@ public class OrchestrationPersistenceService {
                 .role(role)
                 .output(output)
                 .build();
+        if (textBlobService.isAvailable()) {
+            TextBlobCodec.Encoded blob = textBlobService.encode(output);
+            if (blob != null) {
+                textBlobService.saveAll(List.of(blob));
+                wr.setOutput(null);
+                wr.setOutputHash(blob.hash());
+            }
+        }
         return workerResultLogRepository.save(wr);
     }
 
@@ -141,6 +259,19 @@ public class OrchestrationPersistenceService {
                 .toolInput(toolInput)
                 .toolOutput(toolOutput)
                 .build();
+        if (textBlobService.isAvailable()) {
+            TextBlobCodec.Encoded input = textBlobService.encode(toolInput);
+            TextBlobCodec.Encoded output = textBlobService.encode(toolOutput);
+            textBlobService.saveAll(blobs(input, output));
+            if (input != null) {
+                log.setToolInput(null);
+                log.setToolInputHash(input.hash());
+            }
+            if (output != null) {
+                log.setToolOutput(null);
+                log.setToolOutputHash(output.hash());
+            }
+        }
         return toolCallLogRepository.save(log);
     }
 
@@ -156,6 +287,16 @@ public class OrchestrationPersistenceService {
         }
     }
 
+    private static List<TextBlobCodec.Encoded> blobs(TextBlobCodec.Encoded... encoded) {
+        List<TextBlobCodec.Encoded> blobs = new ArrayList<>(encoded.length);
+        for (TextBlobCodec.Encoded blob : encoded) {
+            if (blob != null) {
+                blobs.add(blob);
+            }
+        }
+        return blobs;
+    }
+
     private String fillTemplate(String template, Map<String, String> params) {
         String out = template;
         if (params != null) {
@@ -173,29 +314,6 @@ public class OrchestrationPersistenceService {
      * token fields instead of failing prompt_log inserts.
      */
     private boolean supportsPromptLogTokenColumns() {
-        Boolean cached = promptLogTokenColumnsAvailable;
-        if (cached != null) {
-            return cached;
-        }
-        JdbcTemplate jdbcTemplate = jdbcTemplateProvider.getIfAvailable();
-        if (jdbcTemplate == null) {
-            promptLogTokenColumnsAvailable = false;
-            return false;
-        }
-        try {
-            Integer count = jdbcTemplate.queryForObject("""
-                    SELECT COUNT(*) FROM information_schema.columns
-                    WHERE table_schema = current_schema()
-                      AND table_name = 'prompt_log'
-                      AND column_name IN ('input_token_count', 'output_token_count')
-                    """, Integer.class);
-            boolean available = count != null && count >= 2;
-            promptLogTokenColumnsAvailable = available;
-            return available;
-        } catch (Exception ex) {
-            log.warn("Failed to inspect prompt_log token columns; falling back to no-token prompt logging.", ex);
-            promptLogTokenColumnsAvailable = false;
-            return false;
-        }
+        return schemaProbe.hasColumns("prompt_log", "input_token_count", "output_token_count");
     }
 }
@@ -24,6 +24,12 @@ public class OrchestrationPromptService {
         return appendWorkspaceContext(basePrompt);
     }
 
+    public String orchestratorSkillPlanSystemPrompt(List<String> allowedRoles, String registry) {
+        String basePrompt = ORCHESTRATOR_SYSTEM_PROMPT.formatted(registry) + "\n" + ORCHESTRATOR_SKILL_SELECTION_PROMPT;
+        basePrompt = appendSkillsToPrompt(basePrompt, properties.getSkills().getOrchestrator());
+        return appendWorkspaceContext(basePrompt);
+    }
+
     public String executionReviewPrompt(List<String> allowedRoles) {
         String basePrompt = EXECUTION_REVIEW_SYSTEM_PROMPT.formatted(String.join(", ", allowedRoles));
         return appendWorkspaceContext(basePrompt);
@@ -0,0 +1,387 @@
+package com.bko.orchestration.service;
+
+import com.bko.config.MultiAgentProperties;
+import com.bko.config.MultiAgentProperties.RunArchiveConfig;
+import com.bko.orchestration.model.ArchivedSession;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves completed sessions out of Postgres into append-only segment files. Each session is
+ * one NDJSON line written as its own gzip member, so a segment is still a valid gzip stream
+ * ({@code zcat segment-000001.ndjson.gz}) and a single session can be read back by seeking
+ * to its offset. {@code index.ndjson} maps session ids to (segment, offset, length) and is
+ * loaded into memory at startup.
+ * <p>
+ * A session is deleted from Postgres only after its member and index line are on disk; a
+ * crash in between leaves unreferenced bytes in the segment and the session is archived
+ * again on the next pass.
+ */
+@Service
+@Slf4j
+public class RunArchiveService {
+
+    private static final String INDEX_FILE = "index.ndjson";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".ndjson.gz";
+
+    private final RunArchiveConfig config;
+    private final ObjectProvider<JdbcTemplate> jdbcTemplateProvider;
+    private final ObjectMapper objectMapper;
+    private final TextBlobService textBlobService;
+    private final Map<UUID, IndexEntry> index = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+
+    private int segmentNumber;
+
+    public RunArchiveService(MultiAgentProperties properties,
+                             ObjectProvider<JdbcTemplate> jdbcTemplateProvider,
+                             ObjectMapper objectMapper,
+                             TextBlobService textBlobService) {
+        this.config = properties.getArchive();
+        this.jdbcTemplateProvider = jdbcTemplateProvider;
+        this.objectMapper = objectMapper;
+        this.textBlobService = textBlobService;
+    }
+
+    @PostConstruct
+    void loadIndex() {
+        Path indexFile = directory().resolve(INDEX_FILE);
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                IndexEntry entry = objectMapper.readValue(line, IndexEntry.class);
+                index.put(entry.sessionId(), entry);
+                segmentNumber = Math.max(segmentNumber, segmentNumber(entry.segment()));
+            }
+            log.info("Loaded run archive index: {} sessions in {}.", index.size(), directory());
+        } catch (IOException ex) {
+            log.warn("Failed to load run archive index {}; archived sessions will not be readable.", indexFile, ex);
+        }
+    }
+
+    public boolean isArchived(UUID sessionId) {
+        return index.containsKey(sessionId);
+    }
+
+    /**
+     * Reads one archived session with a single positioned read of its gzip member.
+     */
+    public Optional<ArchivedSession> find(UUID sessionId) {
+        IndexEntry entry = sessionId != null ? index.get(sessionId) : null;
+        if (entry == null) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(directory().resolve(entry.segment()), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(entry.length());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, entry.offset() + buffer.position()) < 0) {
+                    throw new IOException("Segment truncated at offset " + (entry.offset() + buffer.position()));
+                }
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new ByteArrayInputStream(buffer.array())), StandardCharsets.UTF_8))) {
+                return Optional.of(objectMapper.readValue(reader.readLine(), ArchivedSession.class));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to read archived session " + sessionId + " from " + entry.segment(), ex);
+        }
+    }
+
+    /**
+     * Archives sessions in a terminal status only; drafts awaiting approval can still be executed.
+     */
+    @Scheduled(initialDelayString = "${multiagent.archive.interval:3600000}",
+            fixedDelayString = "${multiagent.archive.interval:3600000}")
+    public void archiveCompletedSessions() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        JdbcTemplate jdbcTemplate = jdbcTemplateProvider.getIfAvailable();
+        if (jdbcTemplate == null) {
+            return;
+        }
+        OffsetDateTime cutoff = OffsetDateTime.now().minus(config.getOlderThan());
+        int archived = 0;
+        try {
+            List<UUID> batch;
+            do {
+                batch = jdbcTemplate.queryForList("""
+                        SELECT id FROM orchestration_session
+                        WHERE status IN ('COMPLETED', 'FAILED', 'CANCELLED') AND updated_at < ?
+                        ORDER BY updated_at
+                        LIMIT ?
+                        """, UUID.class, cutoff, config.getBatchSize());
+                for (UUID sessionId : batch) {
+                    archive(jdbcTemplate, sessionId);
+                    archived++;
+                }
+            } while (batch.size() == config.getBatchSize());
+        } catch (Exception ex) {
+            log.warn("Run archive pass stopped after {} sessions: {}", archived, ex.getMessage(), ex);
+        }
+        if (archived > 0) {
+            log.info("Archived {} completed sessions older than {} to {}.", archived, cutoff, directory());
+        }
+    }
+
+    void archive(JdbcTemplate jdbcTemplate, UUID sessionId) throws IOException {
+        ArchivedSession session = load(jdbcTemplate, sessionId);
+        if (session == null) {
+            return;
+        }
+        append(session);
+        jdbcTemplate.update("DELETE FROM orchestration_session WHERE id = ?", sessionId);
+    }
+
+    /**
+     * Appends one session as a gzip member and records it in the index. Both files are
+     * forced to disk before returning so the caller can delete the source rows.
+     */
+    void append(ArchivedSession session) throws IOException {
+        ByteArrayOutputStream member = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(member)) {
+            gzip.write(objectMapper.writeValueAsBytes(session));
+            gzip.write('\n');
+        }
+        byte[] bytes = member.toByteArray();
+        synchronized (writeLock) {
+            Files.createDirectories(directory());
+            Path segment = currentSegment(bytes.length);
+            long offset;
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                offset = channel.size();
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, offset + buffer.position());
+                }
+                channel.force(true);
+            }
+            IndexEntry entry = new IndexEntry(session.id(), segment.getFileName().toString(), offset, bytes.length);
+            try (FileChannel indexChannel = FileChannel.open(directory().resolve(INDEX_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                indexChannel.write(ByteBuffer.wrap((objectMapper.writeValueAsString(entry) + "\n")
+                        .getBytes(StandardCharsets.UTF_8)));
+                indexChannel.force(true);
+            }
+            index.put(entry.sessionId(), entry);
+        }
+    }
+
+    private Path currentSegment(int incomingBytes) throws IOException {
+        if (segmentNumber == 0) {
+            segmentNumber = latestSegmentOnDisk();
+        }
+        Path segment = segmentPath(Math.max(1, segmentNumber));
+        if (segmentNumber == 0 || (Files.exists(segment)
+                && Files.size(segment) > 0
+                && Files.size(segment) + incomingBytes > config.getSegmentMaxBytes())) {
+            segmentNumber++;
+            segment = segmentPath(segmentNumber);
+        }
+        return segment;
+    }
+
+    private int latestSegmentOnDisk() throws IOException {
+        try (Stream<Path> files = Files.list(directory())) {
+            return files.map(path -> segmentNumber(path.getFileName().toString()))
+                    .max(Integer::compare)
+                    .orElse(0);
+        }
+    }
+
+    private Path segmentPath(int number) {
+        return directory().resolve(SEGMENT_PREFIX + String.format("%06d", number) + SEGMENT_SUFFIX);
+    }
+
+    private static int segmentNumber(String fileName) {
+        if (!fileName.startsWith(SEGMENT_PREFIX) || !fileName.endsWith(SEGMENT_SUFFIX)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    private Path directory() {
+        return Path.of(config.getDirectory());
+    }
+
+    @Nullable
+    private ArchivedSession load(JdbcTemplate jdbcTemplate, UUID sessionId) {
+        List<ArchivedSession> sessions = jdbcTemplate.query(
+                "SELECT * FROM orchestration_session WHERE id = ?",
+                (rs, rowNum) -> new ArchivedSession(
+                        sessionId,
+                        rs.getString("user_prompt"),
+                        rs.getString("provider"),
+                        rs.getString("model"),
+                        rs.getString("final_answer"),
+                        rs.getString("status"),
+                        rs.getObject("created_at", OffsetDateTime.class),
+                        rs.getObject("updated_at", OffsetDateTime.class),
+                        List.of(), List.of(), List.of(), List.of()),
+                sessionId);
+        if (sessions.isEmpty()) {
+            return null;
+        }
+        ArchivedSession session = sessions.getFirst();
+
+        Map<UUID, List<ArchivedSession.Task>> tasksByPlan = new LinkedHashMap<>();
+        jdbcTemplate.query("""
+                SELECT t.* FROM task_log t JOIN orchestrator_plan_log p ON p.id = t.plan_id
+                WHERE p.session_id = ? ORDER BY t.created_at
+                """, rs -> {
+            tasksByPlan.computeIfAbsent(rs.getObject("plan_id", UUID.class), id -> new ArrayList<>())
+                    .add(new ArchivedSession.Task(
+                            rs.getObject("id", UUID.class),
+                            rs.getString("task_id_alias"),
+                            rs.getString("role"),
+                            rs.getString("description"),
+                            rs.getString("expected_output"),
+                            rs.getObject("created_at", OffsetDateTime.class)));
+        }, sessionId);
+        List<ArchivedSession.Plan> plans = jdbcTemplate.query(
+                "SELECT * FROM orchestrator_plan_log WHERE session_id = ? ORDER BY created_at",
+                (rs, rowNum) -> {
+                    UUID planId = rs.getObject("id", UUID.class);
+                    return new ArchivedSession.Plan(planId, rs.getString("objective"), rs.getBoolean("is_initial"),
+                            rs.getObject("created_at", OffsetDateTime.class),
+                            tasksByPlan.getOrDefault(planId, List.of()));
+                }, sessionId);
+
+        // Rows are mapped to functions of the blob texts so all hashes resolve in one lookup.
+        Set<String> hashes = new HashSet<>();
+        List<Function<Map<String, String>, ArchivedSession.Prompt>> promptRows = jdbcTemplate.query(
+                "SELECT * FROM prompt_log WHERE session_id = ? ORDER BY created_at", (rs, rowNum) -> {
+                    UUID id = rs.getObject("id", UUID.class);
+                    String purpose = rs.getString("purpose");
+                    String role = rs.getString("role");
+                    Text system = text(rs, "system_prompt", hashes);
+                    Text user = text(rs, "user_prompt", hashes);
+                    Text response = text(rs, "full_response", hashes);
+                    Integer inputTokens = optionalInteger(rs, "input_token_count");
+                    Integer outputTokens = optionalInteger(rs, "output_token_count");
+                    OffsetDateTime createdAt = rs.getObject("created_at", OffsetDateTime.class);
+                    return texts -> new ArchivedSession.Prompt(id, purpose, role, system.resolve(texts),
+                            user.resolve(texts), response.resolve(texts), inputTokens, outputTokens, createdAt);
+                }, sessionId);
+        List<Function<Map<String, String>, ArchivedSession.ToolCall>> toolRows = jdbcTemplate.query(
+                "SELECT * FROM tool_call_log WHERE session_id = ? ORDER BY created_at", (rs, rowNum) -> {
+                    UUID id = rs.getObject("id", UUID.class);
+                    UUID taskLogId = rs.getObject("task_log_id", UUID.class);
+                    String role = rs.getString("role");
+                    String toolName = rs.getString("tool_name");
+                    Text input = text(rs, "tool_input", hashes);
+                    Text output = text(rs, "tool_output", hashes);
+                    OffsetDateTime createdAt = rs.getObject("created_at", OffsetDateTime.class);
+                    return texts -> new ArchivedSession.ToolCall(id, taskLogId, role, toolName,
+                            input.resolve(texts), output.resolve(texts), createdAt);
+                }, sessionId);
+        List<Function<Map<String, String>, ArchivedSession.WorkerResultEntry>> resultRows = jdbcTemplate.query(
+                "SELECT * FROM worker_result_log WHERE session_id = ? ORDER BY created_at", (rs, rowNum) -> {
+                    UUID id = rs.getObject("id", UUID.class);
+                    UUID taskLogId = rs.getObject("task_log_id", UUID.class);
+                    String role = rs.getString("role");
+                    Text output = text(rs, "output", hashes);
+                    OffsetDateTime createdAt = rs.getObject("created_at", OffsetDateTime.class);
+                    return texts -> new ArchivedSession.WorkerResultEntry(id, taskLogId, role,
+                            output.resolve(texts), createdAt);
+                }, sessionId);
+        Map<String, String> texts = hashes.isEmpty() ? Map.of() : textBlobService.load(hashes);
+        List<ArchivedSession.Prompt> prompts = promptRows.stream().map(row -> row.apply(texts)).toList();
+        List<ArchivedSession.ToolCall> toolCalls = toolRows.stream().map(row -> row.apply(texts)).toList();
+        List<ArchivedSession.WorkerResultEntry> workerResults = resultRows.stream().map(row -> row.apply(texts)).toList();
+
+        return new ArchivedSession(session.id(), session.userPrompt(), session.provider(), session.model(),
+                session.finalAnswer(), session.status(), session.createdAt(), session.updatedAt(),
+                plans, prompts, toolCalls, workerResults);
+    }
+
+    /**
+     * Reads a text column that may have been moved to {@code text_blob}; the hash is recorded
+     * for the batched lookup.
+     */
+    private static Text text(ResultSet rs, String column, Set<String> hashes) throws SQLException {
+        String inline = rs.getString(column);
+        String hash = inline == null && hasColumn(rs, column + "_hash") ? rs.getString(column + "_hash") : null;
+        if (hash != null) {
+            hashes.add(hash);
+        }
+        return new Text(inline, hash);
+    }
+
+    @Nullable
+    private static Integer optionalInteger(ResultSet rs, String column) throws SQLException {
+        if (!hasColumn(rs, column)) {
+            return null;
+        }
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static boolean hasColumn(ResultSet rs, String column) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (column.equalsIgnoreCase(metaData.getColumnName(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Text(@Nullable String inline, @Nullable String hash) {
+
+        @Nullable
+        String resolve(Map<String, String> texts) {
+            return hash != null ? texts.get(hash) : inline;
+        }
+    }
+
+    record IndexEntry(UUID sessionId, String segment, long offset, int length) {
+    }
+}
@@ -0,0 +1,116 @@
+package com.bko.orchestration.service;
+
+import com.bko.orchestration.model.RunStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Maintains the {@code run_stats} projection: event count, input/output tokens and first/last
+ * event time per session. Prompt log writes add deltas with an upsert, so reading a run list
+ * costs one indexed lookup per page instead of loading every prompt and response.
+ * <p>
+ * The table has no foreign key to {@code orchestration_session}, so totals survive archiving
+ * and partition retention.
+ */
+@Service
+@Slf4j
+public class RunStatsService {
+
+    private static final String UPSERT = """
+            INSERT INTO run_stats (session_id, event_count, input_tokens, output_tokens, first_event_at, last_event_at)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (session_id) DO UPDATE SET
+                event_count = run_stats.event_count + EXCLUDED.event_count,
+                input_tokens = run_stats.input_tokens + EXCLUDED.input_tokens,
+                output_tokens = run_stats.output_tokens + EXCLUDED.output_tokens,
+                first_event_at = LEAST(run_stats.first_event_at, EXCLUDED.first_event_at),
+                last_event_at = GREATEST(run_stats.last_event_at, EXCLUDED.last_event_at)
+            """;
+
+    private final ObjectProvider<JdbcTemplate> jdbcTemplateProvider;
+    private final SchemaProbe schemaProbe;
+
+    public RunStatsService(ObjectProvider<JdbcTemplate> jdbcTemplateProvider, SchemaProbe schemaProbe) {
+        this.jdbcTemplateProvider = jdbcTemplateProvider;
+        this.schemaProbe = schemaProbe;
+    }
+
+    /**
+     * True when the {@code run_stats} table exists (Liquibase may be disabled).
+     */
+    public boolean isAvailable() {
+        return schemaProbe.hasTable("run_stats");
+    }
+
+    /**
+     * Adds prompt events to the projection, merged per session into one upsert each.
+     */
+    public void record(Collection<Event> events) {
+        if (events.isEmpty() || !isAvailable()) {
+            return;
+        }
+        Map<UUID, RunStats> deltas = new LinkedHashMap<>();
+        for (Event event : events) {
+            RunStats delta = new RunStats(event.sessionId(), 1, event.inputTokens(), event.outputTokens(),
+                    event.createdAt(), event.createdAt());
+            deltas.merge(event.sessionId(), delta, RunStatsService::merge);
+        }
+        List<RunStats> rows = new ArrayList<>(deltas.values());
+        jdbcTemplateProvider.getObject().batchUpdate(UPSERT, rows, rows.size(), (ps, row) -> {
+            ps.setObject(1, row.sessionId());
+            ps.setInt(2, row.eventCount());
+            ps.setLong(3, row.inputTokens());
+            ps.setLong(4, row.outputTokens());
+            ps.setObject(5, row.firstEventAt());
+            ps.setObject(6, row.lastEventAt());
+        });
+    }
+
+    public Map<UUID, RunStats> findBySessionIds(Collection<UUID> sessionIds) {
+        Map<UUID, RunStats> result = new HashMap<>();
+        if (sessionIds.isEmpty()) {
+            return result;
+        }
+        NamedParameterJdbcTemplate named = new NamedParameterJdbcTemplate(jdbcTemplateProvider.getObject());
+        named.query("""
+                        SELECT session_id, event_count, input_tokens, output_tokens, first_event_at, last_event_at
+                        FROM run_stats WHERE session_id IN (:sessionIds)
+                        """,
+                new MapSqlParameterSource("sessionIds", sessionIds),
+                rs -> {
+                    UUID sessionId = rs.getObject("session_id", UUID.class);
+                    result.put(sessionId, new RunStats(sessionId, rs.getInt("event_count"),
+                            rs.getLong("input_tokens"), rs.getLong("output_tokens"),
+                            rs.getObject("first_event_at", OffsetDateTime.class),
+                            rs.getObject("last_event_at", OffsetDateTime.class)));
+                });
+        return result;
+    }
+
+    static RunStats merge(RunStats a, RunStats b) {
+        return new RunStats(a.sessionId(), a.eventCount() + b.eventCount(),
+                a.inputTokens() + b.inputTokens(), a.outputTokens() + b.outputTokens(),
+                a.firstEventAt().isBefore(b.firstEventAt()) ? a.firstEventAt() : b.firstEventAt(),
+                a.lastEventAt().isAfter(b.lastEventAt()) ? a.lastEventAt() : b.lastEventAt());
+    }
+
+    /**
+     * One prompt log as seen by the projection. Token counts are the provider's usage when
+     * reported, otherwise an estimate made when the log was written.
+     */
+    public record Event(UUID sessionId, int inputTokens, int outputTokens, OffsetDateTime createdAt) {
+    }
+}
@@ -52,7 +52,7 @@ public class ScheduledAgentExecutionService {
         var session = persistenceService.startSession(agent.getObjectivePrompt(), normalizedProvider, normalizedModel);
         run.setSessionId(session.getId());
         run = runRepository.save(run);
-        agentRunUpdatesHub.notifyRunUpdate(agentId);
+        agentRunUpdatesHub.notifyRunUpdate(agentId, run.getId());
 
         try {
             OrchestrationResult result = orchestratorService.orchestrateWithSession(
@@ -82,7 +82,7 @@ public class ScheduledAgentExecutionService {
                 log.debug("Could not compute next run for agent {}", agentId, ex);
             }
             agentRepository.save(agent);
-            agentRunUpdatesHub.notifyRunUpdate(agentId);
+            agentRunUpdatesHub.notifyRunUpdate(agentId, run.getId());
         }
     }
 }
@@ -0,0 +1,66 @@
+package com.bko.orchestration.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers whether the current schema has a table or columns, for features whose changelog
+ * may not be applied (Liquibase may be disabled). Each answer is looked up once and cached;
+ * a missing DataSource or a failed lookup counts as absent.
+ */
+@Service
+@Slf4j
+public class SchemaProbe {
+
+    private final ObjectProvider<JdbcTemplate> jdbcTemplateProvider;
+    private final Map<String, Boolean> cache = new ConcurrentHashMap<>();
+
+    public SchemaProbe(ObjectProvider<JdbcTemplate> jdbcTemplateProvider) {
+        this.jdbcTemplateProvider = jdbcTemplateProvider;
+    }
+
+    public boolean hasTable(String table) {
+        return cache.computeIfAbsent(table, key -> count("""
+                SELECT COUNT(*) FROM information_schema.tables
+                WHERE table_schema = current_schema() AND table_name = ?
+                """, key, table) > 0);
+    }
+
+    /**
+     * True when {@code table} has every one of {@code columns}.
+     */
+    public boolean hasColumns(String table, String... columns) {
+        String key = table + "(" + String.join(",", columns) + ")";
+        return cache.computeIfAbsent(key, k -> {
+            Object[] args = new Object[columns.length + 1];
+            args[0] = table;
+            System.arraycopy(columns, 0, args, 1, columns.length);
+            return count("""
+                    SELECT COUNT(*) FROM information_schema.columns
+                    WHERE table_schema = current_schema() AND table_name = ? AND column_name IN (%s)
+                    """.formatted(String.join(", ", Collections.nCopies(columns.length, "?"))), k, args)
+                    >= Arrays.stream(columns).distinct().count();
+        });
+    }
+
+    private int count(String sql, String key, Object... args) {
+        JdbcTemplate jdbcTemplate = jdbcTemplateProvider.getIfAvailable();
+        if (jdbcTemplate == null) {
+            return 0;
+        }
+        try {
+            Integer count = jdbcTemplate.queryForObject(sql, Integer.class, args);
+            return count != null ? count : 0;
+        } catch (Exception ex) {
+            log.warn("Failed to inspect schema for {}; treating it as missing.", key, ex);
+            return 0;
+        }
+    }
+}
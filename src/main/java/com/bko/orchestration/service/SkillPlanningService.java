@@ -9,24 +9,30 @@ import com.bko.orchestration.model.SkillSummary;
 import com.bko.orchestration.model.TaskSkillPlan;
 import com.bko.orchestration.model.TaskSpec;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Service
+@Slf4j
 @RequiredArgsConstructor
 public class SkillPlanningService {
 
     private final MultiAgentProperties properties;
     private final WorkerSkillLibraryService workerSkillLibraryService;
     private final AgentInvocationService agentInvocationService;
+    private final SkillRanker skillRanker;
+    private final OrchestrationMetricsService metricsService;
 
     private final Map<String, SkillPlanningResult> cache = new ConcurrentHashMap<>();
 
@@ -36,6 +42,21 @@ public class SkillPlanningService {
                                            @Nullable String context,
                                            String provider,
                                            String model) {
+        return planForTask(session, userMessage, task, null, context, provider, model);
+    }
+
+    /**
+     * Plans skills for a task, preferring a selection the planner already made. The
+     * preselection is used only if every named skill exists for the task's role; otherwise
+     * the regular skill selection path runs.
+     */
+    public SkillPlanningResult planForTask(OrchestrationSession session,
+                                           String userMessage,
+                                           TaskSpec task,
+                                           @Nullable SkillSelection preselected,
+                                           @Nullable String context,
+                                           String provider,
+                                           String model) {
         if (task == null || !StringUtils.hasText(task.id())) {
             return new SkillPlanningResult(emptyPlan(task, 0, "No task."), List.of());
         }
@@ -51,7 +72,10 @@ public class SkillPlanningService {
             cache.put(cacheKey, result);
             return result;
         }
-        SelectionOutcome outcome = selectSkills(session, userMessage, task, available, budget, context, provider, model);
+        SelectionOutcome outcome = fromPreselection(session, task, preselected, available, budget);
+        if (outcome == null) {
+            outcome = selectSkills(session, userMessage, task, available, budget, context, provider, model);
+        }
         List<AgentSkill> selected = outcome.skills();
         String rationale = StringUtils.hasText(outcome.rationale())
                 ? outcome.rationale()
@@ -70,12 +94,23 @@ public class SkillPlanningService {
                                             @Nullable String context,
                                             String provider,
                                             String model) {
+        return planForTasks(session, userMessage, tasks, Map.of(), context, provider, model);
+    }
+
+    public List<TaskSkillPlan> planForTasks(OrchestrationSession session,
+                                            String userMessage,
+                                            List<TaskSpec> tasks,
+                                            Map<String, SkillSelection> preselected,
+                                            @Nullable String context,
+                                            String provider,
+                                            String model) {
         if (tasks == null || tasks.isEmpty()) {
             return List.of();
         }
         List<TaskSkillPlan> plans = new ArrayList<>(tasks.size());
         for (TaskSpec task : tasks) {
-            SkillPlanningResult result = planForTask(session, userMessage, task, context, provider, model);
+            SkillSelection selection = task != null && preselected != null ? preselected.get(task.id()) : null;
+            SkillPlanningResult result = planForTask(session, userMessage, task, selection, context, provider, model);
             if (result != null && result.plan() != null) {
                 plans.add(result.plan());
             }
@@ -83,6 +118,31 @@ public class SkillPlanningService {
         return plans;
     }
 
+    @Nullable
+    private SelectionOutcome fromPreselection(OrchestrationSession session,
+                                              TaskSpec task,
+                                              @Nullable SkillSelection preselected,
+                                              List<AgentSkill> available,
+                                              int budget) {
+        if (preselected == null || preselected.skills() == null) {
+            return null;
+        }
+        List<AgentSkill> matched = matchSkills(preselected, available);
+        long named = preselected.skills().stream().filter(StringUtils::hasText).count();
+        if (matched.size() != named) {
+            log.warn("Planner selected unknown skills; falling back to skill planner. sessionId={}, taskId={}, skills={}",
+                    session.getId(), task.id(), preselected.skills());
+            return null;
+        }
+        String rationale = StringUtils.hasText(preselected.reason())
+                ? preselected.reason()
+                : (matched.isEmpty() ? "No skills selected." : "Selected by the planner.");
+        if (matched.size() > budget) {
+            return new SelectionOutcome(matched.subList(0, budget), rationale);
+        }
+        return new SelectionOutcome(matched, rationale);
+    }
+
     private SelectionOutcome selectSkills(OrchestrationSession session,
                                           String userMessage,
                                           TaskSpec task,
@@ -94,18 +154,52 @@ public class SkillPlanningService {
         if (available.size() <= budget) {
             return new SelectionOutcome(available, "All available skills are within budget.");
         }
+        List<AgentSkill> ranked = skillRanker.select(task.role(), task, available, budget);
+        if (!properties.getSkillPlanning().isLlmSelection()) {
+            if (ranked.isEmpty()) {
+                return new SelectionOutcome(available.subList(0, Math.min(budget, available.size())),
+                        "Defaulted to top skills within budget.");
+            }
+            return new SelectionOutcome(ranked, "Ranked by relevance to the task.");
+        }
         List<SkillSummary> summaries = summarize(available);
         SkillSelection selection = agentInvocationService.requestSkillSelection(session, userMessage, task, summaries,
                 budget, context, provider, model);
         List<AgentSkill> matched = matchSkills(selection, available);
+        SelectionOutcome outcome;
         if (matched.isEmpty()) {
-            return new SelectionOutcome(available.subList(0, Math.min(budget, available.size())),
+            outcome = new SelectionOutcome(available.subList(0, Math.min(budget, available.size())),
                     "Defaulted to top skills within budget.");
+        } else if (matched.size() > budget) {
+            outcome = new SelectionOutcome(matched.subList(0, budget), selection != null ? selection.reason() : null);
+        } else {
+            outcome = new SelectionOutcome(matched, selection != null ? selection.reason() : null);
         }
-        if (matched.size() > budget) {
-            return new SelectionOutcome(matched.subList(0, budget), selection != null ? selection.reason() : null);
+        metricsService.recordSkillSelectionAgreement(session != null ? session.getId() : null, task.id(),
+                agreement(ranked, outcome.skills()));
+        return outcome;
+    }
+
+    private static double agreement(List<AgentSkill> local, List<AgentSkill> llm) {
+        Set<String> left = names(local);
+        Set<String> right = names(llm);
+        if (left.isEmpty() && right.isEmpty()) {
+            return 1.0;
+        }
+        Set<String> union = new HashSet<>(left);
+        union.addAll(right);
+        left.retainAll(right);
+        return (double) left.size() / union.size();
+    }
+
+    private static Set<String> names(List<AgentSkill> skills) {
+        Set<String> names = new HashSet<>();
+        for (AgentSkill skill : skills) {
+            if (skill != null && StringUtils.hasText(skill.getName())) {
+                names.add(skill.getName().trim().toLowerCase(Locale.ROOT));
+            }
         }
-        return new SelectionOutcome(matched, selection != null ? selection.reason() : null);
+        return names;
     }
 
     private List<AgentSkill> matchSkills(@Nullable SkillSelection selection, List<AgentSkill> available) {
@@ -133,14 +227,7 @@ public class SkillPlanningService {
     }
 
     private int resolveBudget(@Nullable String role) {
-        int defaultBudget = properties.getSkillPlanning().getDefaultSkillBudget();
-        if (StringUtils.hasText(role)) {
-            Integer override = properties.getSkillPlanning().getRoleBudgets().get(role.toLowerCase(Locale.ROOT));
-            if (override != null) {
-                return override;
-            }
-        }
-        return defaultBudget;
+        return properties.getSkillPlanning().resolveBudget(role);
     }
 
     private List<SkillSummary> summarize(List<AgentSkill> skills) {
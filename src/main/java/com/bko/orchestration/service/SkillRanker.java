@@ -0,0 +1,228 @@
+package com.bko.orchestration.service;
+
+import com.bko.config.AgentSkill;
+import com.bko.config.MultiAgentProperties;
+import com.bko.orchestration.model.TaskSpec;
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ranks a role's skills against a task with BM25 over the skill name, description and
+ * instructions (each field weighted separately). Replaces the LLM skill-selection call
+ * for the common case; indexes are cached per role and rebuilt when the skills change.
+ */
+@Service
+@RequiredArgsConstructor
+public class SkillRanker {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "into", "is", "it", "its",
+            "of", "on", "or", "that", "the", "this", "to", "use", "using", "with", "you", "your");
+
+    private final MultiAgentProperties properties;
+
+    private final Map<String, SkillIndex> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * Returns up to {@code budget} skills that match the task, best first. Skills with no
+     * term overlap are never returned, so the result may be empty.
+     */
+    public List<AgentSkill> select(@Nullable String role, TaskSpec task, List<AgentSkill> available, int budget) {
+        if (budget <= 0 || available == null || available.isEmpty()) {
+            return List.of();
+        }
+        List<String> query = tokenize(queryText(task));
+        if (query.isEmpty()) {
+            return List.of();
+        }
+        SkillIndex index = indexFor(role, available);
+        double[] scores = index.score(query, properties.getSkillPlanning().getRanker());
+        List<Integer> order = new ArrayList<>(available.size());
+        for (int i = 0; i < scores.length; i++) {
+            if (scores[i] > 0) {
+                order.add(i);
+            }
+        }
+        order.sort(Comparator.comparingDouble((Integer i) -> scores[i]).reversed());
+        List<AgentSkill> selected = new ArrayList<>(Math.min(budget, order.size()));
+        for (int i = 0; i < order.size() && selected.size() < budget; i++) {
+            selected.add(index.skills.get(order.get(i)));
+        }
+        return selected;
+    }
+
+    private SkillIndex indexFor(@Nullable String role, List<AgentSkill> available) {
+        String key = role != null ? role.toLowerCase(Locale.ROOT) : "";
+        SkillIndex cached = indexes.get(key);
+        if (cached != null && cached.matches(available)) {
+            return cached;
+        }
+        SkillIndex built = new SkillIndex(List.copyOf(available));
+        indexes.put(key, built);
+        return built;
+    }
+
+    private static String queryText(TaskSpec task) {
+        if (task == null) {
+            return "";
+        }
+        String description = task.description() != null ? task.description() : "";
+        String expectedOutput = task.expectedOutput() != null ? task.expectedOutput() : "";
+        return description + " " + expectedOutput;
+    }
+
+    static List<String> tokenize(@Nullable String text) {
+        if (!StringUtils.hasText(text)) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (int i = 0; i <= lower.length(); i++) {
+            char c = i < lower.length() ? lower.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                current.append(c);
+                continue;
+            }
+            if (current.length() > 1) {
+                String token = stem(current.toString());
+                if (!STOP_WORDS.contains(token)) {
+                    tokens.add(token);
+                }
+            }
+            current.setLength(0);
+        }
+        return tokens;
+    }
+
+    /**
+     * Light suffix stripping so "searching", "searches" and "search" share a term.
+     */
+    private static String stem(String token) {
+        if (token.length() > 5 && token.endsWith("ing")) {
+            return token.substring(0, token.length() - 3);
+        }
+        if (token.length() > 4 && token.endsWith("es")) {
+            return token.substring(0, token.length() - 2);
+        }
+        if (token.length() > 4 && token.endsWith("ed")) {
+            return token.substring(0, token.length() - 2);
+        }
+        if (token.length() > 3 && token.endsWith("s") && !token.endsWith("ss")) {
+            return token.substring(0, token.length() - 1);
+        }
+        return token;
+    }
+
+    private static final class SkillIndex {
+
+        private static final int NAME = 0;
+        private static final int DESCRIPTION = 1;
+        private static final int INSTRUCTIONS = 2;
+
+        private final List<AgentSkill> skills;
+        // termFrequencies[field][skill] -> term -> count
+        private final List<List<Map<String, Integer>>> termFrequencies = new ArrayList<>(3);
+        private final int[][] lengths;
+        private final double[] averageLengths = new double[3];
+        private final Map<String, Integer> documentFrequencies = new HashMap<>();
+
+        private SkillIndex(List<AgentSkill> skills) {
+            this.skills = skills;
+            this.lengths = new int[3][skills.size()];
+            for (int field = 0; field < 3; field++) {
+                termFrequencies.add(new ArrayList<>(skills.size()));
+            }
+            for (int doc = 0; doc < skills.size(); doc++) {
+                AgentSkill skill = skills.get(doc);
+                Set<String> seen = new java.util.HashSet<>();
+                String[] fields = {
+                        skill != null ? skill.getName() : null,
+                        skill != null ? skill.getDescription() : null,
+                        skill != null ? skill.getInstructions() : null
+                };
+                for (int field = 0; field < 3; field++) {
+                    Map<String, Integer> counts = new HashMap<>();
+                    List<String> tokens = tokenize(fields[field]);
+                    for (String token : tokens) {
+                        counts.merge(token, 1, Integer::sum);
+                        seen.add(token);
+                    }
+                    termFrequencies.get(field).add(counts);
+                    lengths[field][doc] = tokens.size();
+                    averageLengths[field] += tokens.size();
+                }
+                for (String term : seen) {
+                    documentFrequencies.merge(term, 1, Integer::sum);
+                }
+            }
+            for (int field = 0; field < 3; field++) {
+                averageLengths[field] = skills.isEmpty() ? 0 : averageLengths[field] / skills.size();
+            }
+        }
+
+        private boolean matches(List<AgentSkill> available) {
+            if (available.size() != skills.size()) {
+                return false;
+            }
+            for (int i = 0; i < available.size(); i++) {
+                if (available.get(i) != skills.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private double[] score(List<String> query, MultiAgentProperties.SkillRankerConfig config) {
+            double[] weights = {config.getNameWeight(), config.getDescriptionWeight(), config.getInstructionsWeight()};
+            double[] scores = new double[skills.size()];
+            int n = skills.size();
+            for (String term : query) {
+                Integer df = documentFrequencies.get(term);
+                if (df == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+                for (int doc = 0; doc < n; doc++) {
+                    double termScore = 0;
+                    for (int field = 0; field < 3; field++) {
+                        Integer tf = termFrequencies.get(field).get(doc).get(term);
+                        if (tf == null || weights[field] <= 0) {
+                            continue;
+                        }
+                        double norm = averageLengths[field] > 0
+                                ? 1 - config.getB() + config.getB() * lengths[field][doc] / averageLengths[field]
+                                : 1;
+                        termScore += weights[field] * tf * (config.getK1() + 1) / (tf + config.getK1() * norm);
+                    }
+                    scores[doc] += idf * termScore;
+                }
+            }
+            Map<String, Double> skillWeights = config.getSkillWeights();
+            if (!skillWeights.isEmpty()) {
+                for (int doc = 0; doc < n; doc++) {
+                    AgentSkill skill = skills.get(doc);
+                    if (skill == null || skill.getName() == null) {
+                        continue;
+                    }
+                    Double weight = skillWeights.get(skill.getName().toLowerCase(Locale.ROOT));
+                    if (weight != null) {
+                        scores[doc] *= weight;
+                    }
+                }
+            }
+            return scores;
+        }
+    }
+}
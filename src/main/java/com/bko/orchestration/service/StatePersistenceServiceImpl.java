@@ -21,9 +21,12 @@ import java.util.Optional;
 public class StatePersistenceServiceImpl implements StatePersistenceService {
 
     private final OrchestrationPersistenceService persistenceService;
+    private final LogWriteQueue logWriteQueue;
 
-    public StatePersistenceServiceImpl(OrchestrationPersistenceService persistenceService) {
+    public StatePersistenceServiceImpl(OrchestrationPersistenceService persistenceService,
+                                       LogWriteQueue logWriteQueue) {
         this.persistenceService = persistenceService;
+        this.logWriteQueue = logWriteQueue;
     }
 
     @Override
@@ -33,6 +36,8 @@ public class StatePersistenceServiceImpl implements StatePersistenceService {
 
     @Override
     public void completeSession(OrchestrationSession session, @Nullable String finalAnswer, String status) {
+        // Make the run's queued logs visible before it is reported as finished.
+        logWriteQueue.flush();
         persistenceService.completeSession(session, finalAnswer, status);
     }
 
@@ -42,6 +47,11 @@ public class StatePersistenceServiceImpl implements StatePersistenceService {
                           Map<String, String> params, @Nullable String fullResponse,
                           @Nullable Integer inputTokens, @Nullable Integer outputTokens) {
         try {
+            if (logWriteQueue.isEnabled()) {
+                persistenceService.queuePrompt(session, purpose, role, systemPrompt, userTemplate, params, fullResponse,
+                        inputTokens, outputTokens);
+                return;
+            }
             persistenceService.logPrompt(session, purpose, role, systemPrompt, userTemplate, params, fullResponse,
                     inputTokens, outputTokens);
         } catch (Exception ex) {
@@ -55,6 +65,11 @@ public class StatePersistenceServiceImpl implements StatePersistenceService {
         return persistenceService.logPlan(session, plan, isInitial);
     }
 
+    @Override
+    public void updatePlanObjective(OrchestratorPlanLog planLog, @Nullable String objective) {
+        persistenceService.updatePlanObjective(planLog, objective);
+    }
+
     @Override
     public Map<String, TaskLog> logTasks(OrchestratorPlanLog planLog, List<TaskSpec> tasks) {
         return persistenceService.logTasks(planLog, tasks);
@@ -63,6 +78,9 @@ public class StatePersistenceServiceImpl implements StatePersistenceService {
     @Override
     public WorkerResultLog logWorkerResult(OrchestrationSession session, @Nullable TaskLog taskLog, @Nullable String role, String output) {
         try {
+            if (logWriteQueue.isEnabled()) {
+                return persistenceService.queueWorkerResult(session, taskLog, role, output);
+            }
             return persistenceService.logWorkerResult(session, taskLog, role, output);
         } catch (Exception ex) {
             log.warn("Failed to persist worker result log. sessionId={}, role={}",
@@ -75,6 +93,9 @@ public class StatePersistenceServiceImpl implements StatePersistenceService {
     public ToolCallLog logToolCall(OrchestrationSession session, @Nullable TaskLog taskLog, @Nullable String role,
                                    String toolName, @Nullable String toolInput, @Nullable String toolOutput) {
         try {
+            if (logWriteQueue.isEnabled()) {
+                return persistenceService.queueToolCall(session, taskLog, role, toolName, toolInput, toolOutput);
+            }
             return persistenceService.logToolCall(session, taskLog, role, toolName, toolInput, toolOutput);
         } catch (Exception ex) {
             log.warn("Failed to persist tool call log. sessionId={}, role={}, tool={}",
@@ -0,0 +1,118 @@
+package com.bko.orchestration.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Incremental scanner over a plan response that arrives in chunks. It tracks just enough
+ * JSON structure (nesting, strings, escapes, the current top-level key) to hand every
+ * element of the top-level {@code "tasks"} array to the callback the moment its closing
+ * brace arrives. Text before the first brace (e.g. a Markdown fence) is ignored; full
+ * validation is left to the final parse of {@link #text()}.
+ */
+public class StreamingPlanParser {
+
+    private static final String TASKS_KEY = "tasks";
+
+    private final Consumer<String> onTask;
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder currentString = new StringBuilder();
+
+    private boolean started;
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+    private String lastTopLevelString;
+    private boolean inTasksArray;
+    private int elementStart = -1;
+    private int emitted;
+
+    public StreamingPlanParser(Consumer<String> onTask) {
+        this.onTask = onTask;
+    }
+
+    public void accept(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        int offset = text.length();
+        text.append(chunk);
+        for (int i = 0; i < chunk.length(); i++) {
+            consume(chunk.charAt(i), offset + i);
+        }
+    }
+
+    /**
+     * The full response received so far.
+     */
+    public String text() {
+        return text.toString();
+    }
+
+    public int emittedCount() {
+        return emitted;
+    }
+
+    private void consume(char c, int position) {
+        if (!started) {
+            if (c != '{') {
+                return;
+            }
+            started = true;
+        }
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                inString = false;
+                if (depth == 1) {
+                    lastTopLevelString = currentString.toString();
+                }
+            } else if (depth == 1) {
+                currentString.append(c);
+            }
+            return;
+        }
+        switch (c) {
+            case '"' -> {
+                inString = true;
+                currentString.setLength(0);
+            }
+            case '{' -> {
+                depth++;
+                if (inTasksArray && depth == 3) {
+                    elementStart = position;
+                }
+            }
+            case '[' -> {
+                depth++;
+                if (depth == 2 && TASKS_KEY.equals(lastTopLevelString)) {
+                    inTasksArray = true;
+                }
+            }
+            case '}' -> {
+                if (inTasksArray && depth == 3 && elementStart >= 0) {
+                    emitted++;
+                    onTask.accept(text.substring(elementStart, position + 1));
+                    elementStart = -1;
+                }
+                depth--;
+            }
+            case ']' -> {
+                if (inTasksArray && depth == 2) {
+                    inTasksArray = false;
+                }
+                depth--;
+            }
+            case ',' -> {
+                if (depth == 1) {
+                    lastTopLevelString = null;
+                }
+            }
+            default -> {
+                // whitespace, ':' and scalar literals carry no structure
+            }
+        }
+    }
+}
@@ -16,7 +16,12 @@ import com.bko.orchestration.api.TaskManagementService;
 import com.bko.orchestration.model.AdvisoryBundle;
 import com.bko.orchestration.model.DiscoveryBundle;
 import com.bko.orchestration.model.FailureDetail;
+import com.bko.orchestration.model.FastPathDecision;
 import com.bko.orchestration.model.OrchestratorPlan;
+import com.bko.orchestration.model.PlanWithSkills;
+import com.bko.orchestration.model.SkillAwarePlan;
+import com.bko.orchestration.model.SkillSelection;
+import com.bko.orchestration.model.StreamedPlanExecution;
 import com.bko.orchestration.model.TaskSpec;
 import com.bko.orchestration.model.WorkerResult;
 import com.bko.repository.AgentRoleRepository;
@@ -48,6 +53,7 @@ public class TaskManagementServiceImpl implements TaskManagementService {
     private final OrchestrationMetricsService metricsService;
     private final AgentRoleRepository agentRoleRepository;
     private final StatePersistenceService statePersistenceService;
+    private final FastPathClassifier fastPathClassifier;
 
     public TaskManagementServiceImpl(MultiAgentProperties properties,
                                      OrchestrationContextService orchestrationContextService,
@@ -56,7 +62,8 @@ public class TaskManagementServiceImpl implements TaskManagementService {
                                      EventProcessingService eventProcessingService,
                                      OrchestrationMetricsService metricsService,
                                      AgentRoleRepository agentRoleRepository,
-                                     StatePersistenceService statePersistenceService) {
+                                     StatePersistenceService statePersistenceService,
+                                     FastPathClassifier fastPathClassifier) {
         this.properties = properties;
         this.orchestrationContextService = orchestrationContextService;
         this.agentInvocationService = agentInvocationService;
@@ -65,6 +72,7 @@ public class TaskManagementServiceImpl implements TaskManagementService {
         this.metricsService = metricsService;
         this.agentRoleRepository = agentRoleRepository;
         this.statePersistenceService = statePersistenceService;
+        this.fastPathClassifier = fastPathClassifier;
     }
 
     @Override
@@ -118,11 +126,94 @@ public class TaskManagementServiceImpl implements TaskManagementService {
                                         String model,
                                         boolean excludeAdvisory,
                                         boolean allowEmpty) {
+        if (takeFastPath(session, userMessage, model)) {
+            // Simple prompts would be collapsed into one general task anyway; skip the planning round trip.
+            return defaultPlan(userMessage, allowedRoles);
+        }
         OrchestratorPlan plan = agentInvocationService.requestPlan(session, userMessage,
                 allowedRoles, context, provider, model);
         return sanitizePlan(plan, userMessage, allowedRoles, excludeAdvisory, allowEmpty);
     }
 
+    @Override
+    public PlanWithSkills requestPlanWithSkills(OrchestrationSession session,
+                                                String userMessage,
+                                                List<String> allowedRoles,
+                                                @Nullable String context,
+                                                String provider,
+                                                String model,
+                                                boolean excludeAdvisory,
+                                                boolean allowEmpty) {
+        if (!properties.getSkillPlanning().isCombinedPlanning()) {
+            return new PlanWithSkills(requestPlan(session, userMessage, allowedRoles, context, provider, model,
+                    excludeAdvisory, allowEmpty), Map.of());
+        }
+        if (takeFastPath(session, userMessage, model)) {
+            return new PlanWithSkills(defaultPlan(userMessage, allowedRoles), Map.of());
+        }
+        SkillAwarePlan raw = agentInvocationService.requestPlanWithSkills(session, userMessage,
+                allowedRoles, context, provider, model);
+        OrchestratorPlan plan = sanitizePlan(raw != null ? raw.toPlan() : null, userMessage, allowedRoles,
+                excludeAdvisory, allowEmpty);
+        return new PlanWithSkills(plan, mapSkillSelections(raw, plan));
+    }
+
+    private boolean takeFastPath(OrchestrationSession session, String userMessage, String model) {
+        FastPathDecision decision = fastPathClassifier.classify(userMessage, model);
+        metricsService.recordFastPathDecision(session != null ? session.getId() : null, decision);
+        return decision.fastPath();
+    }
+
+    /**
+     * Carries the planner's skill choices over to the sanitized tasks. Tasks keep their
+     * selection when the id survived sanitizing; a collapsed task gets the union of all choices.
+     */
+    private Map<String, SkillSelection> mapSkillSelections(@Nullable SkillAwarePlan raw, OrchestratorPlan plan) {
+        if (raw == null || raw.tasks() == null || raw.tasks().isEmpty() || plan.tasks().isEmpty()) {
+            return Map.of();
+        }
+        if (plan.tasks().size() == 1) {
+            SkillSelection merged = mergeSelections(raw.tasks());
+            return merged != null ? Map.of(plan.tasks().getFirst().id(), merged) : Map.of();
+        }
+        Map<String, SkillSelection> byId = new HashMap<>();
+        for (SkillAwarePlan.SkillAwareTask task : raw.tasks()) {
+            if (task != null && StringUtils.hasText(task.id()) && task.skills() != null) {
+                byId.putIfAbsent(task.id(), task.toSkillSelection());
+            }
+        }
+        Map<String, SkillSelection> selections = new HashMap<>();
+        for (TaskSpec task : plan.tasks()) {
+            SkillSelection selection = byId.get(task.id());
+            if (selection != null) {
+                selections.put(task.id(), selection);
+            }
+        }
+        return selections;
+    }
+
+    @Nullable
+    private SkillSelection mergeSelections(List<SkillAwarePlan.SkillAwareTask> tasks) {
+        Set<String> skills = new LinkedHashSet<>();
+        List<String> reasons = new ArrayList<>();
+        boolean anySelection = false;
+        for (SkillAwarePlan.SkillAwareTask task : tasks) {
+            if (task == null || task.skills() == null) {
+                continue;
+            }
+            anySelection = true;
+            for (String skill : task.skills()) {
+                if (StringUtils.hasText(skill)) {
+                    skills.add(skill.trim());
+                }
+            }
+            if (StringUtils.hasText(task.skillRationale())) {
+                reasons.add(task.skillRationale().trim());
+            }
+        }
+        return anySelection ? new SkillSelection(new ArrayList<>(skills), String.join(" ", reasons)) : null;
+    }
+
     @Override
     public OrchestratorPlan requestContinuationPlan(OrchestrationSession session,
                                                     String userMessage,
@@ -211,25 +302,10 @@ public class TaskManagementServiceImpl implements TaskManagementService {
             return List.of();
         }
         metricsService.recordTasksExecuted(effectiveTasks.size());
-        Duration timeout = properties.getWorkerTimeout();
         String context = orchestrationContextService.buildResultsContext(priorResults);
         List<CompletableFuture<WorkerResult>> futures = effectiveTasks.stream()
-                .map(task -> {
-                    TaskLog tl = taskIndex.get(task.id());
-                    eventProcessingService.emitTaskStart(streamId, task);
-                    return CompletableFuture.supplyAsync(
-                                    () -> skillExecutionService.runWorker(session, userMessage, task,
-                                            context, provider, model, false, false, tl, streamId))
-                            .orTimeout(timeout.toSeconds(), TimeUnit.SECONDS)
-                            .exceptionally(ex -> {
-                                WorkerResult failed = new WorkerResult(task.id(), task.role(),
-                                        WORKER_FAILED_MESSAGE + ex.getMessage());
-                                eventProcessingService.emitTaskOutput(streamId, failed);
-                                eventProcessingService.emitTaskComplete(streamId, failed);
-                                logFailedWorkerPrompt(session, userMessage, context, task, ex);
-                                return failed;
-                            });
-                })
+                .map(task -> startWorker(session, userMessage, task, context, provider, model,
+                        taskIndex.get(task.id()), streamId))
                 .toList();
         if (eventProcessingService.isCancelled(streamId)) {
             futures.forEach(future -> future.cancel(true));
@@ -262,25 +338,10 @@ public class TaskManagementServiceImpl implements TaskManagementService {
             return List.of();
         }
         metricsService.recordApprovedTasksExecuted(effectiveTasks.size());
-        Duration timeout = properties.getWorkerTimeout();
         String context = null;
         List<CompletableFuture<WorkerResult>> futures = effectiveTasks.stream()
-                .map(task -> {
-                    TaskLog tl = taskIndex.get(task.id());
-                    eventProcessingService.emitTaskStart(streamId, task);
-                    return CompletableFuture.supplyAsync(
-                                    () -> skillExecutionService.runWorker(session, userMessage, task,
-                                            context, provider, model, false, false, tl, streamId))
-                            .orTimeout(timeout.toSeconds(), TimeUnit.SECONDS)
-                            .exceptionally(ex -> {
-                                WorkerResult failed = new WorkerResult(task.id(), task.role(),
-                                        WORKER_FAILED_MESSAGE + ex.getMessage());
-                                eventProcessingService.emitTaskOutput(streamId, failed);
-                                eventProcessingService.emitTaskComplete(streamId, failed);
-                                logFailedWorkerPrompt(session, userMessage, context, task, ex);
-                                return failed;
-                            });
-                })
+                .map(task -> startWorker(session, userMessage, task, context, provider, model,
+                        taskIndex.get(task.id()), streamId))
                 .toList();
         if (eventProcessingService.isCancelled(streamId)) {
             futures.forEach(future -> future.cancel(true));
@@ -291,6 +352,96 @@ public class TaskManagementServiceImpl implements TaskManagementService {
                 .toList();
     }
 
+    @Override
+    public StreamedPlanExecution executeStreamingPlan(OrchestrationSession session,
+                                                      String userMessage,
+                                                      List<String> allowedRoles,
+                                                      String provider,
+                                                      String model,
+                                                      OrchestratorPlanLog planLog,
+                                                      @Nullable String streamId) {
+        List<TaskSpec> dispatched = new ArrayList<>();
+        List<CompletableFuture<WorkerResult>> futures = new ArrayList<>();
+        OrchestratorPlan streamed = null;
+        if (takeFastPath(session, userMessage, model)) {
+            dispatch(session, userMessage, defaultPlan(userMessage, allowedRoles).tasks().getFirst(), provider, model,
+                    planLog, streamId, dispatched, futures);
+        } else {
+            Set<String> seenSignatures = new LinkedHashSet<>();
+            streamed = agentInvocationService.streamPlan(session, userMessage, allowedRoles, null, provider, model,
+                    task -> {
+                        TaskSpec normalized = normalizeStreamedTask(task, userMessage, dispatched.size() + 1);
+                        if (normalized == null || dispatched.size() >= properties.getMaxTasks()
+                                || !seenSignatures.add(normalizeTaskSignature(normalized.role(), normalized.description()))
+                                || eventProcessingService.isCancelled(streamId)) {
+                            return;
+                        }
+                        dispatch(session, userMessage, normalized, provider, model, planLog, streamId,
+                                dispatched, futures);
+                    });
+            if (dispatched.isEmpty() && !eventProcessingService.isCancelled(streamId)) {
+                // Nothing usable arrived while streaming; fall back to the regular non-empty plan rules.
+                OrchestratorPlan fallback = sanitizePlan(streamed, userMessage, allowedRoles, true, false);
+                for (TaskSpec task : fallback.tasks()) {
+                    dispatch(session, userMessage, task, provider, model, planLog, streamId, dispatched, futures);
+                }
+            }
+        }
+        metricsService.recordTasksExecuted(dispatched.size());
+        String objective = streamed != null && StringUtils.hasText(streamed.objective()) ? streamed.objective() : userMessage;
+        OrchestratorPlan plan = new OrchestratorPlan(objective, List.copyOf(dispatched));
+        if (eventProcessingService.isCancelled(streamId)) {
+            futures.forEach(future -> future.cancel(true));
+            return new StreamedPlanExecution(plan, List.of());
+        }
+        List<WorkerResult> results = futures.stream()
+                .map(CompletableFuture::join)
+                .toList();
+        return new StreamedPlanExecution(plan, results);
+    }
+
+    private void dispatch(OrchestrationSession session, String userMessage, TaskSpec task, String provider,
+                          String model, OrchestratorPlanLog planLog, @Nullable String streamId,
+                          List<TaskSpec> dispatched, List<CompletableFuture<WorkerResult>> futures) {
+        Map<String, TaskLog> logged = statePersistenceService.logTasks(planLog, List.of(task));
+        dispatched.add(task);
+        eventProcessingService.emitPlanUpdate(streamId, new OrchestratorPlan(userMessage, List.copyOf(dispatched)));
+        futures.add(startWorker(session, userMessage, task, null, provider, model, logged.get(task.id()), streamId));
+    }
+
+    @Nullable
+    private TaskSpec normalizeStreamedTask(TaskSpec task, String userMessage, int position) {
+        String id = StringUtils.hasText(task.id()) ? task.id() : TASK_PREFIX + position;
+        if (TASK_ID_CONTEXT.equalsIgnoreCase(id) || TASK_ID_DISCOVERY.equalsIgnoreCase(id)) {
+            return null;
+        }
+        String description = StringUtils.hasText(task.description()) ? task.description() : userMessage;
+        String expectedOutput = StringUtils.hasText(task.expectedOutput())
+                ? task.expectedOutput()
+                : DEFAULT_EXPECTED_OUTPUT;
+        return new TaskSpec(id, ROLE_GENERAL, description, expectedOutput);
+    }
+
+    private CompletableFuture<WorkerResult> startWorker(OrchestrationSession session, String userMessage,
+                                                        TaskSpec task, @Nullable String context, String provider,
+                                                        String model, @Nullable TaskLog taskLog,
+                                                        @Nullable String streamId) {
+        Duration timeout = properties.getWorkerTimeout();
+        eventProcessingService.emitTaskStart(streamId, task);
+        return CompletableFuture.supplyAsync(
+                        () -> skillExecutionService.runWorker(session, userMessage, task,
+                                context, provider, model, false, false, taskLog, streamId))
+                .orTimeout(timeout.toSeconds(), TimeUnit.SECONDS)
+                .exceptionally(ex -> {
+                    WorkerResult failed = new WorkerResult(task.id(), task.role(),
+                            WORKER_FAILED_MESSAGE + ex.getMessage());
+                    eventProcessingService.emitTaskOutput(streamId, failed);
+                    eventProcessingService.emitTaskComplete(streamId, failed);
+                    logFailedWorkerPrompt(session, userMessage, context, task, ex);
+                    return failed;
+                });
+    }
+
     /**
      * Persist a prompt log entry when a worker fails (e.g. timeout) so the LLM event
      * still appears in the run detail UI; otherwise only the plan event would show.
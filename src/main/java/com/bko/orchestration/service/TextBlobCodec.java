@@ -0,0 +1,94 @@
+package com.bko.orchestration.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Hashing and compression for {@code text_blob} rows. Shared by the runtime writers and
+ * the Liquibase backfill, so both produce identical keys for identical text.
+ */
+public final class TextBlobCodec {
+
+    public static final String CODEC_DEFLATE = "deflate";
+    public static final String CODEC_NONE = "none";
+
+    private TextBlobCodec() {
+    }
+
+    /**
+     * Encodes text as a blob. Deflate is used unless it does not make the payload smaller.
+     */
+    public static Encoded encode(String text) {
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = deflate(raw);
+        if (compressed.length < raw.length) {
+            return new Encoded(sha256Hex(raw), CODEC_DEFLATE, raw.length, compressed);
+        }
+        return new Encoded(sha256Hex(raw), CODEC_NONE, raw.length, raw);
+    }
+
+    public static String decode(String codec, byte[] data, int rawLength) {
+        if (CODEC_DEFLATE.equals(codec)) {
+            return new String(inflate(data, rawLength), StandardCharsets.UTF_8);
+        }
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    public static String sha256Hex(byte[] raw) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(raw));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int rawLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] out = new byte[rawLength];
+            int offset = 0;
+            while (offset < rawLength && !inflater.finished()) {
+                int count = inflater.inflate(out, offset, rawLength - offset);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += count;
+            }
+            if (offset != rawLength) {
+                throw new IllegalStateException("Corrupt text blob: expected " + rawLength + " bytes, got " + offset);
+            }
+            return out;
+        } catch (DataFormatException ex) {
+            throw new IllegalStateException("Corrupt text blob", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public record Encoded(String hash, String codec, int rawLength, byte[] data) {
+    }
+}
@@ -0,0 +1,208 @@
+package com.bko.orchestration.service;
+
+import com.bko.config.MultiAgentProperties;
+import com.bko.entity.PromptLog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Content-addressed storage for long log text. Each distinct text is stored once in
+ * {@code text_blob}, keyed by its SHA-256 and compressed with deflate; log rows keep
+ * only the hash. Reads resolve hashes in one query per batch and keep recently used
+ * texts in a small LRU (blobs are immutable, so the cache never goes stale).
+ */
+@Service
+@Slf4j
+public class TextBlobService {
+
+    private static final String INSERT_BLOB = """
+            INSERT INTO text_blob (hash, codec, raw_length, data)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (hash) DO NOTHING
+            """;
+
+    private final MultiAgentProperties.TextBlobConfig config;
+    private final ObjectProvider<JdbcTemplate> jdbcTemplateProvider;
+    private final Map<String, String> textCache;
+    private final Map<String, Boolean> storedHashes;
+    private final SchemaProbe schemaProbe;
+
+    public TextBlobService(MultiAgentProperties properties, ObjectProvider<JdbcTemplate> jdbcTemplateProvider,
+                           SchemaProbe schemaProbe) {
+        this.config = properties.getTextBlob();
+        this.jdbcTemplateProvider = jdbcTemplateProvider;
+        this.schemaProbe = schemaProbe;
+        this.textCache = lru(config.getCacheSize());
+        this.storedHashes = lru(config.getCacheSize() * 4);
+    }
+
+    /**
+     * True when blob storage is enabled and the schema has the {@code text_blob} table
+     * (Liquibase may be disabled, in which case text stays inline).
+     */
+    public boolean isAvailable() {
+        return config.isEnabled()
+                && schemaProbe.hasColumns("text_blob", "hash")
+                && schemaProbe.hasColumns("prompt_log", "system_prompt_hash");
+    }
+
+    /**
+     * Returns the blob for {@code text}, or {@code null} if the text is short enough to stay inline.
+     */
+    @Nullable
+    public TextBlobCodec.Encoded encode(@Nullable String text) {
+        if (text == null || text.length() < config.getInlineThreshold()) {
+            return null;
+        }
+        return TextBlobCodec.encode(text);
+    }
+
+    /**
+     * Inserts blobs that have not been stored yet, in one JDBC batch. Joins the caller's
+     * transaction when there is one, so the referencing row can be inserted right after.
+     */
+    public void saveAll(Collection<TextBlobCodec.Encoded> blobs) {
+        List<TextBlobCodec.Encoded> pending = new ArrayList<>(blobs.size());
+        Set<String> seen = new LinkedHashSet<>();
+        for (TextBlobCodec.Encoded blob : blobs) {
+            if (blob == null || !seen.add(blob.hash())) {
+                continue;
+            }
+            synchronized (storedHashes) {
+                if (storedHashes.containsKey(blob.hash())) {
+                    continue;
+                }
+            }
+            pending.add(blob);
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        jdbcTemplateProvider.getObject().batchUpdate(INSERT_BLOB, pending, pending.size(), (ps, blob) -> {
+            ps.setString(1, blob.hash());
+            ps.setString(2, blob.codec());
+            ps.setInt(3, blob.rawLength());
+            ps.setBytes(4, blob.data());
+        });
+        // A rolled-back insert must not be remembered, or later rows would reference a missing blob.
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    rememberStored(pending);
+                }
+            });
+        } else {
+            rememberStored(pending);
+        }
+    }
+
+    private void rememberStored(List<TextBlobCodec.Encoded> blobs) {
+        synchronized (storedHashes) {
+            for (TextBlobCodec.Encoded blob : blobs) {
+                storedHashes.put(blob.hash(), Boolean.TRUE);
+            }
+        }
+    }
+
+    /**
+     * Loads and decompresses the given hashes; unknown hashes are absent from the result.
+     */
+    public Map<String, String> load(Collection<String> hashes) {
+        Map<String, String> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        synchronized (textCache) {
+            for (String hash : hashes) {
+                if (hash == null || result.containsKey(hash)) {
+                    continue;
+                }
+                String cached = textCache.get(hash);
+                if (cached != null) {
+                    result.put(hash, cached);
+                } else {
+                    missing.add(hash);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        NamedParameterJdbcTemplate named = new NamedParameterJdbcTemplate(jdbcTemplateProvider.getObject());
+        named.query("SELECT hash, codec, raw_length, data FROM text_blob WHERE hash IN (:hashes)",
+                new MapSqlParameterSource("hashes", missing),
+                rs -> {
+                    String hash = rs.getString("hash");
+                    result.put(hash, TextBlobCodec.decode(rs.getString("codec"), rs.getBytes("data"),
+                            rs.getInt("raw_length")));
+                });
+        synchronized (textCache) {
+            for (String hash : missing) {
+                String text = result.get(hash);
+                if (text != null) {
+                    textCache.put(hash, text);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fills the text fields of prompt logs whose content lives in {@code text_blob}.
+     * The text columns are not updatable, so this never turns into an UPDATE.
+     */
+    public void hydrate(Collection<PromptLog> logs) {
+        Set<String> hashes = new LinkedHashSet<>();
+        for (PromptLog log : logs) {
+            addIfPresent(hashes, log.getSystemPromptHash());
+            addIfPresent(hashes, log.getUserPromptHash());
+            addIfPresent(hashes, log.getFullResponseHash());
+        }
+        if (hashes.isEmpty()) {
+            return;
+        }
+        Map<String, String> texts = load(hashes);
+        for (PromptLog log : logs) {
+            if (log.getSystemPromptHash() != null) {
+                log.setSystemPrompt(texts.get(log.getSystemPromptHash()));
+            }
+            if (log.getUserPromptHash() != null) {
+                log.setUserPrompt(texts.get(log.getUserPromptHash()));
+            }
+            if (log.getFullResponseHash() != null) {
+                log.setFullResponse(texts.get(log.getFullResponseHash()));
+            }
+        }
+    }
+
+    private static void addIfPresent(Set<String> hashes, @Nullable String hash) {
+        if (hash != null) {
+            hashes.add(hash);
+        }
+    }
+
+    private static <V> Map<String, V> lru(int maxEntries) {
+        int limit = Math.max(0, maxEntries);
+        return new LinkedHashMap<>(Math.min(limit, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > limit;
+            }
+        };
+    }
+}
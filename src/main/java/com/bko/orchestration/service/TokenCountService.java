@@ -0,0 +1,122 @@
+package com.bko.orchestration.service;
+
+import com.bko.config.MultiAgentProperties;
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Counts tokens locally with the BPE vocabularies bundled in jtokkit, so no network
+ * call is needed. Used wherever the model API did not report usage for a prompt.
+ * Counts are cached in a bounded LRU keyed by encoding and content hash.
+ */
+@Service
+public class TokenCountService {
+
+    private final EncodingRegistry registry = Encodings.newLazyEncodingRegistry();
+    private final Map<CacheKey, Integer> cache;
+
+    public TokenCountService(MultiAgentProperties properties) {
+        int maxEntries = Math.max(0, properties.getTokenizer().getCacheSize());
+        this.cache = new LinkedHashMap<>(Math.min(maxEntries, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, Integer> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of tokens in {@code text} for the tokenizer family of {@code model}.
+     * Models without a public vocabulary (e.g. Gemini, Claude) fall back to cl100k_base,
+     * which tracks their counts far more closely than a character heuristic.
+     */
+    public int count(@Nullable String model, @Nullable String text) {
+        if (!StringUtils.hasText(text)) {
+            return 0;
+        }
+        EncodingType type = encodingFor(model);
+        CacheKey key = new CacheKey(type, text.length(), hash(text));
+        synchronized (cache) {
+            Integer cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Encoding encoding = registry.getEncoding(type);
+        int count = encoding.countTokensOrdinary(text);
+        synchronized (cache) {
+            cache.put(key, count);
+        }
+        return count;
+    }
+
+    /**
+     * Returns {@code reported} when the model API reported a count, otherwise counts {@code text}.
+     */
+    public int countUnlessReported(@Nullable Integer reported, @Nullable String model, @Nullable String text) {
+        return reported != null ? reported : count(model, text);
+    }
+
+    /**
+     * The input text of a logged prompt as run events show it and as its tokens are counted:
+     * a {@code System:} and a {@code User:} section, each left out when empty.
+     */
+    public static String renderPrompt(@Nullable String systemPrompt, @Nullable String userPrompt) {
+        StringBuilder sb = new StringBuilder();
+        if (StringUtils.hasText(systemPrompt)) {
+            sb.append("System:\n").append(systemPrompt.trim());
+        }
+        if (StringUtils.hasText(userPrompt)) {
+            if (!sb.isEmpty()) {
+                sb.append("\n\n");
+            }
+            sb.append("User:\n").append(userPrompt.trim());
+        }
+        return sb.toString();
+    }
+
+    EncodingType encodingFor(@Nullable String model) {
+        if (!StringUtils.hasText(model)) {
+            return EncodingType.CL100K_BASE;
+        }
+        String normalized = model.trim().toLowerCase(Locale.ROOT);
+        if (normalized.startsWith("gpt-4o")
+                || normalized.startsWith("gpt-4.1")
+                || normalized.startsWith("gpt-4.5")
+                || normalized.startsWith("gpt-5")
+                || normalized.startsWith("o1")
+                || normalized.startsWith("o3")
+                || normalized.startsWith("o4")) {
+            return EncodingType.O200K_BASE;
+        }
+        if (normalized.startsWith("text-davinci") || normalized.startsWith("code-davinci")) {
+            return EncodingType.P50K_BASE;
+        }
+        return EncodingType.CL100K_BASE;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units; cheap compared to encoding and wide
+     * enough (combined with the length) that collisions are not a practical concern.
+     */
+    private static long hash(String text) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private record CacheKey(EncodingType encoding, int length, long hash) {
+    }
+}
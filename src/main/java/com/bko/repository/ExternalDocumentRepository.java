@@ -38,6 +38,20 @@ public interface ExternalDocumentRepository extends JpaRepository<ExternalDocume
             org.springframework.data.domain.Pageable pageable
     );
 
+    /**
+     * Keyset page of documents changed after ({@code after}, {@code afterId}), oldest change first.
+     */
+    @Query("""
+            SELECT d FROM ExternalDocument d
+            WHERE d.updatedAt > :after OR (d.updatedAt = :after AND d.id > :afterId)
+            ORDER BY d.updatedAt, d.id
+            """)
+    List<ExternalDocument> findUpdatedAfter(
+            @Param("after") OffsetDateTime after,
+            @Param("afterId") UUID afterId,
+            org.springframework.data.domain.Pageable pageable
+    );
+
     /**
      * Native query with CAST to TEXT so columns stored as BYTEA (e.g. from older schema)
      * still work with lower() in PostgreSQL.
@@ -82,15 +96,45 @@ public interface ExternalDocumentRepository extends JpaRepository<ExternalDocume
     );
 
     /**
-     * Native query with CAST so source column works even if stored as BYTEA.
+     * Full-text search over the weighted {@code search_vector} column (changelog 16), ranked by
+     * {@code ts_rank}. {@code likePattern} is the escaped, lower-cased {@code %query%} used for the
+     * trigram-indexed fallback on source id and authors, which stemming would not match.
      */
     @Query(value = """
-            SELECT ed.source_id FROM external_document ed
-            WHERE lower(CAST(ed.source AS TEXT)) = lower(CAST(:source AS TEXT))
-              AND ed.source_id IN :sourceIds
+            SELECT ed.* FROM external_document ed
+            WHERE (CAST(:source AS TEXT) IS NULL OR lower(ed.source) = lower(CAST(:source AS TEXT)))
+              AND (
+                    ed.search_vector @@ websearch_to_tsquery('english', :queryText)
+                    OR lower(ed.source_id) LIKE :likePattern
+                    OR lower(ed.authors) LIKE :likePattern
+                  )
+            ORDER BY (lower(ed.source_id) = lower(:queryText)) DESC,
+                     ts_rank(ed.search_vector, websearch_to_tsquery('english', :queryText)) DESC,
+                     ed.source_published_at DESC NULLS LAST,
+                     ed.created_at DESC
             """, nativeQuery = true)
-    List<String> findExistingSourceIds(
+    List<ExternalDocument> searchDocumentsRanked(
             @Param("source") String source,
-            @Param("sourceIds") List<String> sourceIds
+            @Param("queryText") String queryText,
+            @Param("likePattern") String likePattern,
+            org.springframework.data.domain.Pageable pageable
+    );
+
+    /**
+     * Count for {@link #searchDocumentsRanked}; served by the same GIN indexes.
+     */
+    @Query(value = """
+            SELECT COUNT(*) FROM external_document ed
+            WHERE (CAST(:source AS TEXT) IS NULL OR lower(ed.source) = lower(CAST(:source AS TEXT)))
+              AND (
+                    ed.search_vector @@ websearch_to_tsquery('english', :queryText)
+                    OR lower(ed.source_id) LIKE :likePattern
+                    OR lower(ed.authors) LIKE :likePattern
+                  )
+            """, nativeQuery = true)
+    long countSearchDocumentsRanked(
+            @Param("source") String source,
+            @Param("queryText") String queryText,
+            @Param("likePattern") String likePattern
     );
 }
@@ -1,10 +1,13 @@
 package com.bko.repository;
 
 import com.bko.entity.PromptLog;
+import com.bko.orchestration.model.PromptLogSummary;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.OffsetDateTime;
 import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
@@ -19,4 +22,39 @@ public interface PromptLogRepository extends JpaRepository<PromptLog, UUID> {
 
     @Query("SELECT pl FROM PromptLog pl JOIN FETCH pl.session WHERE pl.session.id IN :sessionIds ORDER BY pl.createdAt ASC")
     List<PromptLog> findBySession_IdInOrderByCreatedAtAsc(@Param("sessionIds") Collection<UUID> sessionIds);
+
+    /**
+     * Same as {@link #findBySession_IdInOrderByCreatedAtAsc} but bounded by the sessions' time range,
+     * so Postgres only scans the monthly partitions that can hold their rows.
+     */
+    @Query("SELECT pl FROM PromptLog pl JOIN FETCH pl.session WHERE pl.session.id IN :sessionIds"
+            + " AND pl.createdAt >= :from AND pl.createdAt < :to ORDER BY pl.createdAt ASC")
+    List<PromptLog> findBySessionIdsInRange(@Param("sessionIds") Collection<UUID> sessionIds,
+                                            @Param("from") OffsetDateTime from,
+                                            @Param("to") OffsetDateTime to);
+
+    /**
+     * Keyset page of a session's logs ordered by (created_at, id), starting after the given
+     * position. The explicit {@code createdAt >= afterTime} bound lets Postgres prune partitions.
+     */
+    @Query("SELECT pl FROM PromptLog pl JOIN FETCH pl.session WHERE pl.session.id = :sessionId"
+            + " AND pl.createdAt >= :afterTime AND pl.createdAt < :to"
+            + " AND (pl.createdAt > :afterTime OR pl.id > :afterId)"
+            + " ORDER BY pl.createdAt ASC, pl.id ASC")
+    List<PromptLog> findPageAfter(@Param("sessionId") UUID sessionId,
+                                  @Param("afterTime") OffsetDateTime afterTime,
+                                  @Param("afterId") UUID afterId,
+                                  @Param("to") OffsetDateTime to,
+                                  Pageable pageable);
+
+    @Query("SELECT new com.bko.orchestration.model.PromptLogSummary(pl.id, pl.createdAt, pl.purpose, pl.role,"
+            + " pl.inputTokenCount, pl.outputTokenCount) FROM PromptLog pl WHERE pl.session.id = :sessionId"
+            + " AND pl.createdAt >= :afterTime AND pl.createdAt < :to"
+            + " AND (pl.createdAt > :afterTime OR pl.id > :afterId)"
+            + " ORDER BY pl.createdAt ASC, pl.id ASC")
+    List<PromptLogSummary> findSummaryPageAfter(@Param("sessionId") UUID sessionId,
+                                                @Param("afterTime") OffsetDateTime afterTime,
+                                                @Param("afterId") UUID afterId,
+                                                @Param("to") OffsetDateTime to,
+                                                Pageable pageable);
 }
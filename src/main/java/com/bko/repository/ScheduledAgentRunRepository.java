@@ -2,6 +2,8 @@ package com.bko.repository;
 
 import com.bko.entity.ScheduledAgent;
 import com.bko.entity.ScheduledAgentRun;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.List;
@@ -10,5 +12,7 @@ import java.util.UUID;
 public interface ScheduledAgentRunRepository extends JpaRepository<ScheduledAgentRun, UUID> {
 
     List<ScheduledAgentRun> findByAgentOrderByStartedAtDesc(ScheduledAgent agent);
+
+    Page<ScheduledAgentRun> findByAgentOrderByStartedAtDesc(ScheduledAgent agent, Pageable pageable);
 }
 
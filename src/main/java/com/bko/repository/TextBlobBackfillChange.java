@@ -0,0 +1,144 @@
+package com.bko.repository;
+
+import com.bko.orchestration.service.TextBlobCodec;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Liquibase change that moves existing long log text into {@code text_blob}. Rows are
+ * converted in batches: the blob is inserted (or reused when the hash already exists),
+ * the hash column is set and the inline text is cleared.
+ * <p>
+ * Batches walk the table in id order from the last converted id, and each batch is
+ * committed on its own (the change set runs outside a transaction). Converted rows no
+ * longer match, so an interrupted backfill simply continues where it stopped when rerun.
+ */
+public class TextBlobBackfillChange implements CustomTaskChange {
+
+    private static final String[][] COLUMNS = {
+            {"prompt_log", "system_prompt", "system_prompt_hash"},
+            {"prompt_log", "user_prompt", "user_prompt_hash"},
+            {"prompt_log", "full_response", "full_response_hash"},
+            {"tool_call_log", "tool_input", "tool_input_hash"},
+            {"tool_call_log", "tool_output", "tool_output_hash"},
+            {"worker_result_log", "output", "output_hash"},
+    };
+
+    private int inlineThreshold = 256;
+    private int batchSize = 500;
+    private long converted;
+
+    public void setInlineThreshold(String inlineThreshold) {
+        this.inlineThreshold = Integer.parseInt(inlineThreshold.trim());
+    }
+
+    public void setBatchSize(String batchSize) {
+        this.batchSize = Integer.parseInt(batchSize.trim());
+    }
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for (String[] column : COLUMNS) {
+                    converted += backfill(connection, column[0], column[1], column[2]);
+                }
+            } catch (SQLException ex) {
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException ex) {
+            throw new CustomChangeException("Failed to backfill text_blob", ex);
+        }
+    }
+
+    private long backfill(Connection connection, String table, String textColumn, String hashColumn) throws SQLException {
+        String select = "SELECT id, " + textColumn + " FROM " + table
+                + " WHERE id > ? AND " + textColumn + " IS NOT NULL AND length(" + textColumn + ") >= ?"
+                + " ORDER BY id LIMIT ?";
+        String update = "UPDATE " + table + " SET " + hashColumn + " = ?, " + textColumn + " = NULL WHERE id = ?";
+        long total = 0;
+        // Smallest UUID; ids are compared as Postgres orders uuid values.
+        UUID lastId = new UUID(0L, 0L);
+        while (true) {
+            List<UUID> ids = new ArrayList<>(batchSize);
+            List<TextBlobCodec.Encoded> blobs = new ArrayList<>(batchSize);
+            try (PreparedStatement statement = connection.prepareStatement(select)) {
+                statement.setObject(1, lastId);
+                statement.setInt(2, inlineThreshold);
+                statement.setInt(3, batchSize);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getObject(1, UUID.class));
+                        blobs.add(TextBlobCodec.encode(rs.getString(2)));
+                    }
+                }
+            }
+            if (ids.isEmpty()) {
+                return total;
+            }
+            try (PreparedStatement insertBlob = connection.prepareStatement(
+                    "INSERT INTO text_blob (hash, codec, raw_length, data) VALUES (?, ?, ?, ?) ON CONFLICT (hash) DO NOTHING");
+                 PreparedStatement updateRow = connection.prepareStatement(update)) {
+                for (int i = 0; i < ids.size(); i++) {
+                    TextBlobCodec.Encoded blob = blobs.get(i);
+                    insertBlob.setString(1, blob.hash());
+                    insertBlob.setString(2, blob.codec());
+                    insertBlob.setInt(3, blob.rawLength());
+                    insertBlob.setBytes(4, blob.data());
+                    insertBlob.addBatch();
+                    updateRow.setString(1, blob.hash());
+                    updateRow.setObject(2, ids.get(i));
+                    updateRow.addBatch();
+                }
+                insertBlob.executeBatch();
+                updateRow.executeBatch();
+            }
+            connection.commit();
+            lastId = ids.getLast();
+            total += ids.size();
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Moved " + converted + " log text values into text_blob";
+    }
+
+    @Override
+    public void setUp() {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        ValidationErrors errors = new ValidationErrors();
+        if (inlineThreshold < 1) {
+            errors.addError("inlineThreshold must be positive");
+        }
+        if (batchSize < 1) {
+            errors.addError("batchSize must be positive");
+        }
+        return errors;
+    }
+}
@@ -1,22 +1,42 @@
 package com.bko.stream;
 
+import com.bko.config.MultiAgentProperties;
+import com.bko.orchestration.service.AgentRunSummaryService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
-import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Broadcasts agent-run lifecycle events to frontends viewing a given agent.
- * When a scheduled agent run is created or updated, subscribers for that agent
- * receive a push so they can refresh the run list without polling.
+ * Updates for one agent are coalesced for {@code agent-update-window} and then pushed once
+ * as {@code {"type":"agent-run-update","agentId":..,"runs":[..]}} carrying the changed
+ * run summaries, so clients patch their run list instead of refetching the agent (if the
+ * summaries cannot be loaded, {@code runs} is left out and clients refetch).
+ * <p>
+ * Subscribers per agent are a copy-on-write array, so a push walks it without locking. Each
+ * subscriber has a small outbound queue drained off the flushing thread; one that falls
+ * more than {@code agent-update-queue-limit} pushes behind gets a single {@code resync}
+ * marker instead of the backlog.
  */
 @Component
 public class AgentRunUpdatesHub {
@@ -24,18 +44,33 @@ public class AgentRunUpdatesHub {
     private static final Logger log = LoggerFactory.getLogger(AgentRunUpdatesHub.class);
     private static final String EVENT_TYPE = "agent-run-update";
 
-    private final ObjectMapper objectMapper;
-    /** agentId (string) -> set of WebSocketSession */
-    private final Map<String, Set<WebSocketSession>> sessionsByAgentId = new ConcurrentHashMap<>();
+    private final StreamCodec codec;
+    private final MultiAgentProperties.StreamHubConfig config;
+    private final AgentRunSummaryService summaryService;
+    /** agentId (string) -> subscribers, replaced as a whole on every change */
+    private final Map<String, Subscriber[]> subscribersByAgentId = new ConcurrentHashMap<>();
+    /** agentId (string) -> runs changed since the agent's last push */
+    private final Map<String, Set<UUID>> pendingRunIds = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("agent-update-flush").factory());
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
 
-    public AgentRunUpdatesHub(ObjectMapper objectMapper) {
-        this.objectMapper = objectMapper;
+    public AgentRunUpdatesHub(ObjectMapper objectMapper, MultiAgentProperties properties,
+                              AgentRunSummaryService summaryService) {
+        this.codec = new StreamCodec(objectMapper);
+        this.config = properties.getStreamHub();
+        this.summaryService = summaryService;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flusher.shutdownNow();
+        senders.shutdownNow();
     }
 
     public void registerSession(UUID agentId, WebSocketSession session) {
-        String key = agentId.toString();
-        sessionsByAgentId.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(session);
-        session.getAttributes().put("agentId", key);
+        subscribe(agentId, session);
+        session.getAttributes().put("agentId", agentId.toString());
     }
 
     public void removeSession(WebSocketSession session) {
@@ -43,49 +78,148 @@ public class AgentRunUpdatesHub {
         if (keyObj == null) {
             return;
         }
-        String key = keyObj.toString();
-        Set<WebSocketSession> set = sessionsByAgentId.get(key);
-        if (set != null) {
-            set.remove(session);
-            if (set.isEmpty()) {
-                sessionsByAgentId.remove(key);
+        unsubscribe(keyObj.toString(), session);
+    }
+
+    /**
+     * Adds one agent subscription for a session; a multiplexed session may hold several.
+     */
+    void subscribe(UUID agentId, WebSocketSession session) {
+        String key = agentId.toString();
+        subscribersByAgentId.compute(key, (k, subscribers) -> {
+            if (subscribers == null) {
+                return new Subscriber[]{new Subscriber(session, key)};
             }
-        }
+            if (Arrays.stream(subscribers).anyMatch(subscriber -> subscriber.session == session)) {
+                return subscribers;
+            }
+            Subscriber[] grown = Arrays.copyOf(subscribers, subscribers.length + 1);
+            grown[subscribers.length] = new Subscriber(session, key);
+            return grown;
+        });
+    }
+
+    void unsubscribe(String agentId, WebSocketSession session) {
+        subscribersByAgentId.computeIfPresent(agentId, (key, subscribers) -> {
+            Subscriber[] remaining = Arrays.stream(subscribers)
+                    .filter(subscriber -> subscriber.session != session)
+                    .toArray(Subscriber[]::new);
+            return remaining.length == 0 ? null : remaining;
+        });
     }
 
     /**
-     * Notify all subscribers for this agent that runs have changed (new run or status update).
-     * Call this after creating or updating a ScheduledAgentRun.
+     * Notify subscribers for this agent that a run was created or changed. Call this after
+     * saving the ScheduledAgentRun; updates within the window are pushed together.
      */
-    public void notifyRunUpdate(UUID agentId) {
+    public void notifyRunUpdate(UUID agentId, UUID runId) {
         String key = agentId.toString();
-        Set<WebSocketSession> set = sessionsByAgentId.get(key);
-        if (set == null || set.isEmpty()) {
+        if (!subscribersByAgentId.containsKey(key)) {
+            return;
+        }
+        boolean[] first = new boolean[1];
+        pendingRunIds.compute(key, (k, runIds) -> {
+            if (runIds == null) {
+                runIds = new LinkedHashSet<>();
+                first[0] = true;
+            }
+            runIds.add(runId);
+            return runIds;
+        });
+        if (first[0]) {
+            flusher.schedule(() -> flush(key), config.getAgentUpdateWindow().toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush(String agentId) {
+        Set<UUID> runIds = pendingRunIds.remove(agentId);
+        Subscriber[] subscribers = subscribersByAgentId.get(agentId);
+        if (runIds == null || subscribers == null) {
             return;
         }
-        Map<String, Object> payload = Map.of(
-                "type", EVENT_TYPE,
-                "agentId", key
-        );
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", EVENT_TYPE);
+        payload.put("agentId", agentId);
         try {
-            String json = objectMapper.writeValueAsString(payload);
-            TextMessage message = new TextMessage(json);
-            set.forEach(session -> send(session, message));
-        } catch (IOException e) {
-            log.warn("Failed to serialize agent-run-update payload", e);
+            payload.put("runs", summaryService.summaries(runIds));
+        } catch (RuntimeException ex) {
+            log.warn("Failed to load run summaries for agent {}; subscribers will refetch: {}",
+                    agentId, ex.getMessage());
+        }
+        // Each encoding is serialized at most once per push.
+        Map<StreamEncoding, WebSocketMessage<?>> messages = new EnumMap<>(StreamEncoding.class);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(messages.computeIfAbsent(StreamEncoding.of(subscriber.session),
+                    encoding -> encode(encoding, payload)));
         }
     }
 
-    private void send(WebSocketSession session, TextMessage message) {
-        if (!session.isOpen()) {
+    @Nullable
+    private WebSocketMessage<?> encode(StreamEncoding encoding, Object payload) {
+        return encoding == StreamEncoding.CBOR ? codec.binary(payload) : codec.text(payload);
+    }
+
+    private void send(WebSocketSession session, @Nullable WebSocketMessage<?> message) {
+        if (message == null || !session.isOpen()) {
             return;
         }
         try {
-            synchronized (session) {
-                session.sendMessage(message);
-            }
+            SessionSendLock.send(session, message);
         } catch (IOException e) {
             log.debug("Failed to send agent-run-update: {}", e.getMessage());
         }
     }
+
+    private final class Subscriber {
+        private final WebSocketSession session;
+        private final String agentId;
+        private final ArrayDeque<WebSocketMessage<?>> queue = new ArrayDeque<>();
+        private boolean draining;
+        private boolean resync;
+
+        private Subscriber(WebSocketSession session, String agentId) {
+            this.session = session;
+            this.agentId = agentId;
+        }
+
+        void offer(@Nullable WebSocketMessage<?> message) {
+            if (message == null) {
+                return;
+            }
+            synchronized (this) {
+                if (resync) {
+                    return;
+                }
+                if (queue.size() >= config.getAgentUpdateQueueLimit()) {
+                    queue.clear();
+                    resync = true;
+                } else {
+                    queue.add(message);
+                }
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
+            senders.execute(this::drain);
+        }
+
+        private void drain() {
+            while (true) {
+                WebSocketMessage<?> next;
+                synchronized (this) {
+                    next = queue.poll();
+                    if (next == null && resync) {
+                        resync = false;
+                        next = encode(StreamEncoding.of(session),
+                                Map.of("type", SessionOutbound.RESYNC_TYPE, "agentId", agentId));
+                    } else if (next == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                send(session, next);
+            }
+        }
+    }
 }
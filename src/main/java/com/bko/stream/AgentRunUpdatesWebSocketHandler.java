@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
@@ -12,11 +13,12 @@ import java.net.URI;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 @Component
-public class AgentRunUpdatesWebSocketHandler extends TextWebSocketHandler {
+public class AgentRunUpdatesWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
 
     private static final Logger log = LoggerFactory.getLogger(AgentRunUpdatesWebSocketHandler.class);
 
@@ -49,6 +51,7 @@ public class AgentRunUpdatesWebSocketHandler extends TextWebSocketHandler {
         }
         try {
             UUID agentId = UUID.fromString(agentIdParam.trim());
+            StreamEncoding.negotiate(session, queryParams.get("encoding"));
             hub.registerSession(agentId, session);
         } catch (IllegalArgumentException e) {
             log.debug("Invalid agentId in WebSocket query: {}", agentIdParam);
@@ -60,6 +63,11 @@ public class AgentRunUpdatesWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
+    @Override
+    public List<String> getSubProtocols() {
+        return StreamEncoding.SUBPROTOCOLS;
+    }
+
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
         hub.removeSession(session);
@@ -1,49 +1,161 @@
 package com.bko.stream;
 
+import com.bko.config.MultiAgentProperties;
+import com.bko.orchestration.service.OrchestrationMetricsService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+/**
+ * Live run streams. Runs are local to the node that created them unless a
+ * {@link StreamBroker} is active (cluster mode): then the creating node publishes every event
+ * through the broker, any other node that gets a subscriber for the run keeps a mirror of it
+ * fed from the broker, and cancellation requested on a mirror node is forwarded to the
+ * node executing the run.
+ * <p>
+ * With a {@link StreamJournal}, runs created here are also journaled to disk: subscribers
+ * resuming from before the ring's oldest event are backfilled from the journal, and runs
+ * that are no longer in memory (including after a restart) are restored from it as
+ * completed runs. Finished runs then only stay in memory for a short grace period.
+ * <p>
+ * A finished run without subscribers is queued for expiry once, at its deadline, and a
+ * single sweeper thread removes it when the deadline passes; requests never scan all runs.
+ */
 @Component
 public class OrchestrationStreamHub {
     private static final Logger log = LoggerFactory.getLogger(OrchestrationStreamHub.class);
-    private static final int MAX_BUFFER_SIZE = 500;
-    private static final long CLEANUP_TTL_MS = 30 * 60 * 1000L;
+    private static final long JOURNALED_RETENTION_MS = 60 * 1000L;
 
     private final ObjectMapper objectMapper;
+    private final StreamCodec codec;
+    private final MultiAgentProperties.StreamHubConfig config;
+    private final OrchestrationMetricsService metrics;
     private final Map<String, StreamRun> runs = new ConcurrentHashMap<>();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService batchFlusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("stream-batch-flush").factory());
+    private final ExecutorService mirrorSync = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().daemon().name("stream-mirror-sync").factory());
+    private final DelayQueue<RunExpiry> expiries = new DelayQueue<>();
+    @Nullable
+    private Thread expirySweeper;
+    @Nullable
+    private final StreamBroker broker;
+    @Nullable
+    private final StreamJournal journal;
 
-    public OrchestrationStreamHub(ObjectMapper objectMapper) {
+    public OrchestrationStreamHub(ObjectMapper objectMapper, MultiAgentProperties properties,
+                                  OrchestrationMetricsService metrics) {
+        this(objectMapper, properties, metrics, null, null);
+    }
+
+    @Autowired
+    public OrchestrationStreamHub(ObjectMapper objectMapper, MultiAgentProperties properties,
+                                  OrchestrationMetricsService metrics, @Nullable StreamBroker broker,
+                                  @Nullable StreamJournal journal) {
         this.objectMapper = objectMapper;
+        this.codec = new StreamCodec(objectMapper);
+        this.config = properties.getStreamHub();
+        this.metrics = metrics;
+        this.broker = broker;
+        this.journal = journal;
+    }
+
+    @PostConstruct
+    void start() {
+        expirySweeper = Thread.ofPlatform().name("stream-run-expiry").daemon().start(this::sweepExpiries);
+        if (broker != null) {
+            broker.start(new BrokerListener());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (expirySweeper != null) {
+            expirySweeper.interrupt();
+        }
+        batchFlusher.shutdownNow();
+        mirrorSync.shutdownNow();
+        senders.shutdownNow();
     }
 
     public String createRun() {
-        cleanupExpiredRuns();
+        return createRun(config.getBufferSize());
+    }
+
+    /**
+     * Creates a run whose replay buffer keeps the last {@code bufferCapacity} events.
+     */
+    public String createRun(int bufferCapacity) {
         String runId = UUID.randomUUID().toString();
-        runs.put(runId, new StreamRun(runId));
+        StreamBroker shared = clusterBroker();
+        StreamJournal runJournal = journalIfEnabled();
+        Consumer<StreamFrame> onAppend = null;
+        if (shared != null || runJournal != null) {
+            onAppend = frame -> {
+                if (shared != null && frame.message() != null) {
+                    shared.publish(runId, frame.event(), frame.message().getPayload());
+                }
+                if (runJournal != null) {
+                    runJournal.append(runId, frame);
+                }
+            };
+        }
+        runs.put(runId, new StreamRun(runId, bufferCapacity, false, onAppend));
+        metrics.recordStreamRunsLive(runs.size());
         return runId;
     }
 
     public void registerSession(String runId, WebSocketSession session, long sinceId) throws IOException {
         StreamRun run = runs.get(runId);
+        if (run == null) {
+            run = mirrorOf(runId);
+        }
+        if (run == null) {
+            run = restore(runId);
+        }
         if (run == null) {
             session.close();
             return;
         }
-        cleanupExpiredRuns();
-        run.sessions().put(session.getId(), session);
+        if (run.mirror()) {
+            syncMirror(run);
+        }
         session.getAttributes().put("runId", runId);
-        for (StreamEvent event : run.snapshotSince(sinceId)) {
-            send(session, event);
+        SessionOutbound outbound = new SessionOutbound(session, config, senders, codec, metrics);
+        StreamJournal runJournal = run.mirror() ? null : journalIfEnabled();
+        StreamRun.Backfill backfill = null;
+        if (runJournal != null) {
+            backfill = (afterId, beforeId) -> runJournal.read(runId, afterId, beforeId, Integer.MAX_VALUE);
+            // Bulk of an old resume point is read here; subscribe() only fills what was evicted meanwhile.
+            long oldest = run.oldestBufferedId();
+            if (sinceId + 1 < oldest) {
+                backfill.read(sinceId, oldest).forEach(outbound::offer);
+            }
         }
+        run.subscribe(session.getId(), outbound, sinceId,
+                config.isBatchingEnabled() ? config.getBatchMaxBytes() : 0, backfill);
     }
 
     public void removeSession(WebSocketSession session) {
@@ -56,28 +168,49 @@ public class OrchestrationStreamHub {
         if (run == null) {
             return;
         }
-        run.sessions().remove(session.getId());
-        pruneIfComplete(run);
+        SessionOutbound outbound = run.unsubscribe(session.getId());
+        if (outbound != null) {
+            outbound.close(null);
+        }
+        if (run.mirror() && !run.hasSubscribers()) {
+            runs.remove(runId, run);
+            metrics.recordStreamRunsLive(runs.size());
+            return;
+        }
+        scheduleExpiry(run);
     }
 
     public void emit(String runId, String type, Object data) {
         StreamRun run = runs.get(runId);
-        if (run == null) {
+        if (run == null || run.mirror()) {
             return;
         }
         if (run.cancelled() && !isCancelTerminal(type)) {
             return;
         }
-        StreamEvent event = run.addEvent(type, data, MAX_BUFFER_SIZE);
-        run.sessions().values().forEach(session -> send(session, event));
+        if (config.isBatchingEnabled() && !isCancelTerminal(type)) {
+            if (run.addBatchedEvent(type, data, codec::text, config.getBatchMaxBytes())) {
+                batchFlusher.schedule(run::flushBatch, config.getBatchWindow().toMillis(), TimeUnit.MILLISECONDS);
+            }
+            return;
+        }
+        run.addEvent(type, data, codec::text);
         if ("run-complete".equals(type) || "error".equals(type)) {
             run.markCompleted();
-            pruneIfComplete(run);
+            if (journal != null) {
+                journal.complete(runId);
+            }
+            scheduleExpiry(run);
         }
     }
 
     public boolean cancelRun(String runId) {
         StreamRun run = runs.get(runId);
+        StreamBroker shared = clusterBroker();
+        if ((run == null || run.mirror()) && shared != null && (run != null || shared.hasRun(runId))) {
+            shared.requestCancel(runId);
+            return true;
+        }
         if (run == null) {
             return false;
         }
@@ -85,8 +218,7 @@ public class OrchestrationStreamHub {
             return true;
         }
         run.markCancelled();
-        StreamEvent event = run.addEvent("run-cancel", Map.of(), MAX_BUFFER_SIZE);
-        run.sessions().values().forEach(session -> send(session, event));
+        run.addEvent("run-cancel", Map.of(), codec::text);
         return true;
     }
 
@@ -95,38 +227,167 @@ public class OrchestrationStreamHub {
         return run != null && run.cancelled();
     }
 
+    @Nullable
+    private StreamBroker clusterBroker() {
+        return broker != null && broker.isActive() ? broker : null;
+    }
+
+    @Nullable
+    private StreamJournal journalIfEnabled() {
+        return journal != null && journal.isEnabled() ? journal : null;
+    }
+
+    /**
+     * Reloads a journaled run that is no longer in memory; it can be replayed but not resumed.
+     */
+    @Nullable
+    private StreamRun restore(String runId) {
+        StreamJournal runJournal = journalIfEnabled();
+        if (runJournal == null || !runJournal.contains(runId)) {
+            return null;
+        }
+        List<StreamFrame> frames = runJournal.read(runId, 0, Long.MAX_VALUE, config.getBufferSize());
+        if (frames.isEmpty()) {
+            return null;
+        }
+        StreamRun restored = new StreamRun(runId, config.getBufferSize());
+        restored.applyRemote(frames, 0);
+        restored.markCompleted();
+        StreamRun existing = runs.putIfAbsent(runId, restored);
+        metrics.recordStreamRunsLive(runs.size());
+        return existing != null ? existing : restored;
+    }
+
+    @Nullable
+    private StreamRun mirrorOf(String runId) {
+        StreamBroker shared = clusterBroker();
+        if (shared == null || !shared.hasRun(runId)) {
+            return null;
+        }
+        StreamRun mirror = runs.computeIfAbsent(runId, id -> new StreamRun(id, config.getBufferSize(), true, null));
+        metrics.recordStreamRunsLive(runs.size());
+        return mirror;
+    }
+
+    /**
+     * Reads what the executing node published since the mirror's last event and applies it.
+     */
+    private void syncMirror(StreamRun run) {
+        StreamBroker source = clusterBroker();
+        if (source == null) {
+            return;
+        }
+        synchronized (run) {
+            List<StreamFrame> frames = new ArrayList<>();
+            boolean terminal = false;
+            for (StreamBroker.SharedEvent shared : source.recentEvents(run.runId(), run.published(), run.capacity())) {
+                try {
+                    StreamEvent event = objectMapper.readValue(shared.payload(), StreamEvent.class);
+                    frames.add(new StreamFrame(event, new TextMessage(shared.payload())));
+                    terminal |= "run-complete".equals(event.type()) || "error".equals(event.type());
+                } catch (IOException ex) {
+                    log.warn("Skipping unreadable shared stream event run={} id={}: {}",
+                            run.runId(), shared.id(), ex.getMessage());
+                }
+            }
+            run.applyRemote(frames, config.isBatchingEnabled() ? config.getBatchMaxBytes() : 0);
+            if (terminal) {
+                run.markCompleted();
+            }
+        }
+    }
+
+    private final class BrokerListener implements StreamBroker.Listener {
+
+        @Override
+        public void eventsPublished(String runId, long latestId) {
+            StreamRun run = runs.get(runId);
+            if (run != null && run.mirror() && latestId > run.published()) {
+                mirrorSync.execute(() -> syncMirror(run));
+            }
+        }
+
+        @Override
+        public void cancelRequested(String runId) {
+            StreamRun run = runs.get(runId);
+            if (run != null && !run.mirror()) {
+                cancelRun(runId);
+            }
+        }
+
+        @Override
+        public void connectionRestored() {
+            for (StreamRun run : runs.values()) {
+                if (run.mirror()) {
+                    mirrorSync.execute(() -> syncMirror(run));
+                }
+            }
+        }
+    }
+
     private boolean isCancelTerminal(String type) {
         return "run-cancel".equals(type) || "run-complete".equals(type) || "error".equals(type);
     }
 
-    private void send(WebSocketSession session, StreamEvent event) {
-        if (!session.isOpen()) {
-            return;
+    /**
+     * Queues a finished run without subscribers for removal after the retention period; a run
+     * is in the queue at most once.
+     */
+    private void scheduleExpiry(StreamRun run) {
+        if (run.completed() && !run.hasSubscribers() && run.claimExpiry()) {
+            expiries.add(new RunExpiry(run, run.lastUpdated().toEpochMilli() + retentionMillis()));
         }
-        try {
-            String payload = objectMapper.writeValueAsString(event);
-            synchronized (session) {
-                session.sendMessage(new TextMessage(payload));
+    }
+
+    private void sweepExpiries() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                expire(expiries.take().run());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException ex) {
+                log.warn("Stream run expiry failed: {}", ex.getMessage(), ex);
             }
-        } catch (IOException ex) {
-            log.debug("Failed to send stream event: {}", ex.getMessage());
         }
     }
 
-    private void pruneIfComplete(StreamRun run) {
-        if (!run.completed() || !run.sessions().isEmpty()) {
+    /**
+     * Removes a due run unless it gained subscribers (their removal requeues it) or was
+     * updated after being queued (requeued for its new deadline).
+     */
+    private void expire(StreamRun run) {
+        run.releaseExpiry();
+        if (runs.get(run.runId()) != run || !run.completed() || run.hasSubscribers()) {
             return;
         }
-        long cutoff = System.currentTimeMillis() - CLEANUP_TTL_MS;
-        if (run.lastUpdated().toEpochMilli() < cutoff) {
-            runs.remove(run.runId());
+        if (run.lastUpdated().toEpochMilli() + retentionMillis() > System.currentTimeMillis()) {
+            scheduleExpiry(run);
+            return;
+        }
+        if (runs.remove(run.runId(), run)) {
+            metrics.recordStreamRunExpired();
+            metrics.recordStreamRunsLive(runs.size());
         }
     }
 
-    private void cleanupExpiredRuns() {
-        long cutoff = System.currentTimeMillis() - CLEANUP_TTL_MS;
-        runs.values().removeIf(run -> run.completed()
-                && run.sessions().isEmpty()
-                && run.lastUpdated().toEpochMilli() < cutoff);
+    /**
+     * Journaled runs can be restored from disk, so finished ones leave memory sooner.
+     */
+    private long retentionMillis() {
+        long retention = config.getRunRetention().toMillis();
+        return journalIfEnabled() != null ? Math.min(retention, JOURNALED_RETENTION_MS) : retention;
+    }
+
+    private record RunExpiry(StreamRun run, long deadline) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deadline, ((RunExpiry) other).deadline);
+        }
     }
 }
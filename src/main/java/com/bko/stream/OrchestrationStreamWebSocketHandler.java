@@ -5,6 +5,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
@@ -13,10 +14,11 @@ import java.net.URI;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Component
-public class OrchestrationStreamWebSocketHandler extends TextWebSocketHandler {
+public class OrchestrationStreamWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
     private static final Logger log = LoggerFactory.getLogger(OrchestrationStreamWebSocketHandler.class);
 
     private final OrchestrationStreamHub hub;
@@ -39,9 +41,15 @@ public class OrchestrationStreamWebSocketHandler extends TextWebSocketHandler {
             return;
         }
         long since = parseLong(queryParams.get("since"), 0L);
+        StreamEncoding.negotiate(session, queryParams.get("encoding"));
         hub.registerSession(runId, session, since);
     }
 
+    @Override
+    public List<String> getSubProtocols() {
+        return StreamEncoding.SUBPROTOCOLS;
+    }
+
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) {
         // No-op: server push only.
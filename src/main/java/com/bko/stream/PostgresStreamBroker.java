@@ -0,0 +1,267 @@
+package com.bko.stream;
+
+import com.bko.config.MultiAgentProperties;
+import com.bko.config.MultiAgentProperties.StreamHubConfig;
+import com.bko.orchestration.service.SchemaProbe;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link StreamBroker} on Postgres, active with {@code stream-hub.cluster-enabled} once the
+ * {@code stream_event} table (changelog 17) exists.
+ * <p>
+ * A writer thread drains published events in arrival order, inserts them with one JDBC
+ * batch and then sends a single {@code NOTIFY} per run naming the newest id, so NOTIFY
+ * payloads stay tiny no matter how large the events are. A listener thread holds one
+ * connection with {@code LISTEN} on the shared channel and hands notifications to the hub;
+ * after reconnecting it tells the hub to re-read, since notifications are not queued for
+ * absent listeners. Cancellation requests travel on the same channel.
+ */
+@Component
+@Slf4j
+public class PostgresStreamBroker implements StreamBroker {
+
+    static final String CHANNEL = "multiagent_stream";
+
+    private static final int WRITE_BATCH_SIZE = 500;
+    private static final long RECONNECT_DELAY_MS = 5_000;
+    private static final String INSERT = """
+            INSERT INTO stream_event (run_id, event_id, type, payload, created_at)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (run_id, event_id) DO NOTHING
+            """;
+
+    private final StreamHubConfig config;
+    private final ObjectProvider<JdbcTemplate> jdbcTemplateProvider;
+    private final ObjectProvider<DataSource> dataSourceProvider;
+    private final SchemaProbe schemaProbe;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+    private volatile boolean active;
+    private volatile boolean running;
+    private Thread writer;
+    private Thread listenerThread;
+
+    public PostgresStreamBroker(MultiAgentProperties properties,
+                                ObjectProvider<JdbcTemplate> jdbcTemplateProvider,
+                                ObjectProvider<DataSource> dataSourceProvider,
+                                SchemaProbe schemaProbe) {
+        this.config = properties.getStreamHub();
+        this.jdbcTemplateProvider = jdbcTemplateProvider;
+        this.dataSourceProvider = dataSourceProvider;
+        this.schemaProbe = schemaProbe;
+    }
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public synchronized void start(Listener listener) {
+        if (running || !config.isClusterEnabled()) {
+            return;
+        }
+        JdbcTemplate jdbcTemplate = jdbcTemplateProvider.getIfAvailable();
+        DataSource dataSource = dataSourceProvider.getIfAvailable();
+        if (jdbcTemplate == null || dataSource == null) {
+            log.warn("Stream cluster mode is enabled but no DataSource is configured; streams stay node-local.");
+            return;
+        }
+        if (!schemaProbe.hasTable("stream_event")) {
+            log.warn("Stream cluster mode is enabled but table stream_event is missing (apply changelog 17); "
+                    + "streams stay node-local.");
+            return;
+        }
+        running = true;
+        active = true;
+        writer = Thread.ofPlatform().name("stream-broker-writer").daemon().start(() -> writeLoop(jdbcTemplate));
+        listenerThread = Thread.ofPlatform().name("stream-broker-listener").daemon()
+                .start(() -> listenLoop(dataSource, listener));
+        log.info("Stream cluster mode active on channel {}.", CHANNEL);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        listenerThread.interrupt();
+        writer.interrupt();
+        try {
+            writer.join(2_000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void publish(String runId, StreamEvent event, String payload) {
+        if (active) {
+            queue.add(new Pending(runId, event.id(), event.type(), payload, event.timestamp()));
+        }
+    }
+
+    @Override
+    public List<SharedEvent> recentEvents(String runId, long afterId, int limit) {
+        return jdbcTemplateProvider.getObject().query("""
+                        SELECT event_id, payload FROM (
+                            SELECT event_id, payload FROM stream_event
+                            WHERE run_id = ? AND event_id > ?
+                            ORDER BY event_id DESC
+                            LIMIT ?
+                        ) recent ORDER BY event_id
+                        """,
+                (rs, rowNum) -> new SharedEvent(rs.getLong("event_id"), rs.getString("payload")),
+                runId, afterId, limit);
+    }
+
+    @Override
+    public boolean hasRun(String runId) {
+        Boolean exists = jdbcTemplateProvider.getObject().queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM stream_event WHERE run_id = ?)", Boolean.class, runId);
+        return Boolean.TRUE.equals(exists);
+    }
+
+    @Override
+    public void requestCancel(String runId) {
+        notify(jdbcTemplateProvider.getObject(), "c|" + runId);
+    }
+
+    @Scheduled(fixedDelayString = "${multiagent.stream-hub.cluster-cleanup-interval:600000}")
+    public void expireEvents() {
+        if (!active) {
+            return;
+        }
+        try {
+            int deleted = jdbcTemplateProvider.getObject().update("DELETE FROM stream_event WHERE created_at < ?",
+                    Timestamp.from(Instant.now().minus(config.getClusterRetention())));
+            if (deleted > 0) {
+                log.debug("Expired {} shared stream events.", deleted);
+            }
+        } catch (Exception ex) {
+            log.warn("Failed to expire shared stream events: {}", ex.getMessage());
+        }
+    }
+
+    private void writeLoop(JdbcTemplate jdbcTemplate) {
+        List<Pending> batch = new ArrayList<>(WRITE_BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, WRITE_BATCH_SIZE - 1);
+                write(jdbcTemplate, batch);
+            } catch (InterruptedException ex) {
+                if (running) {
+                    continue;
+                }
+                List<Pending> rest = new ArrayList<>();
+                queue.drainTo(rest);
+                if (!rest.isEmpty()) {
+                    write(jdbcTemplate, rest);
+                }
+                return;
+            } catch (Exception ex) {
+                log.warn("Failed to share {} stream events: {}", batch.size(), ex.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(JdbcTemplate jdbcTemplate, List<Pending> batch) {
+        jdbcTemplate.batchUpdate(INSERT, batch, batch.size(), (ps, pending) -> {
+            ps.setString(1, pending.runId());
+            ps.setLong(2, pending.id());
+            ps.setString(3, pending.type());
+            ps.setString(4, pending.payload());
+            ps.setTimestamp(5, Timestamp.from(pending.timestamp()));
+        });
+        Map<String, Long> latest = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            latest.merge(pending.runId(), pending.id(), Math::max);
+        }
+        latest.forEach((runId, id) -> notify(jdbcTemplate, "e|" + runId + "|" + id));
+    }
+
+    private void listenLoop(DataSource dataSource, Listener listener) {
+        boolean reconnect = false;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                if (reconnect) {
+                    listener.connectionRestored();
+                }
+                reconnect = true;
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(1_000);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        dispatch(notification.getParameter(), listener);
+                    }
+                }
+            } catch (SQLException ex) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Stream cluster listener lost its connection: {}; retrying in {} ms.",
+                        ex.getMessage(), RECONNECT_DELAY_MS);
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    static void dispatch(String payload, Listener listener) {
+        String[] parts = payload.split("\\|");
+        try {
+            if (parts.length == 3 && "e".equals(parts[0])) {
+                listener.eventsPublished(parts[1], Long.parseLong(parts[2]));
+            } else if (parts.length == 2 && "c".equals(parts[0])) {
+                listener.cancelRequested(parts[1]);
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Failed to handle stream cluster notification {}: {}", payload, ex.getMessage());
+        }
+    }
+
+    private static void notify(JdbcTemplate jdbcTemplate, String payload) {
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, CHANNEL, payload);
+    }
+
+    private record Pending(String runId, long id, String type, String payload, Instant timestamp) {
+    }
+}
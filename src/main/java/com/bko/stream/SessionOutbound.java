@@ -0,0 +1,300 @@
+package com.bko.stream;
+
+import com.bko.config.MultiAgentProperties.StreamHubConfig;
+import com.bko.orchestration.service.OrchestrationMetricsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * Bounded outbound queue for one WebSocket session. Emitters only enqueue; a sender task on
+ * {@code executor} drains the queue, so a slow client never blocks the thread producing
+ * events. Limits follow Spring's {@code ConcurrentWebSocketSessionDecorator}: a send that has
+ * been in progress longer than {@code send-time-limit} closes the session, and exceeding
+ * {@code queue-capacity} frames or {@code buffer-size-limit} bytes applies the configured
+ * {@link StreamHubConfig.OverflowPolicy}. Frames are sent in the session's negotiated
+ * {@link StreamEncoding}; queue limits are measured on their JSON size.
+ */
+class SessionOutbound {
+
+    static final String RESYNC_TYPE = "resync";
+
+    private static final Logger log = LoggerFactory.getLogger(SessionOutbound.class);
+    private static final String TASK_OUTPUT_TYPE = "task-output";
+
+    private final WebSocketSession session;
+    private final StreamHubConfig config;
+    private final Executor executor;
+    private final StreamCodec codec;
+    private final StreamEncoding encoding;
+    private final OrchestrationMetricsService metrics;
+    private final ArrayDeque<StreamFrame> queue = new ArrayDeque<>();
+    private long queuedBytes;
+    private long lastQueuedId;
+    private boolean draining;
+    private boolean closeAfterDrain;
+    private volatile boolean closed;
+    private volatile long sendStartedAt;
+    private volatile long lastSentId;
+
+    SessionOutbound(WebSocketSession session, StreamHubConfig config, Executor executor,
+                    StreamCodec codec, OrchestrationMetricsService metrics) {
+        this.session = session;
+        this.config = config;
+        this.executor = executor;
+        this.codec = codec;
+        this.encoding = StreamEncoding.of(session);
+        this.metrics = metrics;
+    }
+
+    WebSocketSession session() {
+        return session;
+    }
+
+    /**
+     * Queues a frame for delivery. Frames at or below the last queued id are ignored, so a
+     * replayed frame is never sent twice.
+     */
+    void offer(StreamFrame frame) {
+        if (closed || frame.message() == null) {
+            return;
+        }
+        boolean schedule = false;
+        CloseStatus closeStatus = null;
+        synchronized (this) {
+            if (closeAfterDrain || frame.event().id() <= lastQueuedId) {
+                return;
+            }
+            enqueue(frame);
+            lastQueuedId = frame.event().id();
+            long started = sendStartedAt;
+            if (started > 0 && System.currentTimeMillis() - started > config.getSendTimeLimit().toMillis()) {
+                closeStatus = CloseStatus.SESSION_NOT_RELIABLE.withReason("Send time limit exceeded");
+            } else if (overLimit()) {
+                closeStatus = handleOverflow();
+            }
+            if (closeStatus == null && !draining) {
+                draining = true;
+                schedule = true;
+            }
+        }
+        if (closeStatus != null) {
+            close(closeStatus);
+            return;
+        }
+        if (schedule) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Stops delivery and releases whatever is still queued.
+     */
+    void close(@Nullable CloseStatus status) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        synchronized (this) {
+            metrics.adjustStreamQueuedFrames(-queue.size());
+            queue.clear();
+            queuedBytes = 0;
+        }
+        if (status != null && session.isOpen()) {
+            metrics.recordStreamSessionClosed(status.getReason());
+            try {
+                session.close(status);
+            } catch (IOException ex) {
+                log.debug("Failed to close slow stream session {}: {}", session.getId(), ex.getMessage());
+            }
+        }
+    }
+
+    synchronized int depth() {
+        return queue.size();
+    }
+
+    synchronized long lastQueuedId() {
+        return lastQueuedId;
+    }
+
+    private void drain() {
+        while (!closed) {
+            StreamFrame frame;
+            boolean closeNow = false;
+            synchronized (this) {
+                frame = queue.poll();
+                if (frame == null) {
+                    draining = false;
+                    closeNow = closeAfterDrain;
+                } else {
+                    queuedBytes -= frame.message().getPayloadLength();
+                    metrics.adjustStreamQueuedFrames(-1);
+                }
+            }
+            if (frame == null) {
+                if (closeNow) {
+                    close(CloseStatus.SESSION_NOT_RELIABLE.withReason("Client fell behind; resume from last event"));
+                }
+                return;
+            }
+            if (!session.isOpen()) {
+                close(null);
+                return;
+            }
+            WebSocketMessage<?> message = frame.message(encoding, codec);
+            if (message == null) {
+                continue;
+            }
+            sendStartedAt = System.currentTimeMillis();
+            try {
+                session.sendMessage(message);
+                if (!RESYNC_TYPE.equals(frame.event().type())) {
+                    lastSentId = frame.event().id();
+                }
+            } catch (IOException | RuntimeException ex) {
+                log.debug("Failed to send stream event to {}: {}", session.getId(), ex.getMessage());
+                close(null);
+                return;
+            } finally {
+                sendStartedAt = 0;
+            }
+        }
+    }
+
+    private void enqueue(StreamFrame frame) {
+        queue.add(frame);
+        queuedBytes += frame.message().getPayloadLength();
+        metrics.adjustStreamQueuedFrames(1);
+        metrics.recordStreamQueueDepth(queue.size());
+    }
+
+    private boolean overLimit() {
+        return queue.size() > config.getQueueCapacity() || queuedBytes > config.getBufferSizeLimit();
+    }
+
+    /**
+     * Applies the overflow policy with the queue lock held; returns a close status when the
+     * session has to be closed right away.
+     */
+    @Nullable
+    private CloseStatus handleOverflow() {
+        StreamHubConfig.OverflowPolicy policy = config.getOverflowPolicy();
+        if (policy == StreamHubConfig.OverflowPolicy.CLOSE) {
+            metrics.recordStreamFramesDropped(queue.size(), "close");
+            return CloseStatus.SESSION_NOT_RELIABLE.withReason("Outbound buffer limit exceeded");
+        }
+        if (policy == StreamHubConfig.OverflowPolicy.COALESCE) {
+            coalesceTaskOutput();
+            if (!overLimit()) {
+                return null;
+            }
+        }
+        dropToResumeMarker();
+        return null;
+    }
+
+    /**
+     * Merges adjacent {@code task-output} chunks of the same task into one frame carrying
+     * the first chunk's sequence, the concatenated text and the last event's id.
+     */
+    private void coalesceTaskOutput() {
+        int before = queue.size();
+        ArrayDeque<StreamFrame> merged = new ArrayDeque<>(before);
+        StreamFrame pending = null;
+        StringBuilder text = null;
+        for (StreamFrame frame : queue) {
+            if (pending != null && sameTask(pending, frame)) {
+                if (text == null) {
+                    text = new StringBuilder(Objects.toString(data(pending).get("chunk"), ""));
+                }
+                text.append(Objects.toString(data(frame).get("chunk"), ""));
+                pending = new StreamFrame(new StreamEvent(frame.event().id(), frame.event().runId(),
+                        frame.event().timestamp(), TASK_OUTPUT_TYPE, withChunk(data(pending), text, data(frame).get("done"))), null);
+                continue;
+            }
+            addMerged(merged, pending);
+            pending = frame;
+            text = null;
+        }
+        addMerged(merged, pending);
+        int removed = before - merged.size();
+        if (removed == 0) {
+            return;
+        }
+        queue.clear();
+        queuedBytes = 0;
+        for (StreamFrame frame : merged) {
+            queue.add(frame);
+            queuedBytes += frame.message().getPayloadLength();
+        }
+        metrics.adjustStreamQueuedFrames(-removed);
+        metrics.recordStreamFramesCoalesced(removed);
+    }
+
+    private void addMerged(ArrayDeque<StreamFrame> merged, @Nullable StreamFrame frame) {
+        if (frame == null) {
+            return;
+        }
+        if (frame.message() == null) {
+            TextMessage message = codec.text(frame.event());
+            if (message == null) {
+                return;
+            }
+            frame = new StreamFrame(frame.event(), message);
+        }
+        merged.add(frame);
+    }
+
+    /**
+     * Replaces everything queued with a {@code resync} marker telling the client to reconnect
+     * with {@code since} set to the last event it received; the run's replay buffer fills the gap.
+     */
+    private void dropToResumeMarker() {
+        int dropped = queue.size();
+        metrics.adjustStreamQueuedFrames(-dropped);
+        metrics.recordStreamFramesDropped(dropped, "resync");
+        queue.clear();
+        queuedBytes = 0;
+        long since = lastSentId;
+        String runId = Objects.toString(session.getAttributes().get("runId"), null);
+        StreamEvent marker = new StreamEvent(since, runId, Instant.now(), RESYNC_TYPE, Map.of("since", since));
+        TextMessage message = codec.text(marker);
+        if (message != null) {
+            enqueue(new StreamFrame(marker, message));
+        }
+        closeAfterDrain = true;
+    }
+
+    private static boolean sameTask(StreamFrame left, StreamFrame right) {
+        return TASK_OUTPUT_TYPE.equals(left.event().type())
+                && TASK_OUTPUT_TYPE.equals(right.event().type())
+                && !Boolean.TRUE.equals(data(left).get("done"))
+                && data(left).get("taskId") != null
+                && Objects.equals(data(left).get("taskId"), data(right).get("taskId"));
+    }
+
+    private static Map<?, ?> data(StreamFrame frame) {
+        return frame.event().data() instanceof Map<?, ?> map ? map : Map.of();
+    }
+
+    private static Map<String, Object> withChunk(Map<?, ?> first, CharSequence chunk, Object done) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        first.forEach((key, value) -> data.put(String.valueOf(key), value));
+        data.put("chunk", chunk.toString());
+        data.put("done", Boolean.TRUE.equals(done));
+        return data;
+    }
+}
@@ -0,0 +1,35 @@
+package com.bko.stream;
+
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes sends on one WebSocket connection, as the container requires. A
+ * {@link ReentrantLock} instead of {@code synchronized (session)}: senders run on virtual
+ * threads, and on Java 21 a virtual thread blocked on a slow client inside a monitor pins its
+ * carrier thread, while one waiting on this lock unmounts.
+ */
+final class SessionSendLock {
+
+    private static final String ATTRIBUTE = "sendLock";
+
+    private SessionSendLock() {
+    }
+
+    static void send(WebSocketSession session, WebSocketMessage<?> message) throws IOException {
+        ReentrantLock lock = of(session);
+        lock.lock();
+        try {
+            session.sendMessage(message);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static ReentrantLock of(WebSocketSession session) {
+        return (ReentrantLock) session.getAttributes().computeIfAbsent(ATTRIBUTE, key -> new ReentrantLock());
+    }
+}
@@ -0,0 +1,52 @@
+package com.bko.stream;
+
+import java.util.List;
+
+/**
+ * Shares run streams between backend nodes. The node executing a run publishes its events;
+ * any node can read them back to serve and replay subscribers, and ask the executing node to
+ * cancel. Without an active broker every run is local to the node that created it.
+ */
+interface StreamBroker {
+
+    boolean isActive();
+
+    /**
+     * Starts delivering cluster notifications to {@code listener}.
+     */
+    void start(Listener listener);
+
+    /**
+     * Queues an encoded event for the other nodes. Called in event order for each run and
+     * must not block.
+     */
+    void publish(String runId, StreamEvent event, String payload);
+
+    /**
+     * The newest {@code limit} events of a run with an id greater than {@code afterId},
+     * oldest first.
+     */
+    List<SharedEvent> recentEvents(String runId, long afterId, int limit);
+
+    boolean hasRun(String runId);
+
+    void requestCancel(String runId);
+
+    record SharedEvent(long id, String payload) {
+    }
+
+    interface Listener {
+
+        /**
+         * Events up to {@code latestId} of the run are readable.
+         */
+        void eventsPublished(String runId, long latestId);
+
+        void cancelRequested(String runId);
+
+        /**
+         * Notifications may have been missed (the listening connection was re-established).
+         */
+        void connectionRestored();
+    }
+}
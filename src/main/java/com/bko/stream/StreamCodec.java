@@ -0,0 +1,65 @@
+package com.bko.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+
+/**
+ * Encodes stream payloads as JSON text or CBOR binary messages. The CBOR mapper is a copy of
+ * the application's {@link ObjectMapper}, so both encodings share modules and settings; it is
+ * created on first use because most deployments never see a binary subscriber.
+ */
+class StreamCodec {
+    private static final Logger log = LoggerFactory.getLogger(StreamCodec.class);
+
+    private final ObjectMapper objectMapper;
+    private volatile ObjectMapper cborMapper;
+
+    StreamCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Nullable
+    TextMessage text(Object payload) {
+        try {
+            return new TextMessage(objectMapper.writeValueAsBytes(payload));
+        } catch (IOException ex) {
+            log.warn("Failed to serialize stream payload {}: {}", describe(payload), ex.getMessage());
+            return null;
+        }
+    }
+
+    @Nullable
+    BinaryMessage binary(Object payload) {
+        try {
+            return new BinaryMessage(cborMapper().writeValueAsBytes(payload));
+        } catch (IOException ex) {
+            log.warn("Failed to serialize stream payload {} as CBOR: {}", describe(payload), ex.getMessage());
+            return null;
+        }
+    }
+
+    private ObjectMapper cborMapper() {
+        ObjectMapper mapper = cborMapper;
+        if (mapper == null) {
+            synchronized (this) {
+                mapper = cborMapper;
+                if (mapper == null) {
+                    mapper = objectMapper.copyWith(new CBORFactory());
+                    cborMapper = mapper;
+                }
+            }
+        }
+        return mapper;
+    }
+
+    private static String describe(Object payload) {
+        return payload instanceof StreamEvent event ? "type=" + event.type() + " id=" + event.id() : payload.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,66 @@
+package com.bko.stream;
+
+import org.springframework.lang.Nullable;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Wire encoding of stream events for one WebSocket session. Clients pick it with the
+ * {@code encoding} query parameter or by offering a subprotocol ({@code json} or
+ * {@code cbor}); JSON text frames are the default. CBOR events are sent as binary frames
+ * with the same fields as their JSON form.
+ */
+enum StreamEncoding {
+    JSON("json"),
+    CBOR("cbor");
+
+    static final String ATTRIBUTE = "streamEncoding";
+    static final List<String> SUBPROTOCOLS = Arrays.stream(values()).map(StreamEncoding::protocol).toList();
+
+    private final String protocol;
+
+    StreamEncoding(String protocol) {
+        this.protocol = protocol;
+    }
+
+    String protocol() {
+        return protocol;
+    }
+
+    /**
+     * Resolves the session's encoding from the query parameter, falling back to the accepted
+     * subprotocol, and remembers it on the session.
+     */
+    static StreamEncoding negotiate(WebSocketSession session, @Nullable String requested) {
+        StreamEncoding encoding = parse(requested);
+        if (encoding == null) {
+            encoding = parse(session.getAcceptedProtocol());
+        }
+        if (encoding == null) {
+            encoding = JSON;
+        }
+        session.getAttributes().put(ATTRIBUTE, encoding);
+        return encoding;
+    }
+
+    static StreamEncoding of(WebSocketSession session) {
+        return session.getAttributes().get(ATTRIBUTE) instanceof StreamEncoding encoding ? encoding : JSON;
+    }
+
+    @Nullable
+    private static StreamEncoding parse(@Nullable String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        for (StreamEncoding encoding : values()) {
+            if (encoding.protocol.equals(normalized)) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+}
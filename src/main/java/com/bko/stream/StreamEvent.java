@@ -1,11 +1,26 @@
 package com.bko.stream;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import org.springframework.lang.Nullable;
+
 import java.time.Instant;
 
+/**
+ * One event of a run stream. Both wire encodings (JSON and CBOR) write the fields in this
+ * order under these names. {@code runId} lets clients multiplexing several runs over one
+ * connection route the event; it is left out when unknown.
+ */
+@JsonPropertyOrder({"id", "runId", "timestamp", "type", "data"})
 public record StreamEvent(
         long id,
+        @JsonInclude(JsonInclude.Include.NON_NULL) @Nullable String runId,
         Instant timestamp,
         String type,
         Object data
 ) {
+
+    public StreamEvent(long id, Instant timestamp, String type, Object data) {
+        this(id, null, timestamp, type, data);
+    }
 }
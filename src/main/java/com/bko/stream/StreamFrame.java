@@ -0,0 +1,103 @@
+package com.bko.stream;
+
+import org.springframework.lang.Nullable;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A stream event together with its wire encoding, produced once when the event is emitted
+ * and shared by every subscriber and every replay. {@code message} is the JSON text and is
+ * null if the event could not be serialized; the CBOR form is encoded the first time a
+ * binary subscriber needs it and then shared the same way.
+ */
+final class StreamFrame {
+
+    static final String BATCH_TYPE = "batch";
+
+    private final StreamEvent event;
+    @Nullable
+    private final TextMessage message;
+    @Nullable
+    private final List<StreamFrame> parts;
+    private volatile BinaryMessage binary;
+
+    StreamFrame(StreamEvent event, @Nullable TextMessage message) {
+        this(event, message, null);
+    }
+
+    private StreamFrame(StreamEvent event, @Nullable TextMessage message, @Nullable List<StreamFrame> parts) {
+        this.event = event;
+        this.message = message;
+        this.parts = parts;
+    }
+
+    StreamEvent event() {
+        return event;
+    }
+
+    @Nullable
+    TextMessage message() {
+        return message;
+    }
+
+    /**
+     * The message to send in {@code encoding}, or null if the frame cannot be encoded.
+     */
+    @Nullable
+    WebSocketMessage<?> message(StreamEncoding encoding, StreamCodec codec) {
+        if (encoding == StreamEncoding.JSON || message == null) {
+            return message;
+        }
+        BinaryMessage encoded = binary;
+        if (encoded == null) {
+            encoded = codec.binary(parts == null ? event : batchPayload(event, parts));
+            binary = encoded;
+        }
+        return encoded;
+    }
+
+    /**
+     * Wraps already-encoded frames into one {@code {"type":"batch","id":..,"events":[..]}}
+     * message by splicing their payload bytes, so nothing is serialized again. The batch
+     * takes the id (and run id) of its last event. Frames without a message are left out.
+     */
+    static StreamFrame batch(List<StreamFrame> frames) {
+        StreamEvent last = frames.getLast().event();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String runId = last.runId() != null ? ",\"runId\":\"" + last.runId() + "\"" : "";
+        out.writeBytes(("{\"type\":\"" + BATCH_TYPE + "\",\"id\":" + last.id() + runId + ",\"events\":[")
+                .getBytes(StandardCharsets.UTF_8));
+        boolean first = true;
+        for (StreamFrame frame : frames) {
+            if (frame.message() == null) {
+                continue;
+            }
+            if (!first) {
+                out.write(',');
+            }
+            out.writeBytes(frame.message().asBytes());
+            first = false;
+        }
+        out.writeBytes("]}".getBytes(StandardCharsets.UTF_8));
+        return new StreamFrame(new StreamEvent(last.id(), last.runId(), last.timestamp(), BATCH_TYPE, null),
+                new TextMessage(out.toByteArray()), List.copyOf(frames));
+    }
+
+    private static Map<String, Object> batchPayload(StreamEvent batch, List<StreamFrame> parts) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", BATCH_TYPE);
+        payload.put("id", batch.id());
+        if (batch.runId() != null) {
+            payload.put("runId", batch.runId());
+        }
+        payload.put("events", parts.stream().filter(part -> part.message() != null).map(StreamFrame::event).toList());
+        return payload;
+    }
+}
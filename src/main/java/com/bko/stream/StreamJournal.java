@@ -0,0 +1,247 @@
+package com.bko.stream;
+
+import com.bko.config.MultiAgentProperties;
+import com.bko.config.MultiAgentProperties.StreamHubConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Append-only, per-run journal of encoded stream events in memory-mapped segment files, so
+ * a client resuming with {@code since} older than the in-memory ring, or reconnecting after
+ * a restart, can still replay the run.
+ * <p>
+ * Each run has a directory of segments named after their first event id. A record is
+ * {@code [int length][long id][payload]}; a zero length marks the end of the written part of
+ * a segment. A new segment is started when the current one cannot fit the next record.
+ * Appends for a run arrive in id order under the run's append lock. Run directories are
+ * deleted {@code journal-ttl} after their last write.
+ */
+@Component
+@Slf4j
+public class StreamJournal {
+
+    private static final Pattern SAFE_RUN_ID = Pattern.compile("[A-Za-z0-9-]{1,64}");
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES;
+
+    private final StreamHubConfig config;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Writer> writers = new ConcurrentHashMap<>();
+
+    public StreamJournal(MultiAgentProperties properties, ObjectMapper objectMapper) {
+        this.config = properties.getStreamHub();
+        this.objectMapper = objectMapper;
+    }
+
+    public boolean isEnabled() {
+        return config.isJournalEnabled();
+    }
+
+    /**
+     * Appends an encoded frame; failures are logged and stop journaling for that run.
+     */
+    void append(String runId, StreamFrame frame) {
+        if (!isEnabled() || frame.message() == null || !SAFE_RUN_ID.matcher(runId).matches()) {
+            return;
+        }
+        Writer writer = writers.computeIfAbsent(runId, id -> new Writer(root().resolve(id)));
+        if (writer.failed) {
+            return;
+        }
+        try {
+            writer.append(frame.event().id(), frame.message().asBytes(), config.getJournalSegmentBytes());
+        } catch (IOException | RuntimeException ex) {
+            writer.failed = true;
+            log.warn("Stopped journaling stream run {}: {}", runId, ex.getMessage());
+        }
+    }
+
+    /**
+     * Flushes and releases the run's open segment once the run has finished.
+     */
+    void complete(String runId) {
+        Writer writer = writers.remove(runId);
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    boolean contains(String runId) {
+        return isEnabled() && SAFE_RUN_ID.matcher(runId).matches() && Files.isDirectory(root().resolve(runId));
+    }
+
+    /**
+     * Journaled frames with {@code afterId < id < beforeId}, oldest first; when there are more
+     * than {@code maxFrames}, only the newest {@code maxFrames}.
+     */
+    List<StreamFrame> read(String runId, long afterId, long beforeId, int maxFrames) {
+        if (!contains(runId) || beforeId <= afterId + 1) {
+            return List.of();
+        }
+        ArrayDeque<StreamFrame> frames = new ArrayDeque<>();
+        try {
+            for (Segment segment : segments(root().resolve(runId))) {
+                if (segment.firstId() >= beforeId) {
+                    break;
+                }
+                readSegment(segment.path(), afterId, beforeId, maxFrames, frames);
+            }
+        } catch (IOException ex) {
+            log.warn("Failed to read journal of stream run {}: {}", runId, ex.getMessage());
+        }
+        return new ArrayList<>(frames);
+    }
+
+    @Scheduled(fixedDelayString = "${multiagent.stream-hub.journal-cleanup-interval:600000}")
+    public void expireRuns() {
+        Path root = root();
+        if (!isEnabled() || !Files.isDirectory(root)) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(config.getJournalTtl());
+        try (Stream<Path> runs = Files.list(root)) {
+            for (Path dir : runs.filter(Files::isDirectory).toList()) {
+                if (writers.containsKey(dir.getFileName().toString()) || lastWrite(dir).isAfter(cutoff)) {
+                    continue;
+                }
+                deleteRun(dir);
+            }
+        } catch (IOException ex) {
+            log.warn("Failed to expire stream journals in {}: {}", root, ex.getMessage());
+        }
+    }
+
+    private void readSegment(Path path, long afterId, long beforeId, int maxFrames, ArrayDeque<StreamFrame> out)
+            throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining() - Long.BYTES) {
+                return;
+            }
+            long id = buffer.getLong();
+            if (id >= beforeId) {
+                return;
+            }
+            if (id <= afterId) {
+                buffer.position(buffer.position() + length);
+                continue;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            StreamEvent event = objectMapper.readValue(payload, StreamEvent.class);
+            out.addLast(new StreamFrame(event, new TextMessage(payload)));
+            if (out.size() > maxFrames) {
+                out.removeFirst();
+            }
+        }
+    }
+
+    private Path root() {
+        return Path.of(config.getJournalPath());
+    }
+
+    private static List<Segment> segments(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .map(path -> {
+                        String name = path.getFileName().toString();
+                        return new Segment(path, Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                    })
+                    .sorted(Comparator.comparingLong(Segment::firstId))
+                    .toList();
+        }
+    }
+
+    private static Instant lastWrite(Path dir) throws IOException {
+        Instant latest = Files.getLastModifiedTime(dir).toInstant();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Instant modified = Files.getLastModifiedTime(file).toInstant();
+                if (modified.isAfter(latest)) {
+                    latest = modified;
+                }
+            }
+        }
+        return latest;
+    }
+
+    private static void deleteRun(Path dir) {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        } catch (IOException ex) {
+            log.debug("Failed to delete stream journal {}: {}", dir, ex.getMessage());
+        }
+    }
+
+    private record Segment(Path path, long firstId) {
+    }
+
+    /**
+     * The open segment of one run. Only touched under the run's append lock.
+     */
+    private static final class Writer {
+        private final Path dir;
+        private MappedByteBuffer segment;
+        private volatile boolean failed;
+
+        private Writer(Path dir) {
+            this.dir = dir;
+        }
+
+        void append(long id, byte[] payload, long segmentBytes) throws IOException {
+            int needed = HEADER_BYTES + payload.length + Integer.BYTES;
+            if (segment == null || segment.remaining() < needed) {
+                roll(id, Math.max(segmentBytes, needed));
+            }
+            int start = segment.position();
+            segment.position(start + Integer.BYTES);
+            segment.putLong(id);
+            segment.put(payload);
+            // Length last: a reader never sees a record before its bytes are in place.
+            segment.putInt(start, payload.length);
+        }
+
+        void close() {
+            if (segment != null) {
+                segment.force();
+                segment = null;
+            }
+        }
+
+        private void roll(long firstId, long size) throws IOException {
+            close();
+            Files.createDirectories(dir);
+            Path path = dir.resolve(String.format("%020d%s", firstId, SEGMENT_SUFFIX));
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+    }
+}
@@ -1,49 +1,257 @@
 package com.bko.stream;
 
-import org.springframework.web.socket.WebSocketSession;
+import org.springframework.lang.Nullable;
+import org.springframework.web.socket.TextMessage;
 
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+/**
+ * Per-run stream state. Recent events live in a fixed-capacity ring indexed by sequence
+ * number ({@code slot = id % capacity}). Emitters take turns on a small writer lock (an
+ * append is O(1): one slot write, a volatile publish of the head and one non-blocking
+ * enqueue per subscribed session); readers never lock,
+ * they read the published head and index slots directly. A slot whose event id no longer
+ * matches has been overwritten by a newer event and is skipped.
+ * <p>
+ * Batched events are appended to the ring right away but fanned out later as one
+ * {@link StreamFrame#batch batch} frame, once the caller flushes or the pending bytes reach
+ * the batch limit.
+ * <p>
+ * In cluster mode a run is either the origin, whose appended frames are also handed to
+ * {@code onAppend} for the other nodes, or a mirror that only applies events read back from
+ * the broker, keeping their original ids.
+ * <p>
+ * Subscribers are kept in a copy-on-write array that is replaced under the writer lock on
+ * (un)subscribe, so fan-out walks a plain array.
+ */
 class StreamRun {
     private final String runId;
-    private final AtomicLong sequence = new AtomicLong();
-    private final List<StreamEvent> buffer = new ArrayList<>();
-    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    private final int capacity;
+    private final boolean mirror;
+    @Nullable
+    private final Consumer<StreamFrame> onAppend;
+    private final AtomicReferenceArray<StreamFrame> ring;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile long published;
+    private final Map<String, SessionOutbound> sessions = new ConcurrentHashMap<>();
+    private volatile SessionOutbound[] subscribers = new SessionOutbound[0];
     private volatile boolean completed;
     private volatile boolean cancelled;
     private volatile Instant lastUpdated = Instant.now();
+    private final AtomicBoolean expiryScheduled = new AtomicBoolean();
+    private final List<StreamFrame> pending = new ArrayList<>();
+    private long pendingBytes;
+    private boolean flushScheduled;
 
-    StreamRun(String runId) {
+    StreamRun(String runId, int capacity) {
+        this(runId, capacity, false, null);
+    }
+
+    StreamRun(String runId, int capacity, boolean mirror, @Nullable Consumer<StreamFrame> onAppend) {
         this.runId = runId;
+        this.capacity = Math.max(1, capacity);
+        this.ring = new AtomicReferenceArray<>(this.capacity);
+        this.mirror = mirror;
+        this.onAppend = onAppend;
     }
 
     String runId() {
         return runId;
     }
 
-    Map<String, WebSocketSession> sessions() {
-        return sessions;
+    int capacity() {
+        return capacity;
+    }
+
+    boolean mirror() {
+        return mirror;
+    }
+
+    long published() {
+        return published;
+    }
+
+    /**
+     * Lowest event id the ring can still hold; older events have been overwritten.
+     */
+    long oldestBufferedId() {
+        return Math.max(1, published - capacity + 1);
+    }
+
+    boolean hasSubscribers() {
+        return subscribers.length > 0;
     }
 
-    synchronized StreamEvent addEvent(String type, Object data, int maxBufferSize) {
-        StreamEvent event = new StreamEvent(sequence.incrementAndGet(), Instant.now(), type, data);
-        buffer.add(event);
-        if (buffer.size() > maxBufferSize) {
-            buffer.remove(0);
+    /**
+     * Removes the session's subscription and returns its outbound queue, if it had one.
+     */
+    @Nullable
+    SessionOutbound unsubscribe(String sessionId) {
+        writeLock.lock();
+        try {
+            SessionOutbound removed = sessions.remove(sessionId);
+            if (removed != null) {
+                subscribers = sessions.values().toArray(SessionOutbound[]::new);
+            }
+            return removed;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Queues the buffered frames after {@code sinceId} and then subscribes the session, both
+     * under the append lock, so the session sees every event exactly once and in order.
+     */
+    void subscribe(String sessionId, SessionOutbound outbound, long sinceId) {
+        subscribe(sessionId, outbound, sinceId, 0, null);
+    }
+
+    /**
+     * Like {@link #subscribe(String, SessionOutbound, long)}, but replays in batch frames of
+     * up to {@code replayBatchBytes} when that is positive, and takes events the ring no
+     * longer holds from {@code backfill}. Anything already queued on {@code outbound} is
+     * not replayed again.
+     */
+    void subscribe(String sessionId, SessionOutbound outbound, long sinceId, long replayBatchBytes,
+                   @Nullable Backfill backfill) {
+        writeLock.lock();
+        try {
+            long from = Math.max(sinceId, outbound.lastQueuedId());
+            List<StreamFrame> replay = new ArrayList<>();
+            long oldest = oldestBufferedId();
+            if (backfill != null && from + 1 < oldest) {
+                replay.addAll(backfill.read(from, oldest));
+            }
+            replay.addAll(snapshotSince(from));
+            for (List<StreamFrame> chunk : chunks(replay, replayBatchBytes)) {
+                outbound.offer(batchOf(chunk));
+            }
+            sessions.put(sessionId, outbound);
+            subscribers = sessions.values().toArray(SessionOutbound[]::new);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Appends an event, encodes it once with {@code encoder} and queues the frame on every
+     * subscribed session. Queuing never blocks, so fan-out happens under the append lock and
+     * all sessions receive events in id order.
+     */
+    StreamFrame addEvent(String type, Object data, Function<StreamEvent, TextMessage> encoder) {
+        Instant now = Instant.now();
+        writeLock.lock();
+        try {
+            flushPendingLocked();
+            StreamFrame frame = append(type, data, encoder, now);
+            for (SessionOutbound outbound : subscribers) {
+                outbound.offer(frame);
+            }
+            return frame;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Appends an event and holds it back for the next batch; the batch is fanned out at once
+     * when its payloads reach {@code maxBatchBytes}. Returns true when the caller should
+     * schedule a {@link #flushBatch()} because this event opened a new batch window.
+     */
+    boolean addBatchedEvent(String type, Object data, Function<StreamEvent, TextMessage> encoder, long maxBatchBytes) {
+        Instant now = Instant.now();
+        writeLock.lock();
+        try {
+            StreamFrame frame = append(type, data, encoder, now);
+            pending.add(frame);
+            pendingBytes += payloadLength(frame);
+            if (pendingBytes >= maxBatchBytes) {
+                flushPendingLocked();
+                return false;
+            }
+            if (flushScheduled) {
+                return false;
+            }
+            flushScheduled = true;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Fans out whatever is waiting in the current batch.
+     */
+    void flushBatch() {
+        writeLock.lock();
+        try {
+            flushScheduled = false;
+            flushPendingLocked();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Applies events another node appended, in id order, skipping ids already present, and
+     * fans them out (as batch frames of up to {@code maxBatchBytes} when that is positive).
+     */
+    void applyRemote(List<StreamFrame> frames, long maxBatchBytes) {
+        writeLock.lock();
+        try {
+            List<StreamFrame> applied = new ArrayList<>(frames.size());
+            for (StreamFrame frame : frames) {
+                long id = frame.event().id();
+                if (id <= published) {
+                    continue;
+                }
+                ring.set(slot(id), frame);
+                published = id;
+                lastUpdated = frame.event().timestamp() != null ? frame.event().timestamp() : Instant.now();
+                applied.add(frame);
+            }
+            if (applied.isEmpty()) {
+                return;
+            }
+            for (List<StreamFrame> chunk : chunks(applied, maxBatchBytes)) {
+                StreamFrame out = batchOf(chunk);
+                for (SessionOutbound outbound : subscribers) {
+                    outbound.offer(out);
+                }
+            }
+        } finally {
+            writeLock.unlock();
         }
-        lastUpdated = Instant.now();
-        return event;
     }
 
-    synchronized List<StreamEvent> snapshotSince(long sinceId) {
-        return buffer.stream()
-                .filter(event -> event.id() > sinceId)
-                .toList();
+    /**
+     * Buffered frames with an event id greater than {@code sinceId}, oldest first. Events that
+     * have already been overwritten are not returned.
+     */
+    List<StreamFrame> snapshotSince(long sinceId) {
+        long head = published;
+        long from = Math.max(Math.max(sinceId, 0) + 1, head - capacity + 1);
+        if (from > head) {
+            return List.of();
+        }
+        List<StreamFrame> frames = new ArrayList<>((int) (head - from + 1));
+        for (long id = from; id <= head; id++) {
+            StreamFrame frame = ring.get(slot(id));
+            if (frame != null && frame.event().id() == id) {
+                frames.add(frame);
+            }
+        }
+        return frames;
     }
 
     boolean completed() {
@@ -67,4 +275,85 @@ class StreamRun {
     Instant lastUpdated() {
         return lastUpdated;
     }
+
+    /**
+     * Claims the run's single slot in the hub's expiry queue; false if it already has one.
+     */
+    boolean claimExpiry() {
+        return expiryScheduled.compareAndSet(false, true);
+    }
+
+    void releaseExpiry() {
+        expiryScheduled.set(false);
+    }
+
+    private StreamFrame append(String type, Object data, Function<StreamEvent, TextMessage> encoder, Instant now) {
+        long id = published + 1;
+        StreamEvent event = new StreamEvent(id, runId, now, type, data);
+        StreamFrame frame = new StreamFrame(event, encoder.apply(event));
+        ring.set(slot(id), frame);
+        published = id;
+        lastUpdated = now;
+        if (onAppend != null) {
+            onAppend.accept(frame);
+        }
+        return frame;
+    }
+
+    private void flushPendingLocked() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        StreamFrame frame = batchOf(pending);
+        for (SessionOutbound outbound : subscribers) {
+            outbound.offer(frame);
+        }
+        pending.clear();
+        pendingBytes = 0;
+    }
+
+    /**
+     * Splits frames into consecutive groups of at least {@code maxBatchBytes} payload bytes
+     * (the last may be smaller), or into single frames when {@code maxBatchBytes} is not positive.
+     */
+    private static List<List<StreamFrame>> chunks(List<StreamFrame> frames, long maxBatchBytes) {
+        if (maxBatchBytes <= 0) {
+            return frames.stream().map(List::of).toList();
+        }
+        List<List<StreamFrame>> chunks = new ArrayList<>();
+        List<StreamFrame> chunk = new ArrayList<>();
+        long bytes = 0;
+        for (StreamFrame frame : frames) {
+            chunk.add(frame);
+            bytes += payloadLength(frame);
+            if (bytes >= maxBatchBytes) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                bytes = 0;
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private static StreamFrame batchOf(List<StreamFrame> frames) {
+        return frames.size() == 1 ? frames.getFirst() : StreamFrame.batch(frames);
+    }
+
+    private static long payloadLength(StreamFrame frame) {
+        return frame.message() != null ? frame.message().getPayloadLength() : 0;
+    }
+
+    /**
+     * Source of events older than the ring, read as ids in {@code (afterId, beforeId)}.
+     */
+    interface Backfill {
+        List<StreamFrame> read(long afterId, long beforeId);
+    }
+
+    private int slot(long id) {
+        return (int) (id % capacity);
+    }
 }
@@ -0,0 +1,231 @@
+package com.bko.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Multiplexed stream endpoint: one connection carries any number of run and agent
+ * subscriptions instead of one socket per {@code /ws/stream} run and {@code /ws/agent-runs}
+ * agent. Clients send
+ * <pre>
+ * {"action":"subscribe","topic":"run:&lt;runId&gt;","since":12}
+ * {"action":"subscribe","topic":"agent:&lt;agentId&gt;"}
+ * {"action":"unsubscribe","topic":"run:&lt;runId&gt;"}
+ * </pre>
+ * Run events arrive exactly as on {@code /ws/stream} and carry their {@code runId}; agent
+ * updates carry their {@code agentId}. Subscribing to a topic again replaces the previous
+ * subscription, so a {@code resync} is answered by subscribing with the new {@code since}.
+ * When the server ends a subscription (unknown run, slow subscriber) it sends
+ * {@code {"type":"subscription-closed","topic":..}}; rejected requests get
+ * {@code {"type":"subscription-error",..}}.
+ */
+@Component
+public class StreamSubscriptionWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamSubscriptionWebSocketHandler.class);
+    private static final String SUBSCRIPTIONS_ATTRIBUTE = "subscriptions";
+    private static final String RUN_PREFIX = "run:";
+    private static final String AGENT_PREFIX = "agent:";
+    private static final int MAX_SUBSCRIPTIONS = 256;
+
+    private final OrchestrationStreamHub streamHub;
+    private final AgentRunUpdatesHub agentRunUpdatesHub;
+    private final ObjectMapper objectMapper;
+    private final StreamCodec codec;
+    /** Sends subscription-closed notices, which hubs trigger from emitting threads that must not block. */
+    private final ExecutorService controlSender = Executors.newVirtualThreadPerTaskExecutor();
+
+    public StreamSubscriptionWebSocketHandler(OrchestrationStreamHub streamHub, AgentRunUpdatesHub agentRunUpdatesHub,
+                                              ObjectMapper objectMapper) {
+        this.streamHub = streamHub;
+        this.agentRunUpdatesHub = agentRunUpdatesHub;
+        this.objectMapper = objectMapper;
+        this.codec = new StreamCodec(objectMapper);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        controlSender.shutdownNow();
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        URI uri = session.getUri();
+        StreamEncoding.negotiate(session, uri != null ? queryParam(uri.getRawQuery(), "encoding") : null);
+        session.getAttributes().put(SUBSCRIPTIONS_ATTRIBUTE, new ConcurrentHashMap<String, TopicSession>());
+    }
+
+    @Override
+    public List<String> getSubProtocols() {
+        return StreamEncoding.SUBPROTOCOLS;
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        JsonNode request;
+        try {
+            request = objectMapper.readTree(message.getPayload());
+        } catch (IOException ex) {
+            sendControl(session, "subscription-error", null, "Malformed subscription message");
+            return;
+        }
+        String action = request.path("action").asText("");
+        String topic = normalize(request.path("topic").asText(""));
+        switch (action) {
+            case "subscribe" -> subscribe(session, topic, Math.max(0L, request.path("since").asLong(0L)));
+            case "unsubscribe" -> unsubscribe(session, topic);
+            default -> sendControl(session, "subscription-error", topic, "Unknown action: " + action);
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Map<String, TopicSession> subscriptions = subscriptions(session);
+        for (TopicSession subscription : subscriptions.values()) {
+            release(subscription);
+        }
+        subscriptions.clear();
+    }
+
+    private void subscribe(WebSocketSession session, String topic, long since) throws IOException {
+        Map<String, TopicSession> subscriptions = subscriptions(session);
+        TopicSession previous = subscriptions.remove(topic);
+        if (previous != null) {
+            release(previous);
+        }
+        if (subscriptions.size() >= MAX_SUBSCRIPTIONS) {
+            sendControl(session, "subscription-error", topic, "Too many subscriptions");
+            return;
+        }
+        if (topic.startsWith(RUN_PREFIX) && topic.length() > RUN_PREFIX.length()) {
+            TopicSession subscription = new TopicSession(session, topic, this::subscriptionClosed);
+            subscriptions.put(topic, subscription);
+            streamHub.registerSession(topic.substring(RUN_PREFIX.length()), subscription, since);
+            return;
+        }
+        UUID agentId = topic.startsWith(AGENT_PREFIX) ? parseUuid(topic.substring(AGENT_PREFIX.length())) : null;
+        if (agentId == null) {
+            sendControl(session, "subscription-error", topic, "Unknown topic");
+            return;
+        }
+        TopicSession subscription = new TopicSession(session, topic, this::subscriptionClosed);
+        subscriptions.put(topic, subscription);
+        agentRunUpdatesHub.subscribe(agentId, subscription);
+    }
+
+    private void unsubscribe(WebSocketSession session, String topic) {
+        TopicSession subscription = subscriptions(session).remove(topic);
+        if (subscription != null) {
+            release(subscription);
+        }
+    }
+
+    /**
+     * Called when a hub ends a subscription itself, e.g. for an unknown run or a subscriber
+     * that fell behind. This can run on an emitting thread while another thread is stuck
+     * sending to the same slow connection, so the notice is sent from {@code controlSender}.
+     */
+    private void subscriptionClosed(TopicSession subscription, CloseStatus status) {
+        WebSocketSession session = subscription.getDelegate();
+        subscriptions(session).remove(subscription.topic(), subscription);
+        unregister(subscription);
+        controlSender.execute(() -> {
+            try {
+                sendControl(session, "subscription-closed", subscription.topic(), status.getReason());
+            } catch (IOException ex) {
+                log.debug("Failed to report closed subscription {}: {}", subscription.topic(), ex.getMessage());
+            }
+        });
+    }
+
+    private void release(TopicSession subscription) {
+        subscription.detach();
+        unregister(subscription);
+    }
+
+    private void unregister(TopicSession subscription) {
+        String topic = subscription.topic();
+        if (topic.startsWith(RUN_PREFIX)) {
+            streamHub.removeSession(subscription);
+        } else if (topic.startsWith(AGENT_PREFIX)) {
+            agentRunUpdatesHub.unsubscribe(topic.substring(AGENT_PREFIX.length()), subscription);
+        }
+    }
+
+    private void sendControl(WebSocketSession session, String type, @Nullable String topic, @Nullable String reason)
+            throws IOException {
+        if (!session.isOpen()) {
+            return;
+        }
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", type);
+        payload.put("topic", topic);
+        payload.put("reason", reason);
+        WebSocketMessage<?> message = StreamEncoding.of(session) == StreamEncoding.CBOR
+                ? codec.binary(payload) : codec.text(payload);
+        if (message == null) {
+            return;
+        }
+        SessionSendLock.send(session, message);
+    }
+
+    /**
+     * Agent topics are keyed by the canonical UUID form, as the agent hub is.
+     */
+    private static String normalize(String topic) {
+        UUID agentId = topic.startsWith(AGENT_PREFIX) ? parseUuid(topic.substring(AGENT_PREFIX.length())) : null;
+        return agentId != null ? AGENT_PREFIX + agentId : topic;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, TopicSession> subscriptions(WebSocketSession session) {
+        Object subscriptions = session.getAttributes().get(SUBSCRIPTIONS_ATTRIBUTE);
+        return subscriptions instanceof Map<?, ?> map ? (Map<String, TopicSession>) map : new ConcurrentHashMap<>();
+    }
+
+    @Nullable
+    private static UUID parseUuid(String value) {
+        try {
+            return UUID.fromString(value.trim());
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static String queryParam(@Nullable String query, String name) {
+        if (query == null || query.isBlank()) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int idx = pair.indexOf('=');
+            if (idx > 0 && name.equals(URLDecoder.decode(pair.substring(0, idx), StandardCharsets.UTF_8))) {
+                return URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+}
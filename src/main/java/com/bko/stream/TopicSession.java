@@ -0,0 +1,83 @@
+package com.bko.stream;
+
+import org.springframework.lang.Nullable;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * One topic subscription on a multiplexed connection, presented to the hubs as a session of
+ * its own: it has its own id and attributes, sends through the shared connection (one sender
+ * at a time, as the container requires), and closing it ends only the subscription.
+ */
+class TopicSession extends WebSocketSessionDecorator {
+
+    private final String topic;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final BiConsumer<TopicSession, CloseStatus> onClose;
+    private volatile boolean closed;
+
+    TopicSession(WebSocketSession connection, String topic, BiConsumer<TopicSession, CloseStatus> onClose) {
+        super(connection);
+        this.topic = topic;
+        this.onClose = onClose;
+        Object encoding = connection.getAttributes().get(StreamEncoding.ATTRIBUTE);
+        if (encoding != null) {
+            attributes.put(StreamEncoding.ATTRIBUTE, encoding);
+        }
+    }
+
+    String topic() {
+        return topic;
+    }
+
+    @Override
+    public String getId() {
+        return getDelegate().getId() + "/" + topic;
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed && getDelegate().isOpen();
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (closed) {
+            throw new IOException("Subscription " + topic + " is closed");
+        }
+        SessionSendLock.send(getDelegate(), message);
+    }
+
+    @Override
+    public void close() {
+        close(CloseStatus.NORMAL);
+    }
+
+    @Override
+    public void close(@Nullable CloseStatus status) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        onClose.accept(this, status != null ? status : CloseStatus.NORMAL);
+    }
+
+    /**
+     * Marks the subscription ended by the client, without notifying anyone.
+     */
+    void detach() {
+        closed = true;
+    }
+}
@@ -1,19 +1,22 @@
 package com.bko.tools;
 
 import com.bko.entity.ExternalDocument;
+import com.bko.orchestration.model.DocumentUpsertResult;
 import com.bko.orchestration.service.ExternalDocumentService;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.StringReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
@@ -27,6 +30,10 @@ import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Component
 @RequiredArgsConstructor
@@ -34,73 +41,188 @@ import java.util.Locale;
 public class ArxivApiReaderTool {
 
     private static final String ATOM_NS = "http://www.w3.org/2005/Atom";
+    private static final String SOURCE = "arxiv";
     private static final String DEFAULT_SEARCH = "cat:cs.SE";
     private static final String DEFAULT_SORT_BY = "submittedDate";
     private static final String DEFAULT_SORT_ORDER = "descending";
     private static final int DEFAULT_MAX_RESULTS = 25;
     private static final int MAX_MAX_RESULTS = 100;
+    private static final int MAX_PAGES = 20;
     private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(20);
     /** Minimum delay between requests to comply with arXiv API terms of use (rate limits). */
     private static final long RATE_LIMIT_DELAY_MS = 3_000;
     private static final Object RATE_LOCK = new Object();
+    private static final XMLInputFactory XML_INPUT_FACTORY = newInputFactory();
     private static OffsetDateTime lastRequestAt = OffsetDateTime.ofInstant(Instant.EPOCH, ZoneOffset.UTC);
 
     private final ExternalDocumentService documentService;
     private final HttpClient httpClient = HttpClient.newBuilder()
             .connectTimeout(Duration.ofSeconds(10))
             .build();
+    private final ExecutorService fetchExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     @Tool(name = "arxiv_api_reader",
-            description = "Query the arXiv API, parse entries, and store abstracts as documentation. No PDFs are downloaded.")
+            description = "Query the arXiv API, parse entries, and store abstracts as documentation (new entries are inserted, "
+                    + "changed ones updated). Set pages to harvest several consecutive pages, and incremental=true to "
+                    + "fetch only entries updated since the last incremental harvest of the same query. "
+                    + "No PDFs are downloaded.")
     public ArxivIngestResult read(@ToolParam(description = "ArXiv API query options") ArxivQuery query) throws Exception {
         ArxivQuery normalized = normalize(query);
         try {
-            enforceRateLimit();
-            String url = buildUrl(normalized);
-            HttpRequest request = HttpRequest.newBuilder(URI.create(url))
-                    .timeout(REQUEST_TIMEOUT)
-                    .header("User-Agent", "MultiAgent/1.0 (contact: admin@localhost)")
-                    .GET()
-                    .build();
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
-            if (response.statusCode() / 100 != 2) {
-                throw new IllegalStateException("arXiv API request failed: HTTP " + response.statusCode());
-            }
-            List<ArxivEntry> entries = parseEntries(response.body());
-            List<String> sourceIds = entries.stream()
-                    .map(ArxivEntry::arxivId)
-                    .filter(StringUtils::hasText)
-                    .distinct()
-                    .toList();
-            var existingIds = documentService.findExistingSourceIds("arxiv", sourceIds);
-            List<ArxivItem> storedItems = new ArrayList<>();
+            boolean incremental = Boolean.TRUE.equals(normalized.incremental());
+            String harvestKey = harvestKey(normalized.searchQuery());
+            OffsetDateTime highWaterMark = incremental ? documentService.findHarvestMark(SOURCE, harvestKey) : null;
+            OffsetDateTime newest = null;
+            boolean reachedMark = false;
+            int fetched = 0;
+            int pagesFetched = 0;
+            int inserted = 0;
+            int updated = 0;
             int skipped = 0;
-            for (ArxivEntry entry : entries) {
-                if (StringUtils.hasText(entry.arxivId()) && existingIds.contains(entry.arxivId())) {
-                    skipped++;
-                    continue;
+            List<ArxivItem> storedItems = new ArrayList<>();
+            CompletableFuture<List<ArxivEntry>> next = fetchPage(normalized, normalized.start());
+            while (next != null) {
+                List<ArxivEntry> entries = await(next);
+                pagesFetched++;
+                fetched += entries.size();
+                List<ArxivEntry> fresh = newerThan(entries, highWaterMark);
+                newest = newestUpdate(newest, fresh);
+                reachedMark |= fresh.size() < entries.size() || entries.size() < normalized.maxResults();
+                boolean more = entries.size() >= normalized.maxResults()
+                        && fresh.size() == entries.size()
+                        && pagesFetched < normalized.pages();
+                // Request the next page (rate limit permitting) while this one is stored.
+                next = more
+                        ? fetchPage(normalized, normalized.start() + pagesFetched * normalized.maxResults())
+                        : null;
+                DocumentUpsertResult result = documentService.upsertAll(toDocuments(fresh));
+                inserted += result.inserted();
+                updated += result.updated();
+                skipped += result.skipped() + entries.size() - fresh.size();
+                for (ExternalDocument doc : result.written()) {
+                    storedItems.add(new ArxivItem(doc.getSourceId(), doc.getTitle(), doc.getUrl()));
                 }
-                ExternalDocument doc = ExternalDocument.builder()
-                        .source("arxiv")
-                        .sourceId(entry.arxivId())
-                        .title(entry.title())
-                        .abstractText(entry.summary())
-                        .url(entry.url())
-                        .authors(String.join(", ", entry.authors()))
-                        .categories(String.join(", ", entry.categories()))
-                        .sourcePublishedAt(entry.published())
-                        .sourceUpdatedAt(entry.updated())
-                        .build();
-                documentService.upsert(doc);
-                storedItems.add(new ArxivItem(entry.arxivId(), entry.title(), entry.url()));
             }
-            return new ArxivIngestResult(normalized.searchQuery(), entries.size(), storedItems.size(), skipped, storedItems);
+            OffsetDateTime nextMark = incremental ? advancedMark(highWaterMark, newest, reachedMark) : null;
+            if (nextMark != null) {
+                documentService.recordHarvestMark(SOURCE, harvestKey, nextMark);
+            }
+            return new ArxivIngestResult(normalized.searchQuery(), fetched, pagesFetched, inserted + updated, inserted,
+                    updated, skipped, highWaterMark, storedItems);
         } catch (Exception ex) {
             log.error("arxiv_api_reader failed for query '{}'", normalized.searchQuery(), ex);
             throw ex;
         }
     }
 
+    @PreDestroy
+    void shutdown() {
+        fetchExecutor.shutdownNow();
+    }
+
+    private CompletableFuture<List<ArxivEntry>> fetchPage(ArxivQuery query, int start) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                enforceRateLimit();
+                HttpRequest request = HttpRequest.newBuilder(URI.create(buildUrl(query, start)))
+                        .timeout(REQUEST_TIMEOUT)
+                        .header("User-Agent", "MultiAgent/1.0 (contact: admin@localhost)")
+                        .GET()
+                        .build();
+                HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                try (InputStream body = response.body()) {
+                    if (response.statusCode() / 100 != 2) {
+                        throw new IllegalStateException("arXiv API request failed: HTTP " + response.statusCode());
+                    }
+                    return parseEntries(body);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(ex);
+            } catch (Exception ex) {
+                throw new CompletionException(ex);
+            }
+        }, fetchExecutor);
+    }
+
+    private static List<ArxivEntry> await(CompletableFuture<List<ArxivEntry>> page) throws Exception {
+        try {
+            return page.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Entries are sorted newest update first in incremental mode, so everything from the first
+     * entry at or before the high-water mark on is already stored.
+     */
+    static List<ArxivEntry> newerThan(List<ArxivEntry> entries, OffsetDateTime highWaterMark) {
+        if (highWaterMark == null) {
+            return entries;
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            OffsetDateTime updated = entries.get(i).updated();
+            if (updated != null && !updated.isAfter(highWaterMark)) {
+                return entries.subList(0, i);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * The mark to store after an incremental harvest, or null to keep the current one. The first
+     * harvest of a query starts the mark at its newest entry; later ones move it forward only if
+     * they got back to the previous mark, since a harvest cut short by the page limit would
+     * otherwise leave the entries between its last page and the old mark unfetched for good.
+     */
+    @Nullable
+    static OffsetDateTime advancedMark(@Nullable OffsetDateTime previous, @Nullable OffsetDateTime newest,
+                                       boolean reachedPrevious) {
+        if (newest == null || (previous != null && (!reachedPrevious || !newest.isAfter(previous)))) {
+            return null;
+        }
+        return newest;
+    }
+
+    /**
+     * Marks are kept per normalized search query; whitespace differences do not start a new one.
+     */
+    static String harvestKey(String searchQuery) {
+        return normalizeWhitespace(searchQuery);
+    }
+
+    @Nullable
+    private static OffsetDateTime newestUpdate(@Nullable OffsetDateTime newest, List<ArxivEntry> entries) {
+        for (ArxivEntry entry : entries) {
+            if (entry.updated() != null && (newest == null || entry.updated().isAfter(newest))) {
+                newest = entry.updated();
+            }
+        }
+        return newest;
+    }
+
+    private List<ExternalDocument> toDocuments(List<ArxivEntry> entries) {
+        List<ExternalDocument> docs = new ArrayList<>(entries.size());
+        for (ArxivEntry entry : entries) {
+            docs.add(ExternalDocument.builder()
+                    .source(SOURCE)
+                    .sourceId(entry.arxivId())
+                    .title(entry.title())
+                    .abstractText(entry.summary())
+                    .url(entry.url())
+                    .authors(String.join(", ", entry.authors()))
+                    .categories(String.join(", ", entry.categories()))
+                    .sourcePublishedAt(entry.published())
+                    .sourceUpdatedAt(entry.updated())
+                    .build());
+        }
+        return docs;
+    }
+
     private ArxivQuery normalize(ArxivQuery query) {
         String rawSearch = query != null ? query.searchQuery() : null;
         String search = normalizeSearchQuery(rawSearch);
@@ -108,13 +230,22 @@ public class ArxivApiReaderTool {
         int max = query != null && query.maxResults() != null && query.maxResults() > 0
                 ? Math.min(query.maxResults(), MAX_MAX_RESULTS)
                 : DEFAULT_MAX_RESULTS;
+        int pages = query != null && query.pages() != null && query.pages() > 0
+                ? Math.min(query.pages(), MAX_PAGES)
+                : 1;
+        boolean incremental = query != null && Boolean.TRUE.equals(query.incremental());
         String sortBy = StringUtils.hasText(query != null ? query.sortBy() : null)
                 ? query.sortBy().trim()
                 : DEFAULT_SORT_BY;
         String sortOrder = StringUtils.hasText(query != null ? query.sortOrder() : null)
                 ? query.sortOrder().trim()
                 : DEFAULT_SORT_ORDER;
-        return new ArxivQuery(search, start, max, sortBy, sortOrder);
+        if (incremental) {
+            // The high-water mark only works as a stop condition on newest-updated-first order.
+            sortBy = "lastUpdatedDate";
+            sortOrder = "descending";
+        }
+        return new ArxivQuery(search, start, max, sortBy, sortOrder, pages, incremental);
     }
 
     /**
@@ -147,108 +278,155 @@ public class ArxivApiReaderTool {
         return trimmed;
     }
 
-    private String buildUrl(ArxivQuery query) {
+    private String buildUrl(ArxivQuery query, int start) {
         return "https://export.arxiv.org/api/query?search_query="
                 + URLEncoder.encode(query.searchQuery(), StandardCharsets.UTF_8)
-                + "&start=" + query.start()
+                + "&start=" + start
                 + "&max_results=" + query.maxResults()
                 + "&sortBy=" + URLEncoder.encode(query.sortBy(), StandardCharsets.UTF_8)
                 + "&sortOrder=" + URLEncoder.encode(query.sortOrder(), StandardCharsets.UTF_8);
     }
 
-    private List<ArxivEntry> parseEntries(String xml) throws Exception {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setNamespaceAware(true);
+    /**
+     * Reads Atom entries straight off the response stream with StAX; nothing but the current
+     * entry's fields is held in memory.
+     */
+    static List<ArxivEntry> parseEntries(InputStream body) throws XMLStreamException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(body);
         try {
-            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-        } catch (Exception ignore) {
-            // ignore parser features if unsupported
-        }
-        var builder = factory.newDocumentBuilder();
-        var doc = builder.parse(new InputSource(new StringReader(xml)));
-        NodeList entryNodes = doc.getElementsByTagNameNS(ATOM_NS, "entry");
-        List<ArxivEntry> entries = new ArrayList<>(entryNodes.getLength());
-        for (int i = 0; i < entryNodes.getLength(); i++) {
-            Element entry = (Element) entryNodes.item(i);
-            String id = text(entry, ATOM_NS, "id");
-            String title = normalizeWhitespace(text(entry, ATOM_NS, "title"));
-            String summary = normalizeWhitespace(text(entry, ATOM_NS, "summary"));
-            OffsetDateTime published = parseTime(text(entry, ATOM_NS, "published"));
-            OffsetDateTime updated = parseTime(text(entry, ATOM_NS, "updated"));
-            String url = extractLink(entry);
-            String arxivId = extractArxivId(id);
-            List<String> authors = extractAuthors(entry);
-            List<String> categories = extractCategories(entry);
-            entries.add(new ArxivEntry(arxivId, title, summary, url, authors, categories, published, updated));
-        }
-        return entries;
-    }
-
-    private String text(Element parent, String ns, String name) {
-        NodeList nodes = parent.getElementsByTagNameNS(ns, name);
-        if (nodes.getLength() == 0) {
-            return "";
+            List<ArxivEntry> entries = new ArrayList<>();
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && isAtom(reader, "entry")) {
+                    entries.add(readEntry(reader));
+                }
+            }
+            return entries;
+        } finally {
+            reader.close();
         }
-        return nodes.item(0).getTextContent().trim();
     }
 
-    private List<String> extractAuthors(Element entry) {
-        NodeList authors = entry.getElementsByTagNameNS(ATOM_NS, "author");
-        List<String> result = new ArrayList<>();
-        for (int i = 0; i < authors.getLength(); i++) {
-            Element author = (Element) authors.item(i);
-            NodeList names = author.getElementsByTagNameNS(ATOM_NS, "name");
-            if (names.getLength() > 0) {
-                String name = names.item(0).getTextContent().trim();
-                if (StringUtils.hasText(name)) {
-                    result.add(name);
+    /**
+     * Consumes one {@code <entry>} (the reader is on its start tag) up to and including its end tag.
+     */
+    private static ArxivEntry readEntry(XMLStreamReader reader) throws XMLStreamException {
+        String id = "";
+        String title = "";
+        String summary = "";
+        String published = "";
+        String updated = "";
+        String alternateLink = "";
+        String fallbackLink = "";
+        List<String> authors = new ArrayList<>();
+        List<String> categories = new ArrayList<>();
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            if (!ATOM_NS.equals(reader.getNamespaceURI())) {
+                skipElement(reader);
+                continue;
+            }
+            switch (reader.getLocalName()) {
+                case "id" -> id = reader.getElementText().trim();
+                case "title" -> title = normalizeWhitespace(reader.getElementText());
+                case "summary" -> summary = normalizeWhitespace(reader.getElementText());
+                case "published" -> published = reader.getElementText().trim();
+                case "updated" -> updated = reader.getElementText().trim();
+                case "link" -> {
+                    String href = attribute(reader, "href");
+                    if (StringUtils.hasText(href)) {
+                        if (!StringUtils.hasText(alternateLink)
+                                && "alternate".equalsIgnoreCase(attribute(reader, "rel"))
+                                && attribute(reader, "type").toLowerCase(Locale.ROOT).contains("html")) {
+                            alternateLink = href;
+                        }
+                        if (!StringUtils.hasText(fallbackLink)) {
+                            fallbackLink = href;
+                        }
+                    }
+                    skipElement(reader);
                 }
+                case "category" -> {
+                    String term = attribute(reader, "term");
+                    if (StringUtils.hasText(term)) {
+                        categories.add(term.trim());
+                    }
+                    skipElement(reader);
+                }
+                case "author" -> {
+                    String name = readAuthorName(reader);
+                    if (StringUtils.hasText(name)) {
+                        authors.add(name);
+                    }
+                }
+                default -> skipElement(reader);
             }
         }
-        return result;
+        String url = StringUtils.hasText(alternateLink) ? alternateLink : fallbackLink;
+        return new ArxivEntry(extractArxivId(id), title, summary, url, authors, categories,
+                parseTime(published), parseTime(updated));
     }
 
-    private List<String> extractCategories(Element entry) {
-        NodeList categories = entry.getElementsByTagNameNS(ATOM_NS, "category");
-        List<String> result = new ArrayList<>();
-        for (int i = 0; i < categories.getLength(); i++) {
-            Element category = (Element) categories.item(i);
-            String term = category.getAttribute("term");
-            if (StringUtils.hasText(term)) {
-                result.add(term.trim());
+    private static String readAuthorName(XMLStreamReader reader) throws XMLStreamException {
+        String name = "";
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return name;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            if (isAtom(reader, "name") && !StringUtils.hasText(name)) {
+                name = reader.getElementText().trim();
+            } else {
+                skipElement(reader);
             }
         }
-        return result;
     }
 
-    private String extractLink(Element entry) {
-        NodeList links = entry.getElementsByTagNameNS(ATOM_NS, "link");
-        String fallback = "";
-        for (int i = 0; i < links.getLength(); i++) {
-            Element link = (Element) links.item(i);
-            String href = link.getAttribute("href");
-            String rel = link.getAttribute("rel");
-            String type = link.getAttribute("type");
-            if (StringUtils.hasText(href)) {
-                if ("alternate".equalsIgnoreCase(rel) && type.toLowerCase(Locale.ROOT).contains("html")) {
-                    return href;
-                }
-                if (!StringUtils.hasText(fallback)) {
-                    fallback = href;
-                }
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
             }
         }
-        return fallback;
     }
 
-    private OffsetDateTime parseTime(String value) {
+    private static boolean isAtom(XMLStreamReader reader, String localName) {
+        return ATOM_NS.equals(reader.getNamespaceURI()) && localName.equals(reader.getLocalName());
+    }
+
+    private static String attribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        return value != null ? value : "";
+    }
+
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static OffsetDateTime parseTime(String value) {
         if (!StringUtils.hasText(value)) {
             return null;
         }
         return OffsetDateTime.parse(value);
     }
 
-    private String extractArxivId(String id) {
+    private static String extractArxivId(String id) {
         if (!StringUtils.hasText(id)) {
             return "";
         }
@@ -258,7 +436,7 @@ public class ArxivApiReaderTool {
         return queryIdx >= 0 ? raw.substring(0, queryIdx) : raw;
     }
 
-    private String normalizeWhitespace(String value) {
+    private static String normalizeWhitespace(String value) {
         if (!StringUtils.hasText(value)) {
             return "";
         }
@@ -280,20 +458,26 @@ public class ArxivApiReaderTool {
                              Integer start,
                              Integer maxResults,
                              String sortBy,
-                             String sortOrder) {
+                             String sortOrder,
+                             Integer pages,
+                             Boolean incremental) {
     }
 
     public record ArxivIngestResult(String searchQuery,
                                     int fetched,
+                                    int pages,
                                     int stored,
+                                    int inserted,
+                                    int updated,
                                     int skipped,
+                                    OffsetDateTime highWaterMark,
                                     List<ArxivItem> items) {
     }
 
     public record ArxivItem(String sourceId, String title, String url) {
     }
 
-    private record ArxivEntry(String arxivId,
+    record ArxivEntry(String arxivId,
                               String title,
                               String summary,
                               String url,
@@ -1,7 +1,7 @@
 package com.bko.tools;
 
 import com.bko.entity.ExternalDocument;
-import com.bko.repository.ExternalDocumentRepository;
+import com.bko.orchestration.service.ExternalDocumentService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
@@ -20,11 +20,12 @@ public class ExternalDocumentSearchTool {
     private static final int DEFAULT_LIMIT = 10;
     private static final int MAX_LIMIT = 50;
 
-    private final ExternalDocumentRepository externalDocumentRepository;
+    private final ExternalDocumentService externalDocumentService;
 
     @Tool(
             name = "external_document_search",
-            description = "Search persisted external documents (including arXiv abstracts) from the database."
+            description = "Search persisted external documents (including arXiv abstracts) from the database. "
+                    + "Results are ranked by relevance; queryText supports quoted phrases, OR and -exclusions."
     )
     public ExternalDocumentSearchResult search(
             @ToolParam(description = "Search options for external_document records")
@@ -34,7 +35,7 @@ public class ExternalDocumentSearchTool {
         String queryText = normalizeQueryText(request);
         int limit = normalizeLimit(request != null ? request.limit() : null);
 
-        List<ExternalDocument> docs = externalDocumentRepository.searchDocuments(
+        List<ExternalDocument> docs = externalDocumentService.search(
                 source,
                 queryText,
                 PageRequest.of(0, limit)
@@ -4,31 +4,51 @@ import com.bko.entity.ScheduledAgent;
 import com.bko.entity.ScheduledAgentRun;
 import com.bko.orchestration.service.AgentLibraryService;
 import com.bko.orchestration.service.AgentQueryService;
+import com.bko.orchestration.service.AgentRunSummaryService;
+import com.bko.orchestration.model.PromptLogSummary;
+import com.bko.orchestration.model.RunStats;
+import com.bko.orchestration.service.RunArchiveService;
+import com.bko.orchestration.service.RunStatsService;
 import com.bko.orchestration.service.ScheduledAgentExecutionService;
+import com.bko.orchestration.service.TextBlobService;
+import com.bko.orchestration.service.TokenCountService;
 import com.bko.repository.PromptLogRepository;
 import com.bko.repository.ScheduledAgentRepository;
 import com.bko.repository.ScheduledAgentRunRepository;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(AgentController.class)
+@Import(AgentRunSummaryService.class)
 class AgentControllerTest {
 
     @Autowired
@@ -52,6 +72,18 @@ class AgentControllerTest {
     @MockitoBean
     private ScheduledAgentExecutionService scheduledAgentExecutionService;
 
+    @MockitoBean
+    private TokenCountService tokenCountService;
+
+    @MockitoBean
+    private TextBlobService textBlobService;
+
+    @MockitoBean
+    private RunArchiveService runArchiveService;
+
+    @MockitoBean
+    private RunStatsService runStatsService;
+
     @MockitoBean(name = "orchestrationExecutor")
     private ExecutorService orchestrationExecutor;
 
@@ -78,6 +110,66 @@ class AgentControllerTest {
                 .andExpect(jsonPath("$.name").value("Test Agent"));
     }
 
+    @Test
+    void listRunsReadsTotalsFromRunStatsProjection() throws Exception {
+        UUID id = UUID.randomUUID();
+        ScheduledAgent agent = new ScheduledAgent();
+        agent.setId(id);
+        ScheduledAgentRun run = new ScheduledAgentRun();
+        run.setId(UUID.randomUUID());
+        run.setSessionId(UUID.randomUUID());
+        run.setStartedAt(OffsetDateTime.now());
+        when(agentRepository.findById(id)).thenReturn(Optional.of(agent));
+        when(runRepository.findByAgentOrderByStartedAtDesc(any(ScheduledAgent.class), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(run), PageRequest.of(1, 1), 3));
+        when(runStatsService.isAvailable()).thenReturn(true);
+        OffsetDateTime first = OffsetDateTime.now();
+        when(runStatsService.findBySessionIds(List.of(run.getSessionId()))).thenReturn(Map.of(run.getSessionId(),
+                new RunStats(run.getSessionId(), 4, 100, 50, first, first.plusSeconds(2))));
+
+        mockMvc.perform(get("/api/agents/{id}/runs", id).param("page", "1").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.runs[0].eventCount").value(4))
+                .andExpect(jsonPath("$.runs[0].totalTokens").value(150))
+                .andExpect(jsonPath("$.runs[0].durationMillis").value(2000))
+                .andExpect(jsonPath("$.page").value(1))
+                .andExpect(jsonPath("$.totalRuns").value(3));
+        verify(promptLogRepository, never()).findBySession_IdInOrderByCreatedAtAsc(any());
+    }
+
+    @Test
+    void runEventsSummaryPageStreamsWithoutBodiesAndReturnsCursor() throws Exception {
+        UUID id = UUID.randomUUID();
+        ScheduledAgent agent = new ScheduledAgent();
+        agent.setId(id);
+        ScheduledAgentRun run = new ScheduledAgentRun();
+        run.setId(UUID.randomUUID());
+        run.setAgent(agent);
+        run.setSessionId(UUID.randomUUID());
+        run.setStartedAt(OffsetDateTime.now());
+        when(runRepository.findById(run.getId())).thenReturn(Optional.of(run));
+        OffsetDateTime createdAt = run.getStartedAt().plusSeconds(1);
+        when(promptLogRepository.findSummaryPageAfter(eq(run.getSessionId()), any(), any(), any(), any()))
+                .thenReturn(List.of(
+                        new PromptLogSummary(UUID.randomUUID(), createdAt, "plan", null, 10, 5),
+                        new PromptLogSummary(UUID.randomUUID(), createdAt.plusSeconds(1), "worker", "dev", null, null)));
+
+        MvcResult result = mockMvc.perform(get("/api/agents/{id}/runs/{runId}/events", id, run.getId())
+                        .param("view", "summary")
+                        .param("limit", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(AgentController.NEXT_CURSOR_HEADER))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].purpose").value("plan"))
+                .andExpect(jsonPath("$[0].totalTokens").value(15))
+                .andExpect(jsonPath("$[0].input").doesNotExist());
+        verify(promptLogRepository, never()).findPageAfter(any(), any(), any(), any(), any());
+    }
+
     @Test
     void createAgentValidatesAndDelegatesToService() throws Exception {
         when(agentLibraryService.createAgent(any())).thenReturn(new ScheduledAgent());
@@ -0,0 +1,94 @@
+package com.bko.orchestration.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DocumentSearchIndexTest {
+
+    private static final DocumentSearchIndex.Scoring SCORING =
+            new DocumentSearchIndex.Scoring(1.2, 0.75, new double[]{3.0, 2.5, 1.0, 1.5, 0.5});
+
+    @Test
+    void ranksTitleMatchesAboveAbstractMatchesAndFiltersBySource() {
+        DocumentSearchIndex index = new DocumentSearchIndex();
+        UUID inTitle = UUID.randomUUID();
+        UUID inAbstract = UUID.randomUUID();
+        UUID otherSource = UUID.randomUUID();
+        index.add(inAbstract, "arxiv", fields("2401.00002", "Sparse attention",
+                "We study graph neural networks for molecules.", "B. Author", "cs.LG"));
+        index.add(inTitle, "arxiv", fields("2401.00001", "Graph neural networks at scale",
+                "A survey of message passing.", "A. Author", "cs.LG"));
+        index.add(otherSource, "pubmed", fields("123", "Graph networks", "Neural graph methods.", null, null));
+        index.add(UUID.randomUUID(), "arxiv", fields("2401.00003", "Protein folding", "Diffusion models.", null, null));
+
+        DocumentSearchIndex.Result result = index.search("ARXIV", "graph neural", 10, SCORING);
+
+        assertEquals(2, result.total());
+        assertEquals(List.of(inTitle, inAbstract), result.hits().stream().map(DocumentSearchIndex.Hit::id).toList());
+        assertEquals(0, index.search("unknown", "graph", 10, SCORING).total());
+        assertEquals(3, index.search(null, "graph", 10, SCORING).total());
+    }
+
+    @Test
+    void replacedDocumentsOnlyMatchTheirLatestTextBeforeAndAfterCompaction() {
+        DocumentSearchIndex index = new DocumentSearchIndex();
+        UUID id = UUID.randomUUID();
+        index.add(id, "arxiv", fields("1", "Quantum error correction", null, null, null));
+        index.add(UUID.randomUUID(), "arxiv", fields("2", "Quantum annealing", null, null, null));
+        index.add(id, "arxiv", fields("1", "Topological codes", null, null, null));
+
+        assertEquals(0, index.search("arxiv", "correction", 10, SCORING).total());
+        assertEquals(List.of(id), ids(index.search("arxiv", "topological", 10, SCORING)));
+        assertTrue(index.deletedRatio() > 0);
+
+        index.compact();
+
+        assertEquals(0.0, index.deletedRatio());
+        assertEquals(2, index.size());
+        assertEquals(0, index.search("arxiv", "correction", 10, SCORING).total());
+        assertEquals(List.of(id), ids(index.search("arxiv", "topological", 10, SCORING)));
+        assertEquals(1, index.search("arxiv", "quantum", 10, SCORING).total());
+    }
+
+    @Test
+    void snapshotRoundTripsDocumentsPostingsAndCheckpoint(@TempDir Path dir) throws Exception {
+        DocumentSearchIndex index = new DocumentSearchIndex();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        index.add(first, "arxiv", fields("2401.00001", "Retrieval augmented generation",
+                "Dense retrieval with long contexts. ".repeat(200), "Ada Lovelace", "cs.CL"));
+        index.add(second, "arxiv", fields("2401.00002", "Sparse retrieval", "BM25 baselines.", "Alan Turing", "cs.IR"));
+        index.add(second, "arxiv", fields("2401.00002", "Sparse retrieval revisited", "BM25 baselines.", "Alan Turing", "cs.IR"));
+        DocumentSearchIndex.Checkpoint checkpoint =
+                new DocumentSearchIndex.Checkpoint(OffsetDateTime.parse("2025-01-02T03:04:05.123456Z"), second);
+        index.checkpoint(checkpoint);
+        Path path = dir.resolve("index.bin");
+
+        index.writeSnapshot(path);
+        DocumentSearchIndex restored = DocumentSearchIndex.readSnapshot(path);
+
+        assertEquals(checkpoint, restored.checkpoint());
+        assertEquals(2, restored.size());
+        assertEquals(ids(index.search("arxiv", "retrieval", 10, SCORING)),
+                ids(restored.search("arxiv", "retrieval", 10, SCORING)));
+        assertEquals(List.of(first), ids(restored.search("arxiv", "lovelace", 10, SCORING)));
+        restored.add(first, "arxiv", fields("2401.00001", "Renamed", null, null, null));
+        assertEquals(List.of(second), ids(restored.search("arxiv", "retrieval", 10, SCORING)));
+    }
+
+    private static String[] fields(String sourceId, String title, String abstractText, String authors, String categories) {
+        return new String[]{sourceId, title, abstractText, authors, categories};
+    }
+
+    private static List<UUID> ids(DocumentSearchIndex.Result result) {
+        return result.hits().stream().map(DocumentSearchIndex.Hit::id).toList();
+    }
+}
@@ -0,0 +1,140 @@
+package com.bko.orchestration.service;
+
+import com.bko.entity.ExternalDocument;
+import com.bko.orchestration.model.DocumentSearchPage;
+import com.bko.orchestration.model.DocumentUpsertResult;
+import com.bko.repository.ExternalDocumentRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ExternalDocumentServiceTest {
+
+    @Test
+    void likePatternEscapesWildcards() {
+        assertEquals("%2401.00001%", ExternalDocumentService.likePattern("2401.00001"));
+        assertEquals("%50\\%\\_off\\\\%", ExternalDocumentService.likePattern("50%_OFF\\"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void searchUsesRankedQueryWhenSearchVectorExists() {
+        ExternalDocumentRepository repository = mock(ExternalDocumentRepository.class);
+        SchemaProbe schemaProbe = mock(SchemaProbe.class);
+        when(schemaProbe.hasColumns("external_document", "search_vector")).thenReturn(true);
+        ExternalDocumentService service = new ExternalDocumentService(repository, mock(ObjectProvider.class),
+                mock(DocumentIndexService.class), schemaProbe);
+        var page = PageRequest.of(0, 10);
+
+        service.search("arxiv", "graph neural", page);
+        service.countSearch("arxiv", "graph neural");
+        service.search("arxiv", null, page);
+
+        verify(repository).searchDocumentsRanked("arxiv", "graph neural", "%graph neural%", page);
+        verify(repository).countSearchDocumentsRanked("arxiv", "graph neural", "%graph neural%");
+        verify(repository).searchDocuments("arxiv", null, page);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void searchFallsBackToLikeWithoutSearchVector() {
+        ExternalDocumentRepository repository = mock(ExternalDocumentRepository.class);
+        ExternalDocumentService service = new ExternalDocumentService(repository, mock(ObjectProvider.class),
+                mock(DocumentIndexService.class), mock(SchemaProbe.class));
+        var page = PageRequest.of(0, 10);
+
+        service.search(null, "transformer", page);
+
+        verify(repository).searchDocuments(null, "transformer", page);
+        verify(repository, never()).searchDocumentsRanked(any(), any(), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void searchPageTakesTheTotalFromTheIndexScoringPass() {
+        ExternalDocumentRepository repository = mock(ExternalDocumentRepository.class);
+        DocumentIndexService indexService = mock(DocumentIndexService.class);
+        when(indexService.isReady()).thenReturn(true);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        when(indexService.search("arxiv", "graph", 2)).thenReturn(new DocumentIndexService.Matches(List.of(first, second), 7));
+        ExternalDocument secondDocument = document("b", "second");
+        secondDocument.setId(second);
+        when(repository.findAllById(List.of(second))).thenReturn(List.of(secondDocument));
+        ExternalDocumentService service = new ExternalDocumentService(repository, mock(ObjectProvider.class), indexService,
+                mock(SchemaProbe.class));
+
+        DocumentSearchPage page = service.searchPage("arxiv", "graph", PageRequest.of(1, 1));
+
+        assertEquals(List.of(secondDocument), page.content());
+        assertEquals(7, page.total());
+        verify(indexService, times(1)).search(any(), any(), anyInt());
+        verify(repository, never()).countSearchDocumentsRanked(any(), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void upsertAllWritesOneStatementAndCountsReturnedRows() throws Exception {
+        ExternalDocumentRepository repository = mock(ExternalDocumentRepository.class);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        ObjectProvider<JdbcTemplate> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(jdbcTemplate);
+        DocumentIndexService indexService = mock(DocumentIndexService.class);
+        ExternalDocumentService service = new ExternalDocumentService(repository, provider, indexService, mock(SchemaProbe.class));
+        UUID insertedId = UUID.randomUUID();
+        UUID updatedId = UUID.randomUUID();
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class))).thenAnswer(invocation -> {
+            RowMapper<Object> mapper = invocation.getArgument(1);
+            return List.of(
+                    mapper.mapRow(row(insertedId, "a", true), 0),
+                    mapper.mapRow(row(updatedId, "b", false), 1));
+        });
+
+        DocumentUpsertResult result = service.upsertAll(List.of(
+                document("a", "first"), document("b", "old"), document("b", "second"),
+                document("c", "unchanged"), document(null, "invalid")));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate).query(sql.capture(), any(RowMapper.class), args.capture());
+        assertTrue(sql.getValue().contains("ON CONFLICT (source, source_id) DO UPDATE"));
+        assertEquals(30, args.getValue().length);
+        assertEquals("second", args.getValue()[13]);
+        assertEquals(1, result.inserted());
+        assertEquals(1, result.updated());
+        assertEquals(3, result.skipped());
+        assertEquals(List.of(insertedId, updatedId), result.written().stream().map(ExternalDocument::getId).toList());
+        verify(indexService).index(result.written());
+    }
+
+    private static ExternalDocument document(String sourceId, String title) {
+        return ExternalDocument.builder().source("arxiv").sourceId(sourceId).title(title).build();
+    }
+
+    private static ResultSet row(UUID id, String sourceId, boolean inserted) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getObject("id", UUID.class)).thenReturn(id);
+        when(rs.getString("source")).thenReturn("arxiv");
+        when(rs.getString("source_id")).thenReturn(sourceId);
+        when(rs.getBoolean("inserted")).thenReturn(inserted);
+        return rs;
+    }
+}
@@ -0,0 +1,50 @@
+package com.bko.orchestration.service;
+
+import com.bko.config.MultiAgentProperties;
+import com.bko.orchestration.model.FastPathDecision;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FastPathClassifierTest {
+
+    private final MultiAgentProperties properties = new MultiAgentProperties();
+    private final FastPathClassifier classifier =
+            new FastPathClassifier(properties, new TokenCountService(properties));
+
+    @Test
+    void shortSingleIntentPromptTakesFastPath() {
+        FastPathDecision decision = classifier.classify("What is the capital of France?", null);
+        assertTrue(decision.fastPath());
+        assertTrue(decision.confidence() > 0.9);
+    }
+
+    @Test
+    void multiStepPromptIsPlanned() {
+        FastPathDecision decision = classifier.classify(
+                "Research the latest arXiv papers on agents, then implement a summary tool and finally write tests.",
+                null);
+        assertFalse(decision.fastPath());
+    }
+
+    @Test
+    void numberedListIsPlanned() {
+        FastPathDecision decision = classifier.classify("""
+                Please do the following:
+                1. Fetch the config file.
+                2. Update the timeout.
+                3. Restart the service.
+                """, null);
+        assertFalse(decision.fastPath());
+    }
+
+    @Test
+    void respectsThresholdAndToggle() {
+        properties.getFastPath().setConfidenceThreshold(0.999);
+        assertFalse(classifier.classify("What is the capital of France?", null).fastPath());
+        properties.getFastPath().setConfidenceThreshold(0.8);
+        properties.getFastPath().setEnabled(false);
+        assertFalse(classifier.classify("What is the capital of France?", null).fastPath());
+    }
+}
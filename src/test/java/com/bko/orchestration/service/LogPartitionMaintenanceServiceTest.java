@@ -0,0 +1,66 @@
+package com.bko.orchestration.service;
+
+import com.bko.config.MultiAgentProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LogPartitionMaintenanceServiceTest {
+
+    @Test
+    void createPartitionSqlCoversOneUtcMonth() {
+        assertEquals("CREATE TABLE IF NOT EXISTS \"prompt_log_p202612\" PARTITION OF \"prompt_log\""
+                        + " FOR VALUES FROM ('2026-12-01T00:00Z') TO ('2027-01-01T00:00Z')",
+                LogPartitionMaintenanceService.createPartitionSql("prompt_log", YearMonth.of(2026, 12)));
+    }
+
+    @Test
+    void partitionExpiresOnlyWhenItsWholeRangeIsPastRetention() {
+        OffsetDateTime now = OffsetDateTime.of(2026, 10, 18, 12, 0, 0, 0, ZoneOffset.UTC);
+        OffsetDateTime cutoff = LogPartitionMaintenanceService.retentionCutoff(now, 6);
+
+        assertTrue(LogPartitionMaintenanceService.isExpired(
+                OffsetDateTime.of(2026, 4, 1, 0, 0, 0, 0, ZoneOffset.UTC), cutoff));
+        assertFalse(LogPartitionMaintenanceService.isExpired(
+                OffsetDateTime.of(2026, 5, 1, 0, 0, 0, 0, ZoneOffset.UTC), cutoff));
+        assertFalse(LogPartitionMaintenanceService.isExpired(null, cutoff));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void maintenanceCreatesUpcomingPartitionsForPartitionedTablesOnly() {
+        MultiAgentProperties properties = new MultiAgentProperties();
+        properties.getLogPartitions().setPremakeMonths(2);
+        properties.getLogPartitions().setRetentionMonths(0);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), eq("prompt_log"))).thenReturn(1);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), eq("tool_call_log"))).thenReturn(0);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), eq("worker_result_log"))).thenReturn(0);
+        ObjectProvider<JdbcTemplate> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(jdbcTemplate);
+
+        new LogPartitionMaintenanceService(properties, provider).runMaintenance();
+
+        verify(jdbcTemplate, times(3)).execute(contains("PARTITION OF \"prompt_log\""));
+        verify(jdbcTemplate, never()).execute(contains("PARTITION OF \"tool_call_log\""));
+        verify(jdbcTemplate, never()).query(anyString(), any(RowMapper.class), any(Object[].class));
+    }
+}
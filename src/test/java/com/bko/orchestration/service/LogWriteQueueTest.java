@@ -0,0 +1,167 @@
+package com.bko.orchestration.service;
+
+import com.bko.config.MultiAgentProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LogWriteQueueTest {
+
+    @TempDir
+    Path spillDir;
+
+    private final MultiAgentProperties properties = new MultiAgentProperties();
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private LogWriteQueue queue;
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null) {
+            queue.stop();
+        }
+    }
+
+    @Test
+    void flushWritesQueuedRowsInBatches() {
+        properties.getLogWriter().setBatchSize(2);
+        properties.getLogWriter().setFlushInterval(Duration.ofMillis(20));
+        queue = newQueue();
+        queue.start();
+        UUID sessionId = UUID.randomUUID();
+
+        for (int i = 0; i < 3; i++) {
+            queue.enqueue(promptRow(sessionId));
+        }
+        queue.flush();
+
+        assertEquals(3, writtenRows("INSERT INTO prompt_log"));
+    }
+
+    @Test
+    void spillPolicyWritesOverflowToDiskAndReplaysIt() throws Exception {
+        properties.getLogWriter().setCapacity(1);
+        properties.getLogWriter().setOverflowPolicy(MultiAgentProperties.LogWriterConfig.OverflowPolicy.SPILL);
+        properties.getLogWriter().setSpillDirectory(spillDir.toString());
+        queue = newQueue();
+        UUID sessionId = UUID.randomUUID();
+
+        queue.enqueue(promptRow(sessionId));
+        queue.enqueue(promptRow(sessionId));
+        Path spillFile = spillDir.resolve("log-spill.ndjson");
+        assertTrue(Files.exists(spillFile));
+        assertEquals(1, Files.readAllLines(spillFile).size());
+
+        queue.start();
+        queue.flush();
+
+        assertEquals(2, writtenRows("INSERT INTO prompt_log"));
+        assertFalse(Files.exists(spillFile));
+    }
+
+    @Test
+    void batchIsSpilledWhenTheDatabaseIsUnreachableAndWrittenOnReplay() throws Exception {
+        properties.getLogWriter().setSpillDirectory(spillDir.toString());
+        doThrow(new CannotGetJdbcConnectionException("connection refused"))
+                .doReturn(new int[0][0])
+                .when(jdbcTemplate).batchUpdate(anyString(), anyCollection(), anyInt(),
+                        any(ParameterizedPreparedStatementSetter.class));
+        queue = newQueue();
+        queue.start();
+        UUID sessionId = UUID.randomUUID();
+        LogWriteQueue.LogRow first = promptRow(sessionId);
+        LogWriteQueue.LogRow second = promptRow(sessionId);
+
+        queue.enqueue(first);
+        queue.enqueue(second);
+        queue.flush();
+
+        // Two rows failed, the same two were replayed from the spill file in order.
+        assertEquals(4, writtenRows("INSERT INTO prompt_log"));
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(),
+                argThat((Collection<LogWriteQueue.LogRow> rows) -> rows.stream().map(LogWriteQueue.LogRow::id)
+                        .toList().equals(List.of(first.id(), second.id()))),
+                anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        assertFalse(Files.exists(spillDir.resolve("log-spill.ndjson")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rejectedBatchIsSplitSoOnlyTheOffendingRowIsDropped() {
+        properties.getLogWriter().setBatchSize(4);
+        UUID sessionId = UUID.randomUUID();
+        LogWriteQueue.LogRow bad = promptRow(sessionId);
+        doThrow(new DataIntegrityViolationException("fk violation"))
+                .when(jdbcTemplate).batchUpdate(anyString(),
+                        argThat((Collection<LogWriteQueue.LogRow> rows) -> rows.stream().anyMatch(row -> row.id().equals(bad.id()))),
+                        anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        queue = newQueue();
+        queue.start();
+
+        queue.enqueue(promptRow(sessionId));
+        queue.enqueue(bad);
+        queue.enqueue(promptRow(sessionId));
+        queue.flush();
+
+        ArgumentCaptor<Collection<LogWriteQueue.LogRow>> rows = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate, atLeastOnce()).batchUpdate(anyString(), rows.capture(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+        long stored = rows.getAllValues().stream()
+                .filter(batch -> batch.stream().noneMatch(row -> row.id().equals(bad.id())))
+                .mapToInt(Collection::size).sum();
+        assertEquals(2, stored);
+    }
+
+    private LogWriteQueue newQueue() {
+        @SuppressWarnings("unchecked")
+        ObjectProvider<JdbcTemplate> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(jdbcTemplate);
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        return new LogWriteQueue(properties, provider, objectMapper, new OrchestrationMetricsService(),
+                mock(TextBlobService.class), mock(RunStatsService.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private int writtenRows(String sqlPrefix) {
+        ArgumentCaptor<Collection<LogWriteQueue.LogRow>> rows = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate, atLeastOnce()).batchUpdate(contains(sqlPrefix), rows.capture(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+        return rows.getAllValues().stream().mapToInt(Collection::size).sum();
+    }
+
+    private static LogWriteQueue.LogRow promptRow(UUID sessionId) {
+        return LogWriteQueue.LogRow.prompt(UUID.randomUUID(), sessionId, "plan", null, "system", "user",
+                "response", null, null, OffsetDateTime.now());
+    }
+}
@@ -0,0 +1,90 @@
+package com.bko.orchestration.service;
+
+import com.bko.config.MultiAgentProperties;
+import com.bko.orchestration.model.ArchivedSession;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class RunArchiveServiceTest {
+
+    @TempDir
+    Path archiveDir;
+
+    private final MultiAgentProperties properties = new MultiAgentProperties();
+
+    @Test
+    void appendedSessionsAreReadBackByOffsetAfterRestart() throws Exception {
+        properties.getArchive().setDirectory(archiveDir.toString());
+        RunArchiveService service = newService();
+        ArchivedSession first = session("first prompt");
+        ArchivedSession second = session("second prompt");
+
+        service.append(first);
+        service.append(second);
+
+        RunArchiveService restarted = newService();
+        restarted.loadIndex();
+        assertTrue(restarted.isArchived(first.id()));
+        assertEquals(first, restarted.find(first.id()).orElseThrow());
+        assertEquals(second, restarted.find(second.id()).orElseThrow());
+        assertFalse(restarted.find(UUID.randomUUID()).isPresent());
+    }
+
+    @Test
+    void segmentIsAPlainGzipStreamAndRollsOverAtTheSizeLimit() throws Exception {
+        properties.getArchive().setDirectory(archiveDir.toString());
+        properties.getArchive().setSegmentMaxBytes(1);
+        RunArchiveService service = newService();
+
+        service.append(session("a"));
+        service.append(session("b"));
+
+        Path segment = archiveDir.resolve("segment-000001.ndjson.gz");
+        assertTrue(Files.exists(segment));
+        assertTrue(Files.exists(archiveDir.resolve("segment-000002.ndjson.gz")));
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(segment))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.transferTo(out);
+            assertTrue(out.toString(StandardCharsets.UTF_8).contains("\"userPrompt\":\"a\""));
+        }
+    }
+
+    private RunArchiveService newService() {
+        @SuppressWarnings("unchecked")
+        ObjectProvider<JdbcTemplate> provider = mock(ObjectProvider.class);
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        return new RunArchiveService(properties, provider, objectMapper, mock(TextBlobService.class));
+    }
+
+    private static ArchivedSession session(String prompt) {
+        OffsetDateTime now = OffsetDateTime.of(2026, 1, 5, 10, 0, 0, 0, ZoneOffset.UTC);
+        UUID taskId = UUID.randomUUID();
+        return new ArchivedSession(UUID.randomUUID(), prompt, "OPENAI", "gpt", "answer", "COMPLETED", now, now,
+                List.of(new ArchivedSession.Plan(UUID.randomUUID(), "objective", true, now,
+                        List.of(new ArchivedSession.Task(taskId, "task-1", "worker", "do it", "done", now)))),
+                List.of(new ArchivedSession.Prompt(UUID.randomUUID(), "plan", null, "system", prompt, "response",
+                        10, 20, now)),
+                List.of(new ArchivedSession.ToolCall(UUID.randomUUID(), taskId, "worker", "search", "{}", "[]", now)),
+                List.of(new ArchivedSession.WorkerResultEntry(UUID.randomUUID(), taskId, "worker", "output", now)));
+    }
+}
@@ -0,0 +1,54 @@
+package com.bko.orchestration.service;
+
+import com.bko.orchestration.model.RunStats;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RunStatsServiceTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordMergesEventsIntoOneUpsertPerSession() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        ObjectProvider<JdbcTemplate> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(jdbcTemplate);
+        SchemaProbe schemaProbe = mock(SchemaProbe.class);
+        when(schemaProbe.hasTable("run_stats")).thenReturn(true);
+        RunStatsService service = new RunStatsService(provider, schemaProbe);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        OffsetDateTime now = OffsetDateTime.now();
+
+        service.record(List.of(
+                new RunStatsService.Event(first, 10, 5, now.plusSeconds(3)),
+                new RunStatsService.Event(second, 1, 1, now),
+                new RunStatsService.Event(first, 20, 7, now)));
+
+        ArgumentCaptor<Collection<RunStats>> rows = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate).batchUpdate(contains("ON CONFLICT (session_id)"), rows.capture(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+        List<RunStats> written = List.copyOf(rows.getValue());
+        assertEquals(2, written.size());
+        assertEquals(first, written.getFirst().sessionId());
+        assertEquals(2, written.getFirst().eventCount());
+        assertEquals(30, written.getFirst().inputTokens());
+        assertEquals(12, written.getFirst().outputTokens());
+        assertEquals(3000, written.getFirst().durationMillis());
+    }
+}
@@ -0,0 +1,51 @@
+package com.bko.orchestration.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SchemaProbeTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void answersAreLookedUpOnceAndColumnsMustAllExist() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(contains("information_schema.tables"), eq(Integer.class), eq("run_stats")))
+                .thenReturn(1);
+        when(jdbcTemplate.queryForObject(contains("column_name IN (?, ?)"), eq(Integer.class),
+                eq("prompt_log"), eq("input_token_count"), eq("output_token_count"))).thenReturn(1);
+        ObjectProvider<JdbcTemplate> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(jdbcTemplate);
+        SchemaProbe probe = new SchemaProbe(provider);
+
+        assertTrue(probe.hasTable("run_stats"));
+        assertTrue(probe.hasTable("run_stats"));
+        assertFalse(probe.hasColumns("prompt_log", "input_token_count", "output_token_count"));
+        assertFalse(probe.hasColumns("prompt_log", "input_token_count", "output_token_count"));
+
+        verify(jdbcTemplate, times(2)).queryForObject(anyString(), eq(Integer.class), any(Object[].class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedLookupCountsAsMissing() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), any(Object[].class)))
+                .thenThrow(new IllegalStateException("no database"));
+        ObjectProvider<JdbcTemplate> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(jdbcTemplate);
+
+        assertFalse(new SchemaProbe(provider).hasTable("stream_event"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.bko.orchestration.service;
+
+import com.bko.config.AgentSkill;
+import com.bko.config.MultiAgentProperties;
+import com.bko.entity.OrchestrationSession;
+import com.bko.orchestration.api.AgentInvocationService;
+import com.bko.orchestration.model.SkillSelection;
+import com.bko.orchestration.model.TaskSpec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SkillPlanningServiceTest {
+
+    private final MultiAgentProperties properties = new MultiAgentProperties();
+    private final WorkerSkillLibraryService workerSkillLibraryService = mock(WorkerSkillLibraryService.class);
+    private final AgentInvocationService agentInvocationService = mock(AgentInvocationService.class);
+    private final SkillPlanningService service = new SkillPlanningService(properties, workerSkillLibraryService,
+            agentInvocationService, new SkillRanker(properties), new OrchestrationMetricsService());
+
+    private final OrchestrationSession session = OrchestrationSession.builder().id(UUID.randomUUID()).build();
+    private final TaskSpec task = new TaskSpec("task-1", "general", "Summarize papers", "Summary");
+
+    @BeforeEach
+    void setUp() {
+        properties.getSkillPlanning().setDefaultSkillBudget(1);
+        when(workerSkillLibraryService.skillsForWorkerRole("general")).thenReturn(List.of(
+                new AgentSkill("Search", "Search the web", ""),
+                new AgentSkill("Files", "Read files", "")));
+    }
+
+    @Test
+    void validPreselectionSkipsSkillSelectionCall() {
+        var result = service.planForTask(session, "prompt", task,
+                new SkillSelection(List.of("files"), "needs files"), null, "openai", "gpt-4o");
+
+        assertEquals(List.of("Files"), result.selectedSkills().stream().map(AgentSkill::getName).toList());
+        assertEquals("needs files", result.plan().rationale());
+        verify(agentInvocationService, never()).requestSkillSelection(any(), anyString(), any(), anyList(),
+                anyInt(), any(), anyString(), anyString());
+    }
+
+    @Test
+    void localModeRanksSkillsWithoutLlmCall() {
+        TaskSpec searchTask = new TaskSpec("task-2", "general", "Search the web for recent papers", "Links");
+
+        var result = service.planForTask(session, "prompt", searchTask, null, "openai", "gpt-4o");
+
+        assertEquals(List.of("Search"), result.selectedSkills().stream().map(AgentSkill::getName).toList());
+        verify(agentInvocationService, never()).requestSkillSelection(any(), anyString(), any(), anyList(),
+                anyInt(), any(), anyString(), anyString());
+    }
+
+    @Test
+    void unknownPreselectedSkillFallsBackToSkillSelection() {
+        properties.getSkillPlanning().setSelectionMode("llm");
+        when(agentInvocationService.requestSkillSelection(eq(session), anyString(), eq(task), anyList(),
+                eq(1), any(), anyString(), anyString()))
+                .thenReturn(new SkillSelection(List.of("Search"), "search first"));
+
+        var result = service.planForTask(session, "prompt", task,
+                new SkillSelection(List.of("Shell"), "run commands"), null, "openai", "gpt-4o");
+
+        assertEquals(List.of("Search"), result.selectedSkills().stream().map(AgentSkill::getName).toList());
+    }
+}
@@ -0,0 +1,49 @@
+package com.bko.orchestration.service;
+
+import com.bko.config.AgentSkill;
+import com.bko.config.MultiAgentProperties;
+import com.bko.orchestration.model.TaskSpec;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SkillRankerTest {
+
+    private final MultiAgentProperties properties = new MultiAgentProperties();
+    private final SkillRanker ranker = new SkillRanker(properties);
+
+    private final List<AgentSkill> skills = List.of(
+            new AgentSkill("File Editing", "Create and modify files in the workspace", "Use the file tools."),
+            new AgentSkill("Web Research", "Search the web and summarize sources", "Cite every source."),
+            new AgentSkill("Testing", "Write and run unit tests", "Prefer small focused tests."));
+
+    @Test
+    void ranksSkillsByRelevanceWithinBudget() {
+        TaskSpec task = new TaskSpec("task-1", "general", "Research recent sources on the web", "A summary");
+
+        List<AgentSkill> selected = ranker.select("general", task, skills, 1);
+
+        assertEquals(List.of("Web Research"), selected.stream().map(AgentSkill::getName).toList());
+    }
+
+    @Test
+    void returnsNothingWithoutTermOverlap() {
+        TaskSpec task = new TaskSpec("task-1", "general", "Translate poetry", "Verse");
+
+        assertTrue(ranker.select("general", task, skills, 2).isEmpty());
+    }
+
+    @Test
+    void skillWeightsReorderResults() {
+        properties.getSkillPlanning().getRanker().setSkillWeights(Map.of("testing", 10.0));
+        TaskSpec task = new TaskSpec("task-1", "general", "Modify files and write tests", "Changes");
+
+        List<AgentSkill> selected = ranker.select("general", task, skills, 2);
+
+        assertEquals("Testing", selected.getFirst().getName());
+    }
+}
@@ -0,0 +1,37 @@
+package com.bko.orchestration.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamingPlanParserTest {
+
+    @Test
+    void emitsEachTaskWhenItsObjectCloses() {
+        List<String> tasks = new ArrayList<>();
+        StreamingPlanParser parser = new StreamingPlanParser(tasks::add);
+
+        parser.accept("```json\n{\"objective\":\"Do it\",\"tasks\":[{\"id\":\"task-1\",\"desc");
+        assertEquals(0, tasks.size());
+        parser.accept("ription\":\"First {step}\"},");
+        assertEquals(List.of("{\"id\":\"task-1\",\"description\":\"First {step}\"}"), tasks);
+        parser.accept("{\"id\":\"task-2\",\"description\":\"Quote \\\"}\\\" here\"}]}\n```");
+
+        assertEquals(2, tasks.size());
+        assertEquals("{\"id\":\"task-2\",\"description\":\"Quote \\\"}\\\" here\"}", tasks.get(1));
+        assertEquals(2, parser.emittedCount());
+    }
+
+    @Test
+    void ignoresObjectsOutsideTheTasksArray() {
+        List<String> tasks = new ArrayList<>();
+        StreamingPlanParser parser = new StreamingPlanParser(tasks::add);
+
+        parser.accept("{\"meta\":[{\"a\":1}],\"objective\":\"tasks\",\"tasks\":[{\"id\":\"t\",\"nested\":{\"x\":[1]}}]}");
+
+        assertEquals(List.of("{\"id\":\"t\",\"nested\":{\"x\":[1]}}"), tasks);
+    }
+}
@@ -0,0 +1,38 @@
+package com.bko.orchestration.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextBlobCodecTest {
+
+    @Test
+    void compressesRepetitiveTextAndRoundTrips() {
+        String text = "You are the orchestrator. Plan the tasks carefully. ".repeat(100) + "ünïcödé";
+
+        TextBlobCodec.Encoded encoded = TextBlobCodec.encode(text);
+
+        assertEquals(TextBlobCodec.CODEC_DEFLATE, encoded.codec());
+        assertTrue(encoded.data().length < encoded.rawLength());
+        assertEquals(text, TextBlobCodec.decode(encoded.codec(), encoded.data(), encoded.rawLength()));
+    }
+
+    @Test
+    void identicalTextSharesOneHash() {
+        String text = "same system prompt ".repeat(20);
+
+        assertEquals(TextBlobCodec.encode(text).hash(), TextBlobCodec.encode(new String(text)).hash());
+        assertNotEquals(TextBlobCodec.encode(text).hash(), TextBlobCodec.encode(text + ".").hash());
+        assertEquals(64, TextBlobCodec.encode(text).hash().length());
+    }
+
+    @Test
+    void keepsIncompressibleTextUncompressed() {
+        TextBlobCodec.Encoded encoded = TextBlobCodec.encode("x");
+
+        assertEquals(TextBlobCodec.CODEC_NONE, encoded.codec());
+        assertEquals("x", TextBlobCodec.decode(encoded.codec(), encoded.data(), encoded.rawLength()));
+    }
+}
@@ -0,0 +1,43 @@
+package com.bko.orchestration.service;
+
+import com.bko.config.MultiAgentProperties;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenCountServiceTest {
+
+    private final TokenCountService service = new TokenCountService(new MultiAgentProperties());
+
+    @Test
+    void countsTokensWithBundledVocabulary() {
+        assertEquals(2, service.count(null, "hello world"));
+        assertEquals(2, service.count("gpt-4o-mini", "hello world"));
+    }
+
+    @Test
+    void returnsZeroForBlankText() {
+        assertEquals(0, service.count("gemini-2.5-flash", null));
+        assertEquals(0, service.count("gemini-2.5-flash", "  "));
+    }
+
+    @Test
+    void repeatedCountsAreStable() {
+        String text = "System:\nYou are the planning agent.\n\nUser:\nSummarize recent cs.SE papers.";
+        int first = service.count("claude-4-sonnet", text);
+        int second = service.count("claude-4-sonnet", text);
+        assertEquals(first, second);
+        assertTrue(first > 0 && first < text.length());
+    }
+
+    @Test
+    void resolvesEncodingByModelFamily() {
+        assertEquals(EncodingType.O200K_BASE, service.encodingFor("gpt-4o"));
+        assertEquals(EncodingType.O200K_BASE, service.encodingFor("o3-mini"));
+        assertEquals(EncodingType.CL100K_BASE, service.encodingFor("gpt-4-turbo"));
+        assertEquals(EncodingType.CL100K_BASE, service.encodingFor("gemini-2.5-flash"));
+        assertEquals(EncodingType.CL100K_BASE, service.encodingFor(null));
+    }
+}
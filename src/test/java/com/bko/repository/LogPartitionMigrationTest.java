@@ -0,0 +1,71 @@
+package com.bko.repository;
+
+import liquibase.Contexts;
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.EnabledIfDockerAvailable;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs changelog 13 against log tables that already hold rows, including rows from the
+ * current month. Requires Docker to run; skipped when Docker is unavailable.
+ */
+@Testcontainers
+@EnabledIfDockerAvailable
+class LogPartitionMigrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Test
+    void currentMonthRowsMoveIntoMonthlyPartitionsAndOlderRowsStayInLegacy() throws Exception {
+        try (Connection connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(),
+                postgres.getPassword())) {
+            update(connection, "db/changelog-before-partitioning.xml");
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            UUID sessionId = UUID.randomUUID();
+            OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+            UUID current = UUID.randomUUID();
+            UUID old = UUID.randomUUID();
+            jdbcTemplate.update("INSERT INTO orchestration_session (id, user_prompt) VALUES (?, 'prompt')", sessionId);
+            jdbcTemplate.update("INSERT INTO prompt_log (id, session_id, purpose, created_at) VALUES (?, ?, 'plan', ?)",
+                    current, sessionId, now);
+            jdbcTemplate.update("INSERT INTO prompt_log (id, session_id, purpose, created_at) VALUES (?, ?, 'plan', ?)",
+                    old, sessionId, now.minusMonths(3));
+
+            update(connection, "db/changelog/db.changelog-master.xml");
+
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM prompt_log", Integer.class)).isEqualTo(2);
+            assertThat(partitionOf(jdbcTemplate, current))
+                    .isEqualTo("prompt_log_p" + now.format(DateTimeFormatter.ofPattern("yyyyMM")));
+            assertThat(partitionOf(jdbcTemplate, old)).isEqualTo("prompt_log_legacy");
+        }
+    }
+
+    private static String partitionOf(JdbcTemplate jdbcTemplate, UUID id) {
+        return jdbcTemplate.queryForObject("SELECT tableoid::regclass::text FROM prompt_log WHERE id = ?",
+                String.class, id);
+    }
+
+    private static void update(Connection connection, String changelog) throws Exception {
+        Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+        new Liquibase(changelog, new ClassLoaderResourceAccessor(), database).update(new Contexts());
+    }
+}
@@ -0,0 +1,117 @@
+package com.bko.stream;
+
+import com.bko.config.MultiAgentProperties;
+import com.bko.entity.ScheduledAgentRun;
+import com.bko.orchestration.model.RunSummary;
+import com.bko.orchestration.service.AgentRunSummaryService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AgentRunUpdatesHubTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    void updatesWithinTheWindowArePushedOnceWithTheChangedRows() throws Exception {
+        MultiAgentProperties properties = new MultiAgentProperties();
+        properties.getStreamHub().setAgentUpdateWindow(Duration.ofMillis(100));
+        AgentRunSummaryService summaries = mock(AgentRunSummaryService.class);
+        when(summaries.summaries(any())).thenAnswer(invocation -> rows(invocation.getArgument(0)));
+        AgentRunUpdatesHub hub = new AgentRunUpdatesHub(objectMapper, properties, summaries);
+        UUID agentId = UUID.randomUUID();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        WebSocketSession viewer = session("v");
+        hub.registerSession(agentId, viewer);
+
+        hub.notifyRunUpdate(agentId, first);
+        hub.notifyRunUpdate(agentId, second);
+        hub.notifyRunUpdate(agentId, first);
+        hub.notifyRunUpdate(UUID.randomUUID(), UUID.randomUUID());
+
+        ArgumentCaptor<TextMessage> sent = ArgumentCaptor.forClass(TextMessage.class);
+        verify(viewer, timeout(5_000)).sendMessage(sent.capture());
+        JsonNode push = objectMapper.readTree(sent.getValue().getPayload());
+        assertEquals("agent-run-update", push.get("type").asText());
+        assertEquals(agentId.toString(), push.get("agentId").asText());
+        assertEquals(List.of(first.toString(), second.toString()),
+                List.of(push.get("runs").get(0).get("id").asText(), push.get("runs").get(1).get("id").asText()));
+        assertEquals("SUCCEEDED", push.get("runs").get(0).get("status").asText());
+        verify(summaries, times(1)).summaries(any());
+        hub.shutdown();
+    }
+
+    @Test
+    void subscriberThatFallsBehindGetsOneResyncInsteadOfTheBacklog() throws Exception {
+        MultiAgentProperties properties = new MultiAgentProperties();
+        properties.getStreamHub().setAgentUpdateWindow(Duration.ZERO);
+        properties.getStreamHub().setAgentUpdateQueueLimit(1);
+        AgentRunSummaryService summaries = mock(AgentRunSummaryService.class);
+        when(summaries.summaries(any())).thenAnswer(invocation -> rows(invocation.getArgument(0)));
+        AgentRunUpdatesHub hub = new AgentRunUpdatesHub(objectMapper, properties, summaries);
+        UUID agentId = UUID.randomUUID();
+        WebSocketSession slow = session("slow");
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sending.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return null;
+        }).doNothing().when(slow).sendMessage(any());
+        hub.registerSession(agentId, slow);
+
+        hub.notifyRunUpdate(agentId, UUID.randomUUID());
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        for (int push = 2; push <= 4; push++) {
+            hub.notifyRunUpdate(agentId, UUID.randomUUID());
+            verify(summaries, timeout(5_000).times(push)).summaries(any());
+        }
+        release.countDown();
+
+        ArgumentCaptor<TextMessage> sent = ArgumentCaptor.forClass(TextMessage.class);
+        verify(slow, timeout(5_000).times(2)).sendMessage(sent.capture());
+        Thread.sleep(100);
+        verify(slow, times(2)).sendMessage(any());
+        JsonNode marker = objectMapper.readTree(sent.getAllValues().get(1).getPayload());
+        assertEquals("resync", marker.get("type").asText());
+        assertEquals(agentId.toString(), marker.get("agentId").asText());
+        assertFalse(marker.has("runs"));
+        hub.shutdown();
+    }
+
+    private static List<RunSummary> rows(Collection<UUID> runIds) {
+        return runIds.stream().map(id -> new RunSummary(id, null, null, ScheduledAgentRun.Status.SUCCEEDED,
+                null, 3, 120, 1_500)).toList();
+    }
+
+    private static WebSocketSession session(String id) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getAttributes()).thenReturn(new HashMap<>());
+        return session;
+    }
+}
@@ -0,0 +1,181 @@
+package com.bko.stream;
+
+import com.bko.config.MultiAgentProperties;
+import com.bko.orchestration.service.OrchestrationMetricsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrchestrationStreamHubTest {
+
+    @Test
+    void emitSerializesOnceAndSharesTheFrameWithEverySubscriberAndReplay() throws Exception {
+        ObjectMapper objectMapper = spy(new ObjectMapper().findAndRegisterModules());
+        OrchestrationStreamHub hub = new OrchestrationStreamHub(objectMapper, new MultiAgentProperties(),
+                new OrchestrationMetricsService());
+        String runId = hub.createRun();
+        WebSocketSession first = session("a");
+        WebSocketSession second = session("b");
+        hub.registerSession(runId, first, 0);
+        hub.registerSession(runId, second, 0);
+
+        hub.emit(runId, "task-output", Map.of("delta", "hello"));
+        WebSocketSession late = session("c");
+        hub.registerSession(runId, late, 0);
+
+        verify(objectMapper, times(1)).writeValueAsBytes(any());
+        TextMessage sent = sentMessage(first);
+        assertSame(sent, sentMessage(second));
+        assertSame(sent, sentMessage(late));
+        assertTrue(sent.getPayload().contains("\"delta\":\"hello\""));
+    }
+
+    @Test
+    void finishedRunsExpireOnceTheLastSubscriberLeaves() throws Exception {
+        MultiAgentProperties properties = new MultiAgentProperties();
+        properties.getStreamHub().setRunRetention(Duration.ofMillis(50));
+        OrchestrationMetricsService metrics = new OrchestrationMetricsService();
+        OrchestrationStreamHub hub = new OrchestrationStreamHub(new ObjectMapper().findAndRegisterModules(),
+                properties, metrics);
+        hub.start();
+        String finished = hub.createRun();
+        String watched = hub.createRun();
+        String running = hub.createRun();
+        WebSocketSession viewer = session("v");
+        hub.registerSession(watched, viewer, 0);
+        hub.emit(finished, "run-complete", Map.of());
+        hub.emit(watched, "run-complete", Map.of());
+
+        awaitExpired(metrics, 1);
+        Thread.sleep(100);
+        assertEquals(1, metrics.getStreamRunsExpired());
+        assertEquals(2, metrics.getStreamRunsLive());
+
+        hub.removeSession(viewer);
+        awaitExpired(metrics, 2);
+        assertEquals(1, metrics.getStreamRunsLive());
+        hub.emit(running, "status", Map.of());
+        WebSocketSession late = session("l");
+        hub.registerSession(finished, late, 0);
+        verify(late).close();
+        hub.shutdown();
+    }
+
+    @Test
+    void clusterNodesServeAndCancelRunsExecutingOnAnotherNode() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        InMemoryBroker broker = new InMemoryBroker();
+        OrchestrationStreamHub origin = new OrchestrationStreamHub(objectMapper, new MultiAgentProperties(),
+                new OrchestrationMetricsService(), broker, null);
+        OrchestrationStreamHub replica = new OrchestrationStreamHub(objectMapper, new MultiAgentProperties(),
+                new OrchestrationMetricsService(), broker, null);
+        origin.start();
+        replica.start();
+        String runId = origin.createRun();
+        origin.emit(runId, "status", Map.of("phase", "plan"));
+
+        WebSocketSession viewer = session("v");
+        replica.registerSession(runId, viewer, 0);
+        origin.emit(runId, "status", Map.of("phase", "execute"));
+        assertTrue(replica.cancelRun(runId));
+
+        assertTrue(origin.isCancelled(runId));
+        assertFalse(replica.cancelRun("unknown"));
+        ArgumentCaptor<TextMessage> sent = ArgumentCaptor.forClass(TextMessage.class);
+        verify(viewer, timeout(5_000).times(3)).sendMessage(sent.capture());
+        assertEquals(List.of("status", "status", "run-cancel"), sent.getAllValues().stream()
+                .map(message -> {
+                    try {
+                        return objectMapper.readTree(message.getPayload()).get("type").asText();
+                    } catch (Exception ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }).toList());
+    }
+
+    private static WebSocketSession session(String id) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getAttributes()).thenReturn(new HashMap<>());
+        return session;
+    }
+
+    private static TextMessage sentMessage(WebSocketSession session) throws Exception {
+        ArgumentCaptor<TextMessage> message = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, timeout(5_000)).sendMessage(message.capture());
+        return message.getValue();
+    }
+
+    private static void awaitExpired(OrchestrationMetricsService metrics, long expired) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (metrics.getStreamRunsExpired() < expired && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expired, metrics.getStreamRunsExpired());
+    }
+
+    /**
+     * Synchronous stand-in for the Postgres broker shared by two hubs.
+     */
+    private static final class InMemoryBroker implements StreamBroker {
+        private final Map<String, List<SharedEvent>> events = new HashMap<>();
+        private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+        @Override
+        public boolean isActive() {
+            return true;
+        }
+
+        @Override
+        public void start(Listener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void publish(String runId, StreamEvent event, String payload) {
+            synchronized (this) {
+                events.computeIfAbsent(runId, id -> new ArrayList<>()).add(new SharedEvent(event.id(), payload));
+            }
+            listeners.forEach(listener -> listener.eventsPublished(runId, event.id()));
+        }
+
+        @Override
+        public synchronized List<SharedEvent> recentEvents(String runId, long afterId, int limit) {
+            List<SharedEvent> after = events.getOrDefault(runId, List.of()).stream()
+                    .filter(event -> event.id() > afterId).toList();
+            return after.subList(Math.max(0, after.size() - limit), after.size());
+        }
+
+        @Override
+        public synchronized boolean hasRun(String runId) {
+            return events.containsKey(runId);
+        }
+
+        @Override
+        public void requestCancel(String runId) {
+            listeners.forEach(listener -> listener.cancelRequested(runId));
+        }
+    }
+}
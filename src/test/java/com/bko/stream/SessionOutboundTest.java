@@ -0,0 +1,187 @@
+package com.bko.stream;
+
+import com.bko.config.MultiAgentProperties.StreamHubConfig;
+import com.bko.orchestration.service.OrchestrationMetricsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionOutboundTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final StreamCodec codec = new StreamCodec(objectMapper);
+    private final OrchestrationMetricsService metrics = new OrchestrationMetricsService();
+    private final Queue<Runnable> executor = new ArrayDeque<>();
+
+    @Test
+    void deliversQueuedFramesInOrderAndSkipsAlreadyQueuedIds() throws Exception {
+        WebSocketSession session = session();
+        SessionOutbound outbound = outbound(session, config(StreamHubConfig.OverflowPolicy.COALESCE));
+
+        outbound.offer(frame(1, "status", Map.of("phase", "plan")));
+        outbound.offer(frame(2, "status", Map.of("phase", "execute")));
+        outbound.offer(frame(2, "status", Map.of("phase", "execute")));
+        runExecutor();
+
+        assertEquals(List.of(1L, 2L), sentIds(session));
+        assertEquals(0, metrics.getStreamQueuedFrames());
+    }
+
+    @Test
+    void coalescePolicyMergesTaskOutputChunksOfTheSameTask() throws Exception {
+        WebSocketSession session = session();
+        StreamHubConfig config = config(StreamHubConfig.OverflowPolicy.COALESCE);
+        config.setQueueCapacity(3);
+        SessionOutbound outbound = outbound(session, config);
+
+        outbound.offer(frame(1, "task-output", chunk("t1", "Hel", false)));
+        outbound.offer(frame(2, "task-output", chunk("t1", "lo ", false)));
+        outbound.offer(frame(3, "task-output", chunk("t1", "world", true)));
+        outbound.offer(frame(4, "task-output", chunk("t2", "next", false)));
+        assertEquals(2, outbound.depth());
+        runExecutor();
+
+        List<Map<String, Object>> sent = sentEvents(session);
+        assertEquals(List.of(3L, 4L), sent.stream().map(event -> ((Number) event.get("id")).longValue()).toList());
+        Map<?, ?> merged = (Map<?, ?>) sent.get(0).get("data");
+        assertEquals("Hello world", merged.get("chunk"));
+        assertEquals(true, merged.get("done"));
+        assertEquals(2, metrics.getStreamFramesCoalesced());
+        verify(session, never()).close(any());
+    }
+
+    @Test
+    void resyncPolicyReplacesTheQueueWithAMarkerAndClosesAfterSendingIt() throws Exception {
+        WebSocketSession session = session();
+        StreamHubConfig config = config(StreamHubConfig.OverflowPolicy.RESYNC);
+        config.setQueueCapacity(2);
+        SessionOutbound outbound = outbound(session, config);
+
+        outbound.offer(frame(1, "status", Map.of()));
+        runExecutor();
+        outbound.offer(frame(2, "status", Map.of()));
+        outbound.offer(frame(3, "status", Map.of()));
+        outbound.offer(frame(4, "status", Map.of()));
+        outbound.offer(frame(5, "status", Map.of()));
+        runExecutor();
+
+        List<Map<String, Object>> sent = sentEvents(session);
+        assertEquals(2, sent.size());
+        assertEquals(SessionOutbound.RESYNC_TYPE, sent.get(1).get("type"));
+        assertEquals(1, ((Number) ((Map<?, ?>) sent.get(1).get("data")).get("since")).intValue());
+        assertEquals(3, metrics.getStreamFramesDropped());
+        verify(session).close(any(CloseStatus.class));
+    }
+
+    @Test
+    void closePolicyClosesTheSessionWithoutSending() throws Exception {
+        WebSocketSession session = session();
+        StreamHubConfig config = config(StreamHubConfig.OverflowPolicy.CLOSE);
+        config.setBufferSizeLimit(1);
+        SessionOutbound outbound = outbound(session, config);
+
+        outbound.offer(frame(1, "status", Map.of()));
+        outbound.offer(frame(2, "status", Map.of()));
+        runExecutor();
+
+        verify(session, never()).sendMessage(any());
+        ArgumentCaptor<CloseStatus> status = ArgumentCaptor.forClass(CloseStatus.class);
+        verify(session).close(status.capture());
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE.getCode(), status.getValue().getCode());
+        assertEquals(0, metrics.getStreamQueuedFrames());
+    }
+
+    @Test
+    void cborSessionsShareOneBinaryEncodingPerFrame() throws Exception {
+        WebSocketSession first = session();
+        WebSocketSession second = session();
+        Map<String, Object> attributes = new HashMap<>();
+        when(first.getAttributes()).thenReturn(attributes);
+        when(second.getAttributes()).thenReturn(attributes);
+        StreamEncoding.negotiate(first, "CBOR");
+        StreamHubConfig config = config(StreamHubConfig.OverflowPolicy.COALESCE);
+        StreamFrame frame = frame(1, "status", Map.of("phase", "plan"));
+
+        outbound(first, config).offer(frame);
+        outbound(second, config).offer(frame);
+        runExecutor();
+
+        ArgumentCaptor<BinaryMessage> sent = ArgumentCaptor.forClass(BinaryMessage.class);
+        verify(first).sendMessage(sent.capture());
+        verify(second).sendMessage(sent.capture());
+        assertSame(sent.getAllValues().get(0), sent.getAllValues().get(1));
+    }
+
+    private SessionOutbound outbound(WebSocketSession session, StreamHubConfig config) {
+        return new SessionOutbound(session, config, executor::add, codec, metrics);
+    }
+
+    private void runExecutor() {
+        Runnable task;
+        while ((task = executor.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private StreamFrame frame(long id, String type, Object data) {
+        StreamEvent event = new StreamEvent(id, Instant.now(), type, data);
+        return new StreamFrame(event, codec.text(event));
+    }
+
+    private List<Map<String, Object>> sentEvents(WebSocketSession session) throws Exception {
+        ArgumentCaptor<TextMessage> messages = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, atLeastOnce()).sendMessage(messages.capture());
+        List<Map<String, Object>> events = new ArrayList<>();
+        for (TextMessage message : messages.getAllValues()) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> event = objectMapper.readValue(message.getPayload(), Map.class);
+            events.add(event);
+        }
+        return events;
+    }
+
+    private List<Long> sentIds(WebSocketSession session) throws Exception {
+        List<Long> ids = sentEvents(session).stream().map(event -> ((Number) event.get("id")).longValue()).toList();
+        assertTrue(!ids.isEmpty());
+        return ids;
+    }
+
+    private static Map<String, Object> chunk(String taskId, String text, boolean done) {
+        return Map.of("taskId", taskId, "chunk", text, "done", done);
+    }
+
+    private static StreamHubConfig config(StreamHubConfig.OverflowPolicy policy) {
+        StreamHubConfig config = new StreamHubConfig();
+        config.setOverflowPolicy(policy);
+        return config;
+    }
+
+    private static WebSocketSession session() {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s");
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+}
@@ -0,0 +1,64 @@
+package com.bko.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final StreamCodec codec = new StreamCodec(objectMapper);
+
+    @Test
+    void cborCarriesTheSameFieldsAsJsonInFewerBytes() throws Exception {
+        StreamEvent event = new StreamEvent(42, Instant.parse("2025-01-02T03:04:05Z"), "task-output", Map.of(
+                "taskId", "task-1",
+                "role", "researcher",
+                "chunk", "Partial output from the worker. ".repeat(4),
+                "sequence", 3,
+                "done", false));
+
+        byte[] json = codec.text(event).asBytes();
+        byte[] cbor = codec.binary(event).getPayload().array();
+
+        JsonNode fromJson = objectMapper.readTree(json);
+        JsonNode fromCbor = new ObjectMapper(new CBORFactory()).readTree(cbor);
+        assertEquals(fromJson, fromCbor);
+        assertEquals(List.of("id", "timestamp", "type", "data"), fieldNames(fromCbor));
+        assertTrue(cbor.length < json.length, () -> "cbor=" + cbor.length + " json=" + json.length);
+    }
+
+    @Test
+    void binaryBatchesMatchTheSplicedJsonBatch() throws Exception {
+        StreamFrame first = new StreamFrame(new StreamEvent(1, Instant.EPOCH, "status", Map.of("phase", "plan")),
+                codec.text(new StreamEvent(1, Instant.EPOCH, "status", Map.of("phase", "plan"))));
+        StreamFrame second = new StreamFrame(new StreamEvent(2, Instant.EPOCH, "status", Map.of("phase", "run")),
+                codec.text(new StreamEvent(2, Instant.EPOCH, "status", Map.of("phase", "run"))));
+        StreamFrame batch = StreamFrame.batch(List.of(first, second));
+
+        JsonNode fromJson = objectMapper.readTree(batch.message().asBytes());
+        byte[] cbor = ((BinaryMessage) batch.message(StreamEncoding.CBOR, codec))
+                .getPayload().array();
+
+        assertEquals(fromJson, new ObjectMapper(new CBORFactory()).readTree(cbor));
+        assertEquals(2, fromJson.get("id").asLong());
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+}
@@ -0,0 +1,81 @@
+package com.bko.stream;
+
+import com.bko.config.MultiAgentProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamJournalTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final StreamCodec codec = new StreamCodec(objectMapper);
+
+    @Test
+    void rollsSegmentsAndReadsRangesAfterRestart(@TempDir Path dir) throws Exception {
+        MultiAgentProperties properties = properties(dir);
+        StreamJournal journal = new StreamJournal(properties, objectMapper);
+        for (long id = 1; id <= 200; id++) {
+            journal.append("run-1", frame(id, "x".repeat(64)));
+        }
+        journal.complete("run-1");
+
+        try (Stream<Path> segments = Files.list(dir.resolve("run-1"))) {
+            assertTrue(segments.count() > 1);
+        }
+        StreamJournal restarted = new StreamJournal(properties, objectMapper);
+        assertTrue(restarted.contains("run-1"));
+        assertEquals(200, restarted.read("run-1", 0, Long.MAX_VALUE, Integer.MAX_VALUE).size());
+        List<StreamFrame> range = restarted.read("run-1", 40, 61, Integer.MAX_VALUE);
+        assertEquals(41, range.getFirst().event().id());
+        assertEquals(60, range.getLast().event().id());
+        assertEquals(20, range.size());
+        assertEquals("x".repeat(64), ((Map<?, ?>) range.getFirst().event().data()).get("chunk"));
+        List<StreamFrame> tail = restarted.read("run-1", 0, Long.MAX_VALUE, 5);
+        assertEquals(List.of(196L, 197L, 198L, 199L, 200L),
+                tail.stream().map(frame -> frame.event().id()).toList());
+        assertFalse(restarted.contains("../run-1"));
+        assertTrue(restarted.read("missing", 0, Long.MAX_VALUE, 10).isEmpty());
+    }
+
+    @Test
+    void expiresRunsOlderThanTheTtlButKeepsOpenOnes(@TempDir Path dir) {
+        MultiAgentProperties properties = properties(dir);
+        properties.getStreamHub().setJournalTtl(Duration.ZERO);
+        StreamJournal journal = new StreamJournal(properties, objectMapper);
+        journal.append("done", frame(1, "a"));
+        journal.complete("done");
+        journal.append("open", frame(1, "b"));
+
+        journal.expireRuns();
+
+        assertFalse(journal.contains("done"));
+        assertTrue(journal.contains("open"));
+        journal.complete("open");
+    }
+
+    private MultiAgentProperties properties(Path dir) {
+        MultiAgentProperties properties = new MultiAgentProperties();
+        properties.getStreamHub().setJournalEnabled(true);
+        properties.getStreamHub().setJournalPath(dir.toString());
+        properties.getStreamHub().setJournalSegmentBytes(4096);
+        return properties;
+    }
+
+    private StreamFrame frame(long id, String chunk) {
+        StreamEvent event = new StreamEvent(id, Instant.now(), "task-output", Map.of("chunk", chunk));
+        return new StreamFrame(event, codec.text(event));
+    }
+}
@@ -0,0 +1,111 @@
+package com.bko.stream;
+
+import com.bko.config.MultiAgentProperties.StreamHubConfig;
+import com.bko.orchestration.service.OrchestrationMetricsService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StreamRunTest {
+
+    @Test
+    void ringKeepsTheLastCapacityEventsAndResumesFromSequence() {
+        StreamRun run = new StreamRun("run", 4);
+        for (int i = 0; i < 10; i++) {
+            run.addEvent("status", Map.of("i", i), event -> null);
+        }
+
+        assertEquals(List.of(7L, 8L, 9L, 10L), ids(run.snapshotSince(0)));
+        assertEquals(List.of(9L, 10L), ids(run.snapshotSince(8)));
+        assertEquals(List.of(), run.snapshotSince(10));
+        assertEquals(List.of(), new StreamRun("empty", 4).snapshotSince(0));
+    }
+
+    @Test
+    void concurrentAppendsPublishEveryIdInOrder() throws Exception {
+        StreamRun run = new StreamRun("run", 10_000);
+        int threads = 4;
+        int perThread = 2_000;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    run.addEvent("task-output", "chunk", event -> null);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(LongStream.rangeClosed(1, threads * perThread).boxed().toList(), ids(run.snapshotSince(0)));
+    }
+
+    @Test
+    void batchedEventsGoOutAsOneFrameOnFlushOrWhenTheSizeLimitIsReached() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        StreamCodec codec = new StreamCodec(objectMapper);
+        Function<StreamEvent, TextMessage> encoder = codec::text;
+        Queue<Runnable> executor = new ArrayDeque<>();
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        StreamRun run = new StreamRun("run", 100);
+        run.subscribe("s", new SessionOutbound(session, new StreamHubConfig(), executor::add, codec,
+                new OrchestrationMetricsService()), 0);
+
+        assertTrue(run.addBatchedEvent("status", Map.of("i", 1), encoder, 10_000));
+        assertFalse(run.addBatchedEvent("status", Map.of("i", 2), encoder, 10_000));
+        run.flushBatch();
+        assertFalse(run.addBatchedEvent("status", Map.of("i", 3), encoder, 1));
+        assertTrue(run.addBatchedEvent("status", Map.of("i", 4), encoder, 10_000));
+        run.addEvent("run-complete", Map.of(), encoder);
+        executor.forEach(Runnable::run);
+
+        ArgumentCaptor<TextMessage> sent = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, atLeastOnce()).sendMessage(sent.capture());
+        List<JsonNode> frames = sent.getAllValues().stream().map(message -> {
+            try {
+                return objectMapper.readTree(message.getPayload());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }).toList();
+        assertEquals(List.of("batch", "status", "status", "run-complete"),
+                frames.stream().map(frame -> frame.get("type").asText()).toList());
+        assertEquals(2, frames.get(0).get("id").asLong());
+        assertEquals(List.of(1L, 2L), List.of(frames.get(0).get("events").get(0).get("id").asLong(),
+                frames.get(0).get("events").get(1).get("id").asLong()));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ids(run.snapshotSince(0)));
+    }
+
+    private static List<Long> ids(List<StreamFrame> frames) {
+        return frames.stream().map(frame -> frame.event().id()).toList();
+    }
+}
@@ -0,0 +1,150 @@
+package com.bko.stream;
+
+import com.bko.config.MultiAgentProperties;
+import com.bko.orchestration.service.AgentRunSummaryService;
+import com.bko.orchestration.service.OrchestrationMetricsService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StreamSubscriptionWebSocketHandlerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    void oneConnectionCarriesRunAndAgentTopicsUntilUnsubscribed() throws Exception {
+        OrchestrationStreamHub streamHub = new OrchestrationStreamHub(objectMapper, new MultiAgentProperties(),
+                new OrchestrationMetricsService());
+        MultiAgentProperties properties = new MultiAgentProperties();
+        properties.getStreamHub().setAgentUpdateWindow(Duration.ZERO);
+        AgentRunUpdatesHub agentHub = new AgentRunUpdatesHub(objectMapper, properties,
+                mock(AgentRunSummaryService.class));
+        StreamSubscriptionWebSocketHandler handler =
+                new StreamSubscriptionWebSocketHandler(streamHub, agentHub, objectMapper);
+        WebSocketSession connection = connection();
+        handler.afterConnectionEstablished(connection);
+        String first = streamHub.createRun();
+        String second = streamHub.createRun();
+        UUID agentId = UUID.randomUUID();
+        streamHub.emit(first, "status", Map.of("phase", "plan"));
+
+        handler.handleMessage(connection, request("subscribe", "run:" + first, 0));
+        handler.handleMessage(connection, request("subscribe", "run:" + second, 0));
+        handler.handleMessage(connection, request("subscribe", "agent:" + agentId.toString().toUpperCase(), 0));
+        streamHub.emit(second, "status", Map.of("phase", "execute"));
+        agentHub.notifyRunUpdate(agentId, UUID.randomUUID());
+        List<JsonNode> received = received(connection, 3);
+
+        // Topics are delivered independently, so only the per-topic content is compared.
+        assertEquals(Set.of("status:" + first, "status:" + second, "agent-run-update:" + agentId),
+                received.stream().map(node -> node.get("type").asText() + ":"
+                        + node.path(node.has("runId") ? "runId" : "agentId").asText()).collect(Collectors.toSet()));
+
+        handler.handleMessage(connection, request("unsubscribe", "run:" + first, 0));
+        handler.handleMessage(connection, request("subscribe", "run:missing", 0));
+        streamHub.emit(first, "status", Map.of("phase", "ignored"));
+        streamHub.emit(second, "final", Map.of());
+        List<JsonNode> later = received(connection, 5).subList(3, 5);
+
+        assertEquals("subscription-closed", later.get(0).get("type").asText());
+        assertEquals("run:missing", later.get(0).get("topic").asText());
+        assertEquals(second, later.get(1).get("runId").asText());
+        assertEquals("final", later.get(1).get("type").asText());
+
+        handler.afterConnectionClosed(connection, CloseStatus.NORMAL);
+        streamHub.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void closingASubscriptionDoesNotWaitForASendStuckOnTheConnection() throws Exception {
+        OrchestrationStreamHub streamHub = new OrchestrationStreamHub(objectMapper, new MultiAgentProperties(),
+                new OrchestrationMetricsService());
+        AgentRunUpdatesHub agentHub = new AgentRunUpdatesHub(objectMapper, new MultiAgentProperties(),
+                mock(AgentRunSummaryService.class));
+        StreamSubscriptionWebSocketHandler handler =
+                new StreamSubscriptionWebSocketHandler(streamHub, agentHub, objectMapper);
+        WebSocketSession connection = connection();
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sending.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return null;
+        }).doNothing().when(connection).sendMessage(any());
+        handler.afterConnectionEstablished(connection);
+        String topic = "agent:" + UUID.randomUUID();
+        handler.handleMessage(connection, request("subscribe", topic, 0));
+        TopicSession subscription = ((Map<String, TopicSession>) connection.getAttributes().get("subscriptions"))
+                .get(topic);
+        Thread.ofVirtual().start(() -> {
+            try {
+                subscription.sendMessage(new TextMessage("{}"));
+            } catch (Exception ignored) {
+            }
+        });
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture.runAsync(() -> subscription.close(CloseStatus.SESSION_NOT_RELIABLE))
+                .get(1, TimeUnit.SECONDS);
+        release.countDown();
+
+        List<JsonNode> received = received(connection, 2);
+        assertEquals("subscription-closed", received.get(1).get("type").asText());
+        assertEquals(topic, received.get(1).get("topic").asText());
+        handler.shutdown();
+        streamHub.shutdown();
+    }
+
+    private TextMessage request(String action, String topic, long since) throws Exception {
+        return new TextMessage(objectMapper.writeValueAsString(Map.of("action", action, "topic", topic, "since", since)));
+    }
+
+    private List<JsonNode> received(WebSocketSession connection, int count) throws Exception {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<WebSocketMessage<?>> sent = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(connection, timeout(5_000).times(count)).sendMessage(sent.capture());
+        return sent.getAllValues().stream().map(message -> {
+            try {
+                return objectMapper.readTree(((TextMessage) message).getPayload());
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        }).toList();
+    }
+
+    private static WebSocketSession connection() {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("mux");
+        when(session.isOpen()).thenReturn(true);
+        when(session.getUri()).thenReturn(URI.create("ws://localhost/ws/subscriptions"));
+        when(session.getAttributes()).thenReturn(new HashMap<>());
+        return session;
+    }
+}
@@ -0,0 +1,95 @@
+package com.bko.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ArxivApiReaderToolTest {
+
+    private static final String FEED = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <feed xmlns="http://www.w3.org/2005/Atom" xmlns:arxiv="http://arxiv.org/schemas/atom">
+              <title>ArXiv Query</title>
+              <entry>
+                <id>http://arxiv.org/abs/2401.00001v2</id>
+                <updated>2024-01-05T10:00:00Z</updated>
+                <published>2024-01-01T10:00:00Z</published>
+                <title>Streaming   parsers
+                  for feeds</title>
+                <summary>  We parse
+                  Atom. </summary>
+                <author><name>Ada Lovelace</name><arxiv:affiliation>Analytical</arxiv:affiliation></author>
+                <author><name>Alan Turing</name></author>
+                <arxiv:primary_category term="cs.SE"/>
+                <link href="http://arxiv.org/pdf/2401.00001v2" rel="related" type="application/pdf"/>
+                <link href="http://arxiv.org/abs/2401.00001v2" rel="alternate" type="text/html"/>
+                <category term="cs.SE"/>
+                <category term="cs.PL"/>
+              </entry>
+              <entry>
+                <id>http://arxiv.org/abs/2401.00002v1</id>
+                <updated>2024-01-02T10:00:00Z</updated>
+                <title>Second</title>
+              </entry>
+            </feed>
+            """;
+
+    @Test
+    void parsesEntriesFromStream() throws Exception {
+        List<ArxivApiReaderTool.ArxivEntry> entries = ArxivApiReaderTool.parseEntries(
+                new ByteArrayInputStream(FEED.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2, entries.size());
+        ArxivApiReaderTool.ArxivEntry first = entries.getFirst();
+        assertEquals("2401.00001v2", first.arxivId());
+        assertEquals("Streaming parsers for feeds", first.title());
+        assertEquals("We parse Atom.", first.summary());
+        assertEquals("http://arxiv.org/abs/2401.00001v2", first.url());
+        assertEquals(List.of("Ada Lovelace", "Alan Turing"), first.authors());
+        assertEquals(List.of("cs.SE", "cs.PL"), first.categories());
+        assertEquals(OffsetDateTime.parse("2024-01-01T10:00:00Z"), first.published());
+        assertEquals("Second", entries.get(1).title());
+        assertEquals(List.of(), entries.get(1).authors());
+    }
+
+    @Test
+    void rejectsDoctype() {
+        String xml = """
+                <?xml version="1.0"?>
+                <!DOCTYPE feed [<!ENTITY x SYSTEM "file:///etc/passwd">]>
+                <feed xmlns="http://www.w3.org/2005/Atom"><entry><title>&x;</title></entry></feed>
+                """;
+        assertThrows(Exception.class, () -> ArxivApiReaderTool.parseEntries(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void incrementalHarvestStopsAtHighWaterMark() throws Exception {
+        List<ArxivApiReaderTool.ArxivEntry> entries = ArxivApiReaderTool.parseEntries(
+                new ByteArrayInputStream(FEED.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1, ArxivApiReaderTool.newerThan(entries, OffsetDateTime.parse("2024-01-02T10:00:00Z")).size());
+        assertEquals(0, ArxivApiReaderTool.newerThan(entries, OffsetDateTime.parse("2024-01-05T10:00:00Z")).size());
+        assertEquals(2, ArxivApiReaderTool.newerThan(entries, null).size());
+    }
+
+    @Test
+    void harvestMarkOnlyAdvancesWhenTheHarvestReachedThePreviousMark() {
+        OffsetDateTime previous = OffsetDateTime.parse("2024-01-02T10:00:00Z");
+        OffsetDateTime newest = OffsetDateTime.parse("2024-01-05T10:00:00Z");
+
+        assertEquals(newest, ArxivApiReaderTool.advancedMark(null, newest, false));
+        assertEquals(newest, ArxivApiReaderTool.advancedMark(previous, newest, true));
+        assertNull(ArxivApiReaderTool.advancedMark(previous, newest, false));
+        assertNull(ArxivApiReaderTool.advancedMark(newest, previous, true));
+        assertNull(ArxivApiReaderTool.advancedMark(previous, null, true));
+        assertEquals("cat:cs.SE AND ti:graph", ArxivApiReaderTool.harvestKey(" cat:cs.SE  AND\tti:graph "));
+    }
+}